@@ -45,4 +45,32 @@ public class UnmannedConfig extends SensorConfig {
     public String SDKAddress = "127.0.0.1";
     public int SDKPort = 50051;
     public String systemId;
+
+    @DisplayInfo(label = "Output Rate", desc = "Rate at which merged telemetry records are published, in Hz. "
+            + "Only the latest value of each field is kept between records. Set to 0 to publish on every update.")
+    public double outputRate = 0;
+
+    @DisplayInfo(label = "Position Output Rate", desc = "Maximum rate at which position updates trigger a published record, in Hz (0 to publish every update). The latest value is always used")
+    public double positionOutputRate = 0;
+
+    @DisplayInfo(label = "Velocity Output Rate", desc = "Maximum rate at which velocity updates trigger a published record, in Hz (0 to publish every update). The latest value is always used")
+    public double velocityOutputRate = 0;
+
+    @DisplayInfo(label = "Attitude Output Rate", desc = "Maximum rate at which attitude updates trigger a published record, in Hz (0 to publish every update). The latest value is always used")
+    public double attitudeOutputRate = 0;
+
+    @DisplayInfo(label = "IMU Output Rate", desc = "Maximum rate at which raw IMU updates trigger a published record, in Hz (0 to publish every update). The latest value is always used")
+    public double imuOutputRate = 0;
+
+    @DisplayInfo(label = "Position Rate", desc = "Position update rate requested from the autopilot, in Hz (0 to keep autopilot default)")
+    public double positionRate = 0;
+
+    @DisplayInfo(label = "Velocity Rate", desc = "Velocity update rate requested from the autopilot, in Hz (0 to keep autopilot default)")
+    public double velocityRate = 0;
+
+    @DisplayInfo(label = "Attitude Rate", desc = "Attitude update rate requested from the autopilot, in Hz (0 to keep autopilot default)")
+    public double attitudeRate = 0;
+
+    @DisplayInfo(label = "IMU Rate", desc = "Raw IMU update rate requested from the autopilot, in Hz (0 to keep autopilot default)")
+    public double imuRate = 0.5;
 }
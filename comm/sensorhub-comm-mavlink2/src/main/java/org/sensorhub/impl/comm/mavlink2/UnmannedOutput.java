@@ -22,13 +22,22 @@ import org.sensorhub.api.data.DataEvent;
 import org.sensorhub.impl.sensor.AbstractSensorOutput;
 import org.vast.swe.helper.GeoPosHelper;
 
-import java.util.ArrayList;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * UnmannedOutput specification and provider for {@link UnmannedSystem}.
+ * <p>
+ * Telemetry callbacks always store the latest value of each field. When an
+ * output rate is configured, a merged record with the latest values is
+ * published at that rate so high rate streams (e.g. IMU) don't generate one
+ * event per update. Otherwise a record is published on every update, unless
+ * the field has its own rate: updates received less than one period after the
+ * field was last published are stored but only published with the next record.
  */
 public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
     static final String SENSOR_OUTPUT_NAME = "SensorOutput";
@@ -37,7 +46,9 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
 
     private static final int MAX_NUM_TIMING_SAMPLES = 10;
 
-    private final ArrayList<Double> intervalHistogram = new ArrayList<>(MAX_NUM_TIMING_SAMPLES);
+    private final double[] intervalHistogram = new double[MAX_NUM_TIMING_SAMPLES];
+    private int numTimingSamples = 0;
+    private int nextTimingSample = 0;
     private final Object histogramLock = new Object();
     private final Object processingLock = new Object();
 
@@ -54,11 +65,48 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
 
     static double deltaSuccess =   0.000003;
 
-    static Telemetry.Position    currentPosition = null;
-    static Telemetry.EulerAngle  currentAttitude = null;
-    static Telemetry.VelocityNed currentVelocity = null;
-    static Telemetry.Imu         currentImu = null;
-    private final ReentrantLock lock = new ReentrantLock();
+    private final ConflatedField<Telemetry.Position>    currentPosition = new ConflatedField<>();
+    private final ConflatedField<Telemetry.EulerAngle>  currentAttitude = new ConflatedField<>();
+    private final ConflatedField<Telemetry.VelocityNed> currentVelocity = new ConflatedField<>();
+    private final ConflatedField<Telemetry.Imu>         currentImu = new ConflatedField<>();
+    private volatile boolean publishOnUpdate = true;
+    private Disposable publishTimer;
+
+
+    /**
+     * Latest value of a telemetry field.
+     * The newest value is always kept, the field rate only limits how often
+     * updates of this field trigger a published record.
+     */
+    private static class ConflatedField<T> {
+        volatile T value;
+        volatile boolean updated;
+        volatile long minPeriodNanos;
+        volatile long lastPublishNanos;
+
+        void setRate( double rateHz ) {
+            minPeriodNanos = rateHz > 0 ? Math.round(1e9 / rateHz) : 0;
+        }
+
+        void set( T newValue ) {
+            value = newValue;
+            updated = true;
+        }
+
+        /**
+         * @return true if the field has a value that wasn't published yet and its period has elapsed
+         */
+        boolean isDue( long now ) {
+            return updated && now - lastPublishNanos >= minPeriodNanos;
+        }
+
+        void published( long now ) {
+            if (updated) {
+                updated = false;
+                lastPublishNanos = now;
+            }
+        }
+    }
 
 
     /**
@@ -125,61 +173,139 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
     public double getAverageSamplingPeriod() {
         synchronized (histogramLock) {
             double sum = 0;
-            for (double sample : intervalHistogram)
-                sum += sample;
+            for (int i = 0; i < numTimingSamples; i++)
+                sum += intervalHistogram[i];
+
+            return sum / numTimingSamples;
+        }
+    }
+
 
-            return sum / intervalHistogram.size();
+    /**
+     * Starts publishing merged records at the given rate.
+     * Per-field rates are read from the sensor configuration.
+     *
+     * @param rateHz Publishing rate in Hz. If 0 or less, a record is published on every telemetry update.
+     */
+    public void start( double rateHz ) {
+        stop();
+
+        UnmannedConfig config = parentSensor.getConfiguration();
+        currentPosition.setRate(config.positionOutputRate);
+        currentVelocity.setRate(config.velocityOutputRate);
+        currentAttitude.setRate(config.attitudeOutputRate);
+        currentImu.setRate(config.imuOutputRate);
+        publishOnUpdate = rateHz <= 0;
+
+        // when publishing on update, values held back by a field rate are
+        // flushed at the highest field rate so the newest value is not lost
+        double timerRate = rateHz;
+        if (publishOnUpdate) {
+            timerRate = Math.max(Math.max(config.positionOutputRate, config.velocityOutputRate),
+                    Math.max(config.attitudeOutputRate, config.imuOutputRate));
+        }
+
+        if (timerRate > 0) {
+            long periodMicros = Math.max(1L, Math.round(1e6 / timerRate));
+            publishTimer = Flowable.interval(periodMicros, TimeUnit.MICROSECONDS)
+                    .onBackpressureDrop()
+                    .subscribe(
+                            tick -> publishIfDue(),
+                            err -> parentSensor.getLogger().error("Error publishing telemetry", err));
+        }
+    }
+
+
+    /**
+     * Stops the publishing timer.
+     */
+    public void stop() {
+        if (publishTimer != null) {
+            publishTimer.dispose();
+            publishTimer = null;
+        }
+    }
+
+
+    /**
+     * Called by telemetry callbacks to store the latest value of a field.
+     * This path doesn't take any lock unless a record is published right away.
+     */
+    private <T> void onTelemetryUpdate( ConflatedField<T> field, T value ) {
+        field.set(value);
+        if (publishOnUpdate && field.isDue(System.nanoTime()))
+            publishIfDue();
+    }
+
+
+    /**
+     * Publishes a record with the latest values if any field is due.
+     * Fields are only marked as published under the lock so each newest
+     * value triggers at most one record.
+     */
+    private void publishIfDue() {
+        long now = System.nanoTime();
+        synchronized (processingLock) {
+            if (!currentPosition.isDue(now) && !currentVelocity.isDue(now) &&
+                    !currentAttitude.isDue(now) && !currentImu.isDue(now))
+                return;
+
+            currentPosition.published(now);
+            currentVelocity.published(now);
+            currentAttitude.published(now);
+            currentImu.published(now);
+            setData(System.currentTimeMillis());
         }
     }
 
 
     public void setData( long timestamp ) {
+        // read each field once so all values come from the same snapshot
+        Telemetry.Position currentPosition = this.currentPosition.value;
+        Telemetry.EulerAngle currentAttitude = this.currentAttitude.value;
+        Telemetry.VelocityNed currentVelocity = this.currentVelocity.value;
+        Telemetry.Imu currentImu = this.currentImu.value;
+
         synchronized (processingLock) {
             DataBlock dataBlock = latestRecord == null ? dataRecord.createDataBlock() : latestRecord.renew();
 
             updateIntervalHistogram();
 
-            lock.lock();
-            try {
-                int index = 0;
-                // Populate the data block
-
-                if ( currentPosition != null && currentVelocity != null && currentImu != null ) {
-                    dataBlock.setDoubleValue(index++, timestamp / 1000d);
-
-                    //Location
-                    dataBlock.setDoubleValue(index++, currentPosition.getLatitudeDeg());
-                    dataBlock.setDoubleValue(index++, currentPosition.getLongitudeDeg());
-                    dataBlock.setDoubleValue(index++, currentPosition.getAbsoluteAltitudeM());
-
-                    // Orientation
-                    dataBlock.setDoubleValue(index++, currentAttitude.getYawDeg());
-                    dataBlock.setDoubleValue(index++, currentAttitude.getPitchDeg());
-                    dataBlock.setDoubleValue(index++, currentAttitude.getRollDeg());
-
-                    //Velocity
-                    dataBlock.setDoubleValue(index++, currentVelocity.getNorthMS());
-                    dataBlock.setDoubleValue(index++, currentVelocity.getEastMS());
-                    dataBlock.setDoubleValue(index++, currentVelocity.getDownMS());
-
-                    //Acceleration
-                    dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getForwardMS2());
-                    dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getRightMS2());
-                    dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getDownMS2());
-                    //Angular Velocity
-                    dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getForwardRadS());
-                    dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getRightRadS());
-                    dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getDownRadS());
-                    //Temperature
-                    dataBlock.setDoubleValue(index++, currentImu.getTemperatureDegc());
-                    //Magnetic Field
-                    dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getForwardGauss());
-                    dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getRightGauss());
-                    dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getDownGauss());
-                }
-
-            } finally {
-                lock.unlock();
+            int index = 0;
+            // Populate the data block
+
+            if ( currentPosition != null && currentAttitude != null && currentVelocity != null && currentImu != null ) {
+                dataBlock.setDoubleValue(index++, timestamp / 1000d);
+
+                //Location
+                dataBlock.setDoubleValue(index++, currentPosition.getLatitudeDeg());
+                dataBlock.setDoubleValue(index++, currentPosition.getLongitudeDeg());
+                dataBlock.setDoubleValue(index++, currentPosition.getAbsoluteAltitudeM());
+
+                // Orientation
+                dataBlock.setDoubleValue(index++, currentAttitude.getYawDeg());
+                dataBlock.setDoubleValue(index++, currentAttitude.getPitchDeg());
+                dataBlock.setDoubleValue(index++, currentAttitude.getRollDeg());
+
+                //Velocity
+                dataBlock.setDoubleValue(index++, currentVelocity.getNorthMS());
+                dataBlock.setDoubleValue(index++, currentVelocity.getEastMS());
+                dataBlock.setDoubleValue(index++, currentVelocity.getDownMS());
+
+                //Acceleration
+                dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getForwardMS2());
+                dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getRightMS2());
+                dataBlock.setDoubleValue(index++, currentImu.getAccelerationFrd().getDownMS2());
+                //Angular Velocity
+                dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getForwardRadS());
+                dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getRightRadS());
+                dataBlock.setDoubleValue(index++, currentImu.getAngularVelocityFrd().getDownRadS());
+                //Temperature
+                dataBlock.setDoubleValue(index++, currentImu.getTemperatureDegc());
+                //Magnetic Field
+                dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getForwardGauss());
+                dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getRightGauss());
+                dataBlock.setDoubleValue(index++, currentImu.getMagneticFieldFrd().getDownGauss());
             }
 
             // Publish the data block
@@ -198,10 +324,11 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
         synchronized (histogramLock) {
             if (latestRecord != null && latestRecordTime != Long.MIN_VALUE) {
                 long interval = System.currentTimeMillis() - latestRecordTime;
-                intervalHistogram.add(interval / 1000d);
+                intervalHistogram[nextTimingSample] = interval / 1000d;
+                nextTimingSample = (nextTimingSample + 1) % MAX_NUM_TIMING_SAMPLES;
 
-                if (intervalHistogram.size() > MAX_NUM_TIMING_SAMPLES) {
-                    intervalHistogram.remove(0);
+                if (numTimingSamples < MAX_NUM_TIMING_SAMPLES) {
+                    numTimingSamples++;
                 }
             }
         }
@@ -260,16 +387,9 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
                         pos -> {
                             //System.out.println("MAVSDK: Lat: " + pos.getLatitudeDeg() + ", Lon: " + pos.getLongitudeDeg());
 
-                            lock.lock();
-                            try {
-                                currentPosition = pos;
-                            } finally {
-                                lock.unlock();
-                            }
-
-                            setData(System.currentTimeMillis());
+                            onTelemetryUpdate(currentPosition, pos);
                         },
-                        err -> System.err.println("MAVSDK: Position error: " + err)
+                        err -> parentSensor.getLogger().error("MAVSDK: Position error", err)
                 );
 
         drone.getTelemetry().getVelocityNed()
@@ -277,34 +397,32 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
                         vel -> {
                             //System.out.println("MAVSDK: Velocity E:" + vel.getEastMS() + " M/S, N:" + vel.getNorthMS() + " M/S");
 
-                            lock.lock();
-                            try {
-                                currentVelocity = vel;
-                            } finally {
-                                lock.unlock();
-                            }
-
-                            setData(System.currentTimeMillis());
+                            onTelemetryUpdate(currentVelocity, vel);
                         },
-                        err -> System.err.println("MAVSDK: Position error: " + err)
+                        err -> parentSensor.getLogger().error("MAVSDK: Velocity error", err)
                 );
 
 
-        drone.getTelemetry().setRateRawImu(0.5) // Hz
-                .subscribe(() -> System.out.println("Rate set."),
-                        err -> System.err.println("Failed: " + err.getMessage()));
+        // request telemetry rates from autopilot so unused updates are not even sent
+        UnmannedConfig config = parentSensor.getConfiguration();
+        if (config.positionRate > 0)
+            drone.getTelemetry().setRatePosition(config.positionRate)
+                    .subscribe(() -> {}, err -> parentSensor.getLogger().warn("Failed to set position rate: {}", err.getMessage()));
+        if (config.velocityRate > 0)
+            drone.getTelemetry().setRateVelocityNed(config.velocityRate)
+                    .subscribe(() -> {}, err -> parentSensor.getLogger().warn("Failed to set velocity rate: {}", err.getMessage()));
+        if (config.attitudeRate > 0)
+            drone.getTelemetry().setRateAttitudeEuler(config.attitudeRate)
+                    .subscribe(() -> {}, err -> parentSensor.getLogger().warn("Failed to set attitude rate: {}", err.getMessage()));
+        if (config.imuRate > 0)
+            drone.getTelemetry().setRateRawImu(config.imuRate) // Hz
+                    .subscribe(() -> parentSensor.getLogger().debug("Raw IMU rate set to {} Hz", config.imuRate),
+                            err -> parentSensor.getLogger().warn("Failed to set raw IMU rate: {}", err.getMessage()));
 
         drone.getTelemetry().getRawImu()
                 .subscribe(imu -> {
 
-                    lock.lock();
-                    try {
-                        currentImu = imu;
-                    } finally {
-                        lock.unlock();
-                    }
-
-                    setData(System.currentTimeMillis());
+                    onTelemetryUpdate(currentImu, imu);
 
                     //System.out.println("Accel Forward: " + imu.getAccelerationFrd().getForwardMS2() + " m/s^2");
                     //System.out.println("Accel Right: " + imu.getAccelerationFrd().getRightMS2() + " m/s^2");
@@ -323,14 +441,7 @@ public class UnmannedOutput extends AbstractSensorOutput<UnmannedSystem> {
 
         drone.getTelemetry().getAttitudeEuler()
                 .subscribe(attitude -> {
-                    lock.lock();
-                    try {
-                        currentAttitude = attitude;
-                    } finally {
-                        lock.unlock();
-                    }
-
-                    setData(System.currentTimeMillis());
+                    onTelemetryUpdate(currentAttitude, attitude);
                 });
 
     }
@@ -92,6 +92,7 @@ public class UnmannedSystem extends AbstractSensorModule<UnmannedConfig> {
     public void doStart() throws SensorHubException {
         super.doStart();
 
+        output.start(config.outputRate);
         receiveDrone();
 
         //startProcessing();
@@ -100,6 +101,7 @@ public class UnmannedSystem extends AbstractSensorModule<UnmannedConfig> {
     @Override
     public void doStop() throws SensorHubException {
         super.doStop();
+        output.stop();
         stopProcessing();
     }
 
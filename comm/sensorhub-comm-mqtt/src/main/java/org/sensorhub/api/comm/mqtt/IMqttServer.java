@@ -15,6 +15,7 @@ Copyright (C) 2012-2021 Sensia Software LLC. All Rights Reserved.
 package org.sensorhub.api.comm.mqtt;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 
@@ -55,6 +56,40 @@ public interface IMqttServer
         void onPublish(String userID, String topic, ByteBuffer payload, ByteBuffer correlData) throws MqttException;
     
         
+        /**
+         * Notify the handler of several publish messages received on the same topic
+         * from the same user. Handlers can override this method to process all messages
+         * at once (e.g. in a single transaction). The default implementation calls
+         * {@link #onPublish(String, String, ByteBuffer, ByteBuffer)} for each message.<br/>
+         * Implementations must process each message only once, so that messages
+         * are not inserted twice when some other messages of the batch are rejected.
+         * @param userID Authenticated user who published the messages
+         * @param topic MQTT topic where the messages were published
+         * @param payloads Payload data embedded in each message
+         * @param correlData Correlation data of each message (elements are null if not present)
+         * @return Array containing, for each message, the exception that was raised
+         * while processing it, or null if it was processed successfully
+         */
+        default Exception[] onPublishBatch(String userID, String topic, List<ByteBuffer> payloads, List<ByteBuffer> correlData)
+        {
+            var errors = new Exception[payloads.size()];
+            
+            for (int i = 0; i < errors.length; i++)
+            {
+                try
+                {
+                    onPublish(userID, topic, payloads.get(i), correlData.get(i));
+                }
+                catch (Exception e)
+                {
+                    errors[i] = e;
+                }
+            }
+            
+            return errors;
+        }
+    
+        
         /**
          * Notify handler of an incoming subscribe request
          * @param userID Authenticated user who wants to subscribe
@@ -0,0 +1,229 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.api.comm.mqtt;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.vast.util.Asserts;
+
+
+/**
+ * <p>
+ * Pool of reference counted byte buffers used to build MQTT payloads.<br/>
+ * Buffers are organized in power of two size classes. Buffers larger than
+ * the maximum pooled size are still provided but are left to the garbage
+ * collector when released.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class MqttBufferPool
+{
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final int DEFAULT_MAX_SIZE = 16*1024*1024;
+    public static final int DEFAULT_MAX_PER_CLASS = 16;
+
+    final int minShift;
+    final int maxShift;
+    final int maxPerClass;
+    final SizeClass[] sizeClasses;
+    final AtomicInteger allocCount = new AtomicInteger();
+
+
+    static class SizeClass
+    {
+        final ConcurrentLinkedQueue<PooledBuffer> buffers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+
+    /**
+     * <p>
+     * Byte buffer that is returned to the pool when its reference count
+     * drops to zero. Buffers are acquired with a count of 1 and each user
+     * that keeps the content beyond the scope of the owner (e.g. until an
+     * async publish completes) must call {@link #retain()} first.
+     * </p>
+     */
+    public static class PooledBuffer
+    {
+        final MqttBufferPool pool;
+        final SizeClass sizeClass;
+        final byte[] array;
+        final ByteBuffer correlData = ByteBuffer.allocate(8);
+        final AtomicInteger refCount = new AtomicInteger();
+
+        PooledBuffer(MqttBufferPool pool, SizeClass sizeClass, int size)
+        {
+            this.pool = pool;
+            this.sizeClass = sizeClass;
+            this.array = new byte[size];
+        }
+
+        /**
+         * @return The backing array
+         */
+        public byte[] array()
+        {
+            return array;
+        }
+
+        /**
+         * @return The buffer capacity
+         */
+        public int capacity()
+        {
+            return array.length;
+        }
+
+        /**
+         * @return A byte buffer wrapping the buffer content up to the given length
+         */
+        public ByteBuffer wrap(int length)
+        {
+            return ByteBuffer.wrap(array, 0, length);
+        }
+
+        /**
+         * @return A byte buffer containing the given correlation ID,
+         * owned by this buffer
+         */
+        public ByteBuffer correlData(long correlId)
+        {
+            correlData.clear();
+            correlData.putLong(correlId);
+            return correlData.flip();
+        }
+
+        /**
+         * Increment reference count
+         * @return This buffer
+         */
+        public PooledBuffer retain()
+        {
+            var prev = refCount.getAndIncrement();
+            Asserts.checkState(prev > 0, "Buffer already released");
+            return this;
+        }
+
+        /**
+         * Decrement reference count and return the buffer to the pool when
+         * it is not used anymore
+         */
+        public void release()
+        {
+            var count = refCount.decrementAndGet();
+            if (count == 0)
+                pool.recycle(this);
+            else
+                Asserts.checkState(count > 0, "Buffer already released");
+        }
+
+        /**
+         * @return The current reference count
+         */
+        public int refCount()
+        {
+            return refCount.get();
+        }
+    }
+
+
+    public MqttBufferPool()
+    {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_PER_CLASS);
+    }
+
+
+    /**
+     * @param minSize Size of smallest buffers, rounded up to the next power of two
+     * @param maxSize Size of largest pooled buffers, rounded up to the next power of two
+     * @param maxPerClass Maximum number of idle buffers kept in each size class
+     */
+    public MqttBufferPool(int minSize, int maxSize, int maxPerClass)
+    {
+        Asserts.checkArgument(minSize > 0 && minSize <= maxSize, "Invalid buffer sizes");
+        this.minShift = ceilLog2(minSize);
+        this.maxShift = ceilLog2(maxSize);
+        this.maxPerClass = maxPerClass;
+        this.sizeClasses = new SizeClass[maxShift - minShift + 1];
+        for (int i = 0; i < sizeClasses.length; i++)
+            sizeClasses[i] = new SizeClass();
+    }
+
+
+    static int ceilLog2(int size)
+    {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+    }
+
+
+    /**
+     * Get a buffer with at least the given capacity
+     * @param minCapacity Minimum required capacity in bytes
+     * @return A buffer with reference count set to 1
+     */
+    public PooledBuffer acquire(int minCapacity)
+    {
+        var shift = Math.max(ceilLog2(minCapacity), minShift);
+
+        PooledBuffer buf;
+        if (shift > maxShift)
+        {
+            // too large to be pooled
+            buf = new PooledBuffer(this, null, minCapacity);
+            allocCount.incrementAndGet();
+        }
+        else
+        {
+            var sizeClass = sizeClasses[shift - minShift];
+            buf = sizeClass.buffers.poll();
+            if (buf != null)
+                sizeClass.count.decrementAndGet();
+            else
+            {
+                buf = new PooledBuffer(this, sizeClass, 1 << shift);
+                allocCount.incrementAndGet();
+            }
+        }
+
+        buf.refCount.set(1);
+        return buf;
+    }
+
+
+    void recycle(PooledBuffer buf)
+    {
+        var sizeClass = buf.sizeClass;
+        if (sizeClass == null)
+            return;
+
+        if (sizeClass.count.incrementAndGet() <= maxPerClass)
+            sizeClass.buffers.offer(buf);
+        else
+            sizeClass.count.decrementAndGet();
+    }
+
+
+    /**
+     * @return Total number of buffers allocated by this pool
+     */
+    public int getAllocCount()
+    {
+        return allocCount.get();
+    }
+}
@@ -14,9 +14,11 @@ Copyright (C) 2015 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.api.comm.mqtt;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import org.sensorhub.api.comm.mqtt.MqttBufferPool.PooledBuffer;
 import org.vast.util.Asserts;
 
 
@@ -25,31 +27,96 @@ import org.vast.util.Asserts;
  * Adapter output stream for sending data to an MQTT topic.<br/>
  * Data is buffered in a byte array, then packaged to an MQTT message and sent
  * to the topic when send() is called.
+ * </p><p>
+ * Byte arrays are taken from a {@link MqttBufferPool}. The array holding a
+ * message is handed over to the MQTT server without copy and is only returned
+ * to the pool when the publish operation completes, while following messages
+ * are written to another array. Arrays are sized according to the previous
+ * message so that steady state publishing doesn't need to grow them.
  * </p>
  *
  * @author Alex Robin
  * @since Jul 29, 2021
  */
-public class MqttOutputStream extends ByteArrayOutputStream
+public class MqttOutputStream extends OutputStream
 {
     protected IMqttServer server;
     protected String topic;
-    protected ByteBuffer buffer;
-    protected ByteBuffer correlData;
+    protected MqttBufferPool bufferPool;
+    protected PooledBuffer buffer;
+    protected int count;
+    protected int sizeHint;
     protected boolean autoSendOnFlush;
     
     
     public MqttOutputStream(IMqttServer server, String topic, int bufferSize, boolean autoSendOnFlush)
     {
-        super(bufferSize);
+        this(server, topic, new MqttBufferPool(), bufferSize, autoSendOnFlush);
+    }
+    
+    
+    public MqttOutputStream(IMqttServer server, String topic, MqttBufferPool bufferPool, int bufferSize, boolean autoSendOnFlush)
+    {
         this.server = Asserts.checkNotNull(server, IMqttServer.class);
         this.topic = topic;
-        this.buffer = ByteBuffer.wrap(this.buf);
-        this.correlData = ByteBuffer.allocate(8);
+        this.bufferPool = Asserts.checkNotNull(bufferPool, MqttBufferPool.class);
+        this.sizeHint = bufferSize;
         this.autoSendOnFlush = autoSendOnFlush;
     }
     
     
+    protected void ensureCapacity(int minCapacity)
+    {
+        if (buffer == null)
+        {
+            buffer = bufferPool.acquire(Math.max(minCapacity, sizeHint));
+        }
+        else if (minCapacity > buffer.capacity())
+        {
+            var newBuffer = bufferPool.acquire(Math.max(minCapacity, buffer.capacity() * 2));
+            System.arraycopy(buffer.array(), 0, newBuffer.array(), 0, count);
+            buffer.release();
+            buffer = newBuffer;
+        }
+    }
+    
+    
+    @Override
+    public void write(int b)
+    {
+        ensureCapacity(count + 1);
+        buffer.array()[count++] = (byte)b;
+    }
+    
+    
+    @Override
+    public void write(byte[] b, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer.array(), count, len);
+        count += len;
+    }
+    
+    
+    /**
+     * @return The number of bytes written since the last message was sent
+     */
+    public int size()
+    {
+        return count;
+    }
+    
+    
+    /**
+     * Discard bytes written since the last message was sent
+     */
+    public void reset()
+    {
+        count = 0;
+    }
+    
+    
     @Override
     public void close()
     {        
@@ -76,26 +143,30 @@ public class MqttOutputStream extends ByteArrayOutputStream
         if (count == 0)
             return;
         
-        // detect when buffer has grown
-        if (count > buffer.capacity())
-            this.buffer = ByteBuffer.wrap(this.buf);
-        
-        buffer.limit(count);
+        // hand over buffer to the publish operation
+        // next message will be written in a new buffer of the same size
+        var msgBuffer = buffer;
+        var msgLength = count;
+        buffer = null;
+        count = 0;
+        sizeHint = msgLength;
         
-        if (correlId != 0)
+        CompletableFuture<Boolean> future;
+        try
+        {
+            if (correlId != 0)
+                future = server.publish(topic, msgBuffer.wrap(msgLength), msgBuffer.correlData(correlId));
+            else
+                future = server.publish(topic, msgBuffer.wrap(msgLength));
+        }
+        catch (RuntimeException e)
         {
-            correlData.clear();
-            correlData.putLong(correlId);
-            correlData.flip();
-            server.publish(topic, buffer, correlData);
+            msgBuffer.release();
+            throw e;
         }
-        else
-            server.publish(topic, buffer);
-        //System.out.println("Sending " + count + " bytes");
         
-        // reset so we can write again in same buffer
-        this.reset();
-        buffer.rewind();
+        // only reuse buffer when server is done with it
+        future.whenComplete((ret, e) -> msgBuffer.release());
     }
 
 }
@@ -0,0 +1,173 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.api.comm.mqtt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestMqttOutputStream
+{
+    
+    /*
+     * Fake server keeping publish futures pending until completed by the test
+     */
+    static class PendingServer implements IMqttServer
+    {
+        List<ByteBuffer> payloads = new ArrayList<>();
+        List<ByteBuffer> correlData = new ArrayList<>();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        @Override
+        public void registerHandler(String topicPrefix, IMqttHandler handler)
+        {
+        }
+
+        @Override
+        public void unregisterHandler(String topicPrefix, IMqttHandler handler)
+        {
+        }
+
+        @Override
+        public CompletableFuture<Boolean> publish(String topic, ByteBuffer payload)
+        {
+            return publish(topic, payload, null);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> publish(String topic, ByteBuffer payload, ByteBuffer correlData)
+        {
+            var f = new CompletableFuture<Boolean>();
+            this.payloads.add(payload);
+            this.correlData.add(correlData);
+            this.futures.add(f);
+            return f;
+        }
+
+        void completeAll()
+        {
+            for (var f: futures)
+                f.complete(true);
+            futures.clear();
+        }
+    }
+    
+    
+    static byte[] getBytes(ByteBuffer buf)
+    {
+        var bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    
+    @Test
+    public void testBufferNotReusedBeforeCompletion() throws Exception
+    {
+        var server = new PendingServer();
+        var pool = new MqttBufferPool(16, 1024, 4);
+        var os = new MqttOutputStream(server, "topic", pool, 16, false);
+        
+        os.write(new byte[] {1, 2, 3});
+        os.send();
+        os.write(new byte[] {4, 5, 6});
+        os.send(42);
+        
+        // first payload must not be overwritten while publish is pending
+        assertEquals(2, pool.getAllocCount());
+        assertArrayEquals(new byte[] {1, 2, 3}, getBytes(server.payloads.get(0)));
+        assertArrayEquals(new byte[] {4, 5, 6}, getBytes(server.payloads.get(1)));
+        assertNull(server.correlData.get(0));
+        assertEquals(42L, server.correlData.get(1).getLong(0));
+        
+        // buffers are recycled once publish is complete
+        server.completeAll();
+        for (int i = 0; i < 100; i++)
+        {
+            os.write(new byte[] {(byte)i});
+            os.send();
+            server.completeAll();
+        }
+        assertEquals(2, pool.getAllocCount());
+    }
+    
+    
+    @Test
+    public void testGrowAndSizeHint() throws Exception
+    {
+        var server = new PendingServer();
+        var pool = new MqttBufferPool(16, 1024, 4);
+        var os = new MqttOutputStream(server, "topic", pool, 16, false);
+        
+        var data = new byte[300];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte)i;
+        
+        // grow while writing
+        for (int i = 0; i < data.length; i += 10)
+            os.write(data, i, 10);
+        assertEquals(data.length, os.size());
+        os.send();
+        assertArrayEquals(data, getBytes(server.payloads.get(0)));
+        server.completeAll();
+        
+        // next message of same size must fit without growing
+        var allocCount = pool.getAllocCount();
+        os.write(data);
+        os.send();
+        server.completeAll();
+        os.write(data);
+        os.send();
+        assertEquals(allocCount, pool.getAllocCount());
+        
+        // buffers larger than max pooled size are not pooled
+        os.write(new byte[2000]);
+        os.send();
+        assertEquals(2000, server.payloads.get(3).remaining());
+    }
+    
+    
+    @Test
+    public void testRefCount()
+    {
+        var pool = new MqttBufferPool(16, 1024, 4);
+        var buf = pool.acquire(100);
+        assertEquals(128, buf.capacity());
+        
+        buf.retain();
+        buf.release();
+        assertEquals(1, buf.refCount());
+        buf.release();
+        assertEquals(0, buf.refCount());
+        
+        assertSame(buf, pool.acquire(65));
+        
+        try
+        {
+            var other = pool.acquire(16);
+            other.release();
+            other.release();
+            fail("Double release should fail");
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("Buffer already released", e.getMessage());
+        }
+    }
+}
@@ -22,6 +22,10 @@ import org.vast.data.DataBlockByte;
  * <p>
  * DataBlockByte extension carrying a native JavaCPP pointer for direct
  * use in subsequent native code (e.g. FFMPEG decoder -> OpenCV algo)
+ * </p><p>
+ * The native buffer is owned by this object and can be recycled. The heap
+ * array seen by Java consumers is updated by calling {@link #syncFromNative()}
+ * after native code has written to the buffer.
  * </p>
  *
  * @author Alex Robin
@@ -31,14 +35,25 @@ public class DataBlockByteNative extends DataBlockByte
 {
     private static final long serialVersionUID = -9198205679143401216L;
     
-    BytePointer pointer;
+    transient BytePointer pointer;
     
     
     public DataBlockByteNative(BytePointer pointer, int length)
     {
-        var frameData = new byte[length];
-        pointer.get(frameData);
-        setUnderlyingObject(frameData);
+        this.pointer = pointer;
+        setUnderlyingObject(new byte[length]);
+        syncFromNative();
+    }
+    
+    
+    /**
+     * Allocates a new native buffer of the given size
+     * @param length Size of buffer in bytes
+     */
+    public DataBlockByteNative(int length)
+    {
+        this.pointer = new BytePointer((long)length);
+        setUnderlyingObject(new byte[length]);
     }
     
     
@@ -46,4 +61,27 @@ public class DataBlockByteNative extends DataBlockByte
     {
         return this.pointer;
     }
+    
+    
+    /**
+     * Copies native data to the heap array
+     */
+    public void syncFromNative()
+    {
+        pointer.position(0);
+        pointer.get(getUnderlyingObject());
+    }
+    
+    
+    /**
+     * Releases the native buffer
+     */
+    public void deallocate()
+    {
+        if (pointer != null)
+        {
+            pointer.deallocate();
+            pointer = null;
+        }
+    }
 }
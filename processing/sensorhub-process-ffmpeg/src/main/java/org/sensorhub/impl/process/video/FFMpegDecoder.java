@@ -23,13 +23,11 @@ import net.opengis.swe.v20.DataArray;
 import net.opengis.swe.v20.DataType;
 import net.opengis.swe.v20.Text;
 import net.opengis.swe.v20.Time;
-import org.bytedeco.ffmpeg.avcodec.AVCodec;
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avutil.AVFrame;
 import org.bytedeco.ffmpeg.swscale.SwsContext;
 import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacpp.PointerPointer;
 import org.sensorhub.api.processing.OSHProcessInfo;
 import org.vast.data.DataBlockByte;
 import org.vast.data.DataBlockCompressed;
@@ -43,6 +41,11 @@ import org.vast.swe.helper.RasterHelper;
 /**
  * <p>
  * Implementation of video decoder based on FFMPEG
+ * </p><p>
+ * Codec contexts and CPU cores are shared between all decoder instances
+ * through {@link FFMpegDecoderPool}. Decoded frames are converted to RGB in a
+ * single native buffer owned by the decoder, and copied once to a new array
+ * for each published frame, since downstream consumers may keep it.
  * </p>
  *
  * @author Alex Robin
@@ -51,6 +54,7 @@ import org.vast.swe.helper.RasterHelper;
 public class FFMpegDecoder extends ExecutableProcessImpl
 {
 	public static final OSHProcessInfo INFO = new OSHProcessInfo("video:FFMpegDecoder", "FFMPEG Video Decoder", null, FFMpegDecoder.class);
+	static final int NUM_PTS_SLOTS = 64;
 	
 	enum CodecEnum {
 	    //AUTO("auto"),
@@ -76,16 +80,22 @@ public class FFMpegDecoder extends ExecutableProcessImpl
     DataArray imgOut;
     Text codecParam;
     Count decimFactorParam;
+    net.opengis.swe.v20.Boolean keyFramesOnlyParam;
     
-    AVCodec decoder = null;
+    FFMpegDecoderPool pool;
+    CodecEnum codec;
     AVCodecContext decode_ctx = null;
     SwsContext sws_ctx = null;
     AVFrame av_frame = null;
     AVFrame sws_frame = null;
     AVPacket dec_pkt = null;
     BytePointer nativeFrameData;
+    BytePointer nativeRgbFrame;
+    double[] ptsTimeStamps = new double[NUM_PTS_SLOTS];
+    long packetCounter = 0;
     int frameCounter = 0;
     int decimFactor = 1;
+    boolean keyFramesOnly;
     boolean publish;
     
     
@@ -127,6 +137,12 @@ public class FFMpegDecoder extends ExecutableProcessImpl
             .description("Decimation factor of input frames. Only 1 frame every 'decimFactor' frames will be outputted")
             .build());
         
+        paramData.add("keyFramesOnly", keyFramesOnlyParam = swe.createBoolean()
+            .label("Key Frames Only")
+            .description("Only decode key frames. Other frames are dropped before decoding when the codec allows it, " +
+                "and decimation is then applied to key frames")
+            .build());
+        
         // outputs
         outputData.add("rgbFrame", swe.createRecord()
             .label("Video Frame")
@@ -185,18 +201,16 @@ public class FFMpegDecoder extends ExecutableProcessImpl
     {
         super.init();
         frameCounter = 0;
+        packetCounter = 0;
         
         // init decoder according to configured codec
         try
         {
-            var codec = CodecEnum.valueOf(codecParam.getData().getStringValue());
+            codec = CodecEnum.valueOf(codecParam.getData().getStringValue());
                         
-            // init decoder context
-            decoder = avcodec_find_decoder_by_name(codec.ffmpegName);
-            decode_ctx = avcodec_alloc_context3(decoder);
-            if (avcodec_open2(decode_ctx, decoder, (PointerPointer<?>)null) < 0) {
-                throw new IllegalStateException("Error initializing " + codec + " decoder");
-            }
+            // get decoder context from shared pool
+            pool = FFMpegDecoderPool.getInstance();
+            decode_ctx = pool.acquireContext(codec.ffmpegName);
             
             // init FFMPEG objects
             av_log_set_level(getLogger().isDebugEnabled() ? AV_LOG_INFO : AV_LOG_FATAL);
@@ -217,6 +231,8 @@ public class FFMpegDecoder extends ExecutableProcessImpl
             throw new ProcessException("Decimation factor must be > 0. Current value is " + decimFactor);
         if (decimFactor == 0)
             decimFactor = 1;
+        
+        keyFramesOnly = keyFramesOnlyParam.hasData() && keyFramesOnlyParam.getData().getBooleanValue();
     }
 
 
@@ -229,26 +245,76 @@ public class FFMpegDecoder extends ExecutableProcessImpl
         int frameHeight = av_frame.height();
         
         // init scaler
+        if (sws_ctx != null)
+            sws_freeContext(sws_ctx);
         sws_frame.format(AV_PIX_FMT_RGB24);
         sws_frame.width(frameWidth);
         sws_frame.height(frameHeight);
-        av_image_alloc(sws_frame.data(), sws_frame.linesize(), 
-                frameWidth, frameHeight, AV_PIX_FMT_RGB24, 1);
         
-        sws_ctx = sws_getContext(frameWidth, frameHeight, AV_PIX_FMT_YUV420P,
+        sws_ctx = sws_getContext(frameWidth, frameHeight, av_frame.format(),
                 frameWidth, frameHeight, AV_PIX_FMT_RGB24, SWS_BICUBIC, null, null, (double[])null);
+        
+        // allocate native RGB buffer the scaler writes to
+        freeRgbFrame();
+        nativeRgbFrame = new BytePointer((long)frameWidth * frameHeight * 3);
+        av_image_fill_arrays(sws_frame.data(), sws_frame.linesize(), nativeRgbFrame,
+            AV_PIX_FMT_RGB24, frameWidth, frameHeight, 1);
                                 
         getLogger().debug("Resizing {}x{} -> {}x{}", av_frame.width(), av_frame.height(), frameWidth, frameHeight);
     }
     
+    
+    /*
+     * Detect key frames from the coded bitstream, when possible for this codec
+     */
+    protected static boolean canDetectKeyFrames(CodecEnum codec)
+    {
+        return codec == CodecEnum.H264 || codec == CodecEnum.H265 || codec == CodecEnum.VP8;
+    }
+    
+    
+    protected static boolean isKeyFrame(CodecEnum codec, byte[] data)
+    {
+        // VP8 frame tag starts with inverse key frame flag
+        if (codec == CodecEnum.VP8)
+            return data.length > 0 && (data[0] & 0x01) == 0;
+        
+        // look for IDR (H264) or IRAP (H265) NAL units after Annex B start codes
+        for (int i = 0; i + 3 < data.length; i++)
+        {
+            if (data[i] == 0 && data[i+1] == 0 && data[i+2] == 1)
+            {
+                int nalHeader = data[i+3] & 0xFF;
+                if (codec == CodecEnum.H264 && (nalHeader & 0x1F) == 5)
+                    return true;
+                if (codec == CodecEnum.H265 && ((nalHeader >> 1) & 0x3F) >= 16 && ((nalHeader >> 1) & 0x3F) <= 21)
+                    return true;
+                i += 2;
+            }
+        }
+        
+        return false;
+    }
+    
+    
 
     @Override
     public void execute() throws ProcessException
     {
+        publish = false;
+        
         // get input encoded frame data
         byte[] frameData = ((DataBlockCompressed)imgIn.getData()).getUnderlyingObject();
         //System.out.println("Frame size=" + frameData.length);
         
+        // drop packets before decoding when only key frames are needed
+        boolean filterPackets = keyFramesOnly && canDetectKeyFrames(codec);
+        if (filterPackets)
+        {
+            if (!isKeyFrame(codec, frameData) || frameCounter++ % decimFactor != 0)
+                return;
+        }
+        
         // grow packet data buffer as needed
         if (nativeFrameData.capacity() < frameData.length)
         {
@@ -258,42 +324,71 @@ public class FFMpegDecoder extends ExecutableProcessImpl
         nativeFrameData.position(0);
         nativeFrameData.limit(0);
         nativeFrameData.put(frameData);
-                
-        // decode frame
-        dec_pkt.data(nativeFrameData);
-        dec_pkt.size(frameData.length);
-        /*int ret1 = */avcodec_send_packet(decode_ctx, dec_pkt);
-        int ret2 = avcodec_receive_frame(decode_ctx, av_frame);
-        av_packet_unref(dec_pkt);
-        //System.out.printf("decode: ret1 %d ret2 %d\n", ret1, ret2);
         
-        if (ret2 == 0)
-        {                
-            // init scaler once we decode the 1st frame
-            if (sws_ctx == null )
-                initScaler(av_frame);
+        // keep input time stamp since decoder can output frames with a delay
+        long pts = packetCounter++;
+        ptsTimeStamps[(int)(pts % NUM_PTS_SLOTS)] = inputTimeStamp.getData().getDoubleValue();
+        
+        try
+        {
+            pool.beginDecode();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        
+        try
+        {
+            // decode frame
+            dec_pkt.data(nativeFrameData);
+            dec_pkt.size(frameData.length);
+            dec_pkt.pts(pts);
+            /*int ret1 = */avcodec_send_packet(decode_ctx, dec_pkt);
+            int ret2 = avcodec_receive_frame(decode_ctx, av_frame);
+            av_packet_unref(dec_pkt);
+            //System.out.printf("decode: ret1 %d ret2 %d\n", ret1, ret2);
             
-            if (frameCounter++ % decimFactor == 0)
-            {
-                // apply scaler (needed to convert from YUV to RGB)
-                sws_scale(sws_ctx, av_frame.data(), av_frame.linesize(), 0, av_frame.height(), sws_frame.data(), sws_frame.linesize());
-                
-                // write decoded data to output
-                // TODO use special datablock to encapsulate native buffer
-                // would be more efficient when passing frame to other native libraries (e.g. OpenCV)
+            if (ret2 == 0)
+            {                
+                // init scaler once we decode the 1st frame or if frame size changed
+                if (sws_ctx == null || av_frame.width() != sws_frame.width() || av_frame.height() != sws_frame.height())
+                    initScaler(av_frame);
                 
-                frameData = new byte[av_frame.width() * av_frame.height() * 3];
-                sws_frame.data(0).get(frameData);
-                ((DataBlockByte)imgOut.getData()).setUnderlyingObject(frameData);
+                boolean selected;
+                if (filterPackets)
+                    selected = true;
+                else if (keyFramesOnly)
+                    selected = av_frame.key_frame() != 0 && frameCounter++ % decimFactor == 0;
+                else
+                    selected = frameCounter++ % decimFactor == 0;
                 
-                // also copy frame timestamp
-                var ts = inputTimeStamp.getData().getDoubleValue();
-                outputTimeStamp.getData().setDoubleValue(ts);
-                
-                publish = true;
+                if (selected)
+                {
+                    // apply scaler (needed to convert from YUV to RGB)
+                    sws_scale(sws_ctx, av_frame.data(), av_frame.linesize(), 0, av_frame.height(), sws_frame.data(), sws_frame.linesize());
+                    
+                    // write decoded data to output
+                    // a new array is used for each frame since published frames can be kept by consumers
+                    var rgbData = new byte[(int)nativeRgbFrame.capacity()];
+                    nativeRgbFrame.position(0).get(rgbData);
+                    ((DataBlockByte)imgOut.getData()).setUnderlyingObject(rgbData);
+                    
+                    // also copy frame timestamp
+                    long framePts = av_frame.pts();
+                    var ts = framePts >= 0 && pts - framePts < NUM_PTS_SLOTS ?
+                        ptsTimeStamps[(int)(framePts % NUM_PTS_SLOTS)] :
+                        inputTimeStamp.getData().getDoubleValue();
+                    outputTimeStamp.getData().setDoubleValue(ts);
+                    
+                    publish = true;
+                }
             }
-            else
-                publish = false;
+        }
+        finally
+        {
+            pool.endDecode();
         }
     }
     
@@ -317,8 +412,7 @@ public class FFMpegDecoder extends ExecutableProcessImpl
         }
 
         if (decode_ctx != null) {
-            avcodec_close(decode_ctx);
-            avcodec_free_context(decode_ctx);
+            pool.releaseContext(codec.ffmpegName, decode_ctx);
             decode_ctx = null;
         }
         if (dec_pkt != null) {
@@ -337,5 +431,16 @@ public class FFMpegDecoder extends ExecutableProcessImpl
             av_frame_free(sws_frame);
             sws_frame = null;
         }
+        
+        freeRgbFrame();
+    }
+    
+    
+    protected void freeRgbFrame()
+    {
+        if (nativeRgbFrame != null) {
+            nativeRgbFrame.deallocate();
+            nativeRgbFrame = null;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.process.video;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.javacpp.PointerPointer;
+
+
+/**
+ * <p>
+ * Resources shared by all FFMPEG decoder instances so that many video
+ * streams can be decoded in the same JVM without oversubscribing the CPU.
+ * </p><p>
+ * The pool bounds the number of decode calls running concurrently to the
+ * number of cores, distributes libavcodec worker threads between active
+ * decoders (frame and slice threading) and keeps idle codec contexts so
+ * they can be reused when a new stream is opened.
+ * </p><p>
+ * The number of threads of a context cannot be changed once it is opened,
+ * so idle contexts are kept by codec and requested thread count, and a
+ * context is only reused if it was opened with the thread count computed
+ * when it is acquired.
+ * </p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class FFMpegDecoderPool
+{
+    static final FFMpegDecoderPool INSTANCE = new FFMpegDecoderPool(Runtime.getRuntime().availableProcessors());
+    static final int MAX_THREADS_PER_DECODER = 4;
+    
+    final int numCores;
+    final Semaphore decodeSlots;
+    final Map<String, Deque<AVCodecContext>> idleContexts = new HashMap<>();
+    final Map<AVCodecContext, Integer> threadCounts = new HashMap<>();
+    int numIdle;
+    int numActive;
+    
+    
+    public static FFMpegDecoderPool getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    
+    FFMpegDecoderPool(int numCores)
+    {
+        this.numCores = Math.max(1, numCores);
+        this.decodeSlots = new Semaphore(this.numCores);
+    }
+    
+    
+    /**
+     * Get an open decoder context for the given codec, reusing an idle
+     * context if one is available
+     * @param codecName FFMPEG codec name
+     * @return the decoder context
+     */
+    public synchronized AVCodecContext acquireContext(String codecName)
+    {
+        int threadCount = getThreadCount(numActive + 1);
+        
+        var idle = idleContexts.get(getIdleKey(codecName, threadCount));
+        if (idle != null && !idle.isEmpty())
+        {
+            numIdle--;
+            numActive++;
+            return idle.pop();
+        }
+        
+        var decoder = avcodec_find_decoder_by_name(codecName);
+        if (decoder == null)
+            throw new IllegalStateException("No FFMPEG decoder found for " + codecName);
+        
+        // give each decoder its share of the cores
+        var ctx = avcodec_alloc_context3(decoder);
+        ctx.thread_count(threadCount);
+        ctx.thread_type(FF_THREAD_FRAME | FF_THREAD_SLICE);
+        
+        if (avcodec_open2(ctx, decoder, (PointerPointer<?>)null) < 0)
+        {
+            avcodec_free_context(ctx);
+            throw new IllegalStateException("Error initializing " + codecName + " decoder");
+        }
+        
+        numActive++;
+        threadCounts.put(ctx, threadCount);
+        return ctx;
+    }
+    
+    
+    /**
+     * Return a decoder context to the pool when a stream is closed
+     * @param codecName FFMPEG codec name
+     * @param ctx the decoder context
+     */
+    public synchronized void releaseContext(String codecName, AVCodecContext ctx)
+    {
+        numActive--;
+        
+        if (numIdle < numCores)
+        {
+            // reset decoder state so it can be used for another stream
+            avcodec_flush_buffers(ctx);
+            idleContexts.computeIfAbsent(getIdleKey(codecName, threadCounts.get(ctx)), k -> new ArrayDeque<>()).push(ctx);
+            numIdle++;
+        }
+        else
+        {
+            threadCounts.remove(ctx);
+            avcodec_close(ctx);
+            avcodec_free_context(ctx);
+        }
+    }
+    
+    
+    /*
+     * Number of threads given to a decoder when numDecoders are active.
+     * It is capped since frame threading adds one frame of latency per thread,
+     * and the first decoders must leave cores for the ones started later
+     */
+    int getThreadCount(int numDecoders)
+    {
+        return Math.max(1, Math.min(MAX_THREADS_PER_DECODER, numCores / Math.max(2, numDecoders)));
+    }
+    
+    
+    static String getIdleKey(String codecName, int threadCount)
+    {
+        return codecName + '/' + threadCount;
+    }
+    
+    
+    /**
+     * Must be called before each decode operation.
+     * Blocks if too many decode operations are already in progress.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void beginDecode() throws InterruptedException
+    {
+        decodeSlots.acquire();
+    }
+    
+    
+    /**
+     * Must be called after each decode operation
+     */
+    public void endDecode()
+    {
+        decodeSlots.release();
+    }
+    
+    
+    public synchronized int getNumActiveDecoders()
+    {
+        return numActive;
+    }
+}
@@ -0,0 +1,58 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.process.video;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.sensorhub.impl.process.video.FFMpegDecoder.CodecEnum;
+
+
+public class TestFFMpegKeyFrames
+{
+    
+    @Test
+    public void testH264KeyFrames()
+    {
+        // SPS, PPS, IDR slice
+        byte[] keyFrame = {0, 0, 0, 1, 0x67, 0x42, 0, 0, 0, 1, 0x68, 0x11, 0, 0, 1, 0x65, 0x22};
+        // non-IDR slice
+        byte[] deltaFrame = {0, 0, 0, 1, 0x41, 0x65, 0x00, 0x01};
+        
+        assertTrue(FFMpegDecoder.isKeyFrame(CodecEnum.H264, keyFrame));
+        assertFalse(FFMpegDecoder.isKeyFrame(CodecEnum.H264, deltaFrame));
+    }
+    
+    
+    @Test
+    public void testH265KeyFrames()
+    {
+        // VPS, IDR_W_RADL
+        byte[] keyFrame = {0, 0, 0, 1, 0x40, 0x01, 0, 0, 1, 0x26, 0x01};
+        // TRAIL_R
+        byte[] deltaFrame = {0, 0, 0, 1, 0x02, 0x01, 0x26};
+        
+        assertTrue(FFMpegDecoder.isKeyFrame(CodecEnum.H265, keyFrame));
+        assertFalse(FFMpegDecoder.isKeyFrame(CodecEnum.H265, deltaFrame));
+    }
+    
+    
+    @Test
+    public void testVP8KeyFrames()
+    {
+        assertTrue(FFMpegDecoder.isKeyFrame(CodecEnum.VP8, new byte[] {0x10, 0x02}));
+        assertFalse(FFMpegDecoder.isKeyFrame(CodecEnum.VP8, new byte[] {0x11, 0x02}));
+        assertFalse(FFMpegDecoder.canDetectKeyFrames(CodecEnum.VP9));
+    }
+}
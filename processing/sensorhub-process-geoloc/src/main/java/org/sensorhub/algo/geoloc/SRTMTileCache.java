@@ -0,0 +1,292 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.algo.geoloc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * <p>
+ * LRU cache of memory-mapped SRTM .hgt tiles.<br/>
+ * Each tile is mapped read-only and accessed through a {@link ShortBuffer}
+ * view using absolute reads only, so tiles can be shared by all threads and
+ * all process instances using the same data folder. Both 1 arcsec (3601x3601)
+ * and 3 arcsec (1201x1201) tiles are supported.
+ * </p>
+ * <p>
+ * <b>This class is thread-safe</b>
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class SRTMTileCache
+{
+    private static Logger log = LoggerFactory.getLogger(SRTMTileCache.class);
+
+    public static final int DEFAULT_MAX_TILES = 64;
+    static final Map<String, SRTMTileCache> INSTANCES = new ConcurrentHashMap<>();
+
+    final String dataRoot;
+    final Map<Integer, Tile> tiles;
+
+
+    /**
+     * Memory-mapped tile covering 1x1 degree
+     */
+    public static class Tile
+    {
+        final String filename;
+        final ShortBuffer data;
+        final double lat0, lon0; // origin (south-west corner)
+        final int size; // number of rows and columns
+        final double samplesPerDeg;
+
+        Tile(String filename, ShortBuffer data, int lat0, int lon0, int size)
+        {
+            this.filename = filename;
+            this.data = data;
+            this.lat0 = lat0;
+            this.lon0 = lon0;
+            this.size = size;
+            this.samplesPerDeg = size - 1;
+        }
+
+
+        public boolean contains(double lat, double lon)
+        {
+            return lat >= lat0 && lat < lat0 + 1 && lon >= lon0 && lon < lon0 + 1;
+        }
+
+
+        /**
+         * @param x Column index (from west)
+         * @param y Row index (from south)
+         * @return Elevation value at the given grid post
+         */
+        public short getPost(int x, int y)
+        {
+            // rows are stored from north to south
+            return data.get((size - y - 1) * size + x);
+        }
+
+
+        /**
+         * Interpolates elevation bilinearly between the 4 surrounding grid posts
+         * @param lat Latitude in degrees
+         * @param lon Longitude in degrees
+         * @return Elevation in meters
+         */
+        public double getInterpolatedElevation(double lat, double lon)
+        {
+            double latIndexD = (lat - lat0) * samplesPerDeg;
+            double lonIndexD = (lon - lon0) * samplesPerDeg;
+            int x1 = (int) lonIndexD;
+            int y1 = (int) latIndexD;
+            double fx = lonIndexD - x1;
+            double fy = latIndexD - y1;
+
+            int i11 = (size - y1 - 1) * size + x1;
+            int i12 = i11 - size; // next row north
+            double z11 = data.get(i11);
+            double z21 = data.get(i11 + 1);
+            double z12 = data.get(i12);
+            double z22 = data.get(i12 + 1);
+
+            return z11 * (1 - fx) * (1 - fy) + z21 * fx * (1 - fy) +
+                   z12 * (1 - fx) * fy + z22 * fx * fy;
+        }
+
+
+        public String getFilename()
+        {
+            return filename;
+        }
+    }
+
+
+    /**
+     * Gets the cache shared by all users of the given SRTM data folder
+     * @param dataRoot Path of folder containing .hgt files
+     * @return The shared cache instance
+     */
+    public static SRTMTileCache getInstance(String dataRoot)
+    {
+        if (!dataRoot.endsWith(File.separator))
+            dataRoot += File.separator;
+        return INSTANCES.computeIfAbsent(dataRoot, k -> new SRTMTileCache(k, DEFAULT_MAX_TILES));
+    }
+
+
+    public SRTMTileCache(String dataRoot, int maxTiles)
+    {
+        if (!dataRoot.endsWith(File.separator))
+            dataRoot += File.separator;
+        this.dataRoot = dataRoot;
+
+        this.tiles = new LinkedHashMap<>(maxTiles, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest)
+            {
+                // mapping is released when the buffer is garbage collected
+                return size() > maxTiles;
+            }
+        };
+    }
+
+
+    /**
+     * Gets the tile containing the given location, mapping it if needed
+     * @param lat Latitude in degrees
+     * @param lon Longitude in degrees
+     * @return The tile
+     * @throws IOException if the tile file is missing or cannot be mapped
+     */
+    public Tile getTile(double lat, double lon) throws IOException
+    {
+        int lat0 = (int) Math.floor(lat);
+        int lon0 = (int) Math.floor(lon);
+        int key = (lat0 + 90) * 360 + (lon0 + 180);
+
+        synchronized (tiles)
+        {
+            var tile = tiles.get(key);
+            if (tile == null)
+            {
+                tile = mapTile(lat0, lon0);
+                tiles.put(key, tile);
+            }
+            return tile;
+        }
+    }
+
+
+    /**
+     * Computes interpolated elevations of several locations.<br/>
+     * Consecutive locations falling in the same tile are looked up without
+     * accessing the cache, so points should be ordered spatially when possible.
+     * @param lat Latitudes in degrees
+     * @param lon Longitudes in degrees
+     * @param out Array receiving elevations in meters
+     * @throws IOException if a tile cannot be loaded
+     */
+    public void getElevations(double[] lat, double[] lon, double[] out) throws IOException
+    {
+        getElevations(lat, lon, out, out.length);
+    }
+
+
+    /**
+     * Computes interpolated elevations of the first count locations
+     * @param lat Latitudes in degrees
+     * @param lon Longitudes in degrees
+     * @param out Array receiving elevations in meters
+     * @param count Number of locations to look up
+     * @throws IOException if a tile cannot be loaded
+     */
+    public void getElevations(double[] lat, double[] lon, double[] out, int count) throws IOException
+    {
+        Tile tile = null;
+        for (int i = 0; i < count; i++)
+        {
+            if (tile == null || !tile.contains(lat[i], lon[i]))
+                tile = getTile(lat[i], lon[i]);
+            out[i] = tile.getInterpolatedElevation(lat[i], lon[i]);
+        }
+    }
+
+
+    protected Tile mapTile(int lat0, int lon0) throws IOException
+    {
+        var filename = getTileName(lat0, lon0);
+        log.debug("Mapping file {}", filename);
+
+        try (var ch = FileChannel.open(Path.of(dataRoot + filename), StandardOpenOption.READ))
+        {
+            long fileSize = ch.size();
+            int size = (int) Math.round(Math.sqrt(fileSize / 2.0));
+            if ((long)size * size * 2 != fileSize)
+                throw new IOException("Invalid SRTM tile size: " + filename);
+
+            // mapping stays valid after the channel is closed
+            // byte buffers are big endian by default, like .hgt files
+            var data = ch.map(MapMode.READ_ONLY, 0, fileSize).asShortBuffer();
+            return new Tile(filename, data, lat0, lon0, size);
+        }
+    }
+
+
+    public static String getTileName(int lat0, int lon0)
+    {
+        // latitude tile identifier
+        String latString;
+        if (lat0 >= 0)
+            latString = "N" + toTwoChar(lat0);
+        else
+            latString = "S" + toTwoChar(-lat0);
+
+        // longitude tile identifier
+        String lonString;
+        if (lon0 >= 0)
+            lonString = "E" + toThreeChar(lon0);
+        else
+            lonString = "W" + toThreeChar(-lon0);
+
+        return latString + lonString + ".hgt";
+    }
+
+
+    private static final String toTwoChar(int i)
+    {
+        if (i < 0 || i > 90)
+            throw new IllegalArgumentException("Invalid integer latitude value");
+
+        if (i < 10)
+            return "0" + i;
+        else
+            return "" + i;
+    }
+
+
+    private static final String toThreeChar(int i)
+    {
+        if (i < 0 || i > 180)
+            throw new IllegalArgumentException("Invalid integer longitude value");
+
+        if (i < 10)
+            return "00" + i;
+        else if (i < 100)
+            return "0" + i;
+        else
+            return "" + i;
+    }
+
+
+    public String getDataRoot()
+    {
+        return dataRoot;
+    }
+}
@@ -1,13 +1,8 @@
 
 package org.sensorhub.algo.geoloc;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import org.sensorhub.algo.vecmath.BilinearInterpolation;
 import org.sensorhub.algo.vecmath.Vect3d;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
@@ -16,6 +11,10 @@ import org.slf4j.LoggerFactory;
  * is done when location falls between grid points.
  * </p>
  * <p>
+ * Tiles are memory-mapped and shared by all instances using the same data
+ * folder (see {@link SRTMTileCache}).
+ * </p>
+ * <p>
  * <b>This class is NOT thread-safe</b>
  * </p>
  * 
@@ -24,25 +23,20 @@ import org.slf4j.LoggerFactory;
  */
 public class SRTMUtil
 {
-    private static Logger log = LoggerFactory.getLogger(SRTMUtil.class);
-    
-    static final double RES_1ARCSEC = 1.0 / 3600.0; // .0027777777
-    static int NUM_ROWS_FILE = 3601, NUM_COLS_FILE = 3601;
-    static int BYTES_PER_PIXEL = 2;
-    
-    String dataRoot;
-    String filename;
-    RandomAccessFile file = null;
-    BilinearInterpolation bi = new BilinearInterpolation();
-    double lat0, lon0; // origin of current file
+    SRTMTileCache cache;
+    SRTMTileCache.Tile tile; // current tile
     Vect3d c1, c2, c3, c4; // corner location and values
 
 
     public SRTMUtil(String dataRoot)
     {
-        if (!dataRoot.endsWith(File.separator))
-            dataRoot += File.separator;
-        this.dataRoot = dataRoot;
+        this(SRTMTileCache.getInstance(dataRoot));
+    }
+
+
+    public SRTMUtil(SRTMTileCache cache)
+    {
+        this.cache = cache;
         
         this.c1 = new Vect3d();
         this.c2 = new Vect3d();
@@ -53,25 +47,51 @@ public class SRTMUtil
 
     public double getInterpolatedElevation(double lat, double lon) throws IOException
     {
-        // open file containing lat/lon point
-        openFile(lat, lon);
-
-        // compute the 4 corners containing this lat/lon
-        getCorners(lat, lon);
-        bi.setCorners(c1, c2, c3, c4);
+        // select tile containing lat/lon point
+        if (tile == null || !tile.contains(lat, lon))
+            openFile(lat, lon);
         
         // interpolate at the exact lat/lon location
-        return bi.interpolate(lon, lat);
+        return tile.getInterpolatedElevation(lat, lon);
+    }
+    
+    
+    /**
+     * Computes interpolated elevations of several locations at once
+     * @param lat Latitudes in degrees
+     * @param lon Longitudes in degrees
+     * @param out Array receiving elevations in meters
+     * @throws IOException if a tile cannot be loaded
+     */
+    public void getElevations(double[] lat, double[] lon, double[] out) throws IOException
+    {
+        cache.getElevations(lat, lon, out);
+    }
+    
+    
+    /**
+     * Computes interpolated elevations of the first count locations
+     * @param lat Latitudes in degrees
+     * @param lon Longitudes in degrees
+     * @param out Array receiving elevations in meters
+     * @param count Number of locations to look up
+     * @throws IOException if a tile cannot be loaded
+     */
+    public void getElevations(double[] lat, double[] lon, double[] out, int count) throws IOException
+    {
+        cache.getElevations(lat, lon, out, count);
     }
 
 
     public void getCorners(double lat, double lon) throws IOException
     {
+        if (tile == null || !tile.contains(lat, lon))
+            openFile(lat, lon);
+        
         // compute floating pt pixel index of lat-lon
-        double deltaLat = lat - lat0;
-        double deltaLon = lon - lon0;
-        double latIndexD = deltaLat / RES_1ARCSEC;
-        double lonIndexD = deltaLon / RES_1ARCSEC;
+        double res = 1.0 / tile.samplesPerDeg;
+        double latIndexD = (lat - tile.lat0) * tile.samplesPerDeg;
+        double lonIndexD = (lon - tile.lon0) * tile.samplesPerDeg;
         
         // compute corners
         int x1 = (int) lonIndexD;
@@ -80,101 +100,17 @@ public class SRTMUtil
         int y2 = (int) latIndexD + 1;
         
         // get elevations for corners
-        seek(x1, NUM_ROWS_FILE - y1 - 1);
-        short z11 = readShort();
-        short z21 = readShort();
-        seek(x1, NUM_ROWS_FILE - y2 - 1);
-        short z12 = readShort();
-        short z22 = readShort();
-        
-        c1.set(lon0 + (double) x1 / (NUM_COLS_FILE), lat0 + (double) y1 / (NUM_ROWS_FILE), z11);
-        c2.set(lon0 + (double) x1 / (NUM_COLS_FILE), lat0 + (double) y2 / (NUM_ROWS_FILE), z12);
-        c3.set(lon0 + (double) x2 / (NUM_COLS_FILE), lat0 + (double) y1 / (NUM_ROWS_FILE), z21);
-        c4.set(lon0 + (double) x2 / (NUM_COLS_FILE), lat0 + (double) y2 / (NUM_ROWS_FILE), z22);
-    }
-
-
-    private void openFile(String filepath) throws IOException
-    {
-        file = new RandomAccessFile(filepath, "r");
-    }
-    
-    
-    private void seek(int x, int y) throws IOException
-    {
-        long pos = (y * NUM_COLS_FILE + x) * BYTES_PER_PIXEL;
-        file.seek(pos);
+        c1.set(tile.lon0 + x1 * res, tile.lat0 + y1 * res, tile.getPost(x1, y1));
+        c2.set(tile.lon0 + x1 * res, tile.lat0 + y2 * res, tile.getPost(x1, y2));
+        c3.set(tile.lon0 + x2 * res, tile.lat0 + y1 * res, tile.getPost(x2, y1));
+        c4.set(tile.lon0 + x2 * res, tile.lat0 + y2 * res, tile.getPost(x2, y2));
     }
 
 
     public String openFile(double lat, double lon) throws IOException
     {
-        lat0 = (int) Math.floor(lat);
-        lon0 = (int) Math.floor(lon);
-        
-        // latitude tile identifier
-        String latString;
-        if (lat0 >= 0)
-            latString = "N" + toTwoChar((int)lat0);
-        else
-            latString = "S" + toTwoChar((int)-lat0);
-        
-        // longitude tile identifier
-        String lonString;
-        if (lon0 >= 0)
-            lonString = "E" + toThreeChar(Math.abs((int)lon0));
-        else
-            lonString = "W" + toThreeChar(Math.abs((int)-lon0));
-        
-        String filename = latString + lonString + ".hgt";
-        log.debug("Using file " + filename);
-
-        // reuse or open file
-        if (!filename.equals(this.filename))
-        {
-            if (file != null)
-                file.close();
-
-            this.filename = filename;
-            openFile(dataRoot + filename);
-        }
-
-        return dataRoot + filename;
-    }
-
-
-    private final short readShort() throws IOException
-    {
-        byte b1 = file.readByte();
-        byte b2 = file.readByte();
-        int retVal = ((b1 << 8) & 0x0000ff00) | (b2 & 0x000000ff);
-        return (short) retVal;
-    }
-
-
-    private final String toTwoChar(int i)
-    {
-        if (i < 0 || i > 90)
-            throw new IllegalArgumentException("Invalid integer latitude value");
-        
-        if (i < 10)
-            return "0" + i;
-        else
-            return "" + i;
-    }
-
-
-    private final String toThreeChar(int i)
-    {
-        if (i < 0 || i > 180)
-            throw new IllegalArgumentException("Invalid integer longitude value");
-        
-        if (i < 10)
-            return "00" + i;
-        else if (i < 100)
-            return "0" + i;
-        else
-            return "" + i;
+        tile = cache.getTile(lat, lon);
+        return cache.getDataRoot() + tile.getFilename();
     }
 
 
@@ -183,6 +119,7 @@ public class SRTMUtil
         SRTMUtil util = new SRTMUtil("/media/alex/Backup500/Data/SRTM/US/1arcsec");
         double lat = 35.0, lon = -114.5;
         double result = util.getInterpolatedElevation(lat, lon);
+        util.getCorners(lat, lon);
         System.out.println(util.c1);
         System.out.println(util.c2);
         System.out.println(util.c3);
@@ -331,27 +331,9 @@ public class ImageToGround extends ExecutableProcessImpl
     
     protected boolean toGroundLocation(double x, double y, Vect3d result)
     {
-        // compute look direction
-        lookDir.x = (x - cx) / fx;
-        lookDir.y = ((480-y) - cy) / fy;
-        lookDir.z = -1.0;
-        
-        // apply distortions
-        var x2 = lookDir.x * lookDir.x;
-        var y2 = lookDir.y * lookDir.y;
-        var r2 = x2 + y2;
-        var r4 = r2 * r2;
-        var r6 = r4 * r2;
-        var xy = lookDir.x * lookDir.y;
-        lookDir.x = lookDir.x * (1 + k1*r2 + k2*r4 + k3*r6 + 2*p1*xy + p2*(r2+2*x2));
-        lookDir.y = lookDir.y * (1 + k1*r2 + k2*r4 + k3*r6 + 2*p2*xy + p1*(r2+2*y2));
-        
-        // transform look dir to ECEF
-        rotCamToPlatform.mul(lookDir, lookDir);
-        rotPlatformToECEF.mul(lookDir, lookDir);
+        computeLookDirection(x, y, lookDir);
         
         // intersect with ellipsoid
-        lookDir.normalize();
         boolean ok = rie.computeIntersection(platformLocECEF, lookDir, result);
         if (!ok)
         {
@@ -362,4 +344,36 @@ public class ImageToGround extends ExecutableProcessImpl
         geoConv.ECEFtoLLA(result, result);
         return true;
     }
+    
+    
+    /**
+     * Computes the look direction of a pixel in ECEF frame.<br/>
+     * This only reads the camera model and pose so it can be called concurrently
+     * as long as position params are not updated at the same time.
+     * @param x Pixel X coordinate
+     * @param y Pixel Y coordinate
+     * @param dir Vector receiving the unit look direction
+     */
+    protected void computeLookDirection(double x, double y, Vect3d dir)
+    {
+        // compute look direction
+        dir.x = (x - cx) / fx;
+        dir.y = ((480-y) - cy) / fy;
+        dir.z = -1.0;
+        
+        // apply distortions
+        var x2 = dir.x * dir.x;
+        var y2 = dir.y * dir.y;
+        var r2 = x2 + y2;
+        var r4 = r2 * r2;
+        var r6 = r4 * r2;
+        var xy = dir.x * dir.y;
+        dir.x = dir.x * (1 + k1*r2 + k2*r4 + k3*r6 + 2*p1*xy + p2*(r2+2*x2));
+        dir.y = dir.y * (1 + k1*r2 + k2*r4 + k3*r6 + 2*p2*xy + p1*(r2+2*y2));
+        
+        // transform look dir to ECEF
+        rotCamToPlatform.mul(dir, dir);
+        rotPlatformToECEF.mul(dir, dir);
+        dir.normalize();
+    }
 }
@@ -0,0 +1,329 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.process.cam;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import net.opengis.swe.v20.Count;
+import net.opengis.swe.v20.DataArray;
+import net.opengis.swe.v20.Text;
+import org.sensorhub.algo.geoloc.Ellipsoid;
+import org.sensorhub.algo.geoloc.EllipsoidIntersect;
+import org.sensorhub.algo.geoloc.SRTMTileCache;
+import org.sensorhub.algo.geoloc.SRTMUtil;
+import org.sensorhub.algo.vecmath.Vect3d;
+import org.sensorhub.api.processing.OSHProcessInfo;
+import org.vast.process.ProcessException;
+import org.vast.process.ProcessInfo;
+import org.vast.swe.helper.GeoPosHelper;
+
+
+/**
+ * <p>
+ * Transforms a list of pixel coordinates (e.g. a grid covering the whole
+ * image or all detections in a frame) to geographic locations on the ground,
+ * using the same camera model and pose for all pixels.
+ * </p><p>
+ * Look rays are intersected with the ellipsoid, or with the terrain if a
+ * SRTM data folder is provided. Pixels are processed in parallel chunks,
+ * each thread reusing its own vectors and intersection algorithm. Terrain
+ * altitudes of all pixels of a chunk are looked up together at each
+ * iteration.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class ImageToGround_Batch extends ImageToGround
+{
+    public static final OSHProcessInfo INFO = new OSHProcessInfo("geoloc:ImageToGroundBatch", "Image to Ground (Batch)", "Compute ground location of many pixels knowing their image coordinates", ImageToGround_Batch.class);
+
+    static final int CHUNK_SIZE = 256; // pixels per parallel task
+    static final int MAX_ITERATIONS = 10;
+    static final double MAX_TERRAIN_ERROR = 15.0; // 15m
+
+    protected Count numPointsIn;
+    protected DataArray pointsIn;
+    protected Count numPointsOut;
+    protected DataArray pointsOut;
+    protected Text srtmDataPath;
+
+    protected SRTMTileCache srtmCache;
+    protected ThreadLocal<Scratch> scratch;
+    protected double initAlti;
+    protected double[] pixels = new double[0];
+    protected double[] lla = new double[0];
+
+
+    /*
+     * Objects reused by each thread for all its pixels
+     */
+    protected class Scratch
+    {
+        final Vect3d dir = new Vect3d();
+        final Vect3d ecef = new Vect3d();
+        final Vect3d lla = new Vect3d();
+        final EllipsoidIntersect rie = new EllipsoidIntersect(Ellipsoid.WGS84);
+        final SRTMUtil srtm = srtmCache != null ? new SRTMUtil(srtmCache) : null;
+
+        // state of the points of a chunk that are still being refined
+        final double[] dirs = new double[3*CHUNK_SIZE];
+        final double[] altitudes = new double[CHUNK_SIZE];
+        final int[] active = new int[CHUNK_SIZE];
+        final double[] queryLat = new double[CHUNK_SIZE];
+        final double[] queryLon = new double[CHUNK_SIZE];
+        final double[] elevations = new double[CHUNK_SIZE];
+    }
+
+
+    public ImageToGround_Batch()
+    {
+        this(INFO);
+    }
+
+
+    public ImageToGround_Batch(ProcessInfo info)
+    {
+        super(info);
+        var swe = new GeoPosHelper();
+
+        // inputs
+        inputData.clear();
+        inputData.add("pixels", swe.createRecord()
+            .label("Image Points")
+            .description("List of points in image space")
+            .addField("numPoints", numPointsIn = swe.createCount()
+                .id("NUM_POINTS")
+                .build())
+            .addField("pointList", pointsIn = swe.createArray()
+                .withSizeComponent(numPointsIn)
+                .withElement("point", swe.createRecord()
+                    .addField("x", swe.createQuantity()
+                        .description("X coordinate, in pixels")
+                        .uomCode("1"))
+                    .addField("y", swe.createQuantity()
+                        .description("Y coordinate, in pixels")
+                        .uomCode("1")))
+                .build())
+            .build());
+
+        // outputs
+        outputData.clear();
+        outputData.add("groundLocations", swe.createRecord()
+            .label("Ground Locations")
+            .description("Projections of image points on the ground")
+            .addField("numPoints", numPointsOut = swe.createCount()
+                .id("NUM_POINTS")
+                .build())
+            .addField("locationList", pointsOut = swe.createArray()
+                .withSizeComponent(numPointsOut)
+                .withElement("location", swe.createLocationVectorLLA()
+                    .description("Ground location of image point"))
+                .build())
+            .build());
+
+        // parameters
+        paramData.add("srtmDataPath", srtmDataPath = swe.createText()
+            .label("SRTM Data Path")
+            .description("Local absolute path to SRTM data folder. Intersection is done with the ellipsoid if not set")
+            .build());
+    }
+
+
+    @Override
+    public void init() throws ProcessException
+    {
+        super.init();
+
+        // init SRTM data set if set
+        var dataPath = srtmDataPath.getData() != null ? srtmDataPath.getData().getStringValue() : null;
+        if (dataPath != null && !dataPath.isBlank())
+        {
+            var path = Path.of(dataPath);
+            if (!Files.isDirectory(path) || !Files.isReadable(path))
+                reportError("Missing or inaccessible SRTM data directory: " + dataPath);
+            srtmCache = SRTMTileCache.getInstance(dataPath);
+        }
+        else
+            srtmCache = null;
+
+        // set init altitude
+        initAlti = heightAdjParam.getData().getDoubleValue();
+        if (Double.isNaN(initAlti))
+            initAlti = 0.0;
+
+        scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+
+    @Override
+    public void execute() throws ProcessException
+    {
+        readPositionParams();
+
+        // wait until platform location has been received
+        var llaData = platformLocParam.getData();
+        if (Double.isNaN(llaData.getDoubleValue(0)))
+            return;
+
+        // read pixel coordinates input
+        int numPoints = numPointsIn.getData().getIntValue();
+        if (pixels.length < numPoints*2)
+        {
+            pixels = new double[numPoints*2];
+            lla = new double[numPoints*3];
+        }
+
+        var pixelData = pointsIn.getData();
+        for (int i = 0; i < numPoints*2; i++)
+            pixels[i] = pixelData.getDoubleValue(i);
+
+        // compute ground locations
+        try
+        {
+            toGroundLocations(pixels, numPoints, lla);
+        }
+        catch (IOException e)
+        {
+            throw new ProcessException("Error while looking up altitude from SRTM DEM data", e);
+        }
+
+        // set ground locations output
+        pointsOut.updateSize(numPoints);
+        var outData = pointsOut.getData();
+        for (int i = 0; i < numPoints*3; i++)
+            outData.setDoubleValue(i, lla[i]);
+    }
+
+
+    /**
+     * Computes ground locations of several pixels with the current camera pose
+     * @param pixels Pixel coordinates, as (x,y) pairs
+     * @param numPoints Number of pixels to process
+     * @param lla Array receiving ground locations as (lat,lon,alt) triplets,
+     * in degrees and meters. NaN values are set for pixels not intersecting the ground.
+     * @throws IOException if terrain data cannot be read
+     */
+    public void toGroundLocations(double[] pixels, int numPoints, double[] lla) throws IOException
+    {
+        int numChunks = (numPoints + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        if (numChunks <= 1)
+        {
+            toGroundLocations(pixels, lla, 0, numPoints);
+            return;
+        }
+
+        try
+        {
+            IntStream.range(0, numChunks).parallel().forEach(c -> {
+                int start = c * CHUNK_SIZE;
+                int end = Math.min(start + CHUNK_SIZE, numPoints);
+                try
+                {
+                    toGroundLocations(pixels, lla, start, end);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+
+    /*
+     * Processes all pixels of a chunk in lockstep so that terrain altitudes
+     * of all points still being refined are looked up in a single call
+     */
+    protected void toGroundLocations(double[] pixels, double[] lla, int start, int end) throws IOException
+    {
+        var s = scratch.get();
+        int numActive = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            computeLookDirection(pixels[2*i], pixels[2*i+1], s.dir);
+            int k = numActive++;
+            s.dirs[3*k] = s.dir.x;
+            s.dirs[3*k+1] = s.dir.y;
+            s.dirs[3*k+2] = s.dir.z;
+            s.altitudes[k] = initAlti;
+            s.active[k] = i;
+        }
+
+        int numIter = 0;
+        while (numActive > 0)
+        {
+            // intersect rays of all active points with the adjusted ellipsoid
+            int numQueries = 0;
+            for (int k = 0; k < numActive; k++)
+            {
+                int idx = 3*s.active[k];
+                s.dir.set(s.dirs[3*k], s.dirs[3*k+1], s.dirs[3*k+2]);
+                s.rie.setHeightAdjustment(s.altitudes[k]);
+                if (!s.rie.computeIntersection(platformLocECEF, s.dir, s.ecef))
+                {
+                    lla[idx] = lla[idx+1] = lla[idx+2] = Double.NaN;
+                    continue;
+                }
+
+                geoConv.ECEFtoLLA(s.ecef, s.lla);
+                lla[idx] = Math.toDegrees(s.lla.y);
+                lla[idx+1] = Math.toDegrees(s.lla.x);
+                lla[idx+2] = s.lla.z;
+
+                // keep points that intersected for terrain lookup
+                int q = numQueries++;
+                s.active[q] = s.active[k];
+                s.dirs[3*q] = s.dirs[3*k];
+                s.dirs[3*q+1] = s.dirs[3*k+1];
+                s.dirs[3*q+2] = s.dirs[3*k+2];
+                s.queryLat[q] = lla[idx];
+                s.queryLon[q] = lla[idx+1];
+            }
+
+            if (s.srtm == null || ++numIter >= MAX_ITERATIONS)
+                return;
+
+            // get terrain altitudes at all these positions
+            s.srtm.getElevations(s.queryLat, s.queryLon, s.elevations, numQueries);
+
+            // only keep refining points that are too far from the terrain
+            numActive = 0;
+            for (int q = 0; q < numQueries; q++)
+            {
+                int idx = 3*s.active[q];
+                double error = Math.abs(s.elevations[q] - lla[idx+2]);
+                if (error > MAX_TERRAIN_ERROR)
+                {
+                    int k = numActive++;
+                    s.active[k] = s.active[q];
+                    s.dirs[3*k] = s.dirs[3*q];
+                    s.dirs[3*k+1] = s.dirs[3*q+1];
+                    s.dirs[3*k+2] = s.dirs[3*q+2];
+                    s.altitudes[k] = s.elevations[q];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.process.cam;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * <p>
+ * Geolocation of a 64x64 pixel grid, one process execution per pixel vs.
+ * one batch execution for the whole grid.<br/>
+ * Run with 'gradle :sensorhub-process-geoloc:jmh'
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageToGroundBenchmark
+{
+    static final int GRID_SIZE = 64;
+
+    ImageToGround single;
+    ImageToGround_Batch batch;
+    double[] pixels;
+
+
+    @Setup
+    public void setup() throws Exception
+    {
+        single = new ImageToGround();
+        TestImageToGroundBatch.setupParams(single, 45.0, 10.0, 1000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+        single.getInputList().getComponent("imgCoords").assignNewDataBlock();
+
+        batch = new ImageToGround_Batch();
+        TestImageToGroundBatch.setupParams(batch, 45.0, 10.0, 1000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+        TestImageToGroundBatch.setInputGrid(batch, GRID_SIZE);
+
+        pixels = new double[GRID_SIZE*GRID_SIZE*2];
+        int idx = 0;
+        for (int j = 0; j < GRID_SIZE; j++)
+        {
+            for (int i = 0; i < GRID_SIZE; i++)
+            {
+                pixels[idx++] = i * 640.0 / (GRID_SIZE-1);
+                pixels[idx++] = j * 480.0 / (GRID_SIZE-1);
+            }
+        }
+    }
+
+
+    @Benchmark
+    public void singlePixelExecutions(Blackhole bh) throws Exception
+    {
+        var imgCoords = single.getInputList().getComponent("imgCoords").getData();
+        var groundLoc = single.getOutputList().getComponent("groundLocation").getData();
+
+        for (int i = 0; i < pixels.length; i += 2)
+        {
+            imgCoords.setDoubleValue(0, pixels[i]);
+            imgCoords.setDoubleValue(1, pixels[i+1]);
+            single.execute();
+            bh.consume(groundLoc.getDoubleValue(0));
+        }
+    }
+
+
+    @Benchmark
+    public void batchExecution(Blackhole bh) throws Exception
+    {
+        batch.execute();
+        bh.consume(TestImageToGroundBatch.getOutputLocations(batch).getData());
+    }
+}
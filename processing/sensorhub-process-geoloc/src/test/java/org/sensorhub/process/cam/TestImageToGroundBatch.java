@@ -0,0 +1,207 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.process.cam;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import net.opengis.swe.v20.DataArray;
+import net.opengis.swe.v20.DataRecord;
+import org.sensorhub.algo.vecmath.Vect3d;
+import org.vast.process.ProcessException;
+
+
+public class TestImageToGroundBatch
+{
+    static final int GRID_SIZE = 64;
+
+
+    static void setupParams(ImageToGround process,
+        double platformLat, double platformLon, double platformAlt,
+        double platformHeading, double platformPitch, double platformRoll,
+        double camYaw, double camPitch, double camRoll) throws ProcessException
+    {
+        var params = process.getParameterList();
+
+        var groundHeight = params.getComponent("groundHeight");
+        groundHeight.assignNewDataBlock();
+        groundHeight.getData().setDoubleValue(0.0);
+
+        var platformLoc = params.getComponent("platformLocation");
+        platformLoc.assignNewDataBlock();
+        platformLoc.getData().setDoubleValue(0, platformLat);
+        platformLoc.getData().setDoubleValue(1, platformLon);
+        platformLoc.getData().setDoubleValue(2, platformAlt);
+
+        var platformAtt = params.getComponent("platformAttitude");
+        platformAtt.assignNewDataBlock();
+        platformAtt.getData().setDoubleValue(0, platformHeading);
+        platformAtt.getData().setDoubleValue(1, platformPitch);
+        platformAtt.getData().setDoubleValue(2, platformRoll);
+
+        var camOrient = params.getComponent("camOrientation");
+        camOrient.assignNewDataBlock();
+        camOrient.getData().setDoubleValue(0, camYaw);
+        camOrient.getData().setDoubleValue(1, camPitch);
+        camOrient.getData().setDoubleValue(2, camRoll);
+
+        var camMatrix = params.getComponent("camMatrix");
+        camMatrix.assignNewDataBlock();
+        camMatrix.getData().setDoubleValue(0, 320);
+        camMatrix.getData().setDoubleValue(2, 320);
+        camMatrix.getData().setDoubleValue(4, 320);
+        camMatrix.getData().setDoubleValue(5, 240);
+        camMatrix.getData().setDoubleValue(8, 1.0);
+
+        process.init();
+    }
+
+
+    static void setInputGrid(ImageToGround_Batch process, int gridSize)
+    {
+        var numPoints = gridSize * gridSize;
+        var pixels = (DataRecord)process.getInputList().getComponent("pixels");
+        pixels.assignNewDataBlock();
+        pixels.getComponent("numPoints").getData().setIntValue(numPoints);
+        var pointList = (DataArray)pixels.getComponent("pointList");
+        pointList.updateSize(numPoints);
+
+        int idx = 0;
+        for (int j = 0; j < gridSize; j++)
+        {
+            for (int i = 0; i < gridSize; i++)
+            {
+                pointList.getData().setDoubleValue(idx++, i * 640.0 / (gridSize-1));
+                pointList.getData().setDoubleValue(idx++, j * 480.0 / (gridSize-1));
+            }
+        }
+    }
+    
+    
+    static DataArray getOutputLocations(ImageToGround_Batch process)
+    {
+        var locations = (DataRecord)process.getOutputList().getComponent("groundLocations");
+        return (DataArray)locations.getComponent("locationList");
+    }
+
+
+    @Test
+    public void testSameAsSinglePixel() throws ProcessException
+    {
+        var single = new ImageToGround();
+        setupParams(single, 45.0, 10.0, 1000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+
+        var batch = new ImageToGround_Batch();
+        setupParams(batch, 45.0, 10.0, 1000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+        setInputGrid(batch, GRID_SIZE);
+        batch.execute();
+
+        var locations = getOutputLocations(batch);
+        assertEquals(GRID_SIZE * GRID_SIZE, locations.getComponentCount());
+
+        var expected = new Vect3d();
+        int idx = 0;
+        for (int j = 0; j < GRID_SIZE; j++)
+        {
+            for (int i = 0; i < GRID_SIZE; i++)
+            {
+                single.readPositionParams();
+                single.toGroundLocation(i * 640.0 / (GRID_SIZE-1), j * 480.0 / (GRID_SIZE-1), expected);
+                assertEquals(Math.toDegrees(expected.y), locations.getData().getDoubleValue(idx++), 1e-9);
+                assertEquals(Math.toDegrees(expected.x), locations.getData().getDoubleValue(idx++), 1e-9);
+                assertEquals(expected.z, locations.getData().getDoubleValue(idx++), 1e-6);
+            }
+        }
+    }
+
+
+    static Path writeFlatTerrain(short elevation, String... tileNames) throws IOException
+    {
+        var dataRoot = Files.createTempDirectory("srtm");
+        dataRoot.toFile().deleteOnExit();
+
+        // 30 arcsec tiles
+        int size = 121;
+        var buf = ByteBuffer.allocate(size*size*2);
+        for (int i = 0; i < size*size; i++)
+            buf.putShort(elevation);
+
+        for (var name: tileNames)
+        {
+            var file = dataRoot.resolve(name);
+            Files.write(file, buf.array());
+            file.toFile().deleteOnExit();
+        }
+
+        return dataRoot;
+    }
+
+
+    @Test
+    public void testSameAsSinglePixelWithTerrain() throws Exception
+    {
+        var terrainHeight = 500.0;
+        var dataRoot = writeFlatTerrain((short)terrainHeight,
+            "N44E009.hgt", "N44E010.hgt", "N45E009.hgt", "N45E010.hgt");
+
+        // intersecting flat terrain is the same as intersecting the ellipsoid at that height
+        var single = new ImageToGround();
+        setupParams(single, 45.0, 10.0, 2000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+        single.getParameterList().getComponent("groundHeight").getData().setDoubleValue(terrainHeight);
+        single.init();
+
+        var batch = new ImageToGround_Batch();
+        setupParams(batch, 45.0, 10.0, 2000.0, 30.0, 5.0, -2.0, 10.0, -60.0, 0.0);
+        var srtmPath = batch.getParameterList().getComponent("srtmDataPath");
+        srtmPath.assignNewDataBlock();
+        srtmPath.getData().setStringValue(dataRoot.toString());
+        batch.init();
+        setInputGrid(batch, GRID_SIZE);
+        batch.execute();
+
+        var locations = getOutputLocations(batch);
+        var expected = new Vect3d();
+        int idx = 0;
+        for (int j = 0; j < GRID_SIZE; j++)
+        {
+            for (int i = 0; i < GRID_SIZE; i++)
+            {
+                single.readPositionParams();
+                single.toGroundLocation(i * 640.0 / (GRID_SIZE-1), j * 480.0 / (GRID_SIZE-1), expected);
+                assertEquals(Math.toDegrees(expected.y), locations.getData().getDoubleValue(idx++), 1e-9);
+                assertEquals(Math.toDegrees(expected.x), locations.getData().getDoubleValue(idx++), 1e-9);
+                assertEquals(terrainHeight, locations.getData().getDoubleValue(idx++), 1e-6);
+            }
+        }
+    }
+
+
+    @Test
+    public void testNoIntersection() throws ProcessException
+    {
+        // camera looking up
+        var batch = new ImageToGround_Batch();
+        setupParams(batch, 0.0, 0.0, 100.0, 0.0, 0.0, 0.0, 0.0, 90.0, 0.0);
+        setInputGrid(batch, 2);
+        batch.execute();
+
+        var locations = getOutputLocations(batch);
+        for (int i = 0; i < locations.getData().getAtomCount(); i++)
+            assertTrue(Double.isNaN(locations.getData().getDoubleValue(i)));
+    }
+}
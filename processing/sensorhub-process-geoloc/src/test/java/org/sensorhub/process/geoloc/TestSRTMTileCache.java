@@ -0,0 +1,110 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.process.geoloc;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Test;
+import org.sensorhub.algo.geoloc.SRTMTileCache;
+import org.sensorhub.algo.geoloc.SRTMUtil;
+
+
+public class TestSRTMTileCache
+{
+    static final int TILE_SIZE = 1201; // 3 arcsec tiles
+    Path dataRoot;
+
+
+    @Before
+    public void setup() throws IOException
+    {
+        dataRoot = Files.createTempDirectory("srtm");
+        dataRoot.toFile().deleteOnExit();
+
+        // planar terrain with elevation = x + 2*y in grid units
+        writeTile("N35W115.hgt", 0);
+        writeTile("N35W114.hgt", TILE_SIZE-1);
+    }
+
+
+    private void writeTile(String filename, int xOffset) throws IOException
+    {
+        var buf = ByteBuffer.allocate(TILE_SIZE*TILE_SIZE*2);
+        for (int row = 0; row < TILE_SIZE; row++)
+        {
+            for (int col = 0; col < TILE_SIZE; col++)
+                buf.putShort((short)(xOffset + col + 2*(TILE_SIZE-1-row)));
+        }
+
+        var file = dataRoot.resolve(filename);
+        Files.write(file, buf.array());
+        file.toFile().deleteOnExit();
+    }
+
+
+    private double expectedElevation(double lat, double lon)
+    {
+        return ((lon + 115) + 2*(lat - 35)) * (TILE_SIZE-1);
+    }
+
+
+    @Test
+    public void testInterpolatedElevation() throws IOException
+    {
+        var srtm = new SRTMUtil(dataRoot.toString());
+
+        double[][] points = {
+            {35.0, -115.0},
+            {35.3337, -114.5123},
+            {35.9999, -114.0001},
+            {35.5, -113.75}
+        };
+
+        for (var p: points)
+            assertEquals(expectedElevation(p[0], p[1]), srtm.getInterpolatedElevation(p[0], p[1]), 1e-6);
+    }
+
+
+    @Test
+    public void testBulkElevations() throws IOException
+    {
+        var cache = new SRTMTileCache(dataRoot.toString(), 1);
+
+        int n = 1000;
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            lat[i] = 35.0 + 0.999 * i / n;
+            lon[i] = -115.0 + 1.999 * i / n;
+        }
+
+        cache.getElevations(lat, lon, out);
+        for (int i = 0; i < n; i++)
+            assertEquals(expectedElevation(lat[i], lon[i]), out[i], 1e-6);
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testMissingTile() throws IOException
+    {
+        new SRTMUtil(dataRoot.toString()).getInterpolatedElevation(10.0, 10.0);
+    }
+}
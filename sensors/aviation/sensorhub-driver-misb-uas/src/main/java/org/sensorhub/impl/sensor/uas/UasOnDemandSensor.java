@@ -108,7 +108,7 @@ public class UasOnDemandSensor extends UasSensorBase<UasOnDemandConfig> {
         if (haveSubscribers) {
         	logger.trace("Subscribers detected.");
         	// Someone needs the data. Is the stream going?
-        	if (mpegTsProcessor == null) {
+        	if (!isStreamOpen()) {
         		try {
         	        openStream();
         	        startStream();
@@ -127,7 +127,7 @@ public class UasOnDemandSensor extends UasSensorBase<UasOnDemandConfig> {
         } else {
         	logger.trace("No subscribers detected.");
         	// No one needs the data. If the processor happens to be running then shut it down.
-        	if (mpegTsProcessor != null) {
+        	if (isStreamOpen()) {
         		try {
         			stopStream();
         		} catch (Exception e) {
@@ -1,5 +1,7 @@
 package org.sensorhub.impl.sensor.uas;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
@@ -10,6 +12,7 @@ import org.sensorhub.impl.sensor.AbstractSensorModule;
 import org.sensorhub.impl.sensor.uas.common.SimulationClock;
 import org.sensorhub.impl.sensor.uas.common.SyncTime;
 import org.sensorhub.impl.sensor.uas.config.UasConfig;
+import org.sensorhub.impl.sensor.uas.ingest.ArchiveIngest;
 import org.sensorhub.impl.sensor.uas.klv.SetDecoder;
 import org.sensorhub.impl.sensor.uas.outputs.AirframeAttitude;
 import org.sensorhub.impl.sensor.uas.outputs.FullTelemetry;
@@ -22,6 +25,7 @@ import org.sensorhub.impl.sensor.uas.outputs.SensorParams;
 import org.sensorhub.impl.sensor.uas.outputs.UasOutput;
 import org.sensorhub.impl.sensor.uas.outputs.Video;
 import org.sensorhub.impl.sensor.uas.outputs.VmtiOutput;
+import org.sensorhub.misb.stanag4609.comm.DataBufferPool;
 import org.sensorhub.misb.stanag4609.comm.MpegTsProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +50,12 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
      * Thing that knows how to parse the data out of the bytes from the video stream.
      */
     protected MpegTsProcessor mpegTsProcessor;
+
+    /**
+     * Ingests all files of a directory in parallel, used instead of the mpegTsProcessor when an archive directory is
+     * configured.
+     */
+    protected ArchiveIngest archiveIngest;
     
     /**
      * Background thread manager. Used for image decoding. At the moment, this is a single thread.
@@ -261,7 +271,9 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
      * side effect of creating and adding the Video output if it hasn't already happened earlier.
      */
     protected void openStream() throws SensorHubException {
-    	if (mpegTsProcessor == null) {
+    	if (isArchiveIngest()) {
+    		openArchive();
+    	} else if (mpegTsProcessor == null) {
 	    	logger.info("Opening MPEG TS connection for {} ...", getUniqueIdentifier());
 	        // Initialize the MPEG transport stream processor from the source named in the configuration.
 	        // If neither the file source nor a connection string is specified, throw an exception so the user knows that
@@ -274,6 +286,7 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
 	        } else {
 	        	throw new SensorHubException("Either the input file path or the connection string must be set");
 	        }
+	        mpegTsProcessor.setPooledBuffers(config.connection.pooledBuffers);
 	        
 	        if (mpegTsProcessor.openStream()) {
 	        	logger.info("Stream opened for {}", getUniqueIdentifier());
@@ -300,6 +313,79 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
     	}
     }
 
+    /**
+     * Prepares ingest of all the files of the configured archive directory. The first file is opened to get the video
+     * frame size if the Video output hasn't already been created.
+     */
+    protected void openArchive() throws SensorHubException {
+    	if (archiveIngest == null) {
+    		logger.info("Opening MPEG TS archive for {} ...", getUniqueIdentifier());
+    		Asserts.checkArgument(!config.connection.loop, "Loop mode is not available when ingesting an archive directory");
+    		Asserts.checkArgument(config.connection.ingestThreads >= 0, "Number of ingest threads must be >= 0");
+
+    		List<Path> files;
+    		try {
+    			files = ArchiveIngest.listArchiveFiles(config.connection.archiveDirectoryPath);
+    		} catch (IOException e) {
+    			throw new SensorHubException("Unable to list files in archive directory " + config.connection.archiveDirectoryPath, e);
+    		}
+    		if (files.isEmpty()) {
+    			throw new SensorHubException("No MPEG TS file found in archive directory " + config.connection.archiveDirectoryPath);
+    		}
+
+    		// All files are expected to come from the same sensor, so the first one tells us the video frame size.
+    		if (config.outputs.enableVideo && videoOutput == null) {
+    			MpegTsProcessor firstFileProcessor = new MpegTsProcessor(files.get(0).toString());
+    			try {
+    				if (firstFileProcessor.openStream()) {
+    					firstFileProcessor.queryEmbeddedStreams();
+    					if (firstFileProcessor.hasVideoStream()) {
+    						createVideoOutput(firstFileProcessor.getVideoStreamFrameDimensions());
+    					}
+    				}
+    			} finally {
+    				firstFileProcessor.closeStream();
+    			}
+    		}
+
+    		int numThreads = config.connection.ingestThreads > 0 ?
+    				config.connection.ingestThreads : Runtime.getRuntime().availableProcessors();
+    		archiveIngest = new ArchiveIngest(files, numThreads, config.connection.ingestTimeSlice,
+    				config.connection.ingestBufferSize * 1024L * 1024L, config.connection.pooledBuffers);
+
+    		// Decoded sets are passed to the outputs registered with the set decoder
+    		archiveIngest.setDecodedSetListener(setDecoder::dispatch);
+    		if (config.outputs.enableVideo) {
+    			archiveIngest.setVideoOutput(videoOutput);
+    		}
+
+    		logger.info("MPEG TS archive for {} opened with {} files.", getUniqueIdentifier(), files.size());
+    	}
+    }
+
+    /**
+     * @return true if the sensor is configured to ingest an archive directory rather than a single stream
+     */
+    protected boolean isArchiveIngest() {
+    	return (null != config.connection.archiveDirectoryPath) && (!config.connection.archiveDirectoryPath.isBlank());
+    }
+
+    /**
+     * @return the buffers and allocation metrics of the metadata packets of the live stream, or null if no live
+     *   stream is being processed
+     */
+    public DataBufferPool getMetadataBufferPool() {
+    	MpegTsProcessor processor = mpegTsProcessor;
+    	return (processor != null) ? processor.getDataBufferPool() : null;
+    }
+
+    /**
+     * @return true if the stream or archive is currently opened
+     */
+    protected boolean isStreamOpen() {
+    	return (mpegTsProcessor != null) || (archiveIngest != null);
+    }
+
     /**
      * This causes the frames of the video to start being processed. If it's from a network stream, that means that
      * data will start flowing across the wire. If it's from a file stream, the frame are read from disk.
@@ -309,6 +395,9 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
         	if (mpegTsProcessor != null) {
         		mpegTsProcessor.processStream();
         	}
+        	if (archiveIngest != null) {
+        		archiveIngest.start();
+        	}
         } catch (IllegalStateException e) {
             String message = "Failed to start stream processor";
             logger.error(message);
@@ -330,16 +419,37 @@ public abstract class UasSensorBase<UasConfigType extends UasConfig> extends Abs
                 Thread.currentThread().interrupt();
                 throw new SensorHubException("Interrupted waiting for stream processor to stop", e);
             } finally {
+                // Report buffer usage of this stream in module status
+                DataBufferPool dataBufferPool = mpegTsProcessor.getDataBufferPool();
+                if (dataBufferPool != null) {
+                    reportStatus("Buffer usage " + dataBufferPool);
+                }
+
                 // Close stream and cleanup resources
                 mpegTsProcessor.closeStream();
                 mpegTsProcessor = null;
             }
         }
+
+    	if (null != archiveIngest) {
+    		archiveIngest.stopIngest();
+
+    		try {
+    			// Wait for all workers to finish
+    			archiveIngest.join();
+    		} catch (InterruptedException e) {
+    			logger.error("Interrupted waiting for archive ingest to stop", e);
+    			Thread.currentThread().interrupt();
+    			throw new SensorHubException("Interrupted waiting for archive ingest to stop", e);
+    		} finally {
+    			archiveIngest = null;
+    		}
+    	}
     }
 
     @Override
     public boolean isConnected() {
-        return (mpegTsProcessor != null) && isStarted();
+        return isStreamOpen() && isStarted();
     }
 
     /**
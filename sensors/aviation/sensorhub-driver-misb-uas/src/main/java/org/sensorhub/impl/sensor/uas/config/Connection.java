@@ -38,4 +38,23 @@ public class Connection {
 
     @DisplayInfo(label = "Connection String", desc = "Connection string that the driver will pass to ffmpeg to connect to the MISB STANAG 4609 MPEG-TS stream. This value is ignored if an input file path is also set in the configuration. See https://www.ffmpeg.org/ffmpeg-protocols.html#Protocols for details of allowed values.")
     public String connectionString;
+
+    @DisplayInfo(label = "Pooled Buffers", desc = "Demux metadata packets into recycled buffers instead of allocating new buffers for each packet."
+        + " This reduces garbage collection pressure when processing several high bitrate streams.")
+    public boolean pooledBuffers = false;
+
+    @DisplayInfo(label = "Archive Directory", desc = "Directory of MISB STANAG 4609 MPEG-TS files (.ts) to ingest as fast as possible."
+        + " Files are decoded in parallel and observations are produced in time order. If set, the file path and connection string are ignored.")
+    @DisplayInfo.FieldType(value = DisplayInfo.FieldType.Type.FILESYSTEM_PATH)
+    public String archiveDirectoryPath;
+
+    @DisplayInfo(label = "Ingest Threads", desc = "Max number of archive files decoded in parallel."
+        + " 0 means the number of available processors will be used.")
+    public int ingestThreads = 0;
+
+    @DisplayInfo(label = "Ingest Time Slice", desc = "Duration of the time slices used to reorder observations from archive files decoded in parallel, in seconds")
+    public double ingestTimeSlice = 10.0;
+
+    @DisplayInfo(label = "Ingest Buffer Size", desc = "Max amount of decoded data buffered to reorder observations from archive files decoded in parallel, in MB")
+    public int ingestBufferSize = 256;
 }
@@ -0,0 +1,541 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.ingest;
+
+import org.sensorhub.impl.sensor.uas.common.SyncTime;
+import org.sensorhub.impl.sensor.uas.klv.DecodedSetListener;
+import org.sensorhub.impl.sensor.uas.klv.SetDecoder;
+import org.sensorhub.impl.sensor.uas.klv.UasLocalSetDecoder;
+import org.sensorhub.impl.sensor.uas.outputs.Video;
+import org.sensorhub.misb.stanag4609.comm.DataBufferListener;
+import org.sensorhub.misb.stanag4609.comm.DataBufferRecord;
+import org.sensorhub.misb.stanag4609.comm.MpegTsProcessor;
+import org.sensorhub.misb.stanag4609.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ingests a directory of MISB STANAG 4609 MPEG-TS files as fast as possible.
+ * <p>
+ * Files are first probed in parallel to find the time of their first metadata set, then
+ * demuxed and decoded in parallel on a bounded pool of workers, in order of their start time.
+ * Decoded metadata sets and video frames are merged by a {@link TimeSlicedMerger} so that
+ * they are published to the sensor outputs in time order, from this thread only.
+ * <p>
+ * Video frames are timestamped using the metadata of the file they belong to, so files
+ * with overlapping time periods are handled correctly.
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class ArchiveIngest extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveIngest.class);
+
+    /**
+     * Name of thread
+     */
+    private static final String WORKER_THREAD_NAME = "ARCHIVE-INGEST";
+
+    /**
+     * Extension of files picked up in the archive directory
+     */
+    private static final String FILE_EXTENSION = ".ts";
+
+    /**
+     * Approximate memory size of a decoded metadata set, used to bound the merge buffer
+     */
+    private static final long DECODED_SET_SIZE = 4096;
+
+    /**
+     * Approximate memory overhead of a video frame, used to bound the merge buffer
+     */
+    private static final long FRAME_OVERHEAD_SIZE = 128;
+
+    private final List<Path> files;
+    private final int numThreads;
+    private final double timeSlice;
+    private final long maxBufferedBytes;
+    private final boolean usePooledBuffers;
+
+    private BiConsumer<SyncTime, UasLocalSetDecoder.Values> decodedSetListener;
+    private Video<?> videoOutput;
+
+    private final AtomicBoolean terminateProcessing = new AtomicBoolean(false);
+    private final Set<MpegTsProcessor> activeProcessors = new HashSet<>();
+    private volatile TimeSlicedMerger merger;
+
+    private List<ArchiveFile> ingestQueue;
+    private int nextFileIndex;
+
+    /**
+     * An archive file with the time of its first metadata set
+     */
+    private static class ArchiveFile {
+
+        final Path path;
+        final double startTime;
+
+        ArchiveFile(Path path, double startTime) {
+
+            this.path = path;
+            this.startTime = startTime;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param files The transport stream files to ingest
+     * @param numThreads Max number of files demuxed and decoded in parallel
+     * @param timeSlice Duration of time slices used to reorder records, in seconds
+     * @param maxBufferedBytes Max amount of decoded data buffered for reordering, in bytes
+     * @param usePooledBuffers true to demux packets into pooled buffers
+     */
+    public ArchiveIngest(List<Path> files, int numThreads, double timeSlice, long maxBufferedBytes, boolean usePooledBuffers) {
+
+        super(WORKER_THREAD_NAME);
+
+        if (numThreads <= 0) {
+
+            throw new IllegalArgumentException("Number of threads must be > 0");
+        }
+
+        this.files = new ArrayList<>(files);
+        this.numThreads = numThreads;
+        this.timeSlice = timeSlice;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.usePooledBuffers = usePooledBuffers;
+    }
+
+    /**
+     * Lists the transport stream files contained in a directory
+     *
+     * @param directoryPath Path of the directory
+     *
+     * @return the list of files, sorted by name
+     *
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Path> listArchiveFiles(String directoryPath) throws IOException {
+
+        try (Stream<Path> paths = Files.list(Paths.get(directoryPath))) {
+
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Registers the listener receiving decoded metadata sets, in time order.
+     * Values are passed as primitive arrays, as produced by {@link UasLocalSetDecoder}.
+     *
+     * @param decodedSetListener the listener to invoke for each decoded set
+     */
+    public void setDecodedSetListener(BiConsumer<SyncTime, UasLocalSetDecoder.Values> decodedSetListener) {
+
+        this.decodedSetListener = decodedSetListener;
+    }
+
+    /**
+     * Sets the output receiving video frames, in time order.
+     * If not set, video packets are not processed.
+     *
+     * @param videoOutput the video output
+     */
+    public void setVideoOutput(Video<?> videoOutput) {
+
+        this.videoOutput = videoOutput;
+    }
+
+    @Override
+    public void run() {
+
+        long startTime = System.currentTimeMillis();
+
+        logger.info("Ingesting {} files using {} threads", files.size(), numThreads);
+
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+
+        try {
+
+            ingestQueue = probeFiles(workers);
+
+            if (ingestQueue.isEmpty() || terminateProcessing.get()) {
+
+                return;
+            }
+
+            merger = new TimeSlicedMerger(timeSlice, maxBufferedBytes);
+
+            // workers pick files in order of their start time
+            for (int count = 0; count < Math.min(numThreads, ingestQueue.size()); ++count) {
+
+                workers.execute(this::ingestFiles);
+            }
+
+            // also check after merger is visible to stopIngest()
+            if (terminateProcessing.get()) {
+
+                return;
+            }
+
+            merger.run();
+
+            logger.info("Ingested {} files ({} records) in {} ms", ingestQueue.size(), merger.getPublishedCount(),
+                    System.currentTimeMillis() - startTime);
+
+        } catch (InterruptedException e) {
+
+            logger.error("Interrupted during archive ingest", e);
+            Thread.currentThread().interrupt();
+
+        } finally {
+
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the start time of all files and sorts them accordingly.
+     * Files without metadata are skipped.
+     */
+    private List<ArchiveFile> probeFiles(ExecutorService workers) throws InterruptedException {
+
+        List<Callable<ArchiveFile>> probeTasks = new ArrayList<>();
+
+        for (Path file : files) {
+
+            probeTasks.add(() -> new ArchiveFile(file, probeStartTime(file)));
+        }
+
+        List<ArchiveFile> archiveFiles = new ArrayList<>();
+
+        for (Future<ArchiveFile> result : workers.invokeAll(probeTasks)) {
+
+            try {
+
+                ArchiveFile archiveFile = result.get();
+
+                if (Double.isNaN(archiveFile.startTime)) {
+
+                    logger.warn("No metadata found in {}, skipping file", archiveFile.path);
+
+                } else {
+
+                    archiveFiles.add(archiveFile);
+                }
+
+            } catch (ExecutionException e) {
+
+                logger.error("Error while probing archive file", e.getCause());
+            }
+        }
+
+        archiveFiles.sort(Comparator.comparingDouble(archiveFile -> archiveFile.startTime));
+
+        return Collections.unmodifiableList(archiveFiles);
+    }
+
+    /**
+     * Reads the beginning of a file until the first metadata set is decoded
+     *
+     * @return the precision time stamp of the first metadata set or NaN if none is found
+     */
+    private double probeStartTime(Path file) throws InterruptedException {
+
+        MpegTsProcessor processor = new MpegTsProcessor(file.toString());
+
+        try {
+
+            if (terminateProcessing.get() || !processor.openStream()) {
+
+                return Double.NaN;
+            }
+
+            processor.queryEmbeddedStreams();
+
+            if (!processor.hasVideoStream() || !processor.hasDataStream()) {
+
+                return Double.NaN;
+            }
+
+            UasLocalSetDecoder localSetDecoder = new UasLocalSetDecoder();
+            double[] startTime = {Double.NaN};
+
+            processor.setMetaDataDataBufferListener(record -> {
+
+                if (Double.isNaN(startTime[0]) && localSetDecoder.decode(record.getByteBuffer())
+                        && localSetDecoder.hasNumericValue(0x02)) {
+
+                    startTime[0] = localSetDecoder.getPrecisionTimeStamp();
+                    processor.stopProcessingStream();
+                }
+            });
+
+            runProcessor(processor);
+
+            return startTime[0];
+
+        } finally {
+
+            processor.closeStream();
+        }
+    }
+
+    /**
+     * Worker loop, ingests files until there are no more files to process
+     */
+    private void ingestFiles() {
+
+        FileIngest fileIngest;
+
+        while ((fileIngest = nextFile()) != null) {
+
+            try {
+
+                fileIngest.run();
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                return;
+
+            } catch (Exception e) {
+
+                logger.error("Error while ingesting {}", fileIngest.file.path, e);
+
+            } finally {
+
+                fileIngest.source.close();
+            }
+        }
+    }
+
+    /**
+     * Picks the next file to ingest and opens the corresponding merger source
+     *
+     * @return the next file to ingest or null if all files have been picked
+     */
+    private FileIngest nextFile() {
+
+        synchronized (merger) {
+
+            if (terminateProcessing.get() || nextFileIndex >= ingestQueue.size()) {
+
+                return null;
+            }
+
+            ArchiveFile file = ingestQueue.get(nextFileIndex++);
+            double nextStartTime = nextFileIndex < ingestQueue.size() ?
+                    ingestQueue.get(nextFileIndex).startTime : Double.POSITIVE_INFINITY;
+
+            return new FileIngest(file, merger.openSource(file.startTime, nextStartTime));
+        }
+    }
+
+    private void runProcessor(MpegTsProcessor processor) throws InterruptedException {
+
+        synchronized (activeProcessors) {
+
+            if (terminateProcessing.get()) {
+
+                return;
+            }
+
+            activeProcessors.add(processor);
+        }
+
+        try {
+
+            processor.processStream();
+            processor.join();
+
+        } finally {
+
+            synchronized (activeProcessors) {
+
+                activeProcessors.remove(processor);
+            }
+        }
+    }
+
+    /**
+     * Indicate to the ingest process to stop processing files
+     */
+    public void stopIngest() {
+
+        logger.debug("stopIngest");
+
+        terminateProcessing.set(true);
+
+        synchronized (activeProcessors) {
+
+            for (MpegTsProcessor processor : activeProcessors) {
+
+                processor.stopProcessingStream();
+            }
+        }
+
+        if (null != merger) {
+
+            merger.abort();
+        }
+    }
+
+    /**
+     * Demuxes and decodes a single file, decoded records are passed to the merger
+     */
+    private class FileIngest implements DecodedSetListener, DataBufferListener {
+
+        private final ArchiveFile file;
+        private final TimeSlicedMerger.Source source;
+        private SyncTime syncTime;
+        private UasLocalSetDecoder mapDecoder;
+        private long setCount;
+        private long frameCount;
+
+        FileIngest(ArchiveFile file, TimeSlicedMerger.Source source) {
+
+            this.file = file;
+            this.source = source;
+        }
+
+        void run() throws InterruptedException {
+
+            long startTime = System.currentTimeMillis();
+
+            MpegTsProcessor processor = new MpegTsProcessor(file.path.toString());
+
+            try {
+
+                if (!processor.openStream()) {
+
+                    return;
+                }
+
+                processor.setPooledBuffers(usePooledBuffers);
+                processor.queryEmbeddedStreams();
+
+                // decode on the demuxer thread, files are processed in parallel
+                SetDecoder setDecoder = new SetDecoder();
+                setDecoder.setExecutor(Runnable::run);
+                setDecoder.addListener(this);
+                processor.setMetaDataDataBufferListener(setDecoder);
+
+                if (null != videoOutput) {
+
+                    processor.setVideoDataBufferListener(this);
+                }
+
+                runProcessor(processor);
+
+            } finally {
+
+                processor.closeStream();
+            }
+
+            logger.info("Decoded {} ({} sets, {} frames) in {} ms", file.path.getFileName(), setCount, frameCount,
+                    System.currentTimeMillis() - startTime);
+        }
+
+        @Override
+        public void onSetDecoded(SyncTime syncTime, UasLocalSetDecoder decodedSet) {
+
+            // sets without time stamp cannot be ordered
+            if (!decodedSet.hasNumericValue(0x02)) {
+
+                return;
+            }
+
+            // decoder is reused for the next set so values are copied until published
+            UasLocalSetDecoder.Values values = decodedSet.copyValues();
+            this.syncTime = syncTime;
+            ++setCount;
+
+            source.add(new TimeSlicedMerger.Record(syncTime.getPrecisionTimeStamp(), DECODED_SET_SIZE) {
+
+                @Override
+                protected void publish() {
+
+                    if (null != decodedSetListener) {
+
+                        decodedSetListener.accept(syncTime, values);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onSetDecoded(SyncTime syncTime, HashMap<Tag, Object> valuesMap) {
+
+            // sets dispatched as maps are loaded in a decoder so they take the same path
+            if (null == mapDecoder) {
+
+                mapDecoder = new UasLocalSetDecoder();
+            }
+
+            mapDecoder.setValues(valuesMap);
+            onSetDecoded(syncTime, mapDecoder);
+        }
+
+        @Override
+        public void onDataBuffer(DataBufferRecord record) {
+
+            // frames are timed relative to the metadata of the same file
+            if (null == syncTime) {
+
+                return;
+            }
+
+            double sampleTime = syncTime.getPrecisionTimeStamp() + (record.getPresentationTimestamp() - syncTime.getPresentationTimeStamp());
+            byte[] frameData = record.getDataBuffer();
+            ++frameCount;
+
+            source.add(new TimeSlicedMerger.Record(sampleTime, frameData.length + FRAME_OVERHEAD_SIZE) {
+
+                @Override
+                protected void publish() {
+
+                    videoOutput.publishFrame(sampleTime, frameData);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.ingest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges records produced concurrently by several sources (e.g. one per archive file)
+ * into a single time ordered sequence published from one thread.
+ * <p>
+ * Records are grouped in time slices of fixed duration. A slice is published, sorted by time,
+ * as soon as no open source and no source opened later can produce records falling in it.
+ * This requires sources to be opened in order of their start time and records of each source
+ * to be produced in (roughly) increasing time order. Records received after their slice was
+ * published are added to the next slice to be published.
+ * <p>
+ * The amount of data buffered is bounded: when the buffer is full, sources that are ahead of
+ * the others are blocked until enough data is published. The source that is the furthest behind
+ * is never blocked so that processing can always progress.
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class TimeSlicedMerger {
+
+    private static final Comparator<Record> TIME_ORDER = Comparator.comparingDouble(Record::getTime);
+
+    /**
+     * Base class for records passed through the merger
+     */
+    public abstract static class Record {
+
+        private final double time;
+        private final long size;
+
+        /**
+         * Constructor
+         *
+         * @param time Time of the record, in seconds since epoch
+         * @param size Approximate memory size of the record, in bytes
+         */
+        protected Record(double time, long size) {
+
+            this.time = time;
+            this.size = size;
+        }
+
+        /**
+         * Publishes the record, called from the thread running the merger
+         */
+        protected abstract void publish();
+
+        public double getTime() {
+            return time;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Handle used by a source to add its records to the merger
+     */
+    public class Source {
+
+        private double progress;
+
+        private Source(double startTime) {
+
+            this.progress = startTime;
+        }
+
+        /**
+         * Adds a record to the merger. This may block if too much data is already buffered.
+         *
+         * @param record The record to add
+         */
+        public void add(Record record) {
+
+            synchronized (TimeSlicedMerger.this) {
+
+                try {
+
+                    while (!aborted && bufferedBytes >= maxBufferedBytes && progress > getSlowestSourceProgress()) {
+
+                        TimeSlicedMerger.this.wait();
+                    }
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (aborted) {
+
+                    return;
+                }
+
+                long sliceIndex = Math.max((long) Math.floor(record.getTime() / sliceDuration), nextSliceIndex);
+                slices.computeIfAbsent(sliceIndex, idx -> new ArrayList<>()).add(record);
+                bufferedBytes += record.getSize();
+
+                progress = Math.max(progress, record.getTime());
+
+                TimeSlicedMerger.this.notifyAll();
+            }
+        }
+
+        /**
+         * Indicates that the source won't produce any more records
+         */
+        public void close() {
+
+            synchronized (TimeSlicedMerger.this) {
+
+                sources.remove(this);
+                TimeSlicedMerger.this.notifyAll();
+            }
+        }
+    }
+
+    private final double sliceDuration;
+    private final long maxBufferedBytes;
+    private final TreeMap<Long, List<Record>> slices = new TreeMap<>();
+    private final List<Source> sources = new ArrayList<>();
+
+    private double pendingStartTime = Double.NEGATIVE_INFINITY;
+    private long nextSliceIndex = Long.MIN_VALUE;
+    private long bufferedBytes = 0;
+    private long publishedCount = 0;
+    private boolean aborted = false;
+
+    /**
+     * Constructor
+     *
+     * @param sliceDuration Duration of time slices, in seconds
+     * @param maxBufferedBytes Max amount of data buffered before blocking sources, in bytes
+     */
+    public TimeSlicedMerger(double sliceDuration, long maxBufferedBytes) {
+
+        if (sliceDuration <= 0) {
+
+            throw new IllegalArgumentException("Time slice duration must be > 0");
+        }
+
+        this.sliceDuration = sliceDuration;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Opens a new source. Sources must be opened in order of their start time.
+     *
+     * @param startTime Time of the first record that the source will produce
+     * @param nextStartTime Start time of the next source that will be opened, or
+     *                      {@link Double#POSITIVE_INFINITY} if this is the last source
+     *
+     * @return the new source
+     */
+    public synchronized Source openSource(double startTime, double nextStartTime) {
+
+        Source source = new Source(startTime);
+        sources.add(source);
+        pendingStartTime = nextStartTime;
+        notifyAll();
+
+        return source;
+    }
+
+    /**
+     * Sets the start time of the next source that will be opened.
+     * Must be called with {@link Double#POSITIVE_INFINITY} if no source will be opened at all.
+     *
+     * @param nextStartTime Start time of the next source, or {@link Double#POSITIVE_INFINITY} if
+     *                      no more sources will be opened
+     */
+    public synchronized void setNextStartTime(double nextStartTime) {
+
+        pendingStartTime = nextStartTime;
+        notifyAll();
+    }
+
+    /**
+     * Publishes records in time order until all sources are closed and
+     * no more sources are expected, or until the merger is aborted.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for records
+     */
+    public void run() throws InterruptedException {
+
+        while (true) {
+
+            List<Record> slice;
+
+            synchronized (this) {
+
+                while ((slice = pollPublishableSlice()) == null) {
+
+                    if (aborted || (slices.isEmpty() && sources.isEmpty() && pendingStartTime == Double.POSITIVE_INFINITY)) {
+
+                        return;
+                    }
+
+                    wait();
+                }
+            }
+
+            slice.sort(TIME_ORDER);
+
+            for (Record record : slice) {
+
+                record.publish();
+            }
+
+            synchronized (this) {
+
+                publishedCount += slice.size();
+            }
+        }
+    }
+
+    /**
+     * Stops publishing and releases blocked sources, buffered records are discarded
+     */
+    public synchronized void abort() {
+
+        aborted = true;
+
+        while (!slices.isEmpty()) {
+
+            removeSlice(slices.firstKey());
+        }
+
+        notifyAll();
+    }
+
+    private List<Record> pollPublishableSlice() {
+
+        if (aborted) {
+
+            return null;
+        }
+
+        Map.Entry<Long, List<Record>> first = slices.firstEntry();
+
+        if (null != first && (first.getKey() + 1) * sliceDuration <= getWatermark()) {
+
+            nextSliceIndex = first.getKey() + 1;
+
+            return removeSlice(first.getKey());
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes a slice from the buffer, this is the only place where buffered bytes are released
+     */
+    private List<Record> removeSlice(long sliceIndex) {
+
+        List<Record> slice = slices.remove(sliceIndex);
+
+        for (Record record : slice) {
+
+            bufferedBytes -= record.getSize();
+        }
+
+        // let blocked sources continue while the slice is published
+        notifyAll();
+
+        return slice;
+    }
+
+    /**
+     * @return the time before which no record can be produced anymore
+     */
+    private double getWatermark() {
+
+        return Math.min(getSlowestSourceProgress(), pendingStartTime);
+    }
+
+    private double getSlowestSourceProgress() {
+
+        double progress = Double.POSITIVE_INFINITY;
+
+        for (Source source : sources) {
+
+            progress = Math.min(progress, source.progress);
+        }
+
+        return progress;
+    }
+
+    /**
+     * @return the amount of data currently buffered, in bytes
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return the number of records published so far
+     */
+    public synchronized long getPublishedCount() {
+        return publishedCount;
+    }
+}
@@ -28,4 +28,18 @@ import java.util.HashMap;
 public interface DecodedSetListener {
 
     void onSetDecoded(SyncTime syncTime, HashMap<Tag, Object> valuesMap);
+
+    /**
+     * Called with the values of the set as decoded by {@link UasLocalSetDecoder}.
+     * The decoder is reused for the next set so values must be consumed before returning.
+     * The default implementation converts the values to a map and calls
+     * {@link DecodedSetListener#onSetDecoded(SyncTime, HashMap)}.
+     *
+     * @param syncTime The synchronization time of the set
+     * @param decodedSet The decoder holding the values of the set
+     */
+    default void onSetDecoded(SyncTime syncTime, UasLocalSetDecoder decodedSet) {
+
+        onSetDecoded(syncTime, decodedSet.toValuesMap());
+    }
 }
@@ -20,6 +20,7 @@ import org.sensorhub.misb.stanag4609.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vast.util.Asserts;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +38,10 @@ public class SetDecoder implements DataBufferListener {
     
     private final List<DecodedSetListener> listeners = new ArrayList<>();
 
+    private final UasLocalSetDecoder localSetDecoder = new UasLocalSetDecoder();
+
+    private ByteBuffer byteBuffer;
+
     private Executor executor;
     
     /**
@@ -53,37 +58,90 @@ public class SetDecoder implements DataBufferListener {
     @Override
     public void onDataBuffer(DataBufferRecord record) {
 
-        executor.execute(() -> {
-            try {
-                processBuffer(record);
-            } catch (Throwable e) {
-                logger.error("Error while decoding MISB Local Set", e);
-            }
-        });
+        // keep pooled buffer until it is processed asynchronously
+        record.retain();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    processBuffer(record);
+                } catch (Throwable e) {
+                    logger.error("Error while decoding MISB Local Set", e);
+                } finally {
+                    record.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            record.release();
+            throw e;
+        }
     }
 
     public void processBuffer(DataBufferRecord record) {
 
-        byte[] dataBuffer = record.getDataBuffer();
+        synchronized (localSetDecoder) {
+
+            // wrap record data, only if it's not in the same buffer as before
+            byte[] dataBuffer = record.getBackingArray();
+
+            if (null == byteBuffer || byteBuffer.array() != dataBuffer) {
+
+                byteBuffer = ByteBuffer.wrap(dataBuffer);
+            }
+
+            byteBuffer.limit(record.getDataLength()).position(0);
+
+            // Read the set, checksum is validated in the same pass
+            if (localSetDecoder.decode(byteBuffer)) {
+
+                SyncTime syncTime = new SyncTime(localSetDecoder.getPrecisionTimeStamp(), record.getPresentationTimestamp());
 
-        // Read the set
-        UasDataLinkSet dataLinkSet = new UasDataLinkSet(dataBuffer.length, dataBuffer);
+                synchronized (listeners) {
 
-        List<String> acceptedDesignators = new ArrayList<>();
-        acceptedDesignators.add(UasDataLinkSet.UAS_LOCAL_SET.getDesignator());
+                    for (DecodedSetListener listener : listeners) {
 
-        // If it is a valid set
-        if (dataLinkSet.validateChecksum() && dataLinkSet.validateDesignator(acceptedDesignators)) {
+                        listener.onSetDecoded(syncTime, localSetDecoder);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes a set that was decoded elsewhere (e.g. by an archive ingest worker) to all listeners
+     *
+     * @param syncTime The synchronization time of the set
+     * @param valuesMap The decoded values of the set
+     */
+    public void dispatch(SyncTime syncTime, HashMap<Tag, Object> valuesMap) {
+
+        synchronized (listeners) {
+
+            for (DecodedSetListener listener : listeners) {
+
+                listener.onSetDecoded(syncTime, valuesMap);
+            }
+        }
+    }
+
+    /**
+     * Passes values of a set that was decoded elsewhere (e.g. by an archive ingest worker)
+     * to all listeners, without converting them to a map
+     *
+     * @param syncTime The synchronization time of the set
+     * @param values The decoded values of the set
+     */
+    public void dispatch(SyncTime syncTime, UasLocalSetDecoder.Values values) {
 
-            HashMap<Tag, Object> valuesMap = dataLinkSet.decode();
+        synchronized (localSetDecoder) {
 
-            SyncTime syncTime = new SyncTime(dataLinkSet.getPrecisionTimeStamp(), record.getPresentationTimestamp());
+            localSetDecoder.setValues(values);
 
             synchronized (listeners) {
 
                 for (DecodedSetListener listener : listeners) {
 
-                    listener.onSetDecoded(syncTime, valuesMap);
+                    listener.onSetDecoded(syncTime, localSetDecoder);
                 }
             }
         }
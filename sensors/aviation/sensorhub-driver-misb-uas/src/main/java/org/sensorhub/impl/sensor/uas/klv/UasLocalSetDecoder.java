@@ -0,0 +1,619 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.klv;
+
+import org.sensorhub.misb.stanag4609.klv.LocalSetCursor;
+import org.sensorhub.misb.stanag4609.tags.Tag;
+import org.sensorhub.misb.stanag4609.tags.TagRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single pass decoder for MISB-TS STANAG 4609 ST0601.16 UAS Datalink Local Sets.
+ * <p>
+ * Unlike {@link UasDataLinkSet}, this decoder walks the set only once with a {@link LocalSetCursor},
+ * validating the checksum in the same pass, and keeps decoded numeric values as primitive doubles
+ * in reusable arrays so that outputs can copy them to their data blocks without boxing.
+ * Text values are only decoded again when their content changes, and nested security and VMTI
+ * sets are delegated to {@link SecurityLocalSet} and {@link VmtiLocalSet}.
+ * <p>
+ * An instance holds the values of the last decoded set and is meant to be reused for all
+ * sets of a stream. It is not thread safe.
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class UasLocalSetDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UasLocalSetDecoder.class);
+
+    private static final byte[] UAS_LOCAL_SET_KEY = LocalSetCursor.parseKey(UasDataLinkSet.UAS_LOCAL_SET.getDesignator());
+
+    private static final int MAX_TAG = 0xFF;
+
+    /**
+     * Registered tags of the UAS local set, indexed by local set tag
+     */
+    private static final Tag[] TAGS = new Tag[MAX_TAG + 1];
+
+    static {
+
+        for (int tagId = 0; tagId <= MAX_TAG; ++tagId) {
+
+            TAGS[tagId] = TagRegistry.getInstance().getByTagSetAndId(UasDataLinkSet.UAS_LOCAL_SET, (byte) tagId);
+        }
+    }
+
+    /**
+     * Values of a decoded set detached from the decoder, so they can be kept
+     * (e.g. buffered for time ordering) while the decoder is reused for other sets
+     */
+    public static class Values {
+
+        private final int[] numericTags;
+        private final double[] numericValues;
+        private final int[] objectTags;
+        private final Object[] objectValues;
+        private final Map<Tag, Object> nestedValues;
+
+        private Values(int[] numericTags, double[] numericValues, int[] objectTags, Object[] objectValues, Map<Tag, Object> nestedValues) {
+
+            this.numericTags = numericTags;
+            this.numericValues = numericValues;
+            this.objectTags = objectTags;
+            this.objectValues = objectValues;
+            this.nestedValues = nestedValues;
+        }
+    }
+
+    private final LocalSetCursor cursor = new LocalSetCursor();
+
+    private final double[] numericValues = new double[MAX_TAG + 1];
+    private final int[] numericTags = new int[MAX_TAG + 1];
+    private final boolean[] hasNumeric = new boolean[MAX_TAG + 1];
+    private int numericCount;
+
+    private final Object[] objectValues = new Object[MAX_TAG + 1];
+    private final int[] objectTags = new int[MAX_TAG + 1];
+    private final boolean[] hasObject = new boolean[MAX_TAG + 1];
+    private int objectCount;
+
+    private final byte[][] lastRawValues = new byte[MAX_TAG + 1][];
+    private final Object[] lastDecodedValues = new Object[MAX_TAG + 1];
+
+    private final HashMap<Tag, Object> nestedValues = new HashMap<>();
+
+    private boolean checksumFound;
+    private boolean checksumValid;
+    private double frameCenterLatitude;
+    private double frameCenterLongitude;
+
+    /**
+     * Decodes the UAS Datalink Local Set starting at the current position of the buffer.
+     * Values from the previously decoded set are discarded.
+     *
+     * @param buffer The buffer containing the set
+     *
+     * @return true if the set has the UAS Datalink Local Set key and a valid checksum, false otherwise
+     */
+    public boolean decode(ByteBuffer buffer) {
+
+        clearValues();
+        checksumFound = false;
+        checksumValid = false;
+        frameCenterLatitude = 0.0;
+        frameCenterLongitude = 0.0;
+
+        cursor.reset(buffer);
+
+        if (!cursor.hasKey(UAS_LOCAL_SET_KEY)) {
+
+            return false;
+        }
+
+        while (cursor.next()) {
+
+            decodeElement(cursor.getTag());
+        }
+
+        if (cursor.isTruncated()) {
+
+            logger.debug("Truncated UAS Datalink Local Set");
+            return false;
+        }
+
+        return checksumValid;
+    }
+
+    private void decodeElement(int tag) {
+
+        switch (tag) {
+
+            case 0x01: // "Checksum"
+                checksumFound = true;
+                checksumValid = cursor.getValueLength() == 2 && cursor.getChecksum() == cursor.readUnsigned();
+                break;
+
+            case 0x02: // "Precision Time Stamp", "Timestamp for all metadata in this Local Set; used to coordinate with Motion Imagery", "microseconds"
+                if (checkLength(8)) {
+                    // truncate to milliseconds as done by UasDataLinkSet
+                    putNumeric(tag, (cursor.readUnsigned() / 1000L) / 1000.0);
+                }
+                break;
+
+            case 0x41: // "UAS Datalink LS Version Number"
+            case 0x38: // "Platform Ground Speed", "m/s"
+                if (checkLength(1)) {
+                    putNumeric(tag, cursor.readUnsigned());
+                }
+                break;
+
+            case 0x0A: // "Platform Designation", "Model name for the platform"
+            case 0x04: // "Platform Tail Number", "Identifier of platform as posted"
+            case 0x0B: // "Image Source Sensor", "Name of currently active sensor"
+            case 0x0C: // "Image Coordinate System", "Name of the image coordinate system used"
+                putObject(tag, decodeString(tag));
+                break;
+
+            case 0x30: // "Security Local Set", "MISB ST 0102 local let Security Metadata items"
+                nestedValues.putAll(decodeSecuritySet(tag));
+                break;
+
+            case 0x4A: // "Video Moving Target Indicator and Track Metadata", "MISB ST 0903.4 local let VMTI Metadata items"
+                byte[] vmtiData = cursor.copyValue(new byte[cursor.getValueLength()]);
+                nestedValues.putAll(new VmtiLocalSet(vmtiData.length, vmtiData).decode());
+                break;
+
+            case 0x0D: // "Sensor Latitude", "deg"
+                if (checkLength(4)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 180.0, 4294967294.0, 0.0));
+                }
+                break;
+
+            case 0x0E: // "Sensor Longitude", "deg"
+                if (checkLength(4)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 360.0, 4294967294.0, 0.0));
+                }
+                break;
+
+            case 0x0F: // "Sensor True Altitude", "m"
+            case 0x19: // "Frame Center Elevation", "m"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readUnsigned(), 19900.0, 65535.0, -900.0));
+                }
+                break;
+
+            case 0x10: // "Sensor Horizontal Field of View", "deg"
+            case 0x11: // "Sensor Vertical Field of View", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readUnsigned(), 180.0, 65535.0, 0.0));
+                }
+                break;
+
+            case 0x17: // "Frame Center Latitude", "deg"
+                if (checkLength(4)) {
+                    frameCenterLatitude = scale(cursor.readSigned(), 180.0, 4294967294.0, 0.0);
+                    putNumeric(tag, frameCenterLatitude);
+                }
+                break;
+
+            case 0x18: // "Frame Center Longitude", "deg"
+                if (checkLength(4)) {
+                    frameCenterLongitude = scale(cursor.readSigned(), 360.0, 4294967294.0, 0.0);
+                    putNumeric(tag, frameCenterLongitude);
+                }
+                break;
+
+            case 0x1A: // "Offset Corner Latitude Point 1", "deg"
+            case 0x1C: // "Offset Corner Latitude Point 2", "deg"
+            case 0x1E: // "Offset Corner Latitude Point 3", "deg"
+            case 0x20: // "Offset Corner Latitude Point 4", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 0.15, 65534.0, frameCenterLatitude));
+                }
+                break;
+
+            case 0x1B: // "Offset Corner Longitude Point 1", "deg"
+            case 0x1D: // "Offset Corner Longitude Point 2", "deg"
+            case 0x1F: // "Offset Corner Longitude Point 3", "deg"
+            case 0x21: // "Offset Corner Longitude Point 4", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 0.15, 65534.0, frameCenterLongitude));
+                }
+                break;
+
+            case 0x15: // "Slant Range", "m"
+                if (checkLength(4)) {
+                    putNumeric(tag, scale(cursor.readUnsigned(), 5000000.0, 4294967295.0, 0.0));
+                }
+                break;
+
+            // ST0601 defines these as uint32 (0..360 deg). UasDataLinkSet reads them as
+            // signed int, so values of 2^31 and above used to wrap to negative angles
+            case 0x12: // "Sensor Relative Azimuth Angle", "deg"
+            case 0x14: // "Sensor Relative Roll Angle", "deg"
+                if (checkLength(4)) {
+                    putNumeric(tag, scale(cursor.readUnsigned(), 360.0, 4294967295.0, 0.0));
+                }
+                break;
+
+            case 0x13: // "Sensor Relative Elevation Angle", "deg"
+                if (checkLength(4)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 360.0, 4294967295.0, 0.0));
+                }
+                break;
+
+            case 0x05: // "Platform Heading Angle", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readUnsigned(), 360.0, 65535.0, 0.0));
+                }
+                break;
+
+            case 0x06: // "Platform Pitch Angle", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 40.0, 65534.0, 0.0));
+                }
+                break;
+
+            case 0x07: // "Platform Roll Angle", "deg"
+                if (checkLength(2)) {
+                    putNumeric(tag, scale(cursor.readSigned(), 100.0, 65534.0, 0.0));
+                }
+                break;
+
+            default:
+                logger.trace("Unsupported tag: {}", tag);
+                break;
+        }
+    }
+
+    private boolean checkLength(int expectedLength) {
+
+        if (cursor.getValueLength() != expectedLength) {
+
+            logger.debug("Value length [{}] differs from encoding length [{}] for tag: {}",
+                    cursor.getValueLength(), expectedLength, cursor.getTag());
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private static double scale(long value, double localSetRange, double fieldMaxRange, double offset) {
+
+        return (localSetRange / fieldMaxRange) * value + offset;
+    }
+
+    private void clearValues() {
+
+        for (int idx = 0; idx < numericCount; ++idx) {
+
+            hasNumeric[numericTags[idx]] = false;
+        }
+
+        for (int idx = 0; idx < objectCount; ++idx) {
+
+            hasObject[objectTags[idx]] = false;
+        }
+
+        numericCount = 0;
+        objectCount = 0;
+        nestedValues.clear();
+    }
+
+    /**
+     * Stores a numeric value, a tag repeated in the same set keeps its
+     * first position but takes the last value, as with a map
+     */
+    private void putNumeric(int tag, double value) {
+
+        if (!hasNumeric[tag]) {
+
+            hasNumeric[tag] = true;
+            numericTags[numericCount++] = tag;
+        }
+
+        numericValues[tag] = value;
+    }
+
+    private void putObject(int tag, Object value) {
+
+        if (!hasObject[tag]) {
+
+            hasObject[tag] = true;
+            objectTags[objectCount++] = tag;
+        }
+
+        objectValues[tag] = value;
+    }
+
+    /**
+     * Decodes a text value, reusing the previous string if the raw value is unchanged
+     */
+    private String decodeString(int tag) {
+
+        if (!isUnchanged(tag)) {
+
+            lastDecodedValues[tag] = cursor.readString();
+        }
+
+        return (String) lastDecodedValues[tag];
+    }
+
+    /**
+     * Decodes the security set, reusing the previous values if the raw value is unchanged
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Tag, Object> decodeSecuritySet(int tag) {
+
+        if (!isUnchanged(tag)) {
+
+            byte[] securityData = lastRawValues[tag];
+            lastDecodedValues[tag] = new SecurityLocalSet(securityData.length, securityData).decode();
+        }
+
+        return (Map<Tag, Object>) lastDecodedValues[tag];
+    }
+
+    /**
+     * Compares the current element value with the previous value of the same tag,
+     * and keeps a copy of the new value if it changed
+     */
+    private boolean isUnchanged(int tag) {
+
+        byte[] lastRaw = lastRawValues[tag];
+
+        if (null != lastRaw && cursor.valueEquals(lastRaw, lastRaw.length)) {
+
+            return true;
+        }
+
+        lastRawValues[tag] = cursor.copyValue(new byte[cursor.getValueLength()]);
+
+        return false;
+    }
+
+    /**
+     * @return true if the last decoded set contained a checksum element
+     */
+    public boolean hasChecksum() {
+        return checksumFound;
+    }
+
+    /**
+     * @return the number of numeric values in the last decoded set
+     */
+    public int getNumericCount() {
+        return numericCount;
+    }
+
+    /**
+     * @param index Index of the value, in the order it appeared in the set
+     *
+     * @return the local set tag of the numeric value at the given index
+     */
+    public int getNumericTag(int index) {
+        return numericTags[index];
+    }
+
+    /**
+     * @param index Index of the value, in the order it appeared in the set
+     *
+     * @return the numeric value at the given index
+     */
+    public double getNumericValue(int index) {
+        return numericValues[numericTags[index]];
+    }
+
+    /**
+     * @return the number of text values in the last decoded set
+     */
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * @param index Index of the value, in the order it appeared in the set
+     *
+     * @return the local set tag of the text value at the given index
+     */
+    public int getObjectTag(int index) {
+        return objectTags[index];
+    }
+
+    /**
+     * @param index Index of the value, in the order it appeared in the set
+     *
+     * @return the text value at the given index
+     */
+    public Object getObjectValue(int index) {
+        return objectValues[objectTags[index]];
+    }
+
+    /**
+     * @return values decoded from nested security and VMTI sets, keyed by their own tags
+     */
+    public Map<Tag, Object> getNestedValues() {
+        return nestedValues;
+    }
+
+    /**
+     * @param tag A UAS local set tag
+     *
+     * @return true if the last decoded set contained a numeric value for the given tag
+     */
+    public boolean hasNumericValue(int tag) {
+
+        return hasNumeric[tag & MAX_TAG];
+    }
+
+    /**
+     * @return the precision time stamp of the last decoded set, in seconds since epoch,
+     * or 0 if the set didn't contain one
+     */
+    public double getPrecisionTimeStamp() {
+
+        return hasNumericValue(0x02) ? numericValues[0x02] : 0.0;
+    }
+
+    /**
+     * Overrides the precision time stamp of the last decoded set,
+     * used to simulate real-time streams when looping over recorded data
+     *
+     * @param precisionTimeStamp New precision time stamp, in seconds since epoch
+     */
+    public void setPrecisionTimeStamp(double precisionTimeStamp) {
+
+        if (hasNumericValue(0x02)) {
+
+            numericValues[0x02] = precisionTimeStamp;
+        }
+    }
+
+    /**
+     * Copies the values of the last decoded set into compact primitive arrays
+     *
+     * @return the detached values
+     */
+    public Values copyValues() {
+
+        double[] values = new double[numericCount];
+
+        for (int idx = 0; idx < numericCount; ++idx) {
+
+            values[idx] = numericValues[numericTags[idx]];
+        }
+
+        Object[] objects = new Object[objectCount];
+
+        for (int idx = 0; idx < objectCount; ++idx) {
+
+            objects[idx] = objectValues[objectTags[idx]];
+        }
+
+        return new Values(Arrays.copyOf(numericTags, numericCount), values,
+                Arrays.copyOf(objectTags, objectCount), objects,
+                nestedValues.isEmpty() ? Collections.emptyMap() : new HashMap<>(nestedValues));
+    }
+
+    /**
+     * Loads values previously obtained with {@link UasLocalSetDecoder#copyValues()},
+     * as if the corresponding set had just been decoded
+     *
+     * @param values The values to load
+     */
+    public void setValues(Values values) {
+
+        clearValues();
+        checksumFound = true;
+        checksumValid = true;
+
+        for (int idx = 0; idx < values.numericTags.length; ++idx) {
+
+            putNumeric(values.numericTags[idx], values.numericValues[idx]);
+        }
+
+        for (int idx = 0; idx < values.objectTags.length; ++idx) {
+
+            putObject(values.objectTags[idx], values.objectValues[idx]);
+        }
+
+        nestedValues.putAll(values.nestedValues);
+    }
+
+    /**
+     * Loads values from a map in the same form as the one returned by {@link UasDataLinkSet#decode()},
+     * as if the corresponding set had just been decoded. Values of tags that are not part of the
+     * UAS local set are kept as nested values.
+     *
+     * @param valuesMap The values to load
+     */
+    public void setValues(Map<Tag, Object> valuesMap) {
+
+        clearValues();
+        checksumFound = true;
+        checksumValid = true;
+
+        for (Map.Entry<Tag, Object> entry : valuesMap.entrySet()) {
+
+            Tag tag = entry.getKey();
+            Object value = entry.getValue();
+            int tagId = tag.getLocalSetTag() & MAX_TAG;
+
+            if (TAGS[tagId] != tag) {
+
+                nestedValues.put(tag, value);
+
+            } else if (value instanceof Number) {
+
+                putNumeric(tagId, ((Number) value).doubleValue());
+
+            } else {
+
+                putObject(tagId, value);
+            }
+        }
+    }
+
+    /**
+     * @param tag A UAS local set tag
+     *
+     * @return the registered tag object
+     */
+    public static Tag getTag(int tag) {
+        return TAGS[tag & MAX_TAG];
+    }
+
+    /**
+     * Converts the last decoded set to a map in the same form as the one returned
+     * by {@link UasDataLinkSet#decode()}, for listeners that don't support primitive values
+     *
+     * @return a new map of tags to decoded values
+     */
+    public HashMap<Tag, Object> toValuesMap() {
+
+        HashMap<Tag, Object> valuesMap = new HashMap<>();
+
+        for (int idx = 0; idx < numericCount; ++idx) {
+
+            int tag = numericTags[idx];
+            double value = numericValues[tag];
+
+            if (tag == 0x41 || tag == 0x38) {
+
+                valuesMap.put(TAGS[tag], (int) value);
+
+            } else {
+
+                valuesMap.put(TAGS[tag], value);
+            }
+        }
+
+        for (int idx = 0; idx < objectCount; ++idx) {
+
+            valuesMap.put(TAGS[objectTags[idx]], objectValues[objectTags[idx]]);
+        }
+
+        valuesMap.putAll(nestedValues);
+
+        return valuesMap;
+    }
+}
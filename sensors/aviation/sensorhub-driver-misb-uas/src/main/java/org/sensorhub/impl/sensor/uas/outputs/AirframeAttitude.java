@@ -76,29 +76,36 @@ public class AirframeAttitude<UasConfigType extends UasConfig> extends UasOutput
     @Override
     protected void setData(DataBlock dataBlock, TagSet localSet, int localSetTag, Object value) {
 
-        if (localSet == UasDataLinkSet.UAS_LOCAL_SET) {
-            
-            switch (localSetTag) {
-    
-                case 0x02: // "Precision Time Stamp", "Timestamp for all metadata in this Local Set; used to coordinate with Motion Imagery", "microseconds"
-                    dataBlock.setDoubleValue(0, (Double) value);
-                    break;
-    
-                case 0x05: // "Platform Heading Angle", "Aircraft heading angle", "deg"
-                    dataBlock.setDoubleValue(1, (Double) value);
-                    break;
-    
-                case 0x06: // "Platform Pitch Angle", "Aircraft pitch angle", "deg"
-                    dataBlock.setDoubleValue(2, (Double) value);
-                    break;
-    
-                case 0x07: // "Platform Roll Angle", "Platform roll angle", "deg"
-                    dataBlock.setDoubleValue(3, (Double) value);
-                    break;
-    
-                default:
-                    break;
-            }
+        // only numeric values are used by this output
+        if (localSet == UasDataLinkSet.UAS_LOCAL_SET && value instanceof Double) {
+
+            setData(dataBlock, localSetTag, (double) value);
+        }
+    }
+
+    @Override
+    protected void setData(DataBlock dataBlock, int localSetTag, double value) {
+
+        switch (localSetTag) {
+
+            case 0x02: // "Precision Time Stamp", "Timestamp for all metadata in this Local Set; used to coordinate with Motion Imagery", "microseconds"
+                dataBlock.setDoubleValue(0, value);
+                break;
+
+            case 0x05: // "Platform Heading Angle", "Aircraft heading angle", "deg"
+                dataBlock.setDoubleValue(1, value);
+                break;
+
+            case 0x06: // "Platform Pitch Angle", "Aircraft pitch angle", "deg"
+                dataBlock.setDoubleValue(2, value);
+                break;
+
+            case 0x07: // "Platform Roll Angle", "Platform roll angle", "deg"
+                dataBlock.setDoubleValue(3, value);
+                break;
+
+            default:
+                break;
         }
     }
 
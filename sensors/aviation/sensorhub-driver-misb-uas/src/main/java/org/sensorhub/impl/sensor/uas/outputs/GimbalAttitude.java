@@ -76,29 +76,36 @@ public class GimbalAttitude<UasConfigType extends UasConfig> extends UasOutput<U
     @Override
     protected void setData(DataBlock dataBlock, TagSet localSet, int localSetTag, Object value) {
 
-        if (localSet == UasDataLinkSet.UAS_LOCAL_SET) {
-            
-            switch (localSetTag) {
-    
-                case 0x02: // "Precision Time Stamp", "Timestamp for all metadata in this Local Set; used to coordinate with Motion Imagery", "microseconds"
-                    dataBlock.setDoubleValue(0, (Double) value);
-                    break;
-    
-                case 0x12: // "Sensor Relative Azimuth Angle", "Relative rotation angle of sensor to platform longitudinal axis", "deg"
-                    dataBlock.setDoubleValue(1, (Double) value);
-                    break;
-    
-                case 0x13: // "Sensor Relative Elevation Angle", "Relative elevation angle of sensor to platform longitudinal-transverse plane", "deg"
-                    dataBlock.setDoubleValue(2, (Double) value);
-                    break;
-    
-                case 0x14: // "Sensor Relative Roll Angle", "Relative roll angle of sensor to aircraft platform", "deg"
-                    dataBlock.setDoubleValue(3, (Double) value);
-                    break;
-    
-                default:
-                    break;
-            }
+        // only numeric values are used by this output
+        if (localSet == UasDataLinkSet.UAS_LOCAL_SET && value instanceof Double) {
+
+            setData(dataBlock, localSetTag, (double) value);
+        }
+    }
+
+    @Override
+    protected void setData(DataBlock dataBlock, int localSetTag, double value) {
+
+        switch (localSetTag) {
+
+            case 0x02: // "Precision Time Stamp", "Timestamp for all metadata in this Local Set; used to coordinate with Motion Imagery", "microseconds"
+                dataBlock.setDoubleValue(0, value);
+                break;
+
+            case 0x12: // "Sensor Relative Azimuth Angle", "Relative rotation angle of sensor to platform longitudinal axis", "deg"
+                dataBlock.setDoubleValue(1, value);
+                break;
+
+            case 0x13: // "Sensor Relative Elevation Angle", "Relative elevation angle of sensor to platform longitudinal-transverse plane", "deg"
+                dataBlock.setDoubleValue(2, value);
+                break;
+
+            case 0x14: // "Sensor Relative Roll Angle", "Relative roll angle of sensor to aircraft platform", "deg"
+                dataBlock.setDoubleValue(3, value);
+                break;
+
+            default:
+                break;
         }
     }
 
@@ -22,6 +22,7 @@ import org.sensorhub.impl.sensor.uas.common.SyncTime;
 import org.sensorhub.impl.sensor.uas.config.UasConfig;
 import org.sensorhub.impl.sensor.uas.klv.DecodedSetListener;
 import org.sensorhub.impl.sensor.uas.klv.UasDataLinkSet;
+import org.sensorhub.impl.sensor.uas.klv.UasLocalSetDecoder;
 import org.sensorhub.misb.stanag4609.tags.Tag;
 import org.sensorhub.misb.stanag4609.tags.TagRegistry;
 import org.sensorhub.misb.stanag4609.tags.TagSet;
@@ -153,6 +154,84 @@ public abstract class UasOutput<UasConfigType extends UasConfig> extends Abstrac
         
         parentSensor.setStreamSyncTime(syncTime);
 
+        DataBlock dataBlock = startRecord();
+
+        for (Map.Entry<Tag, Object> entry : valuesMap.entrySet()) {
+
+            Tag tag = entry.getKey();
+            int localSetTag = tag.getLocalSetTag();
+            Object value = entry.getValue();
+            setData(dataBlock, tag.getMemberOf(), localSetTag, value);
+        }
+
+        endRecord(dataBlock);
+    }
+
+    @Override
+    public void onSetDecoded(SyncTime syncTime, UasLocalSetDecoder decodedSet) {
+
+        // set to current time in loop mode to simulate a real-time stream
+        if (parentSensor.getConfiguration().connection.loop && decodedSet.hasNumericValue(0x02))
+        {
+            // compute simulated timestamp
+            // the decoder is shared by all outputs so this is only really applied once
+            var simTime = parentSensor.getSimulatedTime();
+            var newPrecisionTimeStamp = simTime.getSimlatedTimeStamp(decodedSet.getPrecisionTimeStamp());
+            decodedSet.setPrecisionTimeStamp(newPrecisionTimeStamp);
+            
+            // also shift synctime so that video timestamps are computed correctly
+            syncTime = new SyncTime(newPrecisionTimeStamp, syncTime.getPresentationTimeStamp());
+        }
+        
+        parentSensor.setStreamSyncTime(syncTime);
+
+        DataBlock dataBlock = startRecord();
+
+        // numeric values first so that nested sets can use the frame center
+        for (int idx = 0; idx < decodedSet.getNumericCount(); ++idx) {
+
+            setData(dataBlock, decodedSet.getNumericTag(idx), decodedSet.getNumericValue(idx));
+        }
+
+        for (int idx = 0; idx < decodedSet.getObjectCount(); ++idx) {
+
+            setData(dataBlock, UasDataLinkSet.UAS_LOCAL_SET, decodedSet.getObjectTag(idx), decodedSet.getObjectValue(idx));
+        }
+
+        if (!decodedSet.getNestedValues().isEmpty()) {
+
+            for (Map.Entry<Tag, Object> entry : decodedSet.getNestedValues().entrySet()) {
+
+                Tag tag = entry.getKey();
+                setData(dataBlock, tag.getMemberOf(), tag.getLocalSetTag(), entry.getValue());
+            }
+        }
+
+        endRecord(dataBlock);
+    }
+
+    /**
+     * Sets the data block field corresponding to a numeric UAS Local Set value.
+     * The default implementation boxes the value and calls
+     * {@link UasOutput#setData(DataBlock, TagSet, int, Object)}, outputs should override it
+     * to write the value directly.
+     *
+     * @param dataBlock   The data block onto which the output values are being mapped
+     * @param localSetTag The UAS local set tag id according to which the value is mapped
+     * @param value       The decoded value
+     */
+    protected void setData(DataBlock dataBlock, int localSetTag, double value) {
+
+        setData(dataBlock, UasDataLinkSet.UAS_LOCAL_SET, localSetTag, value);
+    }
+
+    /**
+     * Gets a data block to hold the next record and updates sampling statistics
+     *
+     * @return the data block to fill
+     */
+    private DataBlock startRecord() {
+
         DataBlock dataBlock;
 
         if (latestRecord == null) {
@@ -177,13 +256,15 @@ public abstract class UasOutput<UasConfigType extends UasConfig> extends Abstrac
 
         ++setCount;
 
-        for (Map.Entry<Tag, Object> entry : valuesMap.entrySet()) {
+        return dataBlock;
+    }
 
-            Tag tag = entry.getKey();
-            int localSetTag = tag.getLocalSetTag();
-            Object value = entry.getValue();
-            setData(dataBlock, tag.getMemberOf(), localSetTag, value);
-        }
+    /**
+     * Publishes a record once all its fields have been set
+     *
+     * @param dataBlock the data block to publish
+     */
+    private void endRecord(DataBlock dataBlock) {
 
         latestRecord = dataBlock;
 
@@ -107,13 +107,23 @@ public class Video<UasConfigType extends UasConfig> extends AbstractSensorOutput
     @Override
     public void onDataBuffer(DataBufferRecord record) {
 
-        executor.execute(() -> {
-            try {
-                processBuffer(record);
-            } catch (Throwable e) {
-                logger.error("Error while decoding MISB Local Set", e);
-            }
-        });
+        // keep pooled buffer until it is processed asynchronously
+        record.retain();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    processBuffer(record);
+                } catch (Throwable e) {
+                    logger.error("Error while decoding MISB Local Set", e);
+                } finally {
+                    record.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            record.release();
+            throw e;
+        }
     }
 
     @Override
@@ -151,35 +161,45 @@ public class Video<UasConfigType extends UasConfig> extends AbstractSensorOutput
         // If synchronization time data is available
         if (null != syncTime) {
 
-            byte[] dataBuffer = record.getDataBuffer();
+            double sampleTime = syncTime.getPrecisionTimeStamp() + (record.getPresentationTimestamp() - syncTime.getPresentationTimeStamp());
 
-            DataBlock dataBlock;
-            if (latestRecord == null) {
+            publishFrame(sampleTime, record.getDataBuffer());
 
-                dataBlock = dataStruct.createDataBlock();
+        } else {
 
-            } else {
+            logger.warn("Synchronization record not yet available from Telemetry, dropping video packet");
+        }
+    }
 
-                dataBlock = latestRecord.renew();
-            }
+    /**
+     * Publishes a video frame whose time has already been computed
+     *
+     * @param sampleTime The frame time, in seconds since epoch
+     * @param dataBuffer The encoded frame data, owned by the published record afterwards
+     */
+    public void publishFrame(double sampleTime, byte[] dataBuffer) {
 
-            double sampleTime = syncTime.getPrecisionTimeStamp() + (record.getPresentationTimestamp() - syncTime.getPresentationTimeStamp());
-            dataBlock.setDoubleValue(0, sampleTime);
-            ++frameCount;
+        DataBlock dataBlock;
+        if (latestRecord == null) {
 
-            // Set underlying video frame data
-            AbstractDataBlock frameData = ((DataBlockMixed) dataBlock).getUnderlyingObject()[1];
-            frameData.setUnderlyingObject(dataBuffer);
+            dataBlock = dataStruct.createDataBlock();
 
-            latestRecord = dataBlock;
+        } else {
 
-            latestRecordTime = System.currentTimeMillis();
+            dataBlock = latestRecord.renew();
+        }
 
-            eventHandler.publish(new DataEvent(latestRecordTime, this, parentSensor.getImagedFoiUID(), dataBlock));
+        dataBlock.setDoubleValue(0, sampleTime);
+        ++frameCount;
 
-        } else {
+        // Set underlying video frame data
+        AbstractDataBlock frameData = ((DataBlockMixed) dataBlock).getUnderlyingObject()[1];
+        frameData.setUnderlyingObject(dataBuffer);
 
-            logger.warn("Synchronization record not yet available from Telemetry, dropping video packet");
-        }
+        latestRecord = dataBlock;
+
+        latestRecordTime = System.currentTimeMillis();
+
+        eventHandler.publish(new DataEvent(latestRecordTime, this, parentSensor.getImagedFoiUID(), dataBlock));
     }
 }
@@ -0,0 +1,281 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.misb.stanag4609.comm;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of recycled byte buffers used to hold packets demuxed from a single
+ * sub stream of the transport stream, along with allocation metrics for that stream.
+ * <p>
+ * Buffers are grouped in power of two size classes so that a buffer released by
+ * a large packet can be reused by any smaller packet. Only a bounded number of
+ * buffers is kept per size class, extra buffers are left to the garbage collector.
+ * <p>
+ * When pooling is disabled, a new exact size buffer is allocated for each packet,
+ * as was always done by the {@link MpegTsProcessor}, but metrics are still collected.
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class DataBufferPool {
+
+    /**
+     * Smallest size class, as a power of 2 (i.e. 256 bytes)
+     */
+    private static final int MIN_SIZE_CLASS = 8;
+
+    /**
+     * Largest size class, as a power of 2 (i.e. 16 MB), larger packets are never pooled
+     */
+    private static final int MAX_SIZE_CLASS = 24;
+
+    /**
+     * Default number of free buffers retained per size class
+     */
+    public static final int DEFAULT_MAX_FREE_BUFFERS = 16;
+
+    /**
+     * Name of the stream, used for reporting only
+     */
+    private final String streamName;
+
+    /**
+     * Flag indicating if buffers are recycled
+     */
+    private final boolean pooled;
+
+    /**
+     * Max number of free buffers retained per size class
+     */
+    private final int maxFreeBuffers;
+
+    /**
+     * Free buffers, one queue per size class
+     */
+    private final ArrayDeque<byte[]>[] freeBuffers;
+
+    /**
+     * Time at which metrics started being collected
+     */
+    private volatile long startTime = System.currentTimeMillis();
+
+    private final AtomicLong packetCount = new AtomicLong();
+    private final AtomicLong packetBytes = new AtomicLong();
+    private final AtomicLong allocationCount = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong buffersInUse = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param streamName Name of the stream the buffers are used for
+     * @param pooled true to recycle buffers, false to allocate a new buffer for each packet
+     * @param maxFreeBuffers Max number of free buffers retained per size class
+     */
+    @SuppressWarnings("unchecked")
+    public DataBufferPool(String streamName, boolean pooled, int maxFreeBuffers) {
+
+        this.streamName = streamName;
+        this.pooled = pooled;
+        this.maxFreeBuffers = maxFreeBuffers;
+        this.freeBuffers = new ArrayDeque[MAX_SIZE_CLASS + 1];
+
+        for (int sizeClass = MIN_SIZE_CLASS; sizeClass <= MAX_SIZE_CLASS; ++sizeClass) {
+
+            freeBuffers[sizeClass] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Acquires a buffer large enough to hold a packet of the given size.
+     * The buffer must be given back with {@link DataBufferPool#release(byte[])}
+     * when pooling is enabled.
+     *
+     * @param size The size of the packet in bytes
+     *
+     * @return a buffer with a length greater or equal to size
+     */
+    public byte[] acquire(int size) {
+
+        packetCount.incrementAndGet();
+        packetBytes.addAndGet(size);
+
+        if (!pooled) {
+
+            return allocate(size);
+        }
+
+        buffersInUse.incrementAndGet();
+
+        int sizeClass = getSizeClass(size);
+
+        if (sizeClass > MAX_SIZE_CLASS) {
+
+            return allocate(size);
+        }
+
+        byte[] buffer;
+
+        synchronized (freeBuffers[sizeClass]) {
+
+            buffer = freeBuffers[sizeClass].poll();
+        }
+
+        if (null == buffer) {
+
+            return allocate(1 << sizeClass);
+        }
+
+        reuseCount.incrementAndGet();
+
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool once it is not referenced anymore
+     *
+     * @param buffer The buffer previously obtained with {@link DataBufferPool#acquire(int)}
+     */
+    public void release(byte[] buffer) {
+
+        if (!pooled) {
+
+            return;
+        }
+
+        buffersInUse.decrementAndGet();
+
+        // only buffers allocated by the pool have an exact power of 2 length
+        int sizeClass = getSizeClass(buffer.length);
+
+        if (sizeClass <= MAX_SIZE_CLASS && buffer.length == 1 << sizeClass) {
+
+            synchronized (freeBuffers[sizeClass]) {
+
+                if (freeBuffers[sizeClass].size() < maxFreeBuffers) {
+
+                    freeBuffers[sizeClass].offer(buffer);
+                }
+            }
+        }
+    }
+
+    private byte[] allocate(int size) {
+
+        allocationCount.incrementAndGet();
+        allocatedBytes.addAndGet(size);
+
+        return new byte[size];
+    }
+
+    private static int getSizeClass(int size) {
+
+        if (size <= 1 << MIN_SIZE_CLASS) {
+
+            return MIN_SIZE_CLASS;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Resets all metrics, but not the pool content
+     */
+    public void resetMetrics() {
+
+        packetCount.set(0);
+        packetBytes.set(0);
+        allocationCount.set(0);
+        allocatedBytes.set(0);
+        reuseCount.set(0);
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the name of the stream served by this pool
+     */
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * @return true if buffers are recycled, false otherwise
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * @return the number of packets handled since metrics were last reset
+     */
+    public long getPacketCount() {
+        return packetCount.get();
+    }
+
+    /**
+     * @return the total size of packets handled since metrics were last reset, in bytes
+     */
+    public long getPacketBytes() {
+        return packetBytes.get();
+    }
+
+    /**
+     * @return the number of buffers allocated since metrics were last reset
+     */
+    public long getAllocationCount() {
+        return allocationCount.get();
+    }
+
+    /**
+     * @return the total size of buffers allocated since metrics were last reset, in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return the number of times a recycled buffer was used since metrics were last reset
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    /**
+     * @return the number of pooled buffers acquired and not released yet
+     */
+    public long getBuffersInUse() {
+        return buffersInUse.get();
+    }
+
+    /**
+     * @return the average allocation rate since metrics were last reset, in bytes/s
+     */
+    public double getAllocationRate() {
+
+        double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+
+        return allocatedBytes.get() / elapsedSeconds;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("%s: %d packets (%d bytes), %d allocations (%d bytes, %.1f KB/s), %d reused, %d in use",
+                streamName, getPacketCount(), getPacketBytes(), getAllocationCount(), getAllocatedBytes(),
+                getAllocationRate() / 1024, getReuseCount(), getBuffersInUse());
+    }
+}
@@ -13,8 +13,18 @@
  ******************************* END LICENSE BLOCK ***************************/
 package org.sensorhub.misb.stanag4609.comm;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A simple data structure to hold data buffers with their timestamp computed from the TransportStream
+ * <p>
+ * When the {@link MpegTsProcessor} is configured to use pooled buffers, the record is a reference
+ * counted view over a recycled buffer that can be larger than the actual data. In this case, listeners
+ * that need to access the data after {@link DataBufferListener#onDataBuffer(DataBufferRecord)} returns
+ * (e.g. to process it asynchronously) must call {@link DataBufferRecord#retain()} before returning,
+ * and {@link DataBufferRecord#release()} once they are done with the data.
  *
  * @author Nick Garay
  * @since Apr. 1, 2020
@@ -31,6 +41,21 @@ public class DataBufferRecord {
      */
     byte[] dataBuffer;
 
+    /**
+     * The length of valid data in the buffer
+     */
+    int dataLength;
+
+    /**
+     * The pool the buffer must be returned to, or null if the buffer is not pooled
+     */
+    DataBufferPool bufferPool;
+
+    /**
+     * Reference count, the buffer is returned to the pool when it drops to 0
+     */
+    final AtomicInteger refCount = new AtomicInteger(1);
+
     /**
      * Constructor
      *
@@ -41,6 +66,23 @@ public class DataBufferRecord {
 
         this.presentationTimeStamp = presentationTimeStamp;
         this.dataBuffer = dataBuffer;
+        this.dataLength = dataBuffer.length;
+    }
+
+    /**
+     * Constructor for records backed by a pooled buffer
+     *
+     * @param presentationTimeStamp  The presentationTimeStamp associated for the data
+     * @param dataBuffer The pooled buffer holding the data
+     * @param dataLength The length of valid data in the buffer
+     * @param bufferPool The pool to return the buffer to when the record is released
+     */
+    public DataBufferRecord(double presentationTimeStamp, byte[] dataBuffer, int dataLength, DataBufferPool bufferPool) {
+
+        this.presentationTimeStamp = presentationTimeStamp;
+        this.dataBuffer = dataBuffer;
+        this.dataLength = dataLength;
+        this.bufferPool = bufferPool;
     }
 
     /**
@@ -53,11 +95,112 @@ public class DataBufferRecord {
     }
 
     /**
-     * Returns the data buffer associated with this data record as a byte array
+     * Returns the data buffer associated with this data record as a byte array.
+     * <p>
+     * If the record is backed by a pooled buffer, a copy of the data is returned so
+     * it can be kept after the record is released. Use {@link DataBufferRecord#getBackingArray()}
+     * or {@link DataBufferRecord#getByteBuffer()} to access the data without copying.
      *
      * @return the data byte array
      */
     public byte[] getDataBuffer() {
+
+        if (null == bufferPool) {
+
+            return dataBuffer;
+        }
+
+        checkNotReleased();
+
+        return Arrays.copyOf(dataBuffer, dataLength);
+    }
+
+    /**
+     * Returns the array holding the data, without copying it.
+     * Only the first {@link DataBufferRecord#getDataLength()} bytes are valid,
+     * and the array must not be accessed after the record is released.
+     *
+     * @return the backing array
+     */
+    public byte[] getBackingArray() {
+
+        checkNotReleased();
+
         return dataBuffer;
     }
+
+    /**
+     * Returns a read-only view of the data, without copying it.
+     * The view must not be accessed after the record is released.
+     *
+     * @return a byte buffer wrapping the data
+     */
+    public ByteBuffer getByteBuffer() {
+
+        checkNotReleased();
+
+        return ByteBuffer.wrap(dataBuffer, 0, dataLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length of the data held by this record
+     *
+     * @return the data length in bytes
+     */
+    public int getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Reports whether the data is held in a pooled buffer
+     *
+     * @return true if the record must be released, false otherwise
+     */
+    public boolean isPooled() {
+        return null != bufferPool;
+    }
+
+    /**
+     * Increments the reference count of the record so that the underlying
+     * buffer is not recycled until a matching call to {@link DataBufferRecord#release()}
+     *
+     * @return this record
+     */
+    public DataBufferRecord retain() {
+
+        if (refCount.getAndIncrement() <= 0) {
+
+            refCount.decrementAndGet();
+
+            throw new IllegalStateException("Data buffer record already released");
+        }
+
+        return this;
+    }
+
+    /**
+     * Decrements the reference count of the record and returns the underlying
+     * buffer to the pool when it reaches zero.
+     */
+    public void release() {
+
+        int count = refCount.decrementAndGet();
+
+        if (count == 0 && null != bufferPool) {
+
+            bufferPool.release(dataBuffer);
+
+        } else if (count < 0) {
+
+            throw new IllegalStateException("Data buffer record already released");
+        }
+    }
+
+    private void checkNotReleased() {
+
+        if (null != bufferPool && refCount.get() <= 0) {
+
+            throw new IllegalStateException("Data buffer record already released");
+        }
+    }
 }
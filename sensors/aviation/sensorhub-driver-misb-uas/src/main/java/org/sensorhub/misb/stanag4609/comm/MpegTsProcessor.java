@@ -74,6 +74,11 @@ import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
  * <p>
  * mpegTsProcessor.processStream();
  * <p>
+ * Optionally, {@link MpegTsProcessor#setPooledBuffers(boolean)} can be called before
+ * processing the stream so that metadata packets are copied into recycled buffers instead of
+ * newly allocated ones. Metadata listeners then receive reference counted records and must follow
+ * the retain/release protocol described in {@link DataBufferRecord}.
+ * <p>
  * ...
  * ...
  * ...
@@ -177,6 +182,16 @@ public class MpegTsProcessor extends Thread {
      * If true, play the video file continuously in a loop
      */
     volatile boolean loop;
+
+    /**
+     * Flag indicating if packets are copied into pooled buffers
+     */
+    private boolean usePooledBuffers = false;
+
+    /**
+     * Buffers and allocation metrics for data packets
+     */
+    private DataBufferPool dataBufferPool;
     
 
     /**
@@ -427,6 +442,45 @@ public class MpegTsProcessor extends Thread {
         this.videoDataBufferListener = videoDataBufferListener;
     }
 
+    /**
+     * Enables or disables the use of pooled buffers for demuxed packets.
+     * Must be called before {@link MpegTsProcessor#processStream()}.
+     * <p>
+     * When enabled, metadata listeners receive records backed by recycled buffers that are returned
+     * to the pool when the listener returns, unless the listener called
+     * {@link DataBufferRecord#retain()}, in which case the buffer is returned on the matching
+     * call to {@link DataBufferRecord#release()}.
+     * <p>
+     * Video packets are never pooled since frames are published as is and may be kept
+     * by consumers (storage, asynchronous listeners) for an unbounded time, without any
+     * notification when they are done with them. Each frame is thus copied only once,
+     * into an exact size buffer that is handed over to the listener.
+     *
+     * @param usePooledBuffers true to use pooled buffers, false to allocate a new buffer for each packet
+     *
+     * @throws IllegalStateException if the stream is already being processed
+     */
+    public void setPooledBuffers(boolean usePooledBuffers) throws IllegalStateException {
+
+        if (isAlive()) {
+
+            throw new IllegalStateException("Buffer mode cannot be changed while processing stream");
+        }
+
+        this.usePooledBuffers = usePooledBuffers;
+    }
+
+    /**
+     * Provides access to the buffers and allocation metrics of the data stream of this
+     * transport stream. Only available after {@link MpegTsProcessor#processStream()} has been called.
+     *
+     * @return the buffer pool used for data packets
+     */
+    public DataBufferPool getDataBufferPool() {
+
+        return dataBufferPool;
+    }
+
     /**
      * Starts the threaded process for demuxing the transport stream
      * Should only be invoked if stream is successfully opened.
@@ -445,6 +499,8 @@ public class MpegTsProcessor extends Thread {
             // Allocate the codec contexts and attempt to open them
             openCodecContext();
 
+            dataBufferPool = new DataBufferPool(streamSource + " data", usePooledBuffers, DataBufferPool.DEFAULT_MAX_FREE_BUFFERS);
+
             start();
 
         } else {
@@ -463,6 +519,7 @@ public class MpegTsProcessor extends Thread {
         do {
             processStreamPackets();
             logger.info("End of MISB TS stream");
+            logger.info("Buffer usage {}", dataBufferPool);
             if (loop) {
                 avformat.av_seek_frame(avFormatContext, 0, 0, avformat.AVSEEK_FLAG_ANY);
             }
@@ -491,10 +548,6 @@ public class MpegTsProcessor extends Thread {
                 // If it is a video or data frame and there is a listener registered
                 if ((avPacket.stream_index() == videoStreamId) && (null != videoDataBufferListener)) {
     
-                    // Process video packet
-                    byte[] dataBuffer = new byte[avPacket.size()];
-                    avPacket.data().get(dataBuffer);
-                                    
                     // if FPS is set, we may have to wait a little
                     if (fps > 0)
                     {
@@ -511,16 +564,12 @@ public class MpegTsProcessor extends Thread {
                     
                     // Pass data buffer to interested listener
                     frameCount++;
-                    videoDataBufferListener.onDataBuffer(new DataBufferRecord(avPacket.pts() * videoStreamTimeBase, dataBuffer));
+                    dispatchVideoPacket(avPacket, videoDataBufferListener);
                     
                 } else if ((avPacket.stream_index() == dataStreamId) && (null != metadataDataBufferListener)) {
     
-                    // Process the data packet
-                    byte[] dataBuffer = new byte[avPacket.size()];
-                    avPacket.data().get(dataBuffer);
-    
                     // Pass data buffer to interested listener
-                    metadataDataBufferListener.onDataBuffer(new DataBufferRecord(avPacket.pts() * dataStreamTimeBase, dataBuffer));
+                    dispatchPacket(avPacket, dataStreamTimeBase, dataBufferPool, metadataDataBufferListener);
                 }
     
                 // clear packet
@@ -537,6 +586,61 @@ public class MpegTsProcessor extends Thread {
         }
     }
 
+    /**
+     * Copies the video packet data out of the native AVPacket into a new exact size buffer
+     * and passes it to the listener, which owns the buffer afterwards.
+     *
+     * @param avPacket The packet to process
+     * @param listener Listener to pass the packet to
+     */
+    private void dispatchVideoPacket(AVPacket avPacket, DataBufferListener listener) {
+
+        int size = avPacket.size();
+
+        byte[] dataBuffer = new byte[size];
+        avPacket.data().position(0).get(dataBuffer, 0, size);
+
+        listener.onDataBuffer(new DataBufferRecord(avPacket.pts() * videoStreamTimeBase, dataBuffer));
+    }
+
+    /**
+     * Copies the packet data out of the native AVPacket into a buffer obtained from the pool
+     * and passes it to the listener.
+     * In pooled mode, the reference held by the processor is released as soon as the listener returns.
+     *
+     * @param avPacket The packet to process
+     * @param timeBase Time base units of the stream the packet belongs to
+     * @param bufferPool Pool to get the buffer from
+     * @param listener Listener to pass the packet to
+     */
+    private void dispatchPacket(AVPacket avPacket, double timeBase, DataBufferPool bufferPool, DataBufferListener listener) {
+
+        int size = avPacket.size();
+
+        byte[] dataBuffer = bufferPool.acquire(size);
+        avPacket.data().position(0).get(dataBuffer, 0, size);
+
+        double timeStamp = avPacket.pts() * timeBase;
+
+        if (bufferPool.isPooled()) {
+
+            DataBufferRecord record = new DataBufferRecord(timeStamp, dataBuffer, size, bufferPool);
+
+            try {
+
+                listener.onDataBuffer(record);
+
+            } finally {
+
+                record.release();
+            }
+
+        } else {
+
+            listener.onDataBuffer(new DataBufferRecord(timeStamp, dataBuffer));
+        }
+    }
+
     /**
      * Closes the codec context and cleans up its associated resources.  This method is invoked
      * by {@link MpegTsProcessor#closeStream()} to ensure cleanup is neat and orderly.
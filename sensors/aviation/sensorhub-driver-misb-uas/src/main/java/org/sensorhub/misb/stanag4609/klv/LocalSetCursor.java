@@ -0,0 +1,372 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.misb.stanag4609.klv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation free cursor walking the elements of a KLV local set directly over a {@link ByteBuffer}.
+ * <p>
+ * The set is expected to start with a 16 bytes universal label key followed by a BER encoded length.
+ * Each element is composed of a BER-OID encoded tag, a BER encoded length and the value bytes.
+ * <p>
+ * The cursor also computes the 16-bit running sum used as checksum by MISB ST 0601 as it
+ * moves through the set, so the checksum can be validated without a second pass over the data.
+ * <p>
+ * The cursor doesn't modify the position or limit of the underlying buffer.
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class LocalSetCursor {
+
+    /**
+     * Number of bytes in universal label keys
+     */
+    public static final int KEY_LENGTH = 16;
+
+    private ByteBuffer buffer;
+    private int setStart;
+    private int setEnd;
+    private int position;
+    private boolean truncated;
+
+    private int tag;
+    private int valueOffset;
+    private int valueLength;
+
+    private int checksum;
+    private int checksumPosition;
+
+    /**
+     * Resets the cursor to the start of the local set contained in the buffer.
+     * The set starts at the current position of the buffer.
+     *
+     * @param buffer The buffer containing the local set
+     *
+     * @return this cursor, positioned before the first element of the set
+     */
+    public LocalSetCursor reset(ByteBuffer buffer) {
+
+        this.buffer = buffer;
+        this.setStart = buffer.position();
+        this.position = setStart + KEY_LENGTH;
+        this.checksum = 0;
+        this.checksumPosition = setStart;
+        this.tag = -1;
+
+        int limit = buffer.limit();
+        int setLength = position < limit ? readBerLength(limit) : -1;
+
+        setEnd = position + setLength;
+        truncated = setLength < 0 || setEnd > limit;
+
+        if (truncated) {
+
+            setEnd = Math.min(position, limit);
+        }
+
+        // first element starts right after the set length
+        valueOffset = position;
+        valueLength = 0;
+
+        return this;
+    }
+
+    /**
+     * Checks whether the universal label key of the set matches the given key
+     *
+     * @param key The 16 bytes key to compare with
+     *
+     * @return true if the keys are identical
+     */
+    public boolean hasKey(byte[] key) {
+
+        if (buffer.limit() - setStart < KEY_LENGTH) {
+
+            return false;
+        }
+
+        for (int idx = 0; idx < KEY_LENGTH; ++idx) {
+
+            if (buffer.get(setStart + idx) != key[idx]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the cursor to the next element of the set
+     *
+     * @return true if an element is available, false when the end of the set is reached
+     * or if the remaining data is not a complete element
+     */
+    public boolean next() {
+
+        position = valueOffset + valueLength;
+
+        if (position >= setEnd) {
+
+            return false;
+        }
+
+        // BER-OID encoded tag
+        int tagValue = 0;
+        int b;
+
+        do {
+
+            if (position >= setEnd || tagValue > (Integer.MAX_VALUE >> 7)) {
+
+                truncated = true;
+                return false;
+            }
+
+            b = buffer.get(position++);
+            tagValue = (tagValue << 7) | (b & 0x7F);
+
+        } while ((b & 0x80) != 0);
+
+        int length = position < setEnd ? readBerLength(setEnd) : -1;
+
+        if (length < 0 || position + length > setEnd) {
+
+            truncated = true;
+            return false;
+        }
+
+        tag = tagValue;
+        valueOffset = position;
+        valueLength = length;
+
+        // accumulate checksum as we go so data is only read once
+        updateChecksum(valueOffset);
+
+        return true;
+    }
+
+    /**
+     * Reads a BER short or long form length at the current position
+     *
+     * @return the decoded length or -1 if it is truncated or too large
+     */
+    private int readBerLength(int limit) {
+
+        int b = buffer.get(position++) & 0xFF;
+        int length;
+
+        if (b < 0x80) {
+
+            length = b;
+
+        } else {
+
+            int numBytes = b & 0x7F;
+
+            if (numBytes > 4 || position + numBytes > limit) {
+
+                return -1;
+            }
+
+            length = 0;
+
+            for (int count = 0; count < numBytes; ++count) {
+
+                length = (length << 8) | (buffer.get(position++) & 0xFF);
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Adds bytes up to the given absolute offset to the running checksum
+     */
+    private void updateChecksum(int end) {
+
+        int sum = checksum;
+
+        for (int idx = checksumPosition; idx < end; ++idx) {
+
+            sum += (buffer.get(idx) & 0xFF) << (((idx - setStart) & 1) == 0 ? 8 : 0);
+        }
+
+        checksum = sum;
+        checksumPosition = end;
+    }
+
+    /**
+     * Returns the 16-bit running sum, as defined by MISB ST 0601, of all bytes
+     * from the start of the set key up to (but excluding) the value of the current element.
+     *
+     * @return the checksum value
+     */
+    public int getChecksum() {
+
+        updateChecksum(valueOffset);
+
+        return checksum & 0xFFFF;
+    }
+
+    /**
+     * @return true if the set or one of its elements was cut short
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the local set tag of the current element
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the absolute offset of the current element value in the buffer
+     */
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    /**
+     * @return the length of the current element value in bytes
+     */
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * Reads the value of the current element as a big endian unsigned integer.
+     * Only the last 8 bytes are taken into account for longer values.
+     *
+     * @return the decoded value
+     */
+    public long readUnsigned() {
+
+        long value = 0;
+        int end = valueOffset + valueLength;
+
+        for (int idx = valueOffset; idx < end; ++idx) {
+
+            value = (value << 8) | (buffer.get(idx) & 0xFF);
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads the value of the current element as a big endian two's complement signed integer.
+     * Only the last 8 bytes are taken into account for longer values.
+     *
+     * @return the decoded value
+     */
+    public long readSigned() {
+
+        if (valueLength == 0) {
+
+            return 0;
+        }
+
+        long value = buffer.get(valueOffset);
+        int end = valueOffset + valueLength;
+
+        for (int idx = valueOffset + 1; idx < end; ++idx) {
+
+            value = (value << 8) | (buffer.get(idx) & 0xFF);
+        }
+
+        return value;
+    }
+
+    /**
+     * Decodes the value of the current element as a UTF-8 string.
+     * This allocates a new string, use {@link LocalSetCursor#valueEquals(byte[], int)} to avoid
+     * decoding a value that hasn't changed.
+     *
+     * @return the decoded string
+     */
+    public String readString() {
+
+        return new String(copyValue(new byte[valueLength]), 0, valueLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the value of the current element into the given array
+     *
+     * @param dest Destination array, must be at least as long as the value
+     *
+     * @return the destination array
+     */
+    public byte[] copyValue(byte[] dest) {
+
+        for (int idx = 0; idx < valueLength; ++idx) {
+
+            dest[idx] = buffer.get(valueOffset + idx);
+        }
+
+        return dest;
+    }
+
+    /**
+     * Compares the value of the current element to the given bytes
+     *
+     * @param data Bytes to compare with
+     * @param length Number of valid bytes in data
+     *
+     * @return true if the value is identical to the given bytes
+     */
+    public boolean valueEquals(byte[] data, int length) {
+
+        if (null == data || length != valueLength) {
+
+            return false;
+        }
+
+        for (int idx = 0; idx < length; ++idx) {
+
+            if (data[idx] != buffer.get(valueOffset + idx)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a key given as a string of hexadecimal bytes separated by spaces
+     * (e.g. the designator of a {@link org.sensorhub.misb.stanag4609.tags.TagSet})
+     *
+     * @param designator The key as a string
+     *
+     * @return the key as a byte array
+     */
+    public static byte[] parseKey(String designator) {
+
+        String[] hexBytes = designator.trim().split("\\s+");
+        byte[] key = new byte[hexBytes.length];
+
+        for (int idx = 0; idx < hexBytes.length; ++idx) {
+
+            key[idx] = (byte) Integer.parseInt(hexBytes[idx], 16);
+        }
+
+        return key;
+    }
+}
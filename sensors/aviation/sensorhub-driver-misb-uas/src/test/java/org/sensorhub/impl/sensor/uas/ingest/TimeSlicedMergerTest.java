@@ -0,0 +1,215 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.ingest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test suite for {@link TimeSlicedMerger}
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class TimeSlicedMergerTest {
+
+    private final List<Double> publishedTimes = Collections.synchronizedList(new ArrayList<>());
+
+    private class TestRecord extends TimeSlicedMerger.Record {
+
+        TestRecord(double time, long size) {
+
+            super(time, size);
+        }
+
+        @Override
+        protected void publish() {
+
+            publishedTimes.add(getTime());
+        }
+    }
+
+    /**
+     * Starts a thread producing records at a fixed period
+     */
+    private Thread startSource(TimeSlicedMerger merger, double startTime, double nextStartTime, int numRecords, double period) {
+
+        TimeSlicedMerger.Source source = merger.openSource(startTime, nextStartTime);
+
+        Thread thread = new Thread(() -> {
+
+            for (int idx = 0; idx < numRecords; ++idx) {
+
+                source.add(new TestRecord(startTime + idx * period, 1000));
+            }
+
+            source.close();
+        });
+
+        thread.start();
+
+        return thread;
+    }
+
+    private void assertTimeOrdered() {
+
+        for (int idx = 1; idx < publishedTimes.size(); ++idx) {
+
+            assertTrue(publishedTimes.get(idx - 1) <= publishedTimes.get(idx));
+        }
+    }
+
+    @Test
+    public void testOverlappingSources() throws InterruptedException {
+
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, Long.MAX_VALUE);
+
+        Thread source1 = startSource(merger, 1000.0, 1000.5, 500, 0.1);
+        Thread source2 = startSource(merger, 1000.5, 1010.0, 500, 0.1);
+        Thread source3 = startSource(merger, 1010.0, Double.POSITIVE_INFINITY, 500, 0.1);
+
+        merger.run();
+
+        source1.join();
+        source2.join();
+        source3.join();
+
+        assertEquals(1500, publishedTimes.size());
+        assertEquals(1500, merger.getPublishedCount());
+        assertEquals(0, merger.getBufferedBytes());
+        assertTimeOrdered();
+    }
+
+    @Test
+    public void testBoundedBuffer() throws InterruptedException {
+
+        // buffer can only hold 10 records
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, 10000);
+
+        // later sources must wait for the first one
+        Thread source1 = startSource(merger, 0.0, 100.0, 1000, 0.1);
+        Thread source2 = startSource(merger, 100.0, 200.0, 1000, 0.1);
+        Thread source3 = startSource(merger, 200.0, Double.POSITIVE_INFINITY, 1000, 0.1);
+
+        merger.run();
+
+        source1.join();
+        source2.join();
+        source3.join();
+
+        assertEquals(3000, publishedTimes.size());
+        assertTimeOrdered();
+    }
+
+    @Test
+    public void testPendingSourceHoldsSlices() throws InterruptedException {
+
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, Long.MAX_VALUE);
+
+        Thread mergerThread = new Thread(() -> {
+            try {
+                merger.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        mergerThread.start();
+
+        // first source is done but second one hasn't started yet
+        startSource(merger, 0.0, 5.0, 100, 0.1).join();
+        Thread.sleep(100);
+        assertEquals(50, publishedTimes.size());
+
+        startSource(merger, 5.0, Double.POSITIVE_INFINITY, 10, 0.1).join();
+        mergerThread.join(5000);
+
+        assertFalse(mergerThread.isAlive());
+        assertEquals(110, publishedTimes.size());
+        assertTimeOrdered();
+    }
+
+    @Test
+    public void testLateRecords() throws InterruptedException {
+
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, Long.MAX_VALUE);
+        TimeSlicedMerger.Source source = merger.openSource(0.0, Double.POSITIVE_INFINITY);
+
+        source.add(new TestRecord(0.5, 10));
+        source.add(new TestRecord(2.5, 10));
+        source.add(new TestRecord(1.5, 10));
+        source.close();
+
+        merger.run();
+
+        assertEquals(3, publishedTimes.size());
+        assertEquals(0.5, publishedTimes.get(0), 0.0);
+        assertEquals(1.5, publishedTimes.get(1), 0.0);
+        assertEquals(2.5, publishedTimes.get(2), 0.0);
+    }
+
+    @Test
+    public void testAbort() throws InterruptedException {
+
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, 1000);
+        TimeSlicedMerger.Source source1 = merger.openSource(0.0, 0.0);
+        TimeSlicedMerger.Source source2 = merger.openSource(0.0, Double.POSITIVE_INFINITY);
+        source1.add(new TestRecord(0.0, 1000));
+
+        // source is blocked since buffer is full and it's ahead of the other source
+        Thread blockedSource = new Thread(() -> {
+            source2.add(new TestRecord(10.0, 1000));
+            source2.add(new TestRecord(11.0, 1000));
+        });
+        blockedSource.start();
+        blockedSource.join(100);
+        assertTrue(blockedSource.isAlive());
+
+        merger.abort();
+        blockedSource.join(5000);
+        assertFalse(blockedSource.isAlive());
+
+        // aborted merger returns immediately
+        merger.run();
+        assertTrue(publishedTimes.isEmpty());
+    }
+
+    @Test
+    public void testAbortWhilePublishing() throws InterruptedException {
+
+        TimeSlicedMerger merger = new TimeSlicedMerger(1.0, Long.MAX_VALUE);
+        TimeSlicedMerger.Source source = merger.openSource(0.0, Double.POSITIVE_INFINITY);
+
+        // abort while the slice is being published
+        source.add(new TestRecord(0.5, 1000) {
+            @Override
+            protected void publish() {
+                super.publish();
+                merger.abort();
+            }
+        });
+        source.add(new TestRecord(0.6, 1000));
+        source.add(new TestRecord(5.0, 1000));
+        source.close();
+
+        merger.run();
+
+        assertEquals(2, publishedTimes.size());
+        assertEquals(0, merger.getBufferedBytes());
+    }
+}
@@ -0,0 +1,70 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.klv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a full UAS Datalink Local Set with {@link UasDataLinkSet} vs. {@link UasLocalSetDecoder}.
+ * Run with 'gradle :sensorhub-driver-misb-uas:jmh'
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UasLocalSetDecoderBenchmark {
+
+    private final byte[] data = UasLocalSetDecoderTest.DATA;
+
+    private UasLocalSetDecoder decoder;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+
+        decoder = new UasLocalSetDecoder();
+        buffer = ByteBuffer.wrap(data);
+    }
+
+    @Benchmark
+    public Object decodeDataLinkSet() {
+
+        UasDataLinkSet dataLinkSet = new UasDataLinkSet(data.length, data);
+
+        return dataLinkSet.validateChecksum() ? dataLinkSet.decode() : null;
+    }
+
+    @Benchmark
+    public double decodeLocalSet() {
+
+        return decoder.decode(buffer) ? decoder.getNumericValue(0) : 0.0;
+    }
+}
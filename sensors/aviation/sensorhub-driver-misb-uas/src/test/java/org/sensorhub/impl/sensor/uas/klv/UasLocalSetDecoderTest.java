@@ -0,0 +1,294 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+ The contents of this file are subject to the Mozilla Public License, v. 2.0.
+ If a copy of the MPL was not distributed with this file, You can obtain one
+ at http://mozilla.org/MPL/2.0/.
+
+ Software distributed under the License is distributed on an "AS IS" basis,
+ WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ for the specific language governing rights and limitations under the License.
+
+ Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+ ******************************* END LICENSE BLOCK ***************************/
+package org.sensorhub.impl.sensor.uas.klv;
+
+import org.sensorhub.misb.stanag4609.tags.Tag;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test suite for {@link UasLocalSetDecoder}
+ *
+ * @author Alex Robin
+ * @since Oct. 16, 2026
+ */
+public class UasLocalSetDecoderTest {
+
+    static final byte[] DATA =
+            {
+                    // UAS DataLink Universal Label
+                    (byte) 0x06, (byte) 0x0E, (byte) 0x2B, (byte) 0x34, (byte) 0x02, (byte) 0x0B, (byte) 0x01, (byte) 0x01,
+                    (byte) 0x0E, (byte) 0x01, (byte) 0x03, (byte) 0x01, (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                    // BER Encoded Length Long Form --> 225 Bytes of data (given by 0xE1)
+                    (byte) 0x82, (byte) 0x00, (byte) 0xE1,
+                    // Actual KLV Encoded data
+                    (byte) 0x02, (byte) 0x08, (byte) 0x00, (byte) 0x05, (byte) 0x85,
+                    (byte) 0x02, (byte) 0xFD, (byte) 0xBD, (byte) 0x2A, (byte) 0x6E, (byte) 0x41, (byte) 0x01, (byte) 0x03,
+                    (byte) 0x0A, (byte) 0x1D, (byte) 0x41, (byte) 0x65, (byte) 0x72, (byte) 0x6F, (byte) 0x56, (byte) 0x69,
+                    (byte) 0x72, (byte) 0x6F, (byte) 0x6E, (byte) 0x6D, (byte) 0x65, (byte) 0x6E, (byte) 0x74, (byte) 0x20,
+                    (byte) 0x53, (byte) 0x55, (byte) 0x41, (byte) 0x56, (byte) 0x20, (byte) 0x50, (byte) 0x75, (byte) 0x6D,
+                    (byte) 0x61, (byte) 0x41, (byte) 0x45, (byte) 0x20, (byte) 0x44, (byte) 0x44, (byte) 0x4C, (byte) 0x30,
+                    (byte) 0x23, (byte) 0x01, (byte) 0x01, (byte) 0x01, (byte) 0x02, (byte) 0x01, (byte) 0x01, (byte) 0x03,
+                    (byte) 0x04, (byte) 0x2F, (byte) 0x2F, (byte) 0x55, (byte) 0x53, (byte) 0x05, (byte) 0x06, (byte) 0x2F,
+                    (byte) 0x2F, (byte) 0x46, (byte) 0x4F, (byte) 0x55, (byte) 0x4F, (byte) 0x06, (byte) 0x02, (byte) 0x55,
+                    (byte) 0x53, (byte) 0x13, (byte) 0x01, (byte) 0x01, (byte) 0x14, (byte) 0x02, (byte) 0x00, (byte) 0x00,
+                    (byte) 0x16, (byte) 0x02, (byte) 0x00, (byte) 0x05, (byte) 0x04, (byte) 0x07, (byte) 0x50, (byte) 0x41,
+                    (byte) 0x20, (byte) 0x20, (byte) 0x20, (byte) 0x20, (byte) 0x30, (byte) 0x0D, (byte) 0x04, (byte) 0x37,
+                    (byte) 0x89, (byte) 0x15, (byte) 0xC7, (byte) 0x0E, (byte) 0x04, (byte) 0xC3, (byte) 0x2E, (byte) 0x31,
+                    (byte) 0x77, (byte) 0x0F, (byte) 0x02, (byte) 0x11, (byte) 0x4D, (byte) 0x10, (byte) 0x02, (byte) 0x2A,
+                    (byte) 0x10, (byte) 0x11, (byte) 0x02, (byte) 0x2A, (byte) 0x10, (byte) 0x17, (byte) 0x04, (byte) 0x00,
+                    (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x18, (byte) 0x04, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                    (byte) 0x00, (byte) 0x19, (byte) 0x02, (byte) 0x0B, (byte) 0x97, (byte) 0x1A, (byte) 0x02, (byte) 0x00,
+                    (byte) 0x00, (byte) 0x1B, (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x1C, (byte) 0x02, (byte) 0x00,
+                    (byte) 0x00, (byte) 0x1D, (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x1E, (byte) 0x02, (byte) 0x40,
+                    (byte) 0x93, (byte) 0x1F, (byte) 0x02, (byte) 0x80, (byte) 0x00, (byte) 0x20, (byte) 0x02, (byte) 0x3C,
+                    (byte) 0x65, (byte) 0x21, (byte) 0x02, (byte) 0x80, (byte) 0x00, (byte) 0x0B, (byte) 0x02, (byte) 0x45,
+                    (byte) 0x4F, (byte) 0x0C, (byte) 0x0E, (byte) 0x47, (byte) 0x65, (byte) 0x6F, (byte) 0x64, (byte) 0x65,
+                    (byte) 0x74, (byte) 0x69, (byte) 0x63, (byte) 0x20, (byte) 0x57, (byte) 0x47, (byte) 0x53, (byte) 0x38,
+                    (byte) 0x34, (byte) 0x15, (byte) 0x04, (byte) 0x00, (byte) 0x83, (byte) 0x0F, (byte) 0x14, (byte) 0x12,
+                    (byte) 0x04, (byte) 0x17, (byte) 0x63, (byte) 0x09, (byte) 0x84, (byte) 0x13, (byte) 0x04, (byte) 0x04,
+                    (byte) 0x51, (byte) 0x9E, (byte) 0xBE, (byte) 0x14, (byte) 0x04, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                    (byte) 0x00, (byte) 0x05, (byte) 0x02, (byte) 0x38, (byte) 0x4C, (byte) 0x06, (byte) 0x02, (byte) 0x10,
+                    (byte) 0x16, (byte) 0x07, (byte) 0x02, (byte) 0x1F, (byte) 0xDB, (byte) 0x38, (byte) 0x01, (byte) 0x0B,
+                    (byte) 0x01, (byte) 0x02, (byte) 0xBD, (byte) 0xA3
+            };
+
+    /**
+     * Builds a set with the UAS local set key from the given elements and appends a valid checksum
+     */
+    private static byte[] buildSet(byte[] elements) {
+
+        // BER long form length on 1 or 2 bytes
+        int valueLength = elements.length + 4;
+        int lengthSize = valueLength < 256 ? 2 : 3;
+
+        byte[] set = new byte[16 + lengthSize + valueLength];
+        System.arraycopy(DATA, 0, set, 0, 16);
+        if (lengthSize == 2) {
+            set[16] = (byte) 0x81;
+            set[17] = (byte) valueLength;
+        } else {
+            set[16] = (byte) 0x82;
+            set[17] = (byte) (valueLength >> 8);
+            set[18] = (byte) valueLength;
+        }
+        System.arraycopy(elements, 0, set, 16 + lengthSize, elements.length);
+
+        int checksumTag = 16 + lengthSize + elements.length;
+        set[checksumTag] = 0x01;
+        set[checksumTag + 1] = 0x02;
+
+        short checksum = 0;
+        for (int idx = 0; idx < set.length - 2; ++idx) {
+            checksum += (set[idx] & 0xFF) << (8 * ((idx + 1) % 2));
+        }
+
+        set[set.length - 2] = (byte) (checksum >> 8);
+        set[set.length - 1] = (byte) checksum;
+
+        return set;
+    }
+
+    @Test
+    public void testDecodeSameAsUasDataLinkSet() {
+
+        HashMap<Tag, Object> expectedValues = new UasDataLinkSet(DATA.length, DATA).decode();
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(DATA)));
+        assertTrue(decoder.hasChecksum());
+
+        HashMap<Tag, Object> values = decoder.toValuesMap();
+        assertEquals(expectedValues.keySet(), values.keySet());
+
+        for (Map.Entry<Tag, Object> entry : expectedValues.entrySet()) {
+
+            Object expected = entry.getValue();
+            Object actual = values.get(entry.getKey());
+
+            if (expected instanceof Double) {
+                assertEquals(entry.getKey().getName(), (Double) expected, (Double) actual, 1e-9);
+            } else {
+                assertEquals(entry.getKey().getName(), expected, actual);
+            }
+        }
+
+        assertEquals(1553622777014L / 1000.0, decoder.getPrecisionTimeStamp(), 1e-12);
+    }
+
+    @Test
+    public void testDecoderReuse() {
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(DATA)));
+        int numericCount = decoder.getNumericCount();
+        Object designation = decoder.getObjectValue(0);
+
+        // decode from an offset in a larger buffer
+        byte[] buffer = new byte[DATA.length + 20];
+        System.arraycopy(DATA, 0, buffer, 10, DATA.length);
+        assertTrue(decoder.decode(ByteBuffer.wrap(buffer, 10, DATA.length)));
+        assertEquals(numericCount, decoder.getNumericCount());
+
+        // unchanged strings are not decoded again
+        assertSame(designation, decoder.getObjectValue(0));
+    }
+
+    @Test
+    public void testCopyValues() {
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(DATA)));
+        HashMap<Tag, Object> expectedValues = decoder.toValuesMap();
+        UasLocalSetDecoder.Values values = decoder.copyValues();
+
+        // detached values are not affected by the next decoded set
+        byte[] otherSet = buildSet(new byte[] {0x05, 0x02, 0x71, (byte) 0xC2});
+        assertTrue(decoder.decode(ByteBuffer.wrap(otherSet)));
+
+        UasLocalSetDecoder replayDecoder = new UasLocalSetDecoder();
+        replayDecoder.setValues(values);
+        assertEquals(expectedValues, replayDecoder.toValuesMap());
+        assertEquals(decoder.getPrecisionTimeStamp(), 0.0, 0.0);
+        assertEquals(1553622777014L / 1000.0, replayDecoder.getPrecisionTimeStamp(), 1e-12);
+    }
+
+    @Test
+    public void testSetValuesFromMap() {
+
+        HashMap<Tag, Object> expectedValues = new UasDataLinkSet(DATA.length, DATA).decode();
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        decoder.setValues(expectedValues);
+
+        assertEquals(expectedValues, decoder.toValuesMap());
+        assertEquals(1553622777014L / 1000.0, decoder.getPrecisionTimeStamp(), 1e-12);
+        assertTrue(decoder.hasNumericValue(0x05));
+    }
+
+    @Test
+    public void testInvalidChecksum() {
+
+        byte[] data = Arrays.copyOf(DATA, DATA.length);
+        data[30] ^= 0x01;
+
+        assertFalse(new UasDataLinkSet(data.length, data).validateChecksum());
+        assertFalse(new UasLocalSetDecoder().decode(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void testTruncatedSet() {
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+
+        for (int length = 0; length < DATA.length; length += 7) {
+
+            assertFalse(decoder.decode(ByteBuffer.wrap(DATA, 0, length)));
+        }
+    }
+
+    @Test
+    public void testWrongKey() {
+
+        byte[] data = Arrays.copyOf(DATA, DATA.length);
+        data[5] = 0x00;
+
+        assertFalse(new UasLocalSetDecoder().decode(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void testMultiByteTagsAreSkipped() {
+
+        byte[] set = buildSet(new byte[] {
+                // "Platform Heading Angle"
+                0x05, 0x02, (byte) 0x71, (byte) 0xC2,
+                // tag 138 encoded as BER-OID, with BER long form length
+                (byte) 0x81, 0x0A, (byte) 0x81, 0x03, 0x01, 0x02, 0x03,
+                // "Platform Pitch Angle"
+                0x06, 0x02, (byte) 0xFD, 0x3D
+        });
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(set)));
+
+        assertEquals(2, decoder.getNumericCount());
+        assertEquals(0x05, decoder.getNumericTag(0));
+        assertEquals(159.974, decoder.getNumericValue(0), 1e-3);
+        assertEquals(0x06, decoder.getNumericTag(1));
+        assertEquals(-0.4315, decoder.getNumericValue(1), 1e-4);
+    }
+
+    @Test
+    public void testRepeatedTags() {
+
+        // malformed set repeating the same tag more times than there are tags
+        byte[] elements = new byte[4 * 300];
+        for (int idx = 0; idx < 300; ++idx) {
+            elements[4 * idx] = 0x05;
+            elements[4 * idx + 1] = 0x02;
+            elements[4 * idx + 2] = (byte) idx;
+            elements[4 * idx + 3] = 0x00;
+        }
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(buildSet(elements))));
+
+        // last value wins
+        assertEquals(1, decoder.getNumericCount());
+        assertEquals(0x05, decoder.getNumericTag(0));
+        assertEquals(((299 & 0xFF) << 8) * 360.0 / 65535.0, decoder.getNumericValue(0), 1e-9);
+
+        // decoder is still usable for valid sets
+        assertTrue(decoder.decode(ByteBuffer.wrap(DATA)));
+        assertEquals(new UasDataLinkSet(DATA.length, DATA).decode().size(), decoder.toValuesMap().size());
+    }
+
+    @Test
+    public void testRelativeAnglesAreUnsigned() {
+
+        byte[] set = buildSet(new byte[] {
+                // "Sensor Relative Azimuth Angle" = 0xC0000000
+                0x12, 0x04, (byte) 0xC0, 0x00, 0x00, 0x00,
+                // "Sensor Relative Roll Angle" = 0xFFFFFFFF
+                0x14, 0x04, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF
+        });
+
+        UasLocalSetDecoder decoder = new UasLocalSetDecoder();
+        assertTrue(decoder.decode(ByteBuffer.wrap(set)));
+
+        // values above 2^31 are decoded as uint32 as per ST0601, not wrapped to negative angles
+        assertEquals(2, decoder.getNumericCount());
+        assertEquals(0x12, decoder.getNumericTag(0));
+        assertEquals(0xC0000000L * 360.0 / 4294967295.0, decoder.getNumericValue(0), 1e-9);
+        assertEquals(0x14, decoder.getNumericTag(1));
+        assertEquals(360.0, decoder.getNumericValue(1), 1e-9);
+
+        // map based decoder still reads them as signed
+        HashMap<Tag, Object> legacyValues = new UasDataLinkSet(set.length, set).decode();
+        int numAngles = 0;
+        for (Map.Entry<Tag, Object> entry : legacyValues.entrySet()) {
+            if (entry.getKey().getName().startsWith("Sensor Relative")) {
+                assertTrue(entry.getKey().getName(), (Double) entry.getValue() < 0.0);
+                numAngles++;
+            }
+        }
+        assertEquals(2, numAngles);
+    }
+}
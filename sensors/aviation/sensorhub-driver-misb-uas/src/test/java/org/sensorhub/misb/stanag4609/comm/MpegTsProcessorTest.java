@@ -305,4 +305,59 @@ public class MpegTsProcessorTest {
             mpegTsProcessor.closeStream();
         }
     }
+
+    @Test
+    public void testStreamProcessingPooledBuffers() throws InterruptedException {
+
+        MpegTsProcessor mpegTsProcessor = new MpegTsProcessor(TEST_MPEGTS_FILE);
+
+        mpegTsProcessor.openStream();
+
+        mpegTsProcessor.queryEmbeddedStreams();
+
+        mpegTsProcessor.setPooledBuffers(true);
+
+        List<DataBufferRecord> retainedRecords = new ArrayList<>();
+
+        mpegTsProcessor.setVideoDataBufferListener(dataBufferRecord -> {
+
+            // video frames are published as is, so they must not be copied again
+            assertFalse(dataBufferRecord.isPooled());
+            assertSame(dataBufferRecord.getBackingArray(), dataBufferRecord.getDataBuffer());
+            assertEquals(dataBufferRecord.getDataLength(), dataBufferRecord.getDataBuffer().length);
+        });
+
+        mpegTsProcessor.setMetaDataDataBufferListener(dataBufferRecord -> {
+
+            // keep a few records to check they are not recycled until released
+            if (retainedRecords.size() < 5) {
+
+                retainedRecords.add(dataBufferRecord.retain());
+            }
+        });
+
+        mpegTsProcessor.processStream();
+
+        mpegTsProcessor.join();
+
+        DataBufferPool dataPool = mpegTsProcessor.getDataBufferPool();
+
+        assertTrue(dataPool.isPooled());
+        assertTrue(dataPool.getStreamName().startsWith(TEST_MPEGTS_FILE));
+        assertTrue(dataPool.getPacketCount() > 0);
+        assertTrue(dataPool.getReuseCount() > 0);
+        assertTrue(dataPool.getAllocationCount() < dataPool.getPacketCount());
+
+        assertEquals(retainedRecords.size(), dataPool.getBuffersInUse());
+
+        for (DataBufferRecord dataBufferRecord : retainedRecords) {
+
+            assertTrue(dataBufferRecord.getDataLength() > 0);
+            dataBufferRecord.release();
+        }
+
+        assertEquals(0, dataPool.getBuffersInUse());
+
+        mpegTsProcessor.closeStream();
+    }
 }
@@ -65,6 +65,13 @@ public class AttitudeEulerOutput extends MavlinkOutput
     }
     
     
+    @Override
+    protected int[] getMessageIds()
+    {
+        return new int[] { msg_attitude.MAVLINK_MSG_ID_ATTITUDE };
+    }
+    
+    
     protected void handleMessage(long msgTime, MAVLinkMessage m)
     {
         DataBlock dataBlock = null;
@@ -66,6 +66,13 @@ public class AttitudeQuatOutput extends MavlinkOutput
     }
     
     
+    @Override
+    protected int[] getMessageIds()
+    {
+        return new int[] { msg_attitude_quaternion.MAVLINK_MSG_ID_ATTITUDE_QUATERNION };
+    }
+    
+    
     protected void handleMessage(long msgTime, MAVLinkMessage m)
     {
         DataBlock dataBlock = null;
@@ -59,6 +59,13 @@ public class BatteryStatusOutput extends MavlinkOutput
     }
     
     
+    @Override
+    protected int[] getMessageIds()
+    {
+        return new int[] { msg_battery_status.MAVLINK_MSG_ID_BATTERY_STATUS };
+    }
+    
+    
     protected void handleMessage(long msgTime, MAVLinkMessage m)
     {
         DataBlock dataBlock = null;
@@ -66,6 +66,13 @@ public class GimbalEulerOutput extends MavlinkOutput
     }
     
     
+    @Override
+    protected int[] getMessageIds()
+    {
+        return new int[] { msg_mount_status.MAVLINK_MSG_ID_MOUNT_STATUS };
+    }
+    
+    
     protected void handleMessage(long msgTime, MAVLinkMessage m)
     {
         DataBlock dataBlock = null;
@@ -64,6 +64,13 @@ public class GlobalPositionOutput extends MavlinkOutput
     }
     
     
+    @Override
+    protected int[] getMessageIds()
+    {
+        return new int[] { msg_global_position_int.MAVLINK_MSG_ID_GLOBAL_POSITION_INT };
+    }
+    
+    
     protected void handleMessage(long msgTime, MAVLinkMessage m)
     {
         DataBlock dataBlock = null;
@@ -113,7 +113,7 @@ public class MavlinkCameraControl extends MavlinkControlInput
             {
                 case MOUNT_CONTROL:
                     cmd = new msg_command_long();
-                    cmd.target_system = 1;
+                    cmd.target_system = (short)parentSensor.getTargetSystem();
                     cmd.target_component = 1;
                     cmd.command = MAV_CMD.MAV_CMD_DO_MOUNT_CONTROL;
                     cmd.param1 = command.getFloatValue(1); // pitch (deg)
@@ -124,7 +124,7 @@ public class MavlinkCameraControl extends MavlinkControlInput
                     
                 case MOUNT_TARGET:
                     cmd = new msg_command_long();
-                    cmd.target_system = 1;
+                    cmd.target_system = (short)parentSensor.getTargetSystem();
                     cmd.target_component = 1;
                     cmd.command = MAV_CMD.MAV_CMD_DO_SET_ROI;
                     cmd.param5 = (float)(command.getFloatValue(1)*1e7); // lat (deg)
@@ -54,6 +54,9 @@ public class MavlinkConfig extends SensorConfig
     @DisplayInfo(label="Vehicle ID", desc="ID of vehicle sending the MAVLink stream (e.g. serial number)")
     public String vehicleID;
     
+    @DisplayInfo(label="System ID", desc="MAVLink system ID of the vehicle that commands are sent to")
+    public int systemID = 1;
+    
     @DisplayInfo(desc="Maximum travel distance allowed from take-off point in meters (used to setup geofence)")
     public float maxTravelDistance = 150f;
     
@@ -14,12 +14,13 @@ Copyright (C) 2012-2015 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.sensor.mavlink;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Timer;
+import java.util.stream.IntStream;
 import org.sensorhub.api.comm.ICommProvider;
 import org.sensorhub.api.common.SensorHubException;
 import org.sensorhub.api.data.IStreamingDataInterface;
@@ -27,7 +28,6 @@ import org.sensorhub.api.sensor.SensorException;
 import org.sensorhub.impl.sensor.AbstractSensorModule;
 import org.sensorhub.impl.sensor.mavlink.MavlinkConfig.MsgTypes;
 import com.MAVLink.MAVLinkPacket;
-import com.MAVLink.Parser;
 import com.MAVLink.Messages.MAVLinkMessage;
 import com.MAVLink.common.msg_command_ack;
 import com.MAVLink.common.msg_command_long;
@@ -62,9 +62,12 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     boolean connected;
     InputStream msgIn;
     OutputStream cmdOut;
-    Parser mavlinkParser;
+    MavlinkStreamParser mavlinkParser;
+    MavlinkOutput[][] outputsByMsgId;
+    MavlinkRouter router;
     
-    long lastMsgTime = 0;
+    volatile long lastMsgTime = 0;
+    volatile long recvTime = 0;
     
     
     enum CopterModes
@@ -142,6 +145,9 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
         camControl.init();
         if (camControl.commandData.getNumItems() > 0)
             addControlInput(camControl);
+        
+        // build message dispatch table
+        outputsByMsgId = createDispatchTable();
     }
 
 
@@ -150,6 +156,15 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     {
         if (started)
             return;        
+        
+        // when attached to a router, messages and commands go through the
+        // router socket and vehicle is configured when it first connects
+        if (router != null)
+        {
+            cmdOut = router.getCommandStream(getTargetSystem());
+            started = true;
+            return;
+        }
                 
         // init comm provider
         if (commProvider == null)
@@ -174,8 +189,8 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
         // connect to data stream
         try
         {
-            mavlinkParser = new Parser();
-            msgIn = new BufferedInputStream(commProvider.getInputStream());
+            mavlinkParser = createParser();
+            msgIn = commProvider.getInputStream();
             cmdOut = new BufferedOutputStream(commProvider.getOutputStream());
             
             // send heartbeat
@@ -187,6 +202,28 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
         }
         
         // set ardupilot parameters
+        configureVehicle();
+        
+        // start main measurement thread
+        Thread t = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                while (started)
+                    handleNextBlock();
+            }
+        });
+        
+        started = true;
+        t.start();
+        
+        // start connection watchdog
+        startWatchDogTimer();
+    }
+    
+    
+    protected void configureVehicle() throws SensorException
+    {
         try
         {         
             setTelemetryRates();
@@ -203,26 +240,117 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
         {
             throw new SensorException("Error while setting UAV parameters ", e);
         }
+    }
+    
+    
+    protected MavlinkOutput[][] createDispatchTable()
+    {
+        var table = new MavlinkOutput[0][];
         
-        // start main measurement thread
-        Thread t = new Thread(new Runnable()
+        // only messages used by enabled outputs are decoded
+        for (IStreamingDataInterface output: this.getOutputs().values())
         {
-            public void run()
+            MavlinkOutput mavOut = (MavlinkOutput)output;
+            for (int msgId: mavOut.getMessageIds())
             {
-                while (started)
-                    handleNextMessage();
+                if (msgId >= table.length)
+                    table = Arrays.copyOf(table, msgId+1);
+                
+                var outputs = table[msgId] != null ? table[msgId] : new MavlinkOutput[0];
+                outputs = Arrays.copyOf(outputs, outputs.length+1);
+                outputs[outputs.length-1] = mavOut;
+                table[msgId] = outputs;
             }
-        });
+        }
         
-        started = true;
-        t.start();
+        return table;
+    }
+    
+    
+    protected MavlinkStreamParser createParser()
+    {
+        var parser = new MavlinkStreamParser();
+        for (int msgId: getMessageIds())
+            parser.addHandler(msgId, this::dispatchMessage);
+        return parser;
+    }
+    
+    
+    /**
+     * @return IDs of all messages this driver needs to receive
+     */
+    protected int[] getMessageIds()
+    {
+        var msgIds = IntStream.range(0, outputsByMsgId.length)
+            .filter(i -> outputsByMsgId[i] != null);
         
-        // start connection watchdog
-        startWatchDogTimer();
+        // also log command responses
+        return IntStream.concat(msgIds, IntStream.of(
+                msg_command_ack.MAVLINK_MSG_ID_COMMAND_ACK,
+                msg_position_target_global_int.MAVLINK_MSG_ID_POSITION_TARGET_GLOBAL_INT))
+            .toArray();
     }
     
     
-    private void sendHeartbeat()
+    protected void dispatchMessage(long msgTime, MAVLinkMessage msg)
+    {
+        int msgId = msg.msgid;
+        var outputs = msgId < outputsByMsgId.length ? outputsByMsgId[msgId] : null;
+        
+        if (outputs != null)
+        {
+            for (var output: outputs)
+                output.handleMessage(msgTime, msg);
+        }
+        else if (msgId == msg_command_ack.MAVLINK_MSG_ID_COMMAND_ACK ||
+                 msgId == msg_position_target_global_int.MAVLINK_MSG_ID_POSITION_TARGET_GLOBAL_INT)
+            getLogger().info("Received {}", msg);
+    }
+    
+    
+    /*
+     * Called by router for each message received from this vehicle
+     */
+    protected void handleRoutedMessage(long msgTime, MAVLinkMessage msg)
+    {
+        if (!started)
+            return;
+        
+        recvTime = msgTime;
+        lastMsgTime = msgTime;
+        
+        if (msg.msgid != msg_heartbeat.MAVLINK_MSG_ID_HEARTBEAT)
+            dispatchMessage(msgTime, msg);
+        
+        // send connection event and configure vehicle on first contact
+        if (!connected)
+        {
+            connected = true;
+            notifyConnectionStatus(true, "MAVLink system " + getTargetSystem());
+            router.configureVehicle(this);
+        }
+    }
+    
+    
+    /*
+     * Attach this driver to a router instead of its own comm provider
+     */
+    protected void attachRouter(MavlinkRouter router)
+    {
+        this.router = router;
+    }
+    
+    
+    /**
+     * @return MAVLink system ID of the vehicle commands are sent to
+     */
+    public int getTargetSystem()
+    {
+        return config.systemID;
+    }
+    
+    
+    protected void sendHeartbeat()
     {
         try
         {
@@ -274,7 +402,7 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     protected void setParam(String name, float value) throws IOException
     {
         msg_param_set setParam = new msg_param_set();
-        setParam.target_system = 1;
+        setParam.target_system = (short)getTargetSystem();
         setParam.target_component = 1;
         setParam.param_type = MAV_PARAM_TYPE.MAV_PARAM_TYPE_REAL32;
         setParam.setParam_Id(name);
@@ -287,14 +415,14 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     {
         // this command typeis not implemented by ArduCopter although the docs say it is...
         /*msg_command_long cmd = new msg_command_long();
-        cmd.target_system = 1;
+        cmd.target_system = (short)getTargetSystem();
         cmd.target_component = 1;
         cmd.command = MAV_CMD.MAV_CMD_DO_SET_MODE;
         cmd.param1 = (float)mode;
         sendCommand(cmd.pack()); */
         
         msg_set_mode cmd = new msg_set_mode();
-        cmd.target_system = 1;
+        cmd.target_system = (short)getTargetSystem();
         cmd.base_mode = MAV_MODE_FLAG.MAV_MODE_FLAG_CUSTOM_MODE_ENABLED;
         cmd.custom_mode = mode;
         sendCommand(cmd.pack());
@@ -304,7 +432,7 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     protected void armMotors() throws IOException
     {
         msg_command_long cmd = new msg_command_long();
-        cmd.target_system = 1;
+        cmd.target_system = (short)getTargetSystem();
         cmd.target_component = 1;
         cmd.command = MAV_CMD.MAV_CMD_COMPONENT_ARM_DISARM; // working but need gps fix and other prearm checks
         cmd.param1 = 1;
@@ -332,15 +460,7 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
         watchDogTimer.schedule( 
                 new java.util.TimerTask() {
                     public void run() {
-                        long now = System.currentTimeMillis();
-                        if (now - lastMsgTime > MAX_MSG_PERIOD)
-                        {
-                            if (connected)
-                            {
-                                connected = false;
-                                notifyConnectionStatus(false, "MAVLink system");
-                            }
-                        }
+                        checkConnection(System.currentTimeMillis());
                         
                         // send heartbeat
                         sendHeartbeat();
@@ -351,24 +471,41 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     }
     
     
-    private void handleNextMessage()
+    protected void checkConnection(long now)
     {
-        try
+        if (now - lastMsgTime > MAX_MSG_PERIOD)
         {
-            // read next message
-            MAVLinkPacket packet = null;
-            while (started && packet == null)
+            if (connected)
             {
-                int c = msgIn.read();
-                packet = mavlinkParser.mavlink_parse_char(c);
+                connected = false;
+                notifyConnectionStatus(false, "MAVLink system");
             }
+        }
+    }
+    
+    
+    private void handleNextBlock()
+    {
+        try
+        {
+            // read all bytes available at once instead of one byte at a time
+            int n = mavlinkParser.read(msgIn);
             
-            // if null, it's EOF
-            if (packet == null)
+            // if negative, it's EOF
+            if (n < 0)
                 return;
             
             // time tag message receipt
-            lastMsgTime = System.currentTimeMillis();
+            // all messages received in the same block get the same time stamp
+            recvTime = System.currentTimeMillis();
+            
+            // decode complete messages and dispatch them to registered outputs
+            int numMsgs = mavlinkParser.parseFrames(recvTime);
+            if (numMsgs == 0)
+                return;
+            
+            lastMsgTime = recvTime;
+            getLogger().trace("Received {} messages", numMsgs);
             
             // send connection event
             if (!connected)
@@ -376,27 +513,6 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
                 connected = true;
                 notifyConnectionStatus(true, "MAVLink system");
             }
-            
-            // unpack and log message
-            MAVLinkMessage msg = packet.unpack();
-            if (msg instanceof msg_command_ack || msg instanceof msg_position_target_global_int)
-                getLogger().info("Received {}", msg);
-            else
-                getLogger().trace("Received message {} ({}) from {}:{}", msg, msg.getClass().getName(), msg.sysid, msg.compid);
-            
-            // special case for system time message
-            /*if (msg instanceof msg_system_time)
-            {
-                long unixTime = ((msg_system_time)msg).time_unix_usec;
-                log.info("Unix time = " + new DateTimeFormat().formatIso(unixTime/1e6, 0));
-            }*/
-            
-            // let each registered output handle this message
-            for (IStreamingDataInterface output: this.getOutputs().values())
-            {
-                MavlinkOutput nmeaOut = (MavlinkOutput)output;
-                nmeaOut.handleMessage(lastMsgTime, msg);
-            }
         }
         catch (IOException e)
         {
@@ -410,7 +526,7 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     {
         // just use receiving time stamp for now
         // TODO use sender time stamp for better relative timing accuracy
-        return ((double)lastMsgTime) / 1000.;
+        return ((double)recvTime) / 1000.;
     }
 
 
@@ -419,6 +535,15 @@ public class MavlinkDriver extends AbstractSensorModule<MavlinkConfig>
     {
         started = false;
         
+        if (watchDogTimer != null)
+        {
+            watchDogTimer.cancel();
+            watchDogTimer = null;
+        }
+        
+        if (router != null)
+            connected = false;
+        
         if (msgIn != null)
         {
             try { msgIn.close(); }
@@ -92,6 +92,15 @@ public abstract class MavlinkOutput extends AbstractSensorOutput<MavlinkDriver>
     }
     
     
+    /**
+     * Method to be implemented by concrete outputs to declare which MAVLink
+     * messages they handle. Only these messages are decoded and dispatched
+     * to {@link #handleMessage(long, MAVLinkMessage)}
+     * @return array of MAVLink message IDs
+     */
+    protected abstract int[] getMessageIds();
+    
+    
     /**
      * Method to be implemented by concrete outputs to handle appropriate MAVLink messages
      * @param msgTime system time at which message was received
@@ -0,0 +1,505 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.mavlink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sensorhub.api.common.SensorHubException;
+import org.sensorhub.api.sensor.SensorException;
+import org.sensorhub.impl.sensor.SensorSystem;
+import org.sensorhub.impl.sensor.SensorSystemConfig;
+import com.MAVLink.Messages.MAVLinkMessage;
+import com.MAVLink.enums.MAV_TYPE;
+import com.MAVLink.minimal.msg_heartbeat;
+
+
+/**
+ * <p>
+ * Router receiving MAVLink traffic from many vehicles on a single UDP socket.
+ * </p><p>
+ * Datagrams are parsed by one {@link MavlinkStreamParser} per remote endpoint
+ * (so frames split across datagrams are reassembled) and messages are routed
+ * to the vehicle module matching their system ID. A new {@link MavlinkDriver}
+ * submodule is created from the vehicle template the first time a heartbeat
+ * is received from an unknown system ID. Commands sent by vehicle modules are
+ * routed back to the endpoint the vehicle was last heard from.<br/>
+ * Routing is done by system ID only: all components of a system must be
+ * reachable through the same endpoint, otherwise commands are sent to the
+ * endpoint of whichever component sent the last heartbeat.<br/>
+ * All vehicles share the receiving thread and a single timer thread used to
+ * send GCS heartbeats and monitor connections.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class MavlinkRouter extends SensorSystem
+{
+    static final int MAX_DATAGRAM_SIZE = 65507;
+    static final long HEARTBEAT_PERIOD = 1000L;
+    static final long ENDPOINT_TIMEOUT = 60000L;
+    static final int MAX_SYSTEM_ID = 255;
+    
+    final VehicleLink[] vehicles = new VehicleLink[MAX_SYSTEM_ID+1];
+    final Map<SocketAddress, Endpoint> endpoints = new ConcurrentHashMap<>();
+    final Set<Integer> routedMsgIds = new HashSet<>();
+    volatile DatagramChannel channel;
+    volatile boolean started;
+    Thread recvThread;
+    ScheduledExecutorService scheduler;
+    byte[] heartbeatFrame;
+    final AtomicInteger vehicleCount = new AtomicInteger();
+    
+    
+    /*
+     * Remote endpoint sending data to the router
+     * A separate parser is needed for each endpoint to buffer partial frames
+     */
+    static class Endpoint
+    {
+        final MavlinkStreamParser parser = new MavlinkStreamParser();
+        volatile long lastRecvTime;
+    }
+    
+    
+    /*
+     * Routing info of a vehicle, indexed by MAVLink system ID
+     */
+    class VehicleLink
+    {
+        final int sysId;
+        final OutputStream cmdStream = new CommandStream(this);
+        volatile SocketAddress endpoint;
+        volatile MavlinkDriver driver;
+        volatile boolean pending;
+        boolean rejected;
+        
+        VehicleLink(int sysId)
+        {
+            this.sysId = sysId;
+        }
+    }
+    
+    
+    /*
+     * Stream sending each command as a datagram to the vehicle endpoint
+     * Driver flushes after each command so each datagram contains one frame
+     */
+    class CommandStream extends ByteArrayOutputStream
+    {
+        final VehicleLink link;
+        
+        CommandStream(VehicleLink link)
+        {
+            super(280);
+            this.link = link;
+        }
+        
+        @Override
+        public synchronized void flush() throws IOException
+        {
+            try
+            {
+                var endpoint = link.endpoint;
+                var channel = MavlinkRouter.this.channel;
+                if (endpoint == null || channel == null)
+                    throw new IOException("MAVLink system " + link.sysId + " is not connected");
+                channel.send(ByteBuffer.wrap(buf, 0, count), endpoint);
+            }
+            finally
+            {
+                reset();
+            }
+        }
+    }
+    
+    
+    protected MavlinkRouterConfig getRouterConfig()
+    {
+        return (MavlinkRouterConfig)config;
+    }
+    
+    
+    @Override
+    protected void doStart() throws SensorHubException
+    {
+        var routerConfig = getRouterConfig();
+        
+        // attach vehicle modules loaded from config before they are started
+        for (var member: getMembers().values())
+        {
+            if (member instanceof MavlinkDriver)
+            {
+                var driver = (MavlinkDriver)member;
+                driver.attachRouter(this);
+                getVehicleLink(driver.getTargetSystem()).driver = driver;
+                vehicleCount.incrementAndGet();
+            }
+        }
+        
+        // open socket
+        try
+        {
+            var bindAddress = routerConfig.localAddress != null ?
+                new InetSocketAddress(routerConfig.localAddress, routerConfig.localPort) :
+                new InetSocketAddress(routerConfig.localPort);
+            channel = DatagramChannel.open();
+            channel.bind(bindAddress);
+            getLogger().info("Listening for MAVLink datagrams on {}", bindAddress);
+        }
+        catch (IOException e)
+        {
+            throw new SensorException("Cannot open UDP socket on port " + routerConfig.localPort, e);
+        }
+        
+        super.doStart();
+        
+        for (var link: vehicles)
+        {
+            if (link != null && link.driver != null)
+                registerMessageIds(link.driver);
+        }
+        
+        // prepare heartbeat sent to all endpoints
+        var hb = new msg_heartbeat();
+        hb.type = MAV_TYPE.MAV_TYPE_GCS;
+        hb.autopilot = 8;
+        var pkt = hb.pack();
+        pkt.compid = 0;
+        pkt.generateCRC(pkt.len);
+        heartbeatFrame = pkt.encodePacket();
+        
+        started = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(this::checkVehicles, 0L, HEARTBEAT_PERIOD, TimeUnit.MILLISECONDS);
+        recvThread = new Thread(this::receiveDatagrams, "MAVLink Router " + routerConfig.localPort);
+        recvThread.start();
+    }
+    
+    
+    protected void receiveDatagrams()
+    {
+        var buf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        
+        while (started)
+        {
+            try
+            {
+                buf.clear();
+                var from = channel.receive(buf);
+                long now = System.currentTimeMillis();
+                buf.flip();
+                
+                var endpoint = endpoints.get(from);
+                if (endpoint == null)
+                    endpoint = addEndpoint(from);
+                
+                endpoint.lastRecvTime = now;
+                endpoint.parser.parse(buf, now);
+            }
+            catch (ClosedChannelException e)
+            {
+                break;
+            }
+            catch (Exception e)
+            {
+                if (started)
+                    getLogger().error("Error while receiving MAVLink datagram", e);
+            }
+        }
+    }
+    
+    
+    protected Endpoint addEndpoint(SocketAddress address)
+    {
+        getLogger().debug("New MAVLink endpoint {}", address);
+        
+        var endpoint = new Endpoint();
+        endpoint.parser.addHandler(msg_heartbeat.MAVLINK_MSG_ID_HEARTBEAT,
+            (t, msg) -> handleHeartbeat(address, t, msg));
+        
+        synchronized (routedMsgIds)
+        {
+            for (int msgId: routedMsgIds)
+                endpoint.parser.addHandler(msgId, this::routeMessage);
+            endpoints.put(address, endpoint);
+        }
+        
+        return endpoint;
+    }
+    
+    
+    /*
+     * Make sure messages needed by the vehicle are decoded on all endpoints
+     */
+    protected void registerMessageIds(MavlinkDriver driver)
+    {
+        synchronized (routedMsgIds)
+        {
+            for (int msgId: driver.getMessageIds())
+            {
+                if (msgId != msg_heartbeat.MAVLINK_MSG_ID_HEARTBEAT && routedMsgIds.add(msgId))
+                {
+                    for (var endpoint: endpoints.values())
+                        endpoint.parser.addHandler(msgId, this::routeMessage);
+                }
+            }
+        }
+    }
+    
+    
+    protected VehicleLink getVehicleLink(int sysId)
+    {
+        synchronized (vehicles)
+        {
+            var link = vehicles[sysId];
+            if (link == null)
+                link = vehicles[sysId] = new VehicleLink(sysId);
+            return link;
+        }
+    }
+    
+    
+    protected void handleHeartbeat(SocketAddress address, long msgTime, MAVLinkMessage msg)
+    {
+        // ignore other ground stations
+        if (((msg_heartbeat)msg).type == MAV_TYPE.MAV_TYPE_GCS)
+            return;
+        
+        var link = vehicles[msg.sysid];
+        if (link == null)
+            link = getVehicleLink(msg.sysid);
+        
+        // vehicle can move to a different endpoint (e.g. after link switch)
+        link.endpoint = address;
+        
+        var driver = link.driver;
+        if (driver != null)
+            driver.handleRoutedMessage(msgTime, msg);
+        else if (!link.pending)
+        {
+            link.pending = true;
+            
+            // only increment count if max number of vehicles is not reached
+            // system is retried on its next heartbeat in case a slot frees up
+            var maxVehicles = getRouterConfig().maxVehicles;
+            if (vehicleCount.getAndUpdate(n -> n < maxVehicles ? n+1 : n) >= maxVehicles)
+            {
+                link.pending = false;
+                if (!link.rejected)
+                    getLogger().warn("Ignoring MAVLink system {}: maximum number of vehicles reached", msg.sysid);
+                link.rejected = true;
+                return;
+            }
+            
+            var newLink = link;
+            scheduler.execute(() -> createVehicle(newLink));
+        }
+    }
+    
+    
+    protected void routeMessage(long msgTime, MAVLinkMessage msg)
+    {
+        var link = vehicles[msg.sysid];
+        var driver = link != null ? link.driver : null;
+        if (driver != null)
+            driver.handleRoutedMessage(msgTime, msg);
+    }
+    
+    
+    protected void createVehicle(VehicleLink link)
+    {
+        try
+        {
+            var template = getRouterConfig().vehicleTemplate;
+            var vehicleConfig = (MavlinkConfig)template.clone();
+            vehicleConfig.id = UUID.randomUUID().toString();
+            vehicleConfig.name = "MAVLink System " + link.sysId;
+            vehicleConfig.moduleClass = MavlinkDriver.class.getCanonicalName();
+            vehicleConfig.vehicleID = (template.vehicleID != null ? template.vehicleID : "") + link.sysId;
+            vehicleConfig.systemID = link.sysId;
+            vehicleConfig.commSettings = null;
+            vehicleConfig.autoStart = true;
+            
+            var member = new SensorSystemConfig.SystemMember();
+            member.config = vehicleConfig;
+            var driver = (MavlinkDriver)addSubsystem(member);
+            driver.attachRouter(this);
+            
+            if (!driver.isInitialized())
+                driver.init();
+            if (!driver.isStarted())
+                driver.start();
+            
+            registerMessageIds(driver);
+            link.driver = driver;
+            getLogger().info("Added vehicle module for MAVLink system {}", link.sysId);
+        }
+        catch (Exception e)
+        {
+            vehicleCount.decrementAndGet();
+            link.pending = false;
+            getLogger().error("Cannot create vehicle module for MAVLink system {}", link.sysId, e);
+        }
+    }
+    
+    
+    /*
+     * Called by vehicle modules on first contact
+     */
+    protected void configureVehicle(MavlinkDriver driver)
+    {
+        scheduler.execute(() -> {
+            try
+            {
+                driver.configureVehicle();
+            }
+            catch (SensorException e)
+            {
+                driver.getLogger().error("Cannot configure MAVLink system {}", driver.getTargetSystem(), e);
+            }
+        });
+    }
+    
+    
+    protected void checkVehicles()
+    {
+        long now = System.currentTimeMillis();
+        var connectedEndpoints = new HashSet<SocketAddress>();
+        
+        for (var link: vehicles)
+        {
+            var driver = link != null ? link.driver : null;
+            if (driver != null)
+            {
+                driver.checkConnection(now);
+                if (driver.isConnected() && link.endpoint != null)
+                    connectedEndpoints.add(link.endpoint);
+            }
+        }
+        
+        // send one heartbeat per endpoint even if it serves several vehicles
+        for (var address: connectedEndpoints)
+        {
+            try
+            {
+                channel.send(ByteBuffer.wrap(heartbeatFrame), address);
+            }
+            catch (IOException e)
+            {
+                getLogger().trace("Cannot send heartbeat to {}", address, e);
+            }
+        }
+        
+        // forget endpoints we haven't heard from in a while
+        endpoints.values().removeIf(e -> now - e.lastRecvTime > ENDPOINT_TIMEOUT);
+    }
+    
+    
+    /*
+     * Called by vehicle modules to get the stream to send commands to
+     */
+    protected OutputStream getCommandStream(int sysId)
+    {
+        return getVehicleLink(sysId).cmdStream;
+    }
+
+
+    @Override
+    protected void doStop() throws SensorHubException
+    {
+        started = false;
+        
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        
+        if (channel != null)
+        {
+            try { channel.close(); }
+            catch (IOException e) { }
+            channel = null;
+        }
+        
+        if (recvThread != null)
+        {
+            try { recvThread.join(1000L); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            recvThread = null;
+        }
+        
+        super.doStop();
+        
+        // routing info is rebuilt on restart
+        synchronized (routedMsgIds)
+        {
+            endpoints.clear();
+            routedMsgIds.clear();
+        }
+        
+        synchronized (vehicles)
+        {
+            Arrays.fill(vehicles, null);
+            vehicleCount.set(0);
+        }
+    }
+    
+    
+    /**
+     * @param sysId MAVLink system ID
+     * @return The vehicle module receiving messages from this system, or null if none
+     */
+    public MavlinkDriver getVehicle(int sysId)
+    {
+        var link = sysId >= 0 && sysId <= MAX_SYSTEM_ID ? vehicles[sysId] : null;
+        return link != null ? link.driver : null;
+    }
+    
+    
+    /**
+     * @return Number of vehicle modules attached to this router, including
+     * the ones being created
+     */
+    public int getVehicleCount()
+    {
+        return vehicleCount.get();
+    }
+    
+    
+    @Override
+    public boolean isConnected()
+    {
+        var channel = this.channel;
+        return channel != null && channel.isOpen();
+    }
+}
@@ -0,0 +1,44 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.mavlink;
+
+import org.sensorhub.api.config.DisplayInfo;
+import org.sensorhub.impl.sensor.SensorSystemConfig;
+
+
+/**
+ * <p>
+ * Configuration of MAVLink router listening to many vehicles on a single
+ * UDP port.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class MavlinkRouterConfig extends SensorSystemConfig
+{
+    @DisplayInfo(label="Local Address", desc="Local IP address to bind to (all interfaces if not set)")
+    public String localAddress;
+    
+    @DisplayInfo(label="UDP Port", desc="Local UDP port on which MAVLink datagrams are received")
+    public int localPort = 14550;
+    
+    @DisplayInfo(label="Max Vehicles", desc="Maximum number of vehicle modules created automatically")
+    public int maxVehicles = 100;
+    
+    @DisplayInfo(label="Vehicle Template", desc="Settings used to create a vehicle module when a new MAVLink system ID is detected. "
+        + "The vehicle ID is used as a prefix and followed by the system ID.")
+    public MavlinkConfig vehicleTemplate = new MavlinkConfig();
+}
@@ -0,0 +1,384 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.mavlink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import com.MAVLink.MAVLinkPacket;
+import com.MAVLink.Messages.MAVLinkMessage;
+import com.MAVLink.Messages.MAVLinkPayload;
+import com.MAVLink.ardupilotmega.CRC;
+
+
+/**
+ * <p>
+ * MAVLink v1/v2 parser working on blocks of bytes accumulated in a reusable
+ * buffer, as a replacement for the byte-by-byte {@link com.MAVLink.Parser}.
+ * </p><p>
+ * Frame checksums are verified for all frames but payloads are only decoded
+ * if a handler was registered for the message ID. Decoded messages are
+ * reused for all frames with the same ID so handlers must copy the data they
+ * need before returning.<br/>
+ * Parsing is not thread-safe and must be done by a single reader thread but
+ * handlers can be added at any time from other threads.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class MavlinkStreamParser
+{
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int MIN_BUFFER_SIZE = 2 * (MAVLinkPacket.MAVLINK2_NONPAYLOAD_LEN + MAVLinkPayload.MAX_PAYLOAD_SIZE + 13);
+    static final int SIGNATURE_LEN = 13;
+    static final int INCOMPAT_FLAG_SIGNED = 0x01;
+
+
+    public interface MessageHandler
+    {
+        /**
+         * Called for each message received with one of the IDs the handler
+         * was registered for
+         * @param msgTime system time at which message was received
+         * @param msg MAVLink message object (reused for following messages)
+         */
+        void handleMessage(long msgTime, MAVLinkMessage msg);
+    }
+
+
+    static class MessageDispatch
+    {
+        MAVLinkMessage msg;
+        volatile MessageHandler[] handlers = new MessageHandler[0];
+        boolean unknown;
+    }
+
+
+    final byte[] buf;
+    final MAVLinkPayload payload = new MAVLinkPayload();
+    final CRC crc = new CRC();
+    volatile MessageDispatch[] dispatchTable = new MessageDispatch[0];
+    int start, end;
+    int payloadFill; // end of non-zero bytes in payload buffer
+
+    long frameCount;
+    long crcErrorCount;
+    long unhandledCount;
+
+
+    public MavlinkStreamParser()
+    {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+
+    public MavlinkStreamParser(int bufferSize)
+    {
+        this.buf = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+    }
+
+
+    /**
+     * Registers a handler for the given message ID
+     * @param msgId MAVLink message ID
+     * @param handler handler to call when a message with this ID is received
+     */
+    public synchronized void addHandler(int msgId, MessageHandler handler)
+    {
+        // copy on write so the reader thread always sees consistent tables
+        var table = dispatchTable;
+        var dispatch = msgId < table.length ? table[msgId] : null;
+        if (dispatch == null)
+        {
+            dispatch = new MessageDispatch();
+            table = Arrays.copyOf(table, Math.max(table.length, msgId+1));
+            table[msgId] = dispatch;
+        }
+
+        var handlers = Arrays.copyOf(dispatch.handlers, dispatch.handlers.length+1);
+        handlers[handlers.length-1] = handler;
+        dispatch.handlers = handlers;
+        dispatchTable = table;
+    }
+
+
+    /**
+     * @param msgId MAVLink message ID
+     * @return true if at least one handler is registered for the given message ID
+     */
+    public boolean hasHandler(int msgId)
+    {
+        var table = dispatchTable;
+        return msgId < table.length && table[msgId] != null;
+    }
+
+
+    /**
+     * Reads the next block of bytes available from the input stream into
+     * the internal buffer. Call {@link #parseFrames(long)} to decode it.
+     * @param in input stream to read from
+     * @return number of bytes read or -1 if the end of stream was reached
+     * @throws IOException if the stream cannot be read
+     */
+    public int read(InputStream in) throws IOException
+    {
+        compact();
+        int n = in.read(buf, end, buf.length - end);
+        if (n > 0)
+            end += n;
+        return n;
+    }
+
+
+    /**
+     * Copies the content of the given buffer into the internal buffer and
+     * decodes all complete frames. Partial frames are kept until more data
+     * is provided.
+     * @param data buffer containing raw MAVLink data (e.g. a UDP datagram)
+     * @param msgTime system time at which the data was received
+     * @return the number of valid frames found
+     */
+    public int parse(ByteBuffer data, long msgTime)
+    {
+        int count = 0;
+        while (data.hasRemaining())
+        {
+            compact();
+            int n = Math.min(data.remaining(), buf.length - end);
+            data.get(buf, end, n);
+            end += n;
+            count += parseFrames(msgTime);
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Decodes all complete frames in the internal buffer and dispatches them
+     * to registered handlers
+     * @param msgTime system time at which the data was received
+     * @return the number of valid frames found
+     */
+    public int parseFrames(long msgTime)
+    {
+        int count = 0;
+
+        while (true)
+        {
+            // skip garbage until next start byte
+            while (start < end && !isStartByte(buf[start]))
+                start++;
+
+            int avail = end - start;
+            if (avail < 3)
+                break;
+
+            boolean isMavlink2 = (buf[start] & 0xFF) == MAVLinkPacket.MAVLINK_STX_MAVLINK2;
+            int len = buf[start+1] & 0xFF;
+            int frameLen;
+            boolean signed = false;
+
+            if (isMavlink2)
+            {
+                // reject frames with unsupported incompatibility flags
+                int incompatFlags = buf[start+2] & 0xFF;
+                if ((incompatFlags & ~INCOMPAT_FLAG_SIGNED) != 0)
+                {
+                    start++;
+                    continue;
+                }
+
+                signed = incompatFlags == INCOMPAT_FLAG_SIGNED;
+                frameLen = MAVLinkPacket.MAVLINK2_NONPAYLOAD_LEN + len + (signed ? SIGNATURE_LEN : 0);
+            }
+            else
+                frameLen = MAVLinkPacket.MAVLINK1_NONPAYLOAD_LEN + len;
+
+            // wait for more data if frame is incomplete
+            if (avail < frameLen)
+                break;
+
+            if (!checkFrame(isMavlink2, len))
+            {
+                // resync on next start byte
+                crcErrorCount++;
+                start++;
+                continue;
+            }
+
+            frameCount++;
+            count++;
+
+            // signature validation is not supported
+            if (signed)
+                unhandledCount++;
+            else
+                dispatch(isMavlink2, len, msgTime);
+
+            start += frameLen;
+        }
+
+        return count;
+    }
+
+
+    static boolean isStartByte(byte b)
+    {
+        int c = b & 0xFF;
+        return c == MAVLinkPacket.MAVLINK_STX_MAVLINK2 || c == MAVLinkPacket.MAVLINK_STX_MAVLINK1;
+    }
+
+
+    protected boolean checkFrame(boolean isMavlink2, int len)
+    {
+        int headerLen = isMavlink2 ? MAVLinkPacket.MAVLINK2_HEADER_LEN : MAVLinkPacket.MAVLINK1_HEADER_LEN;
+        int crcPos = start + headerLen + len;
+
+        // checksum covers everything but the start byte
+        crc.start_checksum();
+        for (int i = start+1; i < crcPos; i++)
+            crc.update_checksum(buf[i]);
+
+        // fail if message ID is unknown since we don't have its CRC extra
+        if (!crc.finish_checksum(getMsgId(isMavlink2)))
+            return false;
+
+        return (buf[crcPos] & 0xFF) == crc.getLSB() &&
+               (buf[crcPos+1] & 0xFF) == crc.getMSB();
+    }
+
+
+    protected int getMsgId(boolean isMavlink2)
+    {
+        if (isMavlink2)
+        {
+            return (buf[start+7] & 0xFF) |
+                   (buf[start+8] & 0xFF) << 8 |
+                   (buf[start+9] & 0xFF) << 16;
+        }
+        else
+            return buf[start+5] & 0xFF;
+    }
+
+
+    protected void dispatch(boolean isMavlink2, int len, long msgTime)
+    {
+        int msgId = getMsgId(isMavlink2);
+        var table = dispatchTable;
+        var dispatch = msgId < table.length ? table[msgId] : null;
+        if (dispatch == null || dispatch.unknown)
+        {
+            unhandledCount++;
+            return;
+        }
+
+        int seq, sysId, compId, headerLen;
+        if (isMavlink2)
+        {
+            seq = buf[start+4] & 0xFF;
+            sysId = buf[start+5] & 0xFF;
+            compId = buf[start+6] & 0xFF;
+            headerLen = MAVLinkPacket.MAVLINK2_HEADER_LEN;
+        }
+        else
+        {
+            seq = buf[start+2] & 0xFF;
+            sysId = buf[start+3] & 0xFF;
+            compId = buf[start+4] & 0xFF;
+            headerLen = MAVLinkPacket.MAVLINK1_HEADER_LEN;
+        }
+
+        // copy payload to reusable buffer
+        // bytes truncated by MAVLink 2 senders must read as zeros
+        var payloadBuf = payload.payload;
+        payloadBuf.clear();
+        payloadBuf.put(buf, start + headerLen, len);
+        if (payloadFill > len)
+            Arrays.fill(payloadBuf.array(), len, payloadFill, (byte)0);
+        payloadFill = len;
+
+        var msg = dispatch.msg;
+        if (msg == null)
+        {
+            // first message with this ID, let generated code pick the right class
+            var packet = new MAVLinkPacket(len, isMavlink2);
+            packet.seq = seq;
+            packet.sysid = sysId;
+            packet.compid = compId;
+            packet.msgid = msgId;
+            packet.payload = payload;
+            msg = dispatch.msg = packet.unpack();
+
+            if (msg == null)
+            {
+                dispatch.unknown = true;
+                unhandledCount++;
+                return;
+            }
+        }
+        else
+        {
+            msg.sysid = sysId;
+            msg.compid = compId;
+            msg.isMavlink2 = isMavlink2;
+            msg.unpack(payload);
+        }
+
+        for (var handler: dispatch.handlers)
+            handler.handleMessage(msgTime, msg);
+    }
+
+
+    protected void compact()
+    {
+        if (start > 0)
+        {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+    }
+
+
+    /**
+     * @return total number of frames with a valid checksum
+     */
+    public long getFrameCount()
+    {
+        return frameCount;
+    }
+
+
+    /**
+     * @return number of frames rejected because of a bad checksum or unknown message ID
+     */
+    public long getCrcErrorCount()
+    {
+        return crcErrorCount;
+    }
+
+
+    /**
+     * @return number of valid frames that were not decoded because no handler
+     * was registered for their message ID
+     */
+    public long getUnhandledCount()
+    {
+        return unhandledCount;
+    }
+}
@@ -0,0 +1,254 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.test.sensor.mavlink;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sensorhub.impl.SensorHub;
+import org.sensorhub.impl.sensor.mavlink.MavlinkConfig.MsgTypes;
+import org.sensorhub.impl.sensor.mavlink.MavlinkDriver;
+import org.sensorhub.impl.sensor.mavlink.MavlinkRouter;
+import org.sensorhub.impl.sensor.mavlink.MavlinkRouterConfig;
+import org.sensorhub.impl.sensor.mavlink.MavlinkStreamParser;
+import com.MAVLink.common.msg_global_position_int;
+import com.MAVLink.common.msg_param_set;
+import com.MAVLink.enums.MAV_AUTOPILOT;
+import com.MAVLink.enums.MAV_TYPE;
+import com.MAVLink.minimal.msg_heartbeat;
+import static org.junit.Assert.*;
+
+
+public class TestMavlinkRouter
+{
+    static final long TIMEOUT = 10000;
+    static final String POS_OUTPUT = "platformLoc";
+
+    SensorHub hub;
+    MavlinkRouter router;
+    InetSocketAddress routerAddress;
+    List<DatagramSocket> sockets = new ArrayList<>();
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        // find a free port for the router
+        int routerPort;
+        try (var s = new DatagramSocket(0, InetAddress.getLoopbackAddress()))
+        {
+            routerPort = s.getLocalPort();
+        }
+        routerAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), routerPort);
+
+        hub = new SensorHub();
+        hub.start();
+
+        var config = new MavlinkRouterConfig();
+        config.id = UUID.randomUUID().toString();
+        config.moduleClass = MavlinkRouter.class.getCanonicalName();
+        config.name = "MAVLink Router";
+        config.autoStart = true;
+        config.localAddress = routerAddress.getAddress().getHostAddress();
+        config.localPort = routerPort;
+        config.maxVehicles = 3;
+        config.vehicleTemplate.vehicleID = "uav";
+        config.vehicleTemplate.activeMessages = EnumSet.of(MsgTypes.GLOBAL_POSITION);
+        router = (MavlinkRouter)hub.getModuleRegistry().loadModule(config, TIMEOUT);
+    }
+
+
+    DatagramSocket newVehicleSocket() throws IOException
+    {
+        var socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setSoTimeout(200);
+        sockets.add(socket);
+        return socket;
+    }
+
+
+    void send(DatagramSocket socket, byte[] frame) throws IOException
+    {
+        socket.send(new DatagramPacket(frame, frame.length, routerAddress));
+    }
+
+
+    static byte[] newHeartbeat(int sysId)
+    {
+        var msg = new msg_heartbeat();
+        msg.sysid = sysId;
+        msg.compid = 1;
+        msg.type = MAV_TYPE.MAV_TYPE_QUADROTOR;
+        msg.autopilot = MAV_AUTOPILOT.MAV_AUTOPILOT_ARDUPILOTMEGA;
+        return msg.pack().encodePacket();
+    }
+
+
+    static byte[] newPosition(int sysId, int lat, int lon)
+    {
+        var msg = new msg_global_position_int();
+        msg.sysid = sysId;
+        msg.compid = 1;
+        msg.lat = lat;
+        msg.lon = lon;
+        return msg.pack().encodePacket();
+    }
+
+
+    MavlinkDriver waitForVehicle(DatagramSocket socket, int sysId) throws Exception
+    {
+        long t0 = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - t0 < TIMEOUT)
+        {
+            var driver = router.getVehicle(sysId);
+            if (driver != null && driver.isStarted())
+                return driver;
+
+            send(socket, newHeartbeat(sysId));
+            Thread.sleep(100);
+        }
+
+        fail("Vehicle module not created for system " + sysId);
+        return null;
+    }
+
+
+    double[] waitForPosition(DatagramSocket socket, MavlinkDriver driver, int sysId, int lat, int lon) throws Exception
+    {
+        var output = driver.getObservationOutputs().get(POS_OUTPUT);
+        long t0 = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - t0 < TIMEOUT)
+        {
+            send(socket, newPosition(sysId, lat, lon));
+            Thread.sleep(100);
+
+            var rec = output.getLatestRecord();
+            if (rec != null && rec.getDoubleValue(1) == lat / 1e7)
+                return new double[] {rec.getDoubleValue(1), rec.getDoubleValue(2)};
+        }
+
+        fail("Position not received by vehicle module for system " + sysId);
+        return null;
+    }
+
+
+    /*
+     * Receive commands sent to an endpoint and collect their target system IDs
+     */
+    List<Integer> receiveParamTargets(DatagramSocket socket) throws IOException
+    {
+        var targets = new ArrayList<Integer>();
+        var parser = new MavlinkStreamParser();
+        parser.addHandler(msg_param_set.MAVLINK_MSG_ID_PARAM_SET,
+            (t, msg) -> targets.add((int)((msg_param_set)msg).target_system));
+
+        var buf = new byte[1024];
+        try
+        {
+            while (true)
+            {
+                var pkt = new DatagramPacket(buf, buf.length);
+                socket.receive(pkt);
+                parser.parse(ByteBuffer.wrap(buf, 0, pkt.getLength()), System.currentTimeMillis());
+            }
+        }
+        catch (SocketTimeoutException e)
+        {
+            // no more datagrams
+        }
+
+        return targets;
+    }
+
+
+    @Test
+    public void testRouteBySystemId() throws Exception
+    {
+        var socket1 = newVehicleSocket();
+        var socket2 = newVehicleSocket();
+
+        // system 3 uses the same endpoint as system 1
+        var vehicle1 = waitForVehicle(socket1, 1);
+        var vehicle2 = waitForVehicle(socket2, 2);
+        var vehicle3 = waitForVehicle(socket1, 3);
+        assertNotSame(vehicle1, vehicle2);
+        assertNotSame(vehicle1, vehicle3);
+        assertEquals(1, vehicle1.getTargetSystem());
+        assertEquals(2, vehicle2.getTargetSystem());
+        assertEquals(3, vehicle3.getTargetSystem());
+        assertEquals(3, router.getVehicleCount());
+
+        // each vehicle only receives messages from its own system
+        assertArrayEquals(new double[] {10.0, 20.0}, waitForPosition(socket1, vehicle1, 1, 100000000, 200000000), 1e-7);
+        assertArrayEquals(new double[] {11.0, 21.0}, waitForPosition(socket2, vehicle2, 2, 110000000, 210000000), 1e-7);
+        assertArrayEquals(new double[] {12.0, 22.0}, waitForPosition(socket1, vehicle3, 3, 120000000, 220000000), 1e-7);
+        assertEquals(10.0, vehicle1.getObservationOutputs().get(POS_OUTPUT).getLatestRecord().getDoubleValue(1), 1e-7);
+        assertEquals(11.0, vehicle2.getObservationOutputs().get(POS_OUTPUT).getLatestRecord().getDoubleValue(1), 1e-7);
+
+        // vehicles are configured through the endpoint they were heard from
+        var targets1 = receiveParamTargets(socket1);
+        var targets2 = receiveParamTargets(socket2);
+        assertTrue(targets1.contains(1));
+        assertTrue(targets1.contains(3));
+        assertFalse(targets1.contains(2));
+        assertTrue(targets2.contains(2));
+        assertFalse(targets2.contains(1));
+        assertFalse(targets2.contains(3));
+    }
+
+
+    @Test
+    public void testMaxVehicles() throws Exception
+    {
+        var socket = newVehicleSocket();
+        waitForVehicle(socket, 1);
+        waitForVehicle(socket, 2);
+        waitForVehicle(socket, 3);
+
+        // no module is created beyond max number of vehicles
+        for (int i = 0; i < 5; i++)
+        {
+            send(socket, newHeartbeat(4));
+            Thread.sleep(100);
+        }
+
+        assertNull(router.getVehicle(4));
+        assertEquals(3, router.getVehicleCount());
+    }
+
+
+    @After
+    public void cleanup()
+    {
+        for (var socket: sockets)
+            socket.close();
+
+        if (hub != null)
+            hub.stop();
+    }
+}
@@ -0,0 +1,157 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.test.sensor.mavlink;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.sensorhub.impl.sensor.mavlink.MavlinkStreamParser;
+import com.MAVLink.common.msg_attitude;
+import com.MAVLink.common.msg_global_position_int;
+import static org.junit.Assert.*;
+
+
+public class TestMavlinkStreamParser
+{
+    List<String> received = new ArrayList<>();
+
+
+    static byte[] encode(msg_global_position_int msg, boolean isMavlink2)
+    {
+        msg.isMavlink2 = isMavlink2;
+        var pkt = msg.pack();
+        pkt.seq = 0;
+        return pkt.encodePacket();
+    }
+
+
+    static msg_global_position_int newPosMsg(int sysId, int lat, int lon, int hdg)
+    {
+        var msg = new msg_global_position_int();
+        msg.sysid = sysId;
+        msg.compid = 1;
+        msg.lat = lat;
+        msg.lon = lon;
+        msg.hdg = hdg;
+        return msg;
+    }
+
+
+    static byte[] newAttitudeFrame()
+    {
+        var msg = new msg_attitude();
+        msg.sysid = 1;
+        msg.compid = 1;
+        msg.roll = 0.1f;
+        return msg.pack().encodePacket();
+    }
+
+
+    MavlinkStreamParser newParser()
+    {
+        var parser = new MavlinkStreamParser(64);
+        parser.addHandler(msg_global_position_int.MAVLINK_MSG_ID_GLOBAL_POSITION_INT, (t, m) -> {
+            var msg = (msg_global_position_int)m;
+            received.add(msg.sysid + ":" + msg.lat + "," + msg.lon + "," + msg.hdg);
+        });
+        return parser;
+    }
+
+
+    /*
+     * Stream returning data in small chunks to test frames split across reads
+     */
+    static InputStream chunkedStream(byte[] data, int chunkSize)
+    {
+        return new ByteArrayInputStream(data)
+        {
+            @Override
+            public synchronized int read(byte[] b, int off, int len)
+            {
+                return super.read(b, off, Math.min(len, chunkSize));
+            }
+        };
+    }
+
+
+    void parseAll(MavlinkStreamParser parser, InputStream in) throws IOException
+    {
+        while (parser.read(in) >= 0)
+            parser.parseFrames(System.currentTimeMillis());
+    }
+
+
+    @Test
+    public void testMixedVersionsAndGarbage() throws Exception
+    {
+        var os = new ByteArrayOutputStream();
+        os.write(new byte[] {0x01, (byte)0xFE, 0x55, 0x00});
+        os.write(encode(newPosMsg(1, 10, 20, 30), false));
+        os.write(newAttitudeFrame());
+        os.write(encode(newPosMsg(2, -10, -20, 300), true));
+        os.write(new byte[] {(byte)0xFD, 0x12});
+        os.write(encode(newPosMsg(3, 11, 22, 33), false));
+
+        for (int chunkSize: new int[] {1, 7, 1000})
+        {
+            received.clear();
+            var parser = newParser();
+            parseAll(parser, chunkedStream(os.toByteArray(), chunkSize));
+
+            assertEquals(List.of("1:10,20,30", "2:-10,-20,300", "3:11,22,33"), received);
+            assertEquals(4, parser.getFrameCount());
+            assertEquals(1, parser.getUnhandledCount());
+        }
+    }
+
+
+    @Test
+    public void testCorruptedFrame() throws Exception
+    {
+        var badFrame = encode(newPosMsg(1, 10, 20, 30), true);
+        badFrame[15] ^= 0x40;
+
+        var os = new ByteArrayOutputStream();
+        os.write(badFrame);
+        os.write(encode(newPosMsg(2, 11, 21, 31), true));
+
+        var parser = newParser();
+        parseAll(parser, new ByteArrayInputStream(os.toByteArray()));
+
+        assertEquals(List.of("2:11,21,31"), received);
+        assertTrue(parser.getCrcErrorCount() > 0);
+    }
+
+
+    @Test
+    public void testTruncatedPayload() throws Exception
+    {
+        // MAVLink 2 senders trim trailing zeros so the decoder must not
+        // see bytes left over from the previous message
+        var os = new ByteArrayOutputStream();
+        os.write(encode(newPosMsg(1, 10, 20, 30), true));
+        os.write(encode(newPosMsg(1, 10, 0, 0), true));
+
+        var parser = newParser();
+        parser.parse(ByteBuffer.wrap(os.toByteArray()), System.currentTimeMillis());
+
+        assertEquals(List.of("1:10,20,30", "1:10,0,0"), received);
+    }
+}
@@ -17,11 +17,12 @@ package org.sensorhub.impl.sensor.rtpcam;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
-import java.util.PriorityQueue;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vast.swe.Base64Decoder;
@@ -31,6 +32,9 @@ import org.vast.swe.Base64Decoder;
  * <p>
  * Demuxer for H264 streams received via RTP (RFC6184).<br/>
  * Only single NAL unit packets and FU-A fragmentation units are supported.
+ * </p><p>
+ * Packets are re-ordered by a {@link RTPJitterBuffer} with preallocated
+ * packet slots so no object is allocated per datagram.
  * </p>
  *
  * @author Alex Robin
@@ -52,17 +56,19 @@ public class RTPH264Receiver extends Thread
     static final int NALU_KEYFRAME = 5;
     static final int NALU_SPS = 7;
     static final int NALU_PPS = 8;
+    static final int DEFAULT_JITTER_BUFFER_SIZE = 64;
+    static final int DEFAULT_MAX_JITTER_DELAY = 50;
     
     volatile boolean started;
     String remoteHost;
     int remotePort, localPort;
-    DatagramSocket rtpSocket;    
+    DatagramChannel rtpChannel;
+    Selector selector;
     RTPH264Callback callback;
-    PriorityQueue<RTPPacket> pktQueue;
-    byte[] payload;
+    RTPJitterBuffer jitterBuffer;
+    int jitterBufferSize = DEFAULT_JITTER_BUFFER_SIZE;
+    int maxJitterDelay = DEFAULT_MAX_JITTER_DELAY;
     ByteBuffer dataBuf;
-    long expandedSeqNum = Long.MIN_VALUE;
-    long lastSeqNum = Long.MIN_VALUE; // last processed sequence number
     boolean discardNAL = false;
     boolean spsReceived = false;
     boolean ppsReceived = false;
@@ -80,6 +86,18 @@ public class RTPH264Receiver extends Thread
     }
     
     
+    /**
+     * Sets jitter buffer parameters. Must be called before the thread is started.
+     * @param size Max number of packets buffered for re-ordering
+     * @param maxDelay Max time to wait for a missing packet, in milliseconds
+     */
+    public void setJitterBufferParams(int size, int maxDelay)
+    {
+        this.jitterBufferSize = size;
+        this.maxJitterDelay = Math.max(1, maxDelay);
+    }
+    
+    
     public void setParameterSets(String paramSetsSDP)
     {
         try
@@ -121,67 +139,43 @@ public class RTPH264Receiver extends Thread
         try
         {
             // bind UDP port for receiving RTP packets
-            rtpSocket = new DatagramSocket(localPort);
-            rtpSocket.setReuseAddress(true);
-            rtpSocket.setReceiveBufferSize(MAX_DATAGRAM_SIZE);
+            rtpChannel = DatagramChannel.open();
+            rtpChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            rtpChannel.setOption(StandardSocketOptions.SO_RCVBUF, MAX_DATAGRAM_SIZE);
+            rtpChannel.bind(new InetSocketAddress(localPort));
             if (remotePort > 0)
-                rtpSocket.send(new DatagramPacket(new byte[4], 0, 4, InetAddress.getByName(remoteHost), remotePort));
+                rtpChannel.send(ByteBuffer.wrap(new byte[4]), new InetSocketAddress(remoteHost, remotePort));
+            
+            // use a selector so we also wake up when jitter buffer deadline expires
+            rtpChannel.configureBlocking(false);
+            selector = Selector.open();
+            rtpChannel.register(selector, SelectionKey.OP_READ);
 
-            final byte[] receiveData = new byte[MAX_DATAGRAM_SIZE];
-            final DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
+            final ByteBuffer receiveBuf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+            final byte[] receiveData = receiveBuf.array();
             
             discardNAL = false;
             spsReceived = false;
             ppsReceived = false;
-            payload = new byte[MAX_DATAGRAM_SIZE];            
             dataBuf = ByteBuffer.allocate(MAX_FRAME_SIZE);
-            pktQueue = new PriorityQueue<>();            
+            jitterBuffer = new RTPJitterBuffer(jitterBufferSize, maxJitterDelay, this::processPacket);
             
             while (started)
             {
-                rtpSocket.receive(receivePacket);
-                    
-                // create an RTPpacket object from the UDP payload
-                int length = receivePacket.getLength();
-                RTPPacket rtpPacket = new RTPPacket(receiveData, length);
-                if (log.isTraceEnabled())
-                {
-                    log.trace("Received RTP packet: seqNum=" + rtpPacket.getSequenceNumber() +
-                              ", timeStamp=" + rtpPacket.getTimeStamp() +
-                              ", payloadType=" + rtpPacket.getPayloadType());
-                }
+                selector.select(maxJitterDelay);
+                selector.selectedKeys().clear();
                 
-                // add packet to re-ordering queue
-                pktQueue.add(expandSeqNum(rtpPacket));
-                
-                // process all packets in queue
-                while (!pktQueue.isEmpty())
+                // read all datagrams available
+                // packets are copied to jitter buffer slots so receive buffer can be reused
+                receiveBuf.clear();
+                while (rtpChannel.receive(receiveBuf) != null)
                 {
-                    long nextSeqNumInQueue = pktQueue.peek().expandedSequenceNumber;
-                    long nextSeqNum = lastSeqNum + 1;
-                    
-                    if (lastSeqNum == Long.MIN_VALUE || nextSeqNumInQueue == nextSeqNum)
-                    {
-                        RTPPacket nextPacket = pktQueue.poll();
-                        log.trace("Processing packet {} -> {}", nextPacket.sequenceNumber, nextPacket.expandedSequenceNumber);
-                        processPacket(nextPacket);
-                        lastSeqNum = nextPacket.expandedSequenceNumber;
-                    }
-                    else
-                    {
-                        log.trace("Waiting for packet {}, Queue size: {}", nextSeqNum, pktQueue.size());
-                        
-                        // discard old packets and current NAL unit if we cannot wait anymore
-                        if (pktQueue.size() > 10)
-                        {
-                            log.debug("Lost packet {}, Dropping frame", nextSeqNum);
-                            lastSeqNum = pktQueue.peek().expandedSequenceNumber - 1;
-                            discardNAL = true;
-                        }
-                        
-                        break;
-                    }
+                    jitterBuffer.add(receiveData, receiveBuf.position(), System.currentTimeMillis());
+                    receiveBuf.clear();
                 }
+                
+                // release packets that waited too long for missing ones
+                jitterBuffer.release(System.currentTimeMillis());
             }
         }
         catch (Exception e)
@@ -189,31 +183,43 @@ public class RTPH264Receiver extends Thread
             if (started)
                 log.error("Error while demuxing H264 RTP stream", e);
         }
+        finally
+        {
+            try
+            {
+                if (selector != null)
+                    selector.close();
+            }
+            catch (IOException e)
+            {
+                log.trace("Error closing selector", e);
+            }
+        }
     }
     
     
-    /*
-     * Utility method to expand the rolling sequence number to a
-     * 64-bits integer for proper sorting
-     */
-    protected RTPPacket expandSeqNum(RTPPacket pkt)
+    protected void processPacket(RTPPacket rtpPacket, boolean afterLoss)
     {
-        if (expandedSeqNum == Long.MIN_VALUE)
-            expandedSeqNum = pkt.sequenceNumber;
+        if (log.isTraceEnabled())
+        {
+            log.trace("Processing RTP packet: seqNum=" + rtpPacket.getSequenceNumber() +
+                      ", expandedSeqNum=" + rtpPacket.expandedSequenceNumber +
+                      ", timeStamp=" + rtpPacket.getTimeStamp() +
+                      ", payloadType=" + rtpPacket.getPayloadType());
+        }
         
-        expandedSeqNum += (short)(pkt.sequenceNumber - expandedSeqNum);
-        pkt.expandedSequenceNumber = expandedSeqNum;
+        // discard current NAL unit if packets were lost
+        if (afterLoss)
+        {
+            log.debug("Lost packet before {}, Dropping frame", rtpPacket.getSequenceNumber());
+            discardNAL = true;
+        }
         
-        return pkt;
-    }
-    
-    
-    protected void processPacket(RTPPacket rtpPacket)
-    {
-        // get the payload bitstream from the RTPpacket object
-        int payload_length = rtpPacket.getPayload(payload);
+        // use the payload bitstream directly from the RTPpacket object
+        byte[] payload = rtpPacket.payload;
+        int payload_length = rtpPacket.getPayloadLength();
         
-        if (rtpPacket.payloadType == 96)
+        if (rtpPacket.payloadType == 96 && payload_length > 0)
         {
             int packetType = (payload[0] & 0x1F);
             log.trace("H264 RTP packet type = {}", packetType);
@@ -262,11 +268,6 @@ public class RTPH264Receiver extends Thread
                         {
                             dataBuf.flip();
                             callback.onFrame(rtpPacket.getTimeStamp() & 0xFFFFFFFF, rtpPacket.getSequenceNumber(), dataBuf, discardNAL);
-                            
-                            // copy buffer
-                            final ByteBuffer newBuf = ByteBuffer.allocate(dataBuf.limit());
-                            newBuf.put(dataBuf);
-                            newBuf.flip();
                         }
                         else
                             log.trace("FU-4: Discarded");
@@ -336,6 +337,15 @@ public class RTPH264Receiver extends Thread
     {
         started = false;
         super.interrupt();
-        rtpSocket.close();
+        
+        try
+        {
+            if (rtpChannel != null)
+                rtpChannel.close();
+        }
+        catch (IOException e)
+        {
+            log.trace("Error closing RTP channel", e);
+        }
     }
 }
@@ -0,0 +1,255 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.rtpcam;
+
+
+/**
+ * <p>
+ * Jitter buffer re-ordering RTP packets in a ring indexed by sequence number.
+ * </p><p>
+ * Packets are released in sequence order as soon as possible. When a packet
+ * is missing, following packets are held until the first one of them has
+ * waited for the maximum delay or until the ring is full, after which the
+ * missing packets are considered lost.<br/>
+ * Packet objects are preallocated and reused so released packets are only
+ * valid until the handler returns.<br/>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class RTPJitterBuffer
+{
+    static final long EMPTY = Long.MIN_VALUE;
+    
+    
+    public interface PacketHandler
+    {
+        /**
+         * Called for each packet released in sequence order
+         * @param pkt the RTP packet (reused after this method returns)
+         * @param afterLoss true if packets were lost just before this one
+         */
+        void onPacket(RTPPacket pkt, boolean afterLoss);
+    }
+    
+    
+    final RTPPacket[] slots;
+    final long[] slotSeqNums;
+    final long[] arrivalTimes;
+    final int mask;
+    final long maxDelay;
+    final PacketHandler handler;
+    
+    long lastSeqNum = EMPTY; // last received expanded sequence number
+    long nextSeqNum = EMPTY; // next sequence number to release
+    int numBuffered;
+    boolean lossPending;
+    long numLost;
+    long numLate;
+    
+    
+    /**
+     * @param capacity Max number of packets in the buffer (rounded up to a power of 2)
+     * @param maxDelay Max time to wait for a missing packet, in milliseconds
+     * @param handler Handler receiving packets in sequence order
+     */
+    public RTPJitterBuffer(int capacity, long maxDelay, PacketHandler handler)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new RTPPacket[size];
+        this.slotSeqNums = new long[size];
+        this.arrivalTimes = new long[size];
+        this.mask = size - 1;
+        this.maxDelay = maxDelay;
+        this.handler = handler;
+        
+        for (int i = 0; i < size; i++)
+        {
+            slots[i] = new RTPPacket();
+            slotSeqNums[i] = EMPTY;
+        }
+    }
+    
+    
+    /**
+     * Adds a packet to the buffer and releases all packets that are ready
+     * @param data buffer containing the RTP packet (data is copied)
+     * @param length length of the RTP packet
+     * @param now current time in milliseconds
+     */
+    public void add(byte[] data, int length, long now)
+    {
+        if (length < RTPPacket.HEADER_SIZE)
+            return;
+        
+        long seqNum = expandSeqNum(((data[2] & 0xFF) << 8) | (data[3] & 0xFF));
+        
+        if (nextSeqNum == EMPTY)
+            nextSeqNum = seqNum;
+        
+        if (seqNum < nextSeqNum)
+        {
+            // sender restarted with a different sequence
+            if (nextSeqNum - seqNum > slots.length)
+                reset(seqNum);
+            else
+            {
+                numLate++;
+                return;
+            }
+        }
+        
+        // release or drop old packets if new one doesn't fit in the ring
+        if (seqNum - nextSeqNum >= slots.length)
+            skipTo(seqNum - slots.length + 1);
+        
+        int idx = (int)(seqNum & mask);
+        if (slotSeqNums[idx] == seqNum)
+            return; // duplicate
+        
+        slots[idx].set(data, length).expandedSequenceNumber = seqNum;
+        slotSeqNums[idx] = seqNum;
+        arrivalTimes[idx] = now;
+        numBuffered++;
+        
+        release(now);
+    }
+    
+    
+    /**
+     * Releases all packets that are ready, including packets that have been
+     * waiting for a missing packet for longer than the max delay
+     * @param now current time in milliseconds
+     */
+    public void release(long now)
+    {
+        while (numBuffered > 0)
+        {
+            int idx = (int)(nextSeqNum & mask);
+            if (slotSeqNums[idx] == nextSeqNum)
+            {
+                deliver(idx);
+                nextSeqNum++;
+                continue;
+            }
+            
+            // find first packet received after the gap
+            // all buffered packets are within one ring length of nextSeqNum
+            long seqNum = nextSeqNum + 1;
+            while (slotSeqNums[(int)(seqNum & mask)] != seqNum)
+                seqNum++;
+            
+            // keep waiting for missing packets until deadline
+            if (now - arrivalTimes[(int)(seqNum & mask)] < maxDelay)
+                break;
+            
+            numLost += seqNum - nextSeqNum;
+            lossPending = true;
+            nextSeqNum = seqNum;
+        }
+    }
+    
+    
+    /*
+     * Release all packets before the given sequence number and count
+     * missing ones as lost
+     */
+    protected void skipTo(long seqNum)
+    {
+        long end = Math.min(seqNum, nextSeqNum + slots.length);
+        while (nextSeqNum < end)
+        {
+            int idx = (int)(nextSeqNum & mask);
+            if (slotSeqNums[idx] == nextSeqNum)
+                deliver(idx);
+            else
+            {
+                numLost++;
+                lossPending = true;
+            }
+            nextSeqNum++;
+        }
+        
+        if (nextSeqNum < seqNum)
+        {
+            numLost += seqNum - nextSeqNum;
+            lossPending = true;
+            nextSeqNum = seqNum;
+        }
+    }
+    
+    
+    protected void reset(long seqNum)
+    {
+        for (int i = 0; i < slotSeqNums.length; i++)
+            slotSeqNums[i] = EMPTY;
+        numBuffered = 0;
+        nextSeqNum = seqNum;
+        lossPending = true;
+    }
+    
+    
+    protected void deliver(int idx)
+    {
+        slotSeqNums[idx] = EMPTY;
+        numBuffered--;
+        boolean afterLoss = lossPending;
+        lossPending = false;
+        handler.onPacket(slots[idx], afterLoss);
+    }
+    
+    
+    /*
+     * Expand the rolling 16-bits sequence number to a 64-bits integer
+     */
+    protected long expandSeqNum(int seqNum)
+    {
+        if (lastSeqNum == EMPTY)
+            lastSeqNum = seqNum;
+        
+        lastSeqNum += (short)(seqNum - lastSeqNum);
+        return lastSeqNum;
+    }
+    
+    
+    /**
+     * @return Number of packets waiting in the buffer
+     */
+    public int getNumBuffered()
+    {
+        return numBuffered;
+    }
+    
+    
+    /**
+     * @return Total number of packets that were never received in time
+     */
+    public long getNumLost()
+    {
+        return numLost;
+    }
+    
+    
+    /**
+     * @return Total number of packets discarded because they arrived after
+     * their sequence number was released
+     */
+    public long getNumLate()
+    {
+        return numLate;
+    }
+}
@@ -50,6 +50,17 @@ public class RTPPacket implements Comparable<RTPPacket>
     public byte[] payload;
 
 
+    /**
+     * Constructor of an empty RTPpacket object that can be filled and reused
+     * with {@link #set(byte[], int)}
+     */
+    public RTPPacket()
+    {
+        header = new byte[HEADER_SIZE];
+        payload = new byte[0];
+    }
+
+
     /**
      * Constructor of an RTPpacket object from header fields and payload bitstream
      * @param payloadType
@@ -90,6 +101,22 @@ public class RTPPacket implements Comparable<RTPPacket>
      * @param packetSize
      */
     public RTPPacket(byte[] packet, int packetSize)
+    {
+        header = new byte[HEADER_SIZE];
+        payload = new byte[Math.max(0, packetSize - HEADER_SIZE)];
+        set(packet, packetSize);
+    }
+
+
+    /**
+     * Fill this RTPpacket object from the packet bitstream.<br/>
+     * Buffers are reused and only reallocated if the payload is larger than
+     * any payload previously stored in this object.
+     * @param packet
+     * @param packetSize
+     * @return this object for chaining
+     */
+    public RTPPacket set(byte[] packet, int packetSize)
     {
         // fill default fields:
         version = 2;
@@ -98,26 +125,27 @@ public class RTPPacket implements Comparable<RTPPacket>
         CC = 0;
         marker = 0;
         ssrc = 0;
+        payloadSize = 0;
 
         // check if total packet size is lower than the header size
         if (packetSize >= HEADER_SIZE)
         {
             // get the header bitsream:
-            header = new byte[HEADER_SIZE];
-            for (int i = 0; i < HEADER_SIZE; i++)
-                header[i] = packet[i];
+            System.arraycopy(packet, 0, header, 0, HEADER_SIZE);
 
             // get the payload bitstream:
             payloadSize = packetSize - HEADER_SIZE;
-            payload = new byte[payloadSize];
-            for (int i = HEADER_SIZE; i < packetSize; i++)
-                payload[i - HEADER_SIZE] = packet[i];
+            if (payload.length < payloadSize)
+                payload = new byte[payloadSize];
+            System.arraycopy(packet, HEADER_SIZE, payload, 0, payloadSize);
 
             //interpret the changing fields of the header:
             payloadType = header[1] & 127;
             sequenceNumber = (header[3] & 0xFF) + 256 * (header[2] & 0xFF);
             timeStamp = (header[7] & 0xFF) + 256 * (header[6] & 0xFF) + 65536 * (header[5] & 0xFF) + 16777216 * (header[4] & 0xFF);
         }
+
+        return this;
     }
 
 
@@ -128,9 +156,7 @@ public class RTPPacket implements Comparable<RTPPacket>
      */
     public int getPayload(byte[] data)
     {
-        for (int i = 0; i < payloadSize; i++)
-            data[i] = payload[i];
-
+        System.arraycopy(payload, 0, data, 0, payloadSize);
         return (payloadSize);
     }
 
@@ -134,6 +134,7 @@ public class RTPVideoOutput<SensorType extends ISensorModule<?>> extends Abstrac
             
             // start RTP/H264 receiving thread
             rtpThread = new RTPH264Receiver(rtspConfig.remoteHost, rtspClient.getRemoteRtpPort(), rtspConfig.localUdpPort, this);
+            rtpThread.setJitterBufferParams(rtspConfig.jitterBufferSize, rtspConfig.maxJitterDelay);
             StreamInfo h264Stream = null;
             int streamIndex = 0;
             int i = 0;
@@ -265,7 +266,9 @@ public class RTPVideoOutput<SensorType extends ISensorModule<?>> extends Abstrac
                 
         if (!packetLost)
         {
-            final byte[] frameBytes = new byte[frameBuf.limit()];
+            // frame data must be copied since the receiver reuses its buffer
+            // a new array is needed because it is published with the data event
+            final byte[] frameBytes = new byte[frameBuf.remaining()];
             frameBuf.get(frameBytes);
             
             executor.execute(new Runnable() {
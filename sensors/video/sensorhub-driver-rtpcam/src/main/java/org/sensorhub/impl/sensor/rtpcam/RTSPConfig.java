@@ -38,6 +38,12 @@ public class RTSPConfig extends TCPConfig
     @DisplayInfo(desc="Only connect to RTSP port without initiating RTSP session")
     public boolean onlyConnectRtsp;
     
+    @DisplayInfo(label="Jitter Buffer Size", desc="Maximum number of RTP packets buffered to re-order packets received out of sequence")
+    public int jitterBufferSize = 64;
+    
+    @DisplayInfo(label="Max Jitter Delay", desc="Maximum time to wait for a missing RTP packet before dropping the frame, in milliseconds")
+    public int maxJitterDelay = 50;
+    
     
     public RTSPConfig()
     {
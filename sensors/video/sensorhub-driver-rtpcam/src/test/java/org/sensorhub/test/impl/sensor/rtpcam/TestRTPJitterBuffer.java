@@ -0,0 +1,119 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.test.impl.sensor.rtpcam;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.sensorhub.impl.sensor.rtpcam.RTPJitterBuffer;
+import static org.junit.Assert.*;
+
+
+public class TestRTPJitterBuffer
+{
+    static final long MAX_DELAY = 50;
+    List<String> released = new ArrayList<>();
+    
+    
+    RTPJitterBuffer newBuffer(int size)
+    {
+        return new RTPJitterBuffer(size, MAX_DELAY, (pkt, afterLoss) -> {
+            assertEquals(pkt.getSequenceNumber() & 0xFF, pkt.payload[0] & 0xFF);
+            released.add((afterLoss ? "!" : "") + pkt.getSequenceNumber());
+        });
+    }
+    
+    
+    static byte[] newPacket(int seqNum)
+    {
+        byte[] pkt = new byte[13];
+        pkt[1] = 96;
+        pkt[2] = (byte)(seqNum >> 8);
+        pkt[3] = (byte)seqNum;
+        pkt[12] = (byte)seqNum;
+        return pkt;
+    }
+    
+    
+    static void add(RTPJitterBuffer buf, long now, int... seqNums)
+    {
+        for (int seqNum: seqNums)
+        {
+            byte[] pkt = newPacket(seqNum);
+            buf.add(pkt, pkt.length, now);
+        }
+    }
+    
+    
+    @Test
+    public void testReorder()
+    {
+        var buf = newBuffer(16);
+        add(buf, 0, 1, 2, 4, 3, 5, 7, 6, 6, 2);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), released);
+        assertEquals(0, buf.getNumLost());
+        assertEquals(2, buf.getNumLate());
+    }
+    
+    
+    @Test
+    public void testLossAfterDeadline()
+    {
+        var buf = newBuffer(16);
+        add(buf, 0, 1, 3, 4);
+        assertEquals(List.of("1"), released);
+        
+        buf.release(MAX_DELAY - 1);
+        assertEquals(List.of("1"), released);
+        
+        buf.release(MAX_DELAY);
+        assertEquals(List.of("1", "!3", "4"), released);
+        assertEquals(1, buf.getNumLost());
+        
+        // late packet is discarded
+        add(buf, MAX_DELAY, 2, 5);
+        assertEquals(List.of("1", "!3", "4", "5"), released);
+        assertEquals(1, buf.getNumLate());
+    }
+    
+    
+    @Test
+    public void testRingFull()
+    {
+        var buf = newBuffer(4);
+        add(buf, 0, 10, 12, 13, 14);
+        assertEquals(List.of("10"), released);
+        
+        // packet 15 doesn't fit in ring so 11 is considered lost
+        add(buf, 0, 15);
+        assertEquals(List.of("10", "!12", "13", "14", "15"), released);
+        
+        // large jump, packets just before 100 can still arrive in time
+        add(buf, 0, 100, 101);
+        assertEquals(List.of("10", "!12", "13", "14", "15"), released);
+        buf.release(MAX_DELAY);
+        assertEquals(List.of("10", "!12", "13", "14", "15", "!100", "101"), released);
+        assertEquals(1 + 84, buf.getNumLost());
+    }
+    
+    
+    @Test
+    public void testSeqNumWrap()
+    {
+        var buf = newBuffer(16);
+        add(buf, 0, 65534, 0, 65535, 1);
+        assertEquals(List.of("65534", "65535", "0", "1"), released);
+    }
+}
@@ -40,6 +40,7 @@ public class NexradConfig extends SensorConfig
 	public String queueName = "NexradQueue_SensorHub_001";  // default name
 	public long queueIdleTimeMinutes = 240;
 	public int queueFileLimit = 8;  // number of files in the disk queue to accumulate before forcing older files out 
+	public long queueGapTimeoutMillis = 5000;  // max time to wait for a missing chunk before skipping it
 	
 	//  Archive AWS controls
 	public String archiveStartTime;
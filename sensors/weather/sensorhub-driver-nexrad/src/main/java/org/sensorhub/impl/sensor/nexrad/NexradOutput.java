@@ -26,7 +26,7 @@ import org.sensorhub.impl.sensor.AbstractSensorOutput;
 import org.sensorhub.impl.sensor.nexrad.aws.AwsNexradUtil;
 import org.sensorhub.impl.sensor.nexrad.aws.LdmRadial;
 import org.sensorhub.impl.sensor.nexrad.aws.MomentDataBlock;
-import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkPathQueue;
+import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkSequencer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vast.data.DataBlockMixed;
@@ -69,7 +69,7 @@ public class NexradOutput extends AbstractSensorOutput<NexradSensor>
 	int numListeners;
 	NexradSensor nexradSensor;
 	//	LdmFilesProvider ldmFilesProvider;
-	ChunkPathQueue chunkQueue;
+	ChunkSequencer chunkQueue;
 
 	//  Listener Check needed to know if anyone is receiving events to know when to delete the AWS queue
 	static final long LISTENER_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1); 
@@ -155,6 +155,7 @@ public class NexradSensor extends AbstractSensorModule<NexradConfig>
 	protected void doStop() throws SensorHubException
 	{
 		dataInterface.stop();
+		radialProvider.stop();
 		if(isRealtime)
 			nexradSqs.stop();
 	}
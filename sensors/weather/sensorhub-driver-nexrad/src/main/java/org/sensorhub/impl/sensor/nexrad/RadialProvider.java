@@ -24,4 +24,8 @@ public interface RadialProvider {
 
 	public List<LdmRadial>  getNextRadials(String site) throws IOException;
 
+	//  Releases resources (e.g. threads) held by the provider, it may be used again after that
+	public default void stop() {
+	}
+
 }
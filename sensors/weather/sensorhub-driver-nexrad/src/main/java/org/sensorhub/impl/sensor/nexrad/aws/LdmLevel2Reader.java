@@ -8,9 +8,9 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
@@ -31,6 +31,7 @@ public class LdmLevel2Reader //implements RadialProvider
 	byte [] b4 = new byte[4];
 	public static final int MESSAGE2_LENGTH = 2356;
 	private static final Logger logger = LoggerFactory.getLogger(LdmLevel2Reader.class);
+	private final Level2MessageParser messageParser = new Level2MessageParser();
 
 	public LdmLevel2Reader() {
 	}
@@ -97,50 +98,18 @@ public class LdmLevel2Reader //implements RadialProvider
 		is.read(bt);
 	}
 
+	/**
+	 * Reads all compressed records from the stream, decoding radials as records are decompressed
+	 */
 	public List<LdmRadial> readMessage31(InputStream is) throws IOException {
-		int ok = is.read(b4);
-		int msgSize = java.nio.ByteBuffer.wrap(b4).getInt();
-		msgSize = Math.abs(msgSize);
-
-		byte [] bfull = new byte[msgSize];
-		ok = is.read(bfull);
-
-		List<LdmRadial> ldmRadials = new ArrayList<>();
-
-		ByteArrayInputStream bas = new ByteArrayInputStream(bfull);
-		int radCnt = 1;
-		try (BZip2CompressorInputStream bzis = new BZip2CompressorInputStream(bas) ) {
-			while(true) {
-
-				MessageHeader msgHdr = readMessageHeader(bzis);
-				if(msgHdr == null)  break;
-				switch(msgHdr.messageType) {
-				case 2:
-					readMessage2(bzis, msgHdr.messageSize);
-					break;
-				case 31:
-					LdmRadial ldmRadial = new LdmRadial();
-					ldmRadial.dataHeader = readDataHeaderBlock(bzis);
-					ldmRadial.volumeDataBlock = readVolumeDataBlock(bzis);
-					readElevationDataBlock(bzis);
-					readRadialDataBlock(bzis);
-					// 
-					for(int i=0; i<ldmRadial.dataHeader.dataBlockCount - 3; i++) {
-						MomentDataBlock momentBlock = readMomentDataBlock(bzis);
-//						System.err.println(momentBlock.blockName + ": " + momentBlock.numGates + ": " + momentBlock.rangeToCenterOfFirstGate + ": "  +momentBlock.rangeSampleInterval );
-						ldmRadial.momentData.put(momentBlock.blockName, momentBlock);
-					}
-					ldmRadials.add(ldmRadial);
-					radCnt++;
-
-					break;
-				default:
-					throw new IOException("Unknown MessageType = " + msgHdr.messageType);
-				}
-			}
-		}
+		return messageParser.readMessages(is);
+	}
 
-		return ldmRadials;
+	/**
+	 * Reads all compressed records of a chunk already loaded in memory
+	 */
+	public List<LdmRadial> readMessage31(ByteBuffer chunk) throws IOException {
+		return messageParser.readMessages(chunk);
 	}
 
 	public MessageHeader readMessageHeader(InputStream is) throws IOException {
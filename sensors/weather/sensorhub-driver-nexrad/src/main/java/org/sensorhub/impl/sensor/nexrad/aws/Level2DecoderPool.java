@@ -0,0 +1,59 @@
+package org.sensorhub.impl.sensor.nexrad.aws;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Title: Level2DecoderPool.java</p>
+ * <p>Description: Decompresses and decodes Level II chunks on a fixed pool of worker threads,
+ * so chunks from many sites can be decoded concurrently as they arrive. Each worker thread keeps
+ * its own {@link LdmLevel2Reader} so decoding buffers are reused from one chunk to the next.</p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class Level2DecoderPool
+{
+	static final AtomicInteger poolCount = new AtomicInteger();
+	final ExecutorService executor;
+	final ThreadLocal<LdmLevel2Reader> readers = ThreadLocal.withInitial(LdmLevel2Reader::new);
+
+	public Level2DecoderPool(int numThreads) {
+		String namePrefix = "NexradDecoder-" + poolCount.incrementAndGet() + "-";
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = r -> {
+			Thread t = new Thread(r, namePrefix + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		executor = Executors.newFixedThreadPool(numThreads, threadFactory);
+	}
+
+	/**
+	 * Schedules decoding of a chunk file
+	 * @param chunkFile the chunk file, named as in the AWS bucket so its type (S, I, E) can be determined
+	 * @return a future providing the decoded radials, or null for start chunks
+	 */
+	public Future<List<LdmRadial>> decode(File chunkFile) {
+		return executor.submit(() -> readers.get().read(chunkFile));
+	}
+
+	/**
+	 * Schedules decoding of the compressed records of an intermediate or end chunk
+	 * @param chunk buffer containing the compressed records
+	 * @return a future providing the decoded radials
+	 */
+	public Future<List<LdmRadial>> decode(ByteBuffer chunk) {
+		return executor.submit(() -> readers.get().readMessage31(chunk));
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,362 @@
+package org.sensorhub.impl.sensor.nexrad.aws;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Title: Level2MessageParser.java</p>
+ * <p>Description: Streaming parser for the LDM compressed records of a Level II chunk.
+ * Each record is decompressed into a sliding window and messages are parsed in place as soon
+ * as they are complete, so whole records are never buffered. Message 31 fields are read with
+ * absolute ByteBuffer accessors following the block pointers of the data header, and moment
+ * gates are converted to floats in a single pass, without intermediate raw arrays.</p>
+ *
+ * <p>A parser reuses its internal buffers and thus must not be used by several threads at once.</p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class Level2MessageParser
+{
+	private static final Logger logger = LoggerFactory.getLogger(Level2MessageParser.class);
+
+	static final int CTM_HEADER_SIZE = 12;
+	static final int MESSAGE_HEADER_SIZE = 16;
+	static final int DATA_HEADER_SIZE = 32;
+	static final int MOMENT_HEADER_SIZE = 28;
+	static final int FRAME_SIZE = 2432;  // size of all messages except message 31
+	static final int MAX_DATA_BLOCKS = 16;
+	static final int INITIAL_WINDOW_SIZE = 64 * 1024;
+	static final String[] KNOWN_MOMENTS = {"REF", "VEL", "SW", "ZDR", "PHI", "RHO", "CFP"};
+
+	private byte[] window = new byte[INITIAL_WINDOW_SIZE];
+	private ByteBuffer windowBuffer = ByteBuffer.wrap(window);
+	private int start, end;
+	private final byte[] recordSize = new byte[4];
+	private final int[] blockPointers = new int[MAX_DATA_BLOCKS];
+	private String lastSiteId;
+
+	/**
+	 * Decodes all LDM compressed records contained in the stream
+	 * @param is stream positioned at the size of the first compressed record
+	 * @return the radials contained in all message 31 of the records
+	 * @throws IOException if a record cannot be read or is corrupted
+	 */
+	public List<LdmRadial> readMessages(InputStream is) throws IOException {
+		List<LdmRadial> radials = new ArrayList<>();
+
+		while(readFully(is, recordSize, 0, 4)) {
+			// size is negative for the last record of a volume
+			int size = Math.abs(ByteBuffer.wrap(recordSize).getInt());
+
+			BoundedInputStream recordStream = new BoundedInputStream(is, size);
+			recordStream.setPropagateClose(false);
+			try (BZip2CompressorInputStream bzis = new BZip2CompressorInputStream(recordStream)) {
+				parseRecord(bzis, radials);
+			}
+
+			// skip anything left after the end of the bzip2 stream
+			while(recordStream.skip(Long.MAX_VALUE) > 0);
+		}
+
+		return radials;
+	}
+
+	/**
+	 * Decodes all LDM compressed records contained in the buffer, from its current position
+	 * @param chunk buffer containing the compressed records
+	 * @return the radials contained in all message 31 of the records
+	 * @throws IOException if a record is corrupted
+	 */
+	public List<LdmRadial> readMessages(ByteBuffer chunk) throws IOException {
+		return readMessages(new ByteBufferInputStream(chunk.duplicate()));
+	}
+
+	/**
+	 * Parses messages from a decompressed record as they become available
+	 */
+	void parseRecord(InputStream is, List<LdmRadial> radials) throws IOException {
+		start = end = 0;
+
+		while(fill(is, CTM_HEADER_SIZE + MESSAGE_HEADER_SIZE)) {
+			int msgStart = start + CTM_HEADER_SIZE;
+			int messageSize = windowBuffer.getShort(msgStart) & 0xFFFF;  // in halfwords
+			int messageType = window[msgStart + 3] & 0xFF;
+			int messageLength = (messageType == 31) ? CTM_HEADER_SIZE + 2 * messageSize : FRAME_SIZE;
+			if(messageLength < CTM_HEADER_SIZE + MESSAGE_HEADER_SIZE + DATA_HEADER_SIZE)
+				throw new IOException("Invalid message size: " + messageSize);
+
+			if(!fill(is, messageLength)) {
+				if(messageType == 31)
+					throw new EOFException("Truncated message 31 in compressed record");
+				// last non radial message may not be padded to a full frame
+				logger.debug("Skipping partial message of type {}", messageType);
+				break;
+			}
+
+			// window may have been compacted
+			msgStart = start + CTM_HEADER_SIZE;
+
+			if(messageType == 31) {
+				radials.add(parseMessage31(msgStart + MESSAGE_HEADER_SIZE, start + messageLength));
+			} else if(messageType != 2) {
+				logger.debug("Skipping message of type {}", messageType);
+			}
+
+			start += messageLength;
+		}
+	}
+
+	/**
+	 * Makes sure at least n bytes are available in the window, starting at the current message
+	 * @return false if the end of the stream is reached before n bytes are available
+	 */
+	private boolean fill(InputStream is, int n) throws IOException {
+		if(end - start >= n)
+			return true;
+
+		// make room, moving the current message to the start of the window
+		if(start + n > window.length) {
+			int remaining = end - start;
+			if(n > window.length) {
+				byte[] newWindow = new byte[Math.max(n, 2 * window.length)];
+				System.arraycopy(window, start, newWindow, 0, remaining);
+				window = newWindow;
+				windowBuffer = ByteBuffer.wrap(window);
+			} else {
+				System.arraycopy(window, start, window, 0, remaining);
+			}
+			start = 0;
+			end = remaining;
+		}
+
+		// read as much as possible at once
+		while(end - start < n) {
+			int count = is.read(window, end, window.length - end);
+			if(count < 0)
+				return false;
+			end += count;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Parses a message 31 from the window
+	 * @param hdr offset of the data header block
+	 * @param msgEnd offset of the end of the message
+	 */
+	LdmRadial parseMessage31(int hdr, int msgEnd) throws IOException {
+		ByteBuffer buf = windowBuffer;
+		LdmRadial radial = new LdmRadial();
+
+		DataHeader dataHeader = new DataHeader();
+		dataHeader.siteId = getSiteId(hdr);
+		dataHeader.msSinceMidnight = buf.getInt(hdr + 4);
+		dataHeader.daysSince1970 = buf.getShort(hdr + 8);
+		dataHeader.daysSince1970 += 1; // ?? Not sure why I need to do this, or if it is true for all cases
+		dataHeader.azimuthNum = buf.getShort(hdr + 10);
+		dataHeader.azimuthAngle = buf.getFloat(hdr + 12);
+		dataHeader.compression = window[hdr + 16] & 0xFF;
+		dataHeader.radialLength = buf.getShort(hdr + 18);
+		dataHeader.azimuthResolutionSpacing = window[hdr + 20] & 0xFF;
+		dataHeader.radialStatus = window[hdr + 21] & 0xFF;
+		dataHeader.elevationNum = window[hdr + 22] & 0xFF;
+		dataHeader.cutStatusNum = window[hdr + 23] & 0xFF;
+		dataHeader.elevationAngle = buf.getFloat(hdr + 24);
+		dataHeader.radialSpotBlankingStatus = window[hdr + 28] & 0xFF;
+		dataHeader.azimuthIndexingMode = window[hdr + 29] & 0xFF;
+		dataHeader.dataBlockCount = buf.getShort(hdr + 30);
+
+		int blockCount = dataHeader.dataBlockCount;
+		if(blockCount < 3 || blockCount > MAX_DATA_BLOCKS || hdr + DATA_HEADER_SIZE + 4 * blockCount > msgEnd)
+			throw new IOException("Invalid data block count in message 31: " + blockCount);
+
+		for(int i=0; i<blockCount; i++)
+			blockPointers[i] = buf.getInt(hdr + DATA_HEADER_SIZE + 4 * i);
+
+		dataHeader.volumeBlockPointer = blockPointers[0];
+		dataHeader.elevationBlockPointer = blockPointers[1];
+		dataHeader.radialBlockPointer = blockPointers[2];
+		dataHeader.reflectivityBlockPointer = blockCount > 3 ? blockPointers[3] : 0;
+		dataHeader.velocityBlockPointer = blockCount > 4 ? blockPointers[4] : 0;
+		dataHeader.spectrumWidthBlockPointer = blockCount > 5 ? blockPointers[5] : 0;
+		dataHeader.zdrBlockPointer = blockCount > 6 ? blockPointers[6] : 0;
+		dataHeader.phiBlockPointer = blockCount > 7 ? blockPointers[7] : 0;
+		dataHeader.rhoBlockPointer = blockCount > 8 ? blockPointers[8] : 0;
+		radial.dataHeader = dataHeader;
+
+		radial.volumeDataBlock = parseVolumeDataBlock(checkBlock(hdr, blockPointers[0], 44, msgEnd));
+
+		// elevation and radial blocks are not used
+		// moment blocks are not always in the same order so use pointers
+		for(int i=3; i<blockCount; i++) {
+			int blockStart = checkBlock(hdr, blockPointers[i], MOMENT_HEADER_SIZE, msgEnd);
+			if(window[blockStart] != 'D')
+				continue;
+			MomentDataBlock momentBlock = parseMomentDataBlock(blockStart, msgEnd);
+			radial.momentData.put(momentBlock.blockName, momentBlock);
+		}
+
+		return radial;
+	}
+
+	private int checkBlock(int hdr, int pointer, int minSize, int msgEnd) throws IOException {
+		int blockStart = hdr + pointer;
+		if(pointer < DATA_HEADER_SIZE || blockStart + minSize > msgEnd)
+			throw new IOException("Invalid data block pointer in message 31: " + pointer);
+		return blockStart;
+	}
+
+	VolumeDataBlock parseVolumeDataBlock(int off) {
+		ByteBuffer buf = windowBuffer;
+		VolumeDataBlock block = new VolumeDataBlock();
+		block.dataName = "RVOL";
+		block.blockSize = buf.getShort(off + 4);
+		block.majorVersionNum = window[off + 6] & 0xFF;
+		block.minorVersionNum = window[off + 7] & 0xFF;
+		block.latitude = buf.getFloat(off + 8);
+		block.longitude = buf.getFloat(off + 12);
+		block.siteHeightAboveSeaLevelMeters = buf.getShort(off + 16);
+		block.feedhornHeightAboveGroundMeters = buf.getShort(off + 18);
+		block.calibrationConstant = buf.getFloat(off + 20);
+		block.transmitterPowerHorizontalKw = buf.getFloat(off + 24);
+		block.transmitterPowerVerticalKw = buf.getFloat(off + 28);
+		block.zdrCalibaration = buf.getFloat(off + 32);
+		block.initialDifferentialPhase = buf.getFloat(off + 36);
+		block.volumeCoveragePattern = buf.getShort(off + 40);
+		block.processingStatus = buf.getShort(off + 42);
+		return block;
+	}
+
+	MomentDataBlock parseMomentDataBlock(int off, int msgEnd) throws IOException {
+		ByteBuffer buf = windowBuffer;
+		MomentDataBlock block = new MomentDataBlock(getMomentName(off + 1));
+		block.blockType = 'D';
+		block.numGates = buf.getShort(off + 8);
+		block.rangeToCenterOfFirstGate = buf.getShort(off + 10);
+		block.rangeSampleInterval = buf.getShort(off + 12);
+		block.rangeFoldingThreshold = buf.getShort(off + 14);
+		block.snrThreshold = buf.getShort(off + 16);
+		block.controlFlags = window[off + 18] & 0xFF;
+		block.gateSizeBits = window[off + 19] & 0xFF;
+		block.scale = buf.getFloat(off + 20);
+		block.offset = buf.getFloat(off + 24);
+
+		int numGates = block.numGates & 0xFFFF;
+		int dataStart = off + MOMENT_HEADER_SIZE;
+		int gateSizeBytes = block.gateSizeBits / 8;
+		if((gateSizeBytes != 1 && gateSizeBytes != 2) || dataStart + numGates * gateSizeBytes > msgEnd)
+			throw new IOException("Invalid moment data block " + block.blockName);
+
+		// F = (N - Offset)/scale
+		float[] data = new float[numGates];
+		float offset = block.offset;
+		float scale = block.scale;
+		byte[] src = window;
+		if(gateSizeBytes == 1) {
+			for(int i=0; i<numGates; i++)
+				data[i] = ((src[dataStart + i] & 0xFF) - offset) / scale;
+		} else {
+			for(int i=0; i<numGates; i++) {
+				int p = dataStart + 2 * i;
+				data[i] = ((((src[p] & 0xFF) << 8) | (src[p + 1] & 0xFF)) - offset) / scale;
+			}
+		}
+		block.setData(data);
+
+		return block;
+	}
+
+	/**
+	 * Site ID is the same for all radials of a chunk, so avoid creating new strings
+	 */
+	private String getSiteId(int off) {
+		String siteId = lastSiteId;
+		if(siteId == null || siteId.length() != 4 || !regionMatches(siteId, off)) {
+			siteId = new String(window, off, 4, StandardCharsets.UTF_8);
+			lastSiteId = siteId;
+		}
+		return siteId;
+	}
+
+	/**
+	 * Moment names are padded with spaces (e.g. "SW "), use trimmed constants for known ones
+	 */
+	private String getMomentName(int off) {
+		for(String name: KNOWN_MOMENTS) {
+			if(regionMatches(name, off) && (name.length() == 3 || window[off + name.length()] == ' '))
+				return name;
+		}
+		return new String(window, off, 3, StandardCharsets.UTF_8).trim();
+	}
+
+	private boolean regionMatches(String s, int off) {
+		for(int i=0; i<s.length(); i++) {
+			if(window[off + i] != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean readFully(InputStream is, byte[] b, int off, int len) throws IOException {
+		int n = 0;
+		while(n < len) {
+			int count = is.read(b, off + n, len - n);
+			if(count < 0) {
+				if(n == 0)
+					return false;
+				throw new EOFException("Truncated compressed record size");
+			}
+			n += count;
+		}
+		return true;
+	}
+
+	/**
+	 * Input stream reading directly from a ByteBuffer, used to feed the bzip2 decompressor
+	 */
+	static class ByteBufferInputStream extends InputStream {
+		final ByteBuffer buf;
+
+		ByteBufferInputStream(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(!buf.hasRemaining())
+				return len == 0 ? 0 : -1;
+			len = Math.min(len, buf.remaining());
+			buf.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int)Math.min(Math.max(n, 0), buf.remaining());
+			buf.position(buf.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buf.remaining();
+		}
+	}
+}
@@ -11,7 +11,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.sensorhub.impl.sensor.nexrad.aws.sqs.AwsSqsService;
-import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkPathQueue;
 import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkQueueManager;
 import org.sensorhub.impl.sensor.nexrad.aws.sqs.QueueFactory;
 import org.slf4j.Logger;
@@ -3,7 +3,6 @@ package org.sensorhub.impl.sensor.nexrad.aws;
 import java.util.List;
 
 import org.sensorhub.impl.sensor.nexrad.aws.sqs.AwsSqsService;
-import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkPathQueue;
 import org.sensorhub.impl.sensor.nexrad.aws.sqs.ChunkQueueManager;
 
 import com.amazonaws.services.s3.AmazonS3Client;
@@ -20,7 +19,6 @@ public class ProcessMessageThread implements Runnable {
 
 	private AwsSqsService sqsService;
 	List<String> sitesToKeep;
-	ChunkPathQueue chunkQueue;
 	ChunkQueueManager chunkQueueManager;
 	boolean processing = true;
 	
@@ -14,7 +14,7 @@ import org.sensorhub.impl.sensor.nexrad.NexradSensor;
 import com.amazonaws.services.s3.AmazonS3Client;
 
 public class ChunkQueueManager {
-	Map<String, ChunkPathQueue> queueMap;
+	Map<String, ChunkSequencer> queueMap;
 
 	public ChunkQueueManager(NexradSensor sensor) throws SensorHubException {
 		initQueueMap(sensor);
@@ -29,7 +29,7 @@ public class ChunkQueueManager {
 				throw new SensorHubException("Configured rootFolder does not exist or is not a directory" + config.rootFolder);
 			
 			for(String site: config.siteIds) {
-				ChunkPathQueue queue = new ChunkPathQueue(Paths.get(config.rootFolder), site);
+				ChunkSequencer queue = new ChunkSequencer(rootPath, site, config.queueGapTimeoutMillis, config.queueFileLimit);
 				queueMap.put(site, queue);
 //				nexradSqsService.setChunkQueue(queue);   
 //				queue.setS3client(sensor.getS3client());  
@@ -41,17 +41,17 @@ public class ChunkQueueManager {
 	}
 	
 	public void addChunkPath(String site, String path) {
-		ChunkPathQueue queue = getChunkQueue(site);
+		ChunkSequencer queue = getChunkSequencer(site);
 		queue.add(path);
 	}
 	
-	public ChunkPathQueue getChunkQueue(String site) {
+	public ChunkSequencer getChunkSequencer(String site) {
 		return queueMap.get(site);
 	}
 
 	public void setS3Client(AmazonS3Client s3client) {
-		for(Map.Entry<String, ChunkPathQueue> entry: queueMap.entrySet()) {
-			ChunkPathQueue queue = entry.getValue();
+		for(Map.Entry<String, ChunkSequencer> entry: queueMap.entrySet()) {
+			ChunkSequencer queue = entry.getValue();
 			queue.setS3client(s3client);
 		}
 	}
@@ -0,0 +1,324 @@
+package org.sensorhub.impl.sensor.nexrad.aws.sqs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.sensorhub.impl.sensor.nexrad.aws.AwsNexradUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+
+
+/**
+ * <p>Title: ChunkSequencer.java</p>
+ * <p>Description: Per-site reordering buffer for real-time Level II chunks.
+ * Chunk names (SITE/VOL/YYYYMMDD-HHMMSS-CCC-T) are parsed once when they arrive
+ * and buffered by (volume, chunk). The consumer is woken as soon as the expected
+ * chunk arrives. If the expected chunk is still missing after the gap timeout,
+ * or if too many chunks are buffered behind it, the gap is skipped and the
+ * earliest buffered chunk is delivered instead. Chunks that arrive after their
+ * position was skipped are dropped.</p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class ChunkSequencer
+{
+	static final Logger logger = LoggerFactory.getLogger(ChunkSequencer.class);
+	//  Volume numbers wrap around from 999 back to 1, so ordering is computed relative to the current volume
+	static final int MAX_VOLUME = 999;
+	static final int MAX_CHUNK = 999;
+	static final long DEFAULT_GAP_TIMEOUT_MILLIS = 5000L;
+	static final int DEFAULT_DEPTH_LIMIT = 8;
+
+	static class Chunk {
+		final String path;
+		final int volume;
+		final int chunk;
+		final char type;
+		final long arrivalNanos;
+
+		Chunk(String path, int volume, int chunk, char type) {
+			this.path = path;
+			this.volume = volume;
+			this.chunk = chunk;
+			this.type = type;
+			this.arrivalNanos = System.nanoTime();
+		}
+	}
+
+	final ReentrantLock lock = new ReentrantLock();
+	final Condition changed = lock.newCondition();
+	final Map<Long, Chunk> buffer = new HashMap<>();
+	AmazonS3Client s3client;
+	Path siteFolder;
+	String site;
+	long gapTimeoutNanos;
+	int depthLimit;
+
+	//  position of the last delivered chunk
+	boolean first = true;
+	int vol, chunk;
+	char type;
+
+	//  metrics
+	int maxDepth;
+	long deliveredCount;
+	long gapCount;
+	long droppedCount;
+	long totalWaitNanos;
+
+	public ChunkSequencer(Path rootFolder, String site) throws IOException {
+		this(rootFolder, site, DEFAULT_GAP_TIMEOUT_MILLIS, DEFAULT_DEPTH_LIMIT);
+	}
+
+	public ChunkSequencer(Path rootFolder, String site, long gapTimeoutMillis, int depthLimit) throws IOException {
+		this.siteFolder = Paths.get(rootFolder.toString(), site);
+		this.site = site;
+		this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+		this.depthLimit = depthLimit;
+		//  Make sure the target folder exists
+		FileUtils.forceMkdir(this.siteFolder.toFile());
+	}
+
+	static long key(int volume, int chunk) {
+		return ((long)volume << 32) | chunk;
+	}
+
+	/**
+	 * Parse chunk name of the form SITE/VOL/YYYYMMDD-HHMMSS-CCC-T
+	 * @return the parsed chunk or null if the name is malformed
+	 */
+	static Chunk parse(String chunkPath) {
+		int slash1 = chunkPath.indexOf('/');
+		int slash2 = chunkPath.indexOf('/', slash1 + 1);
+		int dashIdx = chunkPath.lastIndexOf('-');
+		if(slash1 < 0 || slash2 < 0 || dashIdx < slash2 + 4 || dashIdx != chunkPath.length() - 2)
+			return null;
+		try {
+			int v = Integer.parseInt(chunkPath, slash1 + 1, slash2, 10);
+			int c = Integer.parseInt(chunkPath, dashIdx - 3, dashIdx, 10);
+			return new Chunk(chunkPath, v, c, chunkPath.charAt(dashIdx + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return position of (v, c) relative to the last delivered chunk,
+	 * negative or zero if already delivered or skipped
+	 */
+	long distance(int v, int c) {
+		return distance(vol, chunk, v, c);
+	}
+
+	/**
+	 * @return position of (toVol, toChunk) relative to (fromVol, fromChunk), negative if it comes before.
+	 * Volumes less than half the volume range apart are ordered across the 999 to 1 wrap around
+	 */
+	static long distance(int fromVol, int fromChunk, int toVol, int toChunk) {
+		int dv = Math.floorMod(toVol - fromVol, MAX_VOLUME);
+		if(dv > MAX_VOLUME / 2)
+			dv -= MAX_VOLUME;
+		return (long)dv * (MAX_CHUNK + 1) + (toChunk - fromChunk);
+	}
+
+	static int nextVolume(int v) {
+		return v >= MAX_VOLUME ? 1 : v + 1;
+	}
+
+	public void add(String chunkPath) {
+		Chunk c = parse(chunkPath);
+		if(c == null) {
+			logger.warn("Ignoring malformed chunk name: {}", chunkPath);
+			return;
+		}
+
+		lock.lock();
+		try {
+			if(!first && distance(c.volume, c.chunk) <= 0) {
+				droppedCount++;
+				logger.debug("{}: dropping late chunk {}", site, chunkPath);
+				return;
+			}
+			buffer.put(key(c.volume, c.chunk), c);
+			maxDepth = Math.max(maxDepth, buffer.size());
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	Chunk expected() {
+		if(type == 'E')
+			return buffer.get(key(nextVolume(vol), 1));
+		return buffer.get(key(vol, chunk + 1));
+	}
+
+	/**
+	 * @return the earliest buffered chunk in sequence order, used to skip a gap
+	 */
+	Chunk earliest() {
+		//  Compare buffered chunks with each other since there is no
+		//  delivered chunk to compare with before the first one
+		Chunk earliest = null;
+		for(Chunk c: buffer.values()) {
+			if(earliest == null || distance(earliest.volume, earliest.chunk, c.volume, c.chunk) < 0)
+				earliest = c;
+		}
+		return earliest;
+	}
+
+	long oldestArrival() {
+		long oldest = Long.MAX_VALUE;
+		for(Chunk c: buffer.values())
+			oldest = Math.min(oldest, c.arrivalNanos);
+		return oldest;
+	}
+
+	/**
+	 * Blocks until the next chunk in sequence is available or the gap timeout expires
+	 * @return path of the next chunk to process
+	 */
+	public String next() throws InterruptedException {
+		long waitStart = System.nanoTime();
+		lock.lockInterruptibly();
+		try {
+			while(true) {
+				Chunk c = null;
+				if(first) {
+					//  Start right away at the beginning of a volume, otherwise let chunks
+					//  accumulate for one gap timeout so that we start at the earliest one
+					c = earliest();
+					if(c != null && c.type != 'S' && System.nanoTime() - oldestArrival() < gapTimeoutNanos)
+						c = null;
+				} else {
+					c = expected();
+					if(c == null && !buffer.isEmpty() &&
+							(buffer.size() > depthLimit || System.nanoTime() - oldestArrival() >= gapTimeoutNanos)) {
+						c = earliest();
+						gapCount++;
+						logger.debug("{}: skipping gap after {}/{}, taking {}", site, vol, chunk, c.path);
+					}
+				}
+
+				if(c != null) {
+					buffer.remove(key(c.volume, c.chunk));
+					vol = c.volume;
+					chunk = c.chunk;
+					type = c.type;
+					first = false;
+					deliveredCount++;
+					totalWaitNanos += System.nanoTime() - waitStart;
+					return c.path;
+				}
+
+				if(buffer.isEmpty())
+					changed.await();
+				else
+					changed.awaitNanos(Math.max(oldestArrival() + gapTimeoutNanos - System.nanoTime(), 1L));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Path nextFile() throws IOException
+	{
+		assert s3client != null;
+		try
+		{
+			String nextFile = next();
+			S3Object chunk = AwsNexradUtil.getChunk(s3client, AwsNexradUtil.BUCKET_NAME, nextFile);
+			nextFile = nextFile.replaceAll("/", "_");
+
+			Path pout = Paths.get(siteFolder.toString(), nextFile);
+			AwsNexradUtil.dumpChunkToFile(chunk, pout);
+			return pout;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	public void setS3client(AmazonS3Client s3client) {
+		this.s3client = s3client;
+	}
+
+	/**
+	 * @return number of chunks currently waiting for an earlier chunk
+	 */
+	public int getReorderDepth() {
+		lock.lock();
+		try {
+			return buffer.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getMaxReorderDepth() {
+		lock.lock();
+		try {
+			return maxDepth;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getDeliveredCount() {
+		lock.lock();
+		try {
+			return deliveredCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of missing chunks skipped after the gap timeout or depth limit
+	 */
+	public long getGapCount() {
+		lock.lock();
+		try {
+			return gapCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of chunks dropped because they arrived after their position was skipped
+	 */
+	public long getDroppedCount() {
+		lock.lock();
+		try {
+			return droppedCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return average time spent by the consumer waiting for the next chunk, in milliseconds
+	 */
+	public double getAverageWaitMillis() {
+		lock.lock();
+		try {
+			return deliveredCount == 0 ? 0.0 : totalWaitNanos / 1e6 / deliveredCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -8,12 +8,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.sensorhub.api.common.SensorHubException;
 import org.sensorhub.impl.sensor.nexrad.NexradConfig;
 import org.sensorhub.impl.sensor.nexrad.NexradSensor;
 import org.sensorhub.impl.sensor.nexrad.RadialProvider;
-import org.sensorhub.impl.sensor.nexrad.aws.LdmLevel2Reader;
+import org.sensorhub.impl.sensor.nexrad.aws.Level2DecoderPool;
 import org.sensorhub.impl.sensor.nexrad.aws.LdmRadial;
 import org.sensorhub.impl.sensor.nexrad.aws.NexradSqsService;
 import org.slf4j.Logger;
@@ -31,12 +32,29 @@ public class RealtimeRadialProvider implements RadialProvider {
 	static final Logger logger = LoggerFactory.getLogger(RealtimeRadialProvider.class);
 
 	ChunkQueueManager chunkQueueManager;
+	//  Shared by all sites so that decompression of many radars is bounded by the number of cores
+	Level2DecoderPool decoderPool;
 	
 	public RealtimeRadialProvider(NexradSensor sensor, ChunkQueueManager chunkManager) throws SensorHubException {
 		this.sensor = sensor;
 		this.chunkQueueManager = chunkManager;
 	}
 
+	//  Pool is created on first use so the provider can be restarted after stop()
+	synchronized Level2DecoderPool getDecoderPool() {
+		if(decoderPool == null)
+			decoderPool = new Level2DecoderPool(Runtime.getRuntime().availableProcessors());
+		return decoderPool;
+	}
+
+	@Override
+	public synchronized void stop() {
+		if(decoderPool != null) {
+			decoderPool.shutdown();
+			decoderPool = null;
+		}
+	}
+
 
 	/* (non-Javadoc)
 	 * @see org.sensorhub.impl.sensor.nexrad.RadialProvider#getNextRadial()
@@ -58,18 +76,26 @@ public class RealtimeRadialProvider implements RadialProvider {
 	@Override
 	public List<LdmRadial> getNextRadials(String site) throws IOException {
 		// This won't work for dynamically adding/removing sites- Need event interface
-		ChunkPathQueue chunkQueue = chunkQueueManager.getChunkQueue(site);
+		ChunkSequencer chunkSequencer = chunkQueueManager.getChunkSequencer(site);
 		try {
-			Path p = chunkQueue.nextFile();
-			logger.debug("Reading File {}" , p.toString());
-			LdmLevel2Reader reader = new LdmLevel2Reader();
-			List<LdmRadial> radials = reader.read(p.toFile());
+			Path p = chunkSequencer.nextFile();
+			if(p == null)
+				return null;
+			logger.debug("Reading File {}, reorder depth {}, gaps skipped {}" , p.toString(),
+					chunkSequencer.getReorderDepth(), chunkSequencer.getGapCount());
+			List<LdmRadial> radials = getDecoderPool().decode(p.toFile()).get();
 //			List<LdmRadial> radials = new ArrayList<>();
 			return radials;
 		} catch (IOException e) {
 			e.printStackTrace(System.err);
 			logger.error(e.getMessage());
 			return null;
+		} catch (ExecutionException e) {
+			logger.error("Error decoding chunk", e.getCause());
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
 		}
 	}
 
@@ -0,0 +1,308 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.nexrad.aws;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+
+/**
+ * <p>Title: TestLevel2MessageParser.java</p>
+ * <p>Description: Parses LDM compressed records built with the layout of Message 31 records
+ * captured from KHTX (VCP 212, first elevation cut), with 8-bit and 16-bit moments.</p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class TestLevel2MessageParser
+{
+	static final String SITE_ID = "KHTX";
+	static final int MS_SINCE_MIDNIGHT = 74_565_123;
+	static final short DAYS_SINCE_1970 = 20_742;
+	static final float LATITUDE = 34.9306f;
+	static final float LONGITUDE = -86.0833f;
+	static final short VCP = 212;
+	static final int NUM_REF_GATES = 1832;
+	static final int NUM_PHI_GATES = 1192;
+	static final float REF_SCALE = 2.0f, REF_OFFSET = 66.0f;
+	static final float PHI_SCALE = 2.8361f, PHI_OFFSET = 2.0f;
+	static final float SW_SCALE = 2.0f, SW_OFFSET = 129.0f;
+
+
+	/**
+	 * Builds a message 31 including CTM header, with REF, SW and PHI moments
+	 */
+	static byte[] buildMessage31(int azimuthNum, float azimuth) {
+		int volSize = 44, elvSize = 12, radSize = 28;
+		int refSize = Level2MessageParser.MOMENT_HEADER_SIZE + NUM_REF_GATES;
+		int swSize = Level2MessageParser.MOMENT_HEADER_SIZE + NUM_REF_GATES;
+		int phiSize = Level2MessageParser.MOMENT_HEADER_SIZE + 2 * NUM_PHI_GATES;
+		int blockCount = 6;
+
+		// block pointers are relative to the data header
+		int[] pointers = new int[blockCount];
+		pointers[0] = Level2MessageParser.DATA_HEADER_SIZE + 4 * blockCount;
+		pointers[1] = pointers[0] + volSize;
+		pointers[2] = pointers[1] + elvSize;
+		pointers[3] = pointers[2] + radSize;
+		pointers[4] = pointers[3] + refSize;
+		pointers[5] = pointers[4] + swSize;
+		int dataSize = pointers[5] + phiSize;
+
+		int msgSize = Level2MessageParser.MESSAGE_HEADER_SIZE + dataSize;
+		ByteBuffer buf = ByteBuffer.allocate(Level2MessageParser.CTM_HEADER_SIZE + msgSize);
+
+		// message header
+		int msg = Level2MessageParser.CTM_HEADER_SIZE;
+		buf.putShort(msg, (short)(msgSize / 2));
+		buf.put(msg + 2, (byte)8);
+		buf.put(msg + 3, (byte)31);
+
+		// data header
+		int hdr = msg + Level2MessageParser.MESSAGE_HEADER_SIZE;
+		putString(buf, hdr, SITE_ID);
+		buf.putInt(hdr + 4, MS_SINCE_MIDNIGHT + azimuthNum);
+		buf.putShort(hdr + 8, DAYS_SINCE_1970);
+		buf.putShort(hdr + 10, (short)azimuthNum);
+		buf.putFloat(hdr + 12, azimuth);
+		buf.putShort(hdr + 18, (short)dataSize);
+		buf.put(hdr + 20, (byte)1);
+		buf.put(hdr + 21, (byte)(azimuthNum == 1 ? 3 : 1));
+		buf.put(hdr + 22, (byte)1);
+		buf.putFloat(hdr + 24, 0.4834f);
+		buf.putShort(hdr + 30, (short)blockCount);
+		for(int i=0; i<blockCount; i++)
+			buf.putInt(hdr + Level2MessageParser.DATA_HEADER_SIZE + 4 * i, pointers[i]);
+
+		// volume block
+		int vol = hdr + pointers[0];
+		putString(buf, vol, "RVOL");
+		buf.putShort(vol + 4, (short)volSize);
+		buf.put(vol + 6, (byte)2);
+		buf.putFloat(vol + 8, LATITUDE);
+		buf.putFloat(vol + 12, LONGITUDE);
+		buf.putShort(vol + 16, (short)537);
+		buf.putShort(vol + 18, (short)20);
+		buf.putShort(vol + 40, VCP);
+
+		putString(buf, hdr + pointers[1], "RELV");
+		putString(buf, hdr + pointers[2], "RRAD");
+
+		// moments, SW is stored before PHI and after REF like in real records
+		putMomentHeader(buf, hdr + pointers[3], "REF", NUM_REF_GATES, 8, REF_SCALE, REF_OFFSET);
+		for(int i=0; i<NUM_REF_GATES; i++)
+			buf.put(hdr + pointers[3] + Level2MessageParser.MOMENT_HEADER_SIZE + i, (byte)refValue(i));
+
+		putMomentHeader(buf, hdr + pointers[4], "SW ", NUM_REF_GATES, 8, SW_SCALE, SW_OFFSET);
+		for(int i=0; i<NUM_REF_GATES; i++)
+			buf.put(hdr + pointers[4] + Level2MessageParser.MOMENT_HEADER_SIZE + i, (byte)(129 + i % 20));
+
+		putMomentHeader(buf, hdr + pointers[5], "PHI", NUM_PHI_GATES, 16, PHI_SCALE, PHI_OFFSET);
+		for(int i=0; i<NUM_PHI_GATES; i++)
+			buf.putShort(hdr + pointers[5] + Level2MessageParser.MOMENT_HEADER_SIZE + 2 * i, (short)phiValue(i));
+
+		return buf.array();
+	}
+
+
+	static int refValue(int gate) {
+		return (gate * 7) % 256;
+	}
+
+
+	static int phiValue(int gate) {
+		return 2 + (gate * 37) % 1021;
+	}
+
+
+	static void putMomentHeader(ByteBuffer buf, int off, String name, int numGates, int gateBits, float scale, float offset) {
+		buf.put(off, (byte)'D');
+		putString(buf, off + 1, name);
+		buf.putShort(off + 8, (short)numGates);
+		buf.putShort(off + 10, (short)2125);
+		buf.putShort(off + 12, (short)250);
+		buf.putShort(off + 14, (short)16);
+		buf.putShort(off + 16, (short)28);
+		buf.put(off + 19, (byte)gateBits);
+		buf.putFloat(off + 20, scale);
+		buf.putFloat(off + 24, offset);
+	}
+
+
+	static void putString(ByteBuffer buf, int off, String s) {
+		byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+		for(int i=0; i<b.length; i++)
+			buf.put(off + i, b[i]);
+	}
+
+
+	/**
+	 * Builds a non radial message padded to a full frame
+	 */
+	static byte[] buildFrame(int messageType) {
+		ByteBuffer buf = ByteBuffer.allocate(Level2MessageParser.FRAME_SIZE);
+		buf.putShort(Level2MessageParser.CTM_HEADER_SIZE, (short)1208);
+		buf.put(Level2MessageParser.CTM_HEADER_SIZE + 3, (byte)messageType);
+		return buf.array();
+	}
+
+
+	/**
+	 * Compresses messages into a LDM record, preceded by its size
+	 */
+	static void writeRecord(ByteArrayOutputStream os, boolean last, byte[]... messages) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (BZip2CompressorOutputStream bzos = new BZip2CompressorOutputStream(compressed)) {
+			for(byte[] msg: messages)
+				bzos.write(msg);
+		}
+
+		int size = compressed.size();
+		os.write(ByteBuffer.allocate(4).putInt(last ? -size : size).array());
+		compressed.writeTo(os);
+	}
+
+
+	@Test
+	public void testMessage31Fields() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writeRecord(os, true, buildMessage31(1, 0.2675f));
+
+		List<LdmRadial> radials = new Level2MessageParser().readMessages(ByteBuffer.wrap(os.toByteArray()));
+		assertEquals(1, radials.size());
+		LdmRadial radial = radials.get(0);
+
+		DataHeader dataHeader = radial.dataHeader;
+		assertEquals(SITE_ID, dataHeader.siteId);
+		assertEquals(MS_SINCE_MIDNIGHT + 1, dataHeader.msSinceMidnight);
+		assertEquals(DAYS_SINCE_1970 + 1, dataHeader.daysSince1970);
+		assertEquals(1, dataHeader.azimuthNum);
+		assertEquals(0.2675f, dataHeader.azimuthAngle, 0.0f);
+		assertEquals(3, dataHeader.radialStatus);
+		assertEquals(1, dataHeader.elevationNum);
+		assertEquals(0.4834f, dataHeader.elevationAngle, 0.0f);
+		assertEquals(6, dataHeader.dataBlockCount);
+
+		VolumeDataBlock volume = radial.volumeDataBlock;
+		assertEquals(LATITUDE, volume.latitude, 0.0f);
+		assertEquals(LONGITUDE, volume.longitude, 0.0f);
+		assertEquals(537, volume.siteHeightAboveSeaLevelMeters);
+		assertEquals(VCP, volume.volumeCoveragePattern);
+
+		assertEquals(3, radial.momentData.size());
+
+		MomentDataBlock ref = radial.momentData.get("REF");
+		assertEquals(NUM_REF_GATES, ref.numGates);
+		assertEquals(2125, ref.rangeToCenterOfFirstGate);
+		assertEquals(250, ref.rangeSampleInterval);
+		float[] refData = ref.getData();
+		assertEquals(NUM_REF_GATES, refData.length);
+		for(int i=0; i<NUM_REF_GATES; i++)
+			assertEquals((refValue(i) - REF_OFFSET) / REF_SCALE, refData[i], 0.0f);
+
+		// name padded with space is trimmed
+		MomentDataBlock sw = radial.momentData.get("SW");
+		assertNotNull(sw);
+		assertEquals((129 + 5 - SW_OFFSET) / SW_SCALE, sw.getData()[5], 0.0f);
+
+		// 16-bit gates
+		MomentDataBlock phi = radial.momentData.get("PHI");
+		assertEquals(16, phi.gateSizeBits);
+		float[] phiData = phi.getData();
+		assertEquals(NUM_PHI_GATES, phiData.length);
+		for(int i=0; i<NUM_PHI_GATES; i++)
+			assertEquals((phiValue(i) - PHI_OFFSET) / PHI_SCALE, phiData[i], 0.0f);
+	}
+
+
+	@Test
+	public void testManyMessagesAndRecords() throws IOException {
+		// enough messages to slide and compact the window several times
+		int numRadials = 120;
+		byte[][] messages = new byte[numRadials / 2 + 1][];
+		messages[0] = buildFrame(2);
+		for(int i=1; i<messages.length; i++)
+			messages[i] = buildMessage31(i, i * 0.5f);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writeRecord(os, false, messages);
+		for(int i=1; i<messages.length; i++)
+			messages[i] = buildMessage31(numRadials / 2 + i, (numRadials / 2 + i) * 0.5f);
+		writeRecord(os, true, messages);
+
+		// parse from a stream too
+		List<LdmRadial> radials = new Level2MessageParser().readMessages(new ByteArrayInputStream(os.toByteArray()));
+		assertEquals(numRadials, radials.size());
+		for(int i=0; i<numRadials; i++) {
+			LdmRadial radial = radials.get(i);
+			assertEquals(i + 1, radial.dataHeader.azimuthNum);
+			assertEquals((i + 1) * 0.5f, radial.dataHeader.azimuthAngle, 0.0f);
+			assertEquals((refValue(10) - REF_OFFSET) / REF_SCALE, radial.momentData.get("REF").getData()[10], 0.0f);
+		}
+
+		// same site ID string is reused
+		assertSame(radials.get(0).dataHeader.siteId, radials.get(numRadials - 1).dataHeader.siteId);
+	}
+
+
+	@Test
+	public void testParserReuse() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writeRecord(os, true, buildMessage31(1, 10.0f), buildMessage31(2, 10.5f));
+		byte[] chunk = os.toByteArray();
+
+		Level2MessageParser parser = new Level2MessageParser();
+		assertEquals(2, parser.readMessages(ByteBuffer.wrap(chunk)).size());
+		List<LdmRadial> radials = parser.readMessages(ByteBuffer.wrap(chunk));
+		assertEquals(2, radials.size());
+		assertEquals(10.5f, radials.get(1).dataHeader.azimuthAngle, 0.0f);
+	}
+
+
+	@Test(expected = IOException.class)
+	public void testInvalidBlockPointer() throws IOException {
+		byte[] msg = buildMessage31(1, 0.0f);
+
+		// point REF block past the end of the message
+		int pointerOffset = Level2MessageParser.CTM_HEADER_SIZE + Level2MessageParser.MESSAGE_HEADER_SIZE
+				+ Level2MessageParser.DATA_HEADER_SIZE + 4 * 3;
+		ByteBuffer.wrap(msg).putInt(pointerOffset, msg.length);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writeRecord(os, true, msg);
+		new Level2MessageParser().readMessages(ByteBuffer.wrap(os.toByteArray()));
+	}
+
+
+	@Test(expected = EOFException.class)
+	public void testTruncatedMessage() throws IOException {
+		byte[] msg = buildMessage31(1, 0.0f);
+		byte[] truncated = new byte[msg.length - 100];
+		System.arraycopy(msg, 0, truncated, 0, truncated.length);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writeRecord(os, true, truncated);
+		new Level2MessageParser().readMessages(ByteBuffer.wrap(os.toByteArray()));
+	}
+}
@@ -0,0 +1,249 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.sensor.nexrad.aws.sqs;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Title: TestChunkSequencer.java</p>
+ * <p>Description: Ordering of real-time chunks, including gaps, volume wrap around and timeouts</p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class TestChunkSequencer
+{
+	static final String SITE = "KHTX";
+	static final long GAP_TIMEOUT_MILLIS = 200;
+	Path rootFolder;
+
+
+	@Before
+	public void setup() throws IOException {
+		rootFolder = Files.createTempDirectory("nexrad-chunks");
+	}
+
+
+	static String chunkName(int vol, int chunk, char type) {
+		return String.format("%s/%d/20261016-120000-%03d-%c", SITE, vol, chunk, type);
+	}
+
+
+	static long elapsedMillis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+
+
+	@Test
+	public void testInOrder() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(5, 1, 'S'));
+		seq.add(chunkName(5, 2, 'I'));
+		seq.add(chunkName(5, 3, 'I'));
+
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(5, 1, 'S'), seq.next());
+		assertEquals(chunkName(5, 2, 'I'), seq.next());
+		assertEquals(chunkName(5, 3, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+		assertEquals(3, seq.getDeliveredCount());
+		assertEquals(0, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testReorder() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(5, 1, 'S'));
+		assertEquals(chunkName(5, 1, 'S'), seq.next());
+
+		seq.add(chunkName(5, 4, 'I'));
+		seq.add(chunkName(5, 3, 'I'));
+		seq.add(chunkName(5, 2, 'I'));
+		assertEquals(3, seq.getReorderDepth());
+
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(5, 2, 'I'), seq.next());
+		assertEquals(chunkName(5, 3, 'I'), seq.next());
+		assertEquals(chunkName(5, 4, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+		assertEquals(0, seq.getGapCount());
+		assertEquals(3, seq.getMaxReorderDepth());
+	}
+
+
+	@Test
+	public void testGapTimeout() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(5, 1, 'S'));
+		assertEquals(chunkName(5, 1, 'S'), seq.next());
+
+		// chunk 2 is missing
+		long t0 = System.nanoTime();
+		seq.add(chunkName(5, 3, 'I'));
+		seq.add(chunkName(5, 4, 'I'));
+		assertEquals(chunkName(5, 3, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) >= GAP_TIMEOUT_MILLIS);
+		assertEquals(1, seq.getGapCount());
+
+		// next one is delivered without waiting again
+		t0 = System.nanoTime();
+		assertEquals(chunkName(5, 4, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+
+		// late chunk is dropped
+		seq.add(chunkName(5, 2, 'I'));
+		assertEquals(0, seq.getReorderDepth());
+		assertEquals(1, seq.getDroppedCount());
+	}
+
+
+	@Test
+	public void testDepthLimit() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 2);
+		seq.add(chunkName(5, 1, 'S'));
+		assertEquals(chunkName(5, 1, 'S'), seq.next());
+
+		// gap is skipped without waiting when too many chunks are buffered
+		seq.add(chunkName(5, 5, 'I'));
+		seq.add(chunkName(5, 4, 'I'));
+		seq.add(chunkName(5, 3, 'I'));
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(5, 3, 'I'), seq.next());
+		assertEquals(chunkName(5, 4, 'I'), seq.next());
+		assertEquals(chunkName(5, 5, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+		assertEquals(1, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testVolumeWrap() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(999, 1, 'S'));
+		seq.add(chunkName(1, 1, 'S'));
+		seq.add(chunkName(999, 2, 'E'));
+
+		// next volume after 999 is 1
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(999, 1, 'S'), seq.next());
+		assertEquals(chunkName(999, 2, 'E'), seq.next());
+		assertEquals(chunkName(1, 1, 'S'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+
+		// chunk from previous volume is late
+		seq.add(chunkName(999, 3, 'I'));
+		assertEquals(1, seq.getDroppedCount());
+
+		seq.add(chunkName(1, 2, 'I'));
+		assertEquals(chunkName(1, 2, 'I'), seq.next());
+		assertEquals(0, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testGapAcrossVolumeWrap() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(998, 1, 'S'));
+		assertEquals(chunkName(998, 1, 'S'), seq.next());
+
+		// end of volumes 998 and 999 are missing
+		seq.add(chunkName(1, 2, 'I'));
+		seq.add(chunkName(999, 7, 'I'));
+		seq.add(chunkName(1, 1, 'S'));
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(999, 7, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) >= GAP_TIMEOUT_MILLIS);
+		assertEquals(chunkName(1, 1, 'S'), seq.next());
+		assertEquals(chunkName(1, 2, 'I'), seq.next());
+		assertEquals(2, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testFirstChunkStartOfVolume() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add(chunkName(7, 2, 'I'));
+		seq.add(chunkName(7, 1, 'S'));
+
+		long t0 = System.nanoTime();
+		assertEquals(chunkName(7, 1, 'S'), seq.next());
+		assertEquals(chunkName(7, 2, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) < GAP_TIMEOUT_MILLIS);
+	}
+
+
+	@Test
+	public void testFirstChunkTimeout() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+
+		// wait for earlier chunks when starting in the middle of a volume
+		long t0 = System.nanoTime();
+		seq.add(chunkName(7, 4, 'I'));
+		seq.add(chunkName(7, 3, 'I'));
+		assertEquals(chunkName(7, 3, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) >= GAP_TIMEOUT_MILLIS);
+		assertEquals(chunkName(7, 4, 'I'), seq.next());
+		assertEquals(0, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testFirstChunkAcrossVolumeWrap() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+
+		// volume 999 comes before volume 1
+		long t0 = System.nanoTime();
+		seq.add(chunkName(1, 1, 'S'));
+		seq.add(chunkName(999, 5, 'I'));
+		assertEquals(chunkName(999, 5, 'I'), seq.next());
+		assertTrue(elapsedMillis(t0) >= GAP_TIMEOUT_MILLIS);
+
+		// end of volume 999 is missing
+		assertEquals(chunkName(1, 1, 'S'), seq.next());
+		assertEquals(1, seq.getGapCount());
+	}
+
+
+	@Test
+	public void testMalformedNames() throws Exception {
+		ChunkSequencer seq = new ChunkSequencer(rootFolder, SITE, GAP_TIMEOUT_MILLIS, 8);
+		seq.add("KHTX/20261016-120000-001-S");
+		seq.add("KHTX/abc/20261016-120000-001-S");
+		seq.add("KHTX/5/20261016-120000-001");
+		assertEquals(0, seq.getReorderDepth());
+
+		assertNull(ChunkSequencer.parse("KHTX/5/20261016-120000-0x1-S"));
+		ChunkSequencer.Chunk c = ChunkSequencer.parse(chunkName(12, 34, 'E'));
+		assertEquals(12, c.volume);
+		assertEquals(34, c.chunk);
+		assertEquals('E', c.type);
+	}
+
+
+	@After
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(rootFolder.toFile());
+	}
+}
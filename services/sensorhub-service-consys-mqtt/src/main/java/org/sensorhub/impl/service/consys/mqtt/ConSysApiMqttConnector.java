@@ -29,6 +29,7 @@ import org.sensorhub.api.comm.mqtt.InvalidPayloadException;
 import org.sensorhub.api.comm.mqtt.IMqttServer.IMqttHandler;
 import org.sensorhub.api.comm.mqtt.ImplSpecificException;
 import org.sensorhub.api.comm.mqtt.InvalidTopicException;
+import org.sensorhub.api.comm.mqtt.MqttBufferPool;
 import org.sensorhub.api.comm.mqtt.MqttException;
 import org.sensorhub.api.comm.mqtt.MqttOutputStream;
 import org.sensorhub.impl.service.consys.InvalidRequestException;
@@ -54,6 +55,7 @@ public class ConSysApiMqttConnector implements IMqttHandler
     ConSysApiServlet servlet;
     String endpoint;
     Map<String, MqttSubscriber> subscribers = new ConcurrentHashMap<>();
+    MqttBufferPool bufferPool = new MqttBufferPool();
     
     
     class MqttSubscriber implements StreamHandler
@@ -69,7 +71,7 @@ public class ConSysApiMqttConnector implements IMqttHandler
         {
             this.server = server;
             this.topic = topic;
-            this.os = new MqttOutputStream(server, topic, 1024, false);
+            this.os = new MqttOutputStream(server, topic, bufferPool, 1024, false);
         }
 
         @Override
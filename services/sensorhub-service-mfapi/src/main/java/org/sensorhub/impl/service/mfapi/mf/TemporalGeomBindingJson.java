@@ -15,6 +15,7 @@ Copyright (C) 2020 Sensia Software LLC. All Rights Reserved.
 package org.sensorhub.impl.service.mfapi.mf;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,6 +44,8 @@ public class TemporalGeomBindingJson extends ResourceBindingJson<BigId, IObsData
     ObsHandlerContextData contextData;
     IObsStore obsStore;
     Map<BigId, TemporalPropCollector> dataStreamCollectors;
+    TemporalQueryOptions options;
+    TemporalPageCursor cursor;
     
     static final Set<String> GEOM_DEFS = ImmutableSet.of(
         GeoPosHelper.DEF_LATITUDE_GEODETIC,
@@ -58,6 +61,12 @@ public class TemporalGeomBindingJson extends ResourceBindingJson<BigId, IObsData
         this.contextData = (ObsHandlerContextData)ctx.getData();
         this.obsStore = obsStore;
         this.dataStreamCollectors = new HashMap<>();
+        
+        var queryParams = ctx.getParameterMap();
+        this.options = TemporalQueryOptions.parse(queryParams);
+        this.cursor = TemporalPageCursor.parse(queryParams);
+        if (cursor == null)
+            cursor = new TemporalPageCursor();
     }
     
     
@@ -81,9 +90,11 @@ public class TemporalGeomBindingJson extends ResourceBindingJson<BigId, IObsData
             
             var col = new TemporalPropCollector(dsID);
             col.setDataComponents(dsInfo.getRecordStructure());
+            col.setResampleStep(options.resampleStep);
             return col;
         });
         
+        cursor.advance(obs);
         if (collector != null)
             collector.collect(obs);
     }
@@ -106,20 +117,30 @@ public class TemporalGeomBindingJson extends ResourceBindingJson<BigId, IObsData
             writer.name("id").value("tg-" + idEncoders.getDataStreamIdEncoder().encodeID(ds.dsId));
             writer.name("type").value("MovingPoint");
             
+            // select points to keep if trajectory is simplified
+            var numRecords = ds.getNumRecords();
+            var keep = options.isSimplified() ? simplify(ds) : null;
+            
             writer.name("datetimes").beginArray();
-            for (var t: ds.dateTimes)
-                writer.value(t.toString());
+            for (int i = 0; i < numRecords; i++)
+            {
+                if (keep == null || keep.get(i))
+                    writer.value(ds.getDateTime(i).toString());
+            }
             writer.endArray();
             
             writer.name("coordinates").beginArray();
-            for (int i = 0; i < ds.dateTimes.size(); i++)
+            for (int i = 0; i < numRecords; i++)
             {
+                if (keep != null && !keep.get(i))
+                    continue;
+                
                 writer.beginArray();
                 ((JsonInliningWriter)writer).writeInline(true);
                 for (var prop: ds.temporalProperties)
                 {
                     if (prop.comp.getParent() instanceof Vector)
-                        writer.jsonValue(prop.values.get(i).toString());
+                        prop.writeValue(writer, i);
                 }
                 writer.endArray();
                 ((JsonInliningWriter)writer).writeInline(false);
@@ -131,7 +152,23 @@ public class TemporalGeomBindingJson extends ResourceBindingJson<BigId, IObsData
             writer.endObject();
         }
         
-        endJsonCollection(writer, links);
+        endJsonCollection(writer, cursor.updateNextLink(links));
+    }
+    
+    
+    /*
+     * Simplifies the part of the trajectory contained in the current page.
+     * The whole track is never loaded in memory, so the first and last points
+     * of each page are always kept and pages are simplified independently
+     */
+    BitSet simplify(TemporalPropCollector ds)
+    {
+        var lat = ds.getDoubleValues(GeoPosHelper.DEF_LATITUDE_GEODETIC);
+        var lon = ds.getDoubleValues(GeoPosHelper.DEF_LONGITUDE);
+        if (lat == null || lon == null)
+            return null;
+        
+        return TrajectorySimplifier.simplify(lon, lat, ds.getNumRecords(), options.simplifyTolerance);
     }
     
     
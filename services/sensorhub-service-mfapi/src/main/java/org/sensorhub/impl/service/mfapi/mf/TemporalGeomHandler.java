@@ -99,7 +99,11 @@ public class TemporalGeomHandler extends BaseResourceHandler<BigId, IObsData, Ob
             .withFois(parent.internalID);
         
         // phenomenonTime param
+        // restricted to start at the end of the previous page when paging with a cursor
+        var cursor = TemporalPageCursor.parse(queryParams);
         var phenomenonTime = parseTimeStampArg("datetime", queryParams);
+        if (cursor != null)
+            phenomenonTime = cursor.restrict(phenomenonTime);
         if (phenomenonTime != null)
             builder.withPhenomenonTime(phenomenonTime);
         
@@ -121,8 +125,12 @@ public class TemporalGeomHandler extends BaseResourceHandler<BigId, IObsData, Ob
                 .build());
         }
         
+        // skip observations already returned at the cursor time stamp
+        if (cursor != null)
+            builder.withValuePredicate(cursor.notYetReturned());
+        
         // limit
-        // need to limit to offset+limit+1 since we rescan from the beginning for now
+        // offset is only used by clients that don't follow the next page link
         if (limit != Long.MAX_VALUE)
             builder.withLimit(offset+limit+1);
         
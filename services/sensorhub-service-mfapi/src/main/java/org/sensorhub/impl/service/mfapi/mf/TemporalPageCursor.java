@@ -0,0 +1,229 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.sensorhub.api.data.IObsData;
+import org.sensorhub.api.datastore.TemporalFilter;
+import org.sensorhub.impl.service.consys.InvalidRequestException;
+import org.sensorhub.impl.service.consys.ServiceErrors;
+import org.sensorhub.impl.service.consys.resource.ResourceLink;
+
+
+/**
+ * <p>
+ * Position of the last observation of a page of temporal geometries or
+ * properties (keyset paging).<br/>
+ * The next page link carries this position in the cursor parameter instead
+ * of an offset, so that the query for the next page resumes where the previous
+ * one ended rather than rescanning and skipping all previous results.
+ * </p><p>
+ * The cursor holds the phenomenon time of the last observation, and the
+ * datastream and result time of each observation already returned at that
+ * time stamp. Since results are filtered by feature of interest, these are
+ * enough to identify observations sharing the same phenomenon time without
+ * relying on the order in which the store returns them.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+class TemporalPageCursor
+{
+    static final String CURSOR_PARAM = "cursor";
+    static final String OFFSET_PARAM = "offset";
+    static final String NEXT_REL = "next";
+    static final char SEPARATOR = '~';
+    static final String KEY_SEPARATOR = ",";
+    
+    Instant phenomenonTime;
+    Set<String> returnedAtTime = new HashSet<>();
+    
+    
+    TemporalPageCursor()
+    {
+    }
+    
+    
+    TemporalPageCursor(Instant phenomenonTime, Collection<String> returnedAtTime)
+    {
+        this.phenomenonTime = phenomenonTime;
+        this.returnedAtTime.addAll(returnedAtTime);
+    }
+    
+    
+    /**
+     * Parses the cursor from the request parameters
+     * @param queryParams Request query parameters
+     * @return The cursor or null if none was provided
+     * @throws InvalidRequestException if the cursor is invalid
+     */
+    static TemporalPageCursor parse(Map<String, String[]> queryParams) throws InvalidRequestException
+    {
+        var values = queryParams.get(CURSOR_PARAM);
+        if (values == null || values.length == 0)
+            return null;
+        
+        try
+        {
+            var token = new String(Base64.getUrlDecoder().decode(values[0]), StandardCharsets.UTF_8);
+            var sep = token.indexOf(SEPARATOR);
+            var time = Instant.parse(token.substring(0, sep));
+            var keys = token.substring(sep+1).split(KEY_SEPARATOR);
+            if (keys[0].isEmpty())
+                throw new IllegalArgumentException();
+            return new TemporalPageCursor(time, Arrays.asList(keys));
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e)
+        {
+            throw ServiceErrors.badRequest("Invalid cursor: " + values[0]);
+        }
+    }
+    
+    
+    String encode()
+    {
+        var token = phenomenonTime.toString() + SEPARATOR + String.join(KEY_SEPARATOR, returnedAtTime);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    
+    /**
+     * Moves the cursor to the next observation returned in the page
+     * @param obs The observation
+     */
+    void advance(IObsData obs)
+    {
+        var time = obs.getPhenomenonTime();
+        if (!time.equals(phenomenonTime))
+        {
+            phenomenonTime = time;
+            returnedAtTime.clear();
+        }
+        
+        returnedAtTime.add(getKey(obs));
+    }
+    
+    
+    /*
+     * Key identifying an observation among those sharing the same phenomenon time
+     */
+    static String getKey(IObsData obs)
+    {
+        var resultTime = obs.getResultTime();
+        return obs.getDataStreamID().getIdAsLong() + "@" +
+            (resultTime != null ? resultTime.toString() : "");
+    }
+    
+    
+    /**
+     * Restricts the time filter to start at the cursor position
+     * @param timeFilter Requested time filter or null if none
+     * @return The restricted time filter
+     */
+    TemporalFilter restrict(TemporalFilter timeFilter)
+    {
+        var begin = phenomenonTime;
+        var end = Instant.MAX;
+        
+        if (timeFilter != null)
+        {
+            if (timeFilter.getMin().isAfter(begin))
+                begin = timeFilter.getMin();
+            end = timeFilter.getMax();
+        }
+        
+        return new TemporalFilter.Builder()
+            .withRange(begin, end)
+            .build();
+    }
+    
+    
+    /**
+     * Predicate rejecting observations that have the same time stamp as the
+     * cursor and were already returned by previous pages.<br/>
+     * The predicate is stateless so the store can evaluate it any number of
+     * times and in any order
+     * @return The predicate
+     */
+    Predicate<IObsData> notYetReturned()
+    {
+        var time = phenomenonTime;
+        var returned = Set.copyOf(returnedAtTime);
+        return obs -> !time.equals(obs.getPhenomenonTime()) || !returned.contains(getKey(obs));
+    }
+    
+    
+    /**
+     * Replaces the offset of the next page link by this cursor
+     * @param links Links generated for the page
+     * @return Updated links
+     */
+    Collection<ResourceLink> updateNextLink(Collection<ResourceLink> links)
+    {
+        if (links == null || phenomenonTime == null)
+            return links;
+        
+        var updatedLinks = new ArrayList<ResourceLink>(links.size());
+        for (var link: links)
+        {
+            if (NEXT_REL.equals(link.getRel()))
+            {
+                link = new ResourceLink.Builder()
+                    .rel(link.getRel())
+                    .title(link.getTitle())
+                    .type(link.getType())
+                    .href(getNextHref(link.getHref()))
+                    .build();
+            }
+            
+            updatedLinks.add(link);
+        }
+        
+        return updatedLinks;
+    }
+    
+    
+    String getNextHref(String href)
+    {
+        var queryIdx = href.indexOf('?');
+        var buf = new StringBuilder(href.length() + 32);
+        buf.append(queryIdx < 0 ? href : href.substring(0, queryIdx)).append('?');
+        
+        // keep all params except offset and previous cursor
+        if (queryIdx >= 0)
+        {
+            for (var param: href.substring(queryIdx+1).split("&"))
+            {
+                var name = param.split("=", 2)[0];
+                if (param.isEmpty() || OFFSET_PARAM.equals(name) || CURSOR_PARAM.equals(name))
+                    continue;
+                buf.append(param).append('&');
+            }
+        }
+        
+        return buf.append(CURSOR_PARAM).append('=').append(encode()).toString();
+    }
+}
@@ -48,6 +48,8 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
     ObsHandlerContextData contextData;
     IObsStore obsStore;
     Map<BigId, TemporalPropCollector> dataStreamCollectors;
+    TemporalQueryOptions options;
+    TemporalPageCursor cursor;
     
     static final Set<String> SKIPPED_DEFS = ImmutableSet.of(
         SWEConstants.DEF_PHENOMENON_TIME,
@@ -67,6 +69,12 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
         this.contextData = (ObsHandlerContextData)ctx.getData();
         this.obsStore = obsStore;
         this.dataStreamCollectors = new HashMap<>();
+        
+        var queryParams = ctx.getParameterMap();
+        this.options = TemporalQueryOptions.parse(queryParams);
+        this.cursor = TemporalPageCursor.parse(queryParams);
+        if (cursor == null)
+            cursor = new TemporalPageCursor();
     }
     
     
@@ -88,9 +96,11 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
             
             var col = new TemporalPropCollector(dsID);
             col.setDataComponents(dsInfo.getRecordStructure());
+            col.setResampleStep(options.resampleStep);
             return col;
         });
         
+        cursor.advance(obs);
         collector.collect(obs);
     }
     
@@ -109,9 +119,10 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
         {
             writer.beginObject();
             
+            var numRecords = ds.getNumRecords();
             writer.name("datetimes").beginArray();
-            for (var t: ds.dateTimes)
-                writer.value(t.toString());
+            for (int i = 0; i < numRecords; i++)
+                writer.value(ds.getDateTime(i).toString());
             writer.endArray();
             
             for (var prop: ds.temporalProperties)
@@ -135,13 +146,8 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
                 
                 writer.name("values").beginArray();
                 ((JsonInliningWriter)writer).writeInline(true);
-                for (var v: prop.values)
-                {
-                    if (v instanceof String)
-                        writer.value((String)v);
-                    else
-                        writer.jsonValue(v.toString());
-                }
+                for (int i = 0; i < numRecords; i++)
+                    prop.writeValue(writer, i);
                 writer.endArray();
                 ((JsonInliningWriter)writer).writeInline(false);
                 
@@ -151,7 +157,7 @@ public class TemporalPropBindingJson extends ResourceBindingJson<BigId, IObsData
             writer.endObject();
         }
         
-        endJsonCollection(writer, links);
+        endJsonCollection(writer, cursor.updateNextLink(links));
     }
     
     
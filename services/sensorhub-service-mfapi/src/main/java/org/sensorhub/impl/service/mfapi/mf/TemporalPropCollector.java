@@ -15,14 +15,16 @@ Copyright (C) 2022 Sensia Software LLC. All Rights Reserved.
 package org.sensorhub.impl.service.mfapi.mf;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.data.IObsData;
 import org.vast.swe.fast.DataBlockProcessor;
 import org.vast.util.Asserts;
+import com.google.gson.stream.JsonWriter;
 import net.opengis.swe.v20.Boolean;
 import net.opengis.swe.v20.Category;
 import net.opengis.swe.v20.Count;
@@ -30,28 +32,51 @@ import net.opengis.swe.v20.DataArray;
 import net.opengis.swe.v20.DataBlock;
 import net.opengis.swe.v20.DataChoice;
 import net.opengis.swe.v20.DataComponent;
+import net.opengis.swe.v20.DataType;
 import net.opengis.swe.v20.Quantity;
 import net.opengis.swe.v20.ScalarComponent;
 import net.opengis.swe.v20.Text;
 import net.opengis.swe.v20.Time;
 
 
+/**
+ * <p>
+ * Collects values of scalar components of observation results into primitive
+ * columns, one per temporal property, so that large result sets don't create
+ * boxed objects for each value.
+ * </p><p>
+ * Records can optionally be resampled with a fixed time step while they are
+ * collected, in which case only the first record received in each time step
+ * is kept.
+ * </p>
+ */
 public class TemporalPropCollector extends DataBlockProcessor
 {
     static final int VALUE_LIST_INIT_SIZE = 20;
     
     BigId dsId;
-    ArrayList<Instant> dateTimes = new ArrayList<>(VALUE_LIST_INIT_SIZE);
-    Collection<ValueCollector<?>> temporalProperties = new ArrayList<>();
-
-    protected abstract class ValueCollector<T> extends BaseProcessor
+    int numRecords;
+    int capacity = VALUE_LIST_INIT_SIZE;
+    long[] epochSeconds = new long[VALUE_LIST_INIT_SIZE];
+    int[] nanos = new int[VALUE_LIST_INIT_SIZE];
+    Collection<ValueCollector> temporalProperties = new ArrayList<>();
+    long resampleStepMillis;
+    long resampleOrigin;
+    long nextSampleTime = Long.MIN_VALUE;
+
+    protected abstract class ValueCollector extends BaseProcessor
     {
         ScalarComponent comp;
-        List<T> values = new ArrayList<>(VALUE_LIST_INIT_SIZE);
+        
+        protected abstract void grow(int newCapacity);
+        
+        protected abstract void writeValue(JsonWriter writer, int i) throws IOException;
     }
 
-    protected class BooleanCollector extends ValueCollector<java.lang.Boolean>
+    protected class BooleanCollector extends ValueCollector
     {
+        boolean[] values = new boolean[capacity];
+        
         public BooleanCollector(ScalarComponent comp)
         {
             this.comp = comp;
@@ -60,14 +85,27 @@ public class TemporalPropCollector extends DataBlockProcessor
         @Override
         public int process(DataBlock data, int index) throws IOException
         {
-            var val = data.getBooleanValue(index);
-            values.add(val);
+            values[numRecords] = data.getBooleanValue(index);
             return ++index;
         }
+        
+        @Override
+        protected void grow(int newCapacity)
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        
+        @Override
+        protected void writeValue(JsonWriter writer, int i) throws IOException
+        {
+            writer.value(values[i]);
+        }
     }
 
-    protected class DoubleCollector extends ValueCollector<Double>
+    protected class DoubleCollector extends ValueCollector
     {
+        double[] values = new double[capacity];
+        
         public DoubleCollector(ScalarComponent comp)
         {
             this.comp = comp;
@@ -76,14 +114,27 @@ public class TemporalPropCollector extends DataBlockProcessor
         @Override
         public int process(DataBlock data, int index) throws IOException
         {
-            var val = data.getDoubleValue(index);
-            values.add(val);
+            values[numRecords] = data.getDoubleValue(index);
             return ++index;
         }
+        
+        @Override
+        protected void grow(int newCapacity)
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        
+        @Override
+        protected void writeValue(JsonWriter writer, int i) throws IOException
+        {
+            writer.jsonValue(Double.toString(values[i]));
+        }
     }
 
-    protected class FloatCollector extends ValueCollector<Float>
+    protected class FloatCollector extends ValueCollector
     {
+        float[] values = new float[capacity];
+        
         public FloatCollector(ScalarComponent comp)
         {
             this.comp = comp;
@@ -92,14 +143,27 @@ public class TemporalPropCollector extends DataBlockProcessor
         @Override
         public int process(DataBlock data, int index) throws IOException
         {
-            var val = data.getFloatValue(index);
-            values.add(val);
+            values[numRecords] = data.getFloatValue(index);
             return ++index;
         }
+        
+        @Override
+        protected void grow(int newCapacity)
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        
+        @Override
+        protected void writeValue(JsonWriter writer, int i) throws IOException
+        {
+            writer.jsonValue(Float.toString(values[i]));
+        }
     }
 
-    protected class IntegerCollector extends ValueCollector<Integer>
+    protected class IntegerCollector extends ValueCollector
     {
+        int[] values = new int[capacity];
+        
         public IntegerCollector(ScalarComponent comp)
         {
             this.comp = comp;
@@ -108,14 +172,27 @@ public class TemporalPropCollector extends DataBlockProcessor
         @Override
         public int process(DataBlock data, int index) throws IOException
         {
-            var val = data.getIntValue(index);
-            values.add(val);
+            values[numRecords] = data.getIntValue(index);
             return ++index;
         }
+        
+        @Override
+        protected void grow(int newCapacity)
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        
+        @Override
+        protected void writeValue(JsonWriter writer, int i) throws IOException
+        {
+            writer.value(values[i]);
+        }
     }
 
-    protected class StringCollector extends ValueCollector<String>
+    protected class StringCollector extends ValueCollector
     {
+        String[] values = new String[capacity];
+        
         public StringCollector(ScalarComponent comp)
         {
             this.comp = comp;
@@ -124,10 +201,21 @@ public class TemporalPropCollector extends DataBlockProcessor
         @Override
         public int process(DataBlock data, int index) throws IOException
         {
-            var val = data.getStringValue(index);
-            values.add(val);
+            values[numRecords] = data.getStringValue(index);
             return ++index;
         }
+        
+        @Override
+        protected void grow(int newCapacity)
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        
+        @Override
+        protected void writeValue(JsonWriter writer, int i) throws IOException
+        {
+            writer.value(values[i]);
+        }
     }
     
     protected class SkipValue extends BaseProcessor
@@ -146,6 +234,16 @@ public class TemporalPropCollector extends DataBlockProcessor
     }
     
     
+    /**
+     * Enables resampling of collected records
+     * @param step Time step, or null to keep all records
+     */
+    public void setResampleStep(Duration step)
+    {
+        this.resampleStepMillis = step != null ? step.toMillis() : 0;
+    }
+    
+    
     public void collect(IObsData obs) throws IOException
     {
         Asserts.checkNotNull(obs, IObsData.class);
@@ -160,10 +258,20 @@ public class TemporalPropCollector extends DataBlockProcessor
                 processorTreeReady = true;
             }
             
+            // skip record if it falls in the same time step as the last one
+            var time = obs.getPhenomenonTime();
+            if (resampleStepMillis > 0 && !nextSample(time.toEpochMilli()))
+                return;
+            
+            if (numRecords == capacity)
+                grow();
+            
             // go once through the tree of parser atoms
-            dateTimes.add(obs.getPhenomenonTime());
+            epochSeconds[numRecords] = time.getEpochSecond();
+            nanos[numRecords] = time.getNano();
             int index = rootProcessor.process(obs.getResult(), 0);
             Asserts.checkState(index == obs.getResult().getAtomCount(), "Data block wasn't fully processed");
+            numRecords++;
         }
         catch (Exception e)
         {
@@ -172,6 +280,71 @@ public class TemporalPropCollector extends DataBlockProcessor
     }
     
     
+    protected boolean nextSample(long time)
+    {
+        if (nextSampleTime == Long.MIN_VALUE)
+            resampleOrigin = time;
+        else if (time < nextSampleTime)
+            return false;
+        
+        // next sample is expected at the start of the following time step
+        long numSteps = (time - resampleOrigin) / resampleStepMillis + 1;
+        nextSampleTime = resampleOrigin + numSteps * resampleStepMillis;
+        return true;
+    }
+    
+    
+    protected void grow()
+    {
+        capacity += capacity >> 1;
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+        for (var prop: temporalProperties)
+            prop.grow(capacity);
+    }
+    
+    
+    public int getNumRecords()
+    {
+        return numRecords;
+    }
+    
+    
+    public Instant getDateTime(int i)
+    {
+        return Instant.ofEpochSecond(epochSeconds[i], nanos[i]);
+    }
+    
+    
+    /**
+     * @param def Definition URI
+     * @return Values of the first floating point column with the given definition,
+     * or null if none. Float values are copied to a new array.
+     */
+    protected double[] getDoubleValues(String def)
+    {
+        for (var prop: temporalProperties)
+        {
+            if (!def.equals(prop.comp.getDefinition()))
+                continue;
+            
+            if (prop instanceof DoubleCollector)
+                return ((DoubleCollector)prop).values;
+            
+            if (prop instanceof FloatCollector)
+            {
+                var floats = ((FloatCollector)prop).values;
+                var values = new double[numRecords];
+                for (int i = 0; i < numRecords; i++)
+                    values[i] = floats[i];
+                return values;
+            }
+        }
+        
+        return null;
+    }
+    
+    
     @Override
     public void visit(Boolean component)
     {
@@ -205,7 +378,8 @@ public class TemporalPropCollector extends DataBlockProcessor
     {
         if (!isInArrayOrChoice(component))
         {
-            var col = new DoubleCollector(component);
+            var col = component.getDataType() == DataType.FLOAT ?
+                new FloatCollector(component) : new DoubleCollector(component);
             addToProcessorTree(col);
             temporalProperties.add(col);
         }
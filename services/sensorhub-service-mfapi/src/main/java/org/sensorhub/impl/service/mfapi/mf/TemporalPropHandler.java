@@ -16,6 +16,7 @@ package org.sensorhub.impl.service.mfapi.mf;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.Predicate;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.data.IDataStreamInfo;
 import org.sensorhub.api.data.IObsData;
@@ -97,15 +98,12 @@ public class TemporalPropHandler extends BaseResourceHandler<BigId, IObsData, Ob
         var builder = new ObsFilter.Builder();
         builder.withFois(parent.internalID);
         
-        // add predicate to remove any datastreams that has only geom
-        builder.withValuePredicate(obs -> {
-            var dsID = obs.getDataStreamID();
-            var dsInfo = db.getDataStreamStore().get(new DataStreamKey(dsID));
-            return hasProperty(dsInfo.getRecordStructure());
-        });
-        
         // phenomenonTime param
+        // restricted to start at the end of the previous page when paging with a cursor
+        var cursor = TemporalPageCursor.parse(queryParams);
         var phenomenonTime = parseTimeStampArg("datetime", queryParams);
+        if (cursor != null)
+            phenomenonTime = cursor.restrict(phenomenonTime);
         if (phenomenonTime != null)
             builder.withPhenomenonTime(phenomenonTime);
         
@@ -127,8 +125,19 @@ public class TemporalPropHandler extends BaseResourceHandler<BigId, IObsData, Ob
                 .build());
         }
         
+        // add predicate to remove any datastreams that has only geom
+        // and observations already returned at the cursor time stamp
+        Predicate<IObsData> valuePredicate = obs -> {
+            var dsID = obs.getDataStreamID();
+            var dsInfo = db.getDataStreamStore().get(new DataStreamKey(dsID));
+            return hasProperty(dsInfo.getRecordStructure());
+        };
+        if (cursor != null)
+            valuePredicate = valuePredicate.and(cursor.notYetReturned());
+        builder.withValuePredicate(valuePredicate);
+        
         // limit
-        // need to limit to offset+limit+1 since we rescan from the beginning for now
+        // offset is only used by clients that don't follow the next page link
         if (limit != Long.MAX_VALUE)
             builder.withLimit(offset+limit+1);
         
@@ -0,0 +1,101 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import org.sensorhub.impl.service.consys.InvalidRequestException;
+import org.sensorhub.impl.service.consys.ServiceErrors;
+
+
+/**
+ * <p>
+ * Optional query parameters used to reduce the size of temporal geometries
+ * and properties responses:
+ * <li>resample: Time step given as an ISO 8601 duration or a number of seconds.
+ * Only the first record of each time step is returned.</li>
+ * <li>simplify: Douglas-Peucker tolerance, in coordinate units, applied to
+ * the lat/lon trajectory of temporal geometries. Each page of results is
+ * simplified separately.</li>
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+class TemporalQueryOptions
+{
+    static final String RESAMPLE_PARAM = "resample";
+    static final String SIMPLIFY_PARAM = "simplify";
+    
+    Duration resampleStep;
+    double simplifyTolerance = Double.NaN;
+    
+    
+    static TemporalQueryOptions parse(Map<String, String[]> queryParams) throws InvalidRequestException
+    {
+        var options = new TemporalQueryOptions();
+        
+        var resample = getSingleValue(queryParams, RESAMPLE_PARAM);
+        if (resample != null)
+        {
+            try
+            {
+                if (resample.startsWith("P"))
+                    options.resampleStep = Duration.parse(resample);
+                else
+                    options.resampleStep = Duration.ofMillis(Math.round(Double.parseDouble(resample) * 1000.));
+            }
+            catch (NumberFormatException | DateTimeParseException e)
+            {
+                throw ServiceErrors.badRequest("Invalid " + RESAMPLE_PARAM + " parameter: " + resample);
+            }
+            
+            if (options.resampleStep.isNegative() || options.resampleStep.isZero())
+                throw ServiceErrors.badRequest(RESAMPLE_PARAM + " parameter must be positive");
+        }
+        
+        var simplify = getSingleValue(queryParams, SIMPLIFY_PARAM);
+        if (simplify != null)
+        {
+            try
+            {
+                options.simplifyTolerance = Double.parseDouble(simplify);
+            }
+            catch (NumberFormatException e)
+            {
+                throw ServiceErrors.badRequest("Invalid " + SIMPLIFY_PARAM + " parameter: " + simplify);
+            }
+            
+            if (!(options.simplifyTolerance >= 0))
+                throw ServiceErrors.badRequest(SIMPLIFY_PARAM + " parameter must be positive");
+        }
+        
+        return options;
+    }
+    
+    
+    static String getSingleValue(Map<String, String[]> queryParams, String name)
+    {
+        var values = queryParams.get(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+    
+    
+    boolean isSimplified()
+    {
+        return !Double.isNaN(simplifyTolerance);
+    }
+}
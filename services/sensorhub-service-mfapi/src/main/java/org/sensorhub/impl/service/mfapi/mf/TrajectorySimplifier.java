@@ -0,0 +1,119 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import java.util.BitSet;
+
+
+/**
+ * <p>
+ * Douglas-Peucker simplification of trajectories stored in primitive arrays.<br/>
+ * The algorithm is implemented with an explicit stack so it doesn't recurse
+ * on long tracks, and marks points to keep in a bit set rather than copying
+ * coordinates.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+class TrajectorySimplifier
+{
+    
+    private TrajectorySimplifier()
+    {
+    }
+    
+    
+    /**
+     * Selects points of the simplified trajectory
+     * @param x X coordinates (e.g. longitude)
+     * @param y Y coordinates (e.g. latitude)
+     * @param numPoints Number of points to read from the arrays
+     * @param tolerance Maximum distance between removed points and the simplified line
+     * @return Bit set with bits set for points to keep
+     */
+    static BitSet simplify(double[] x, double[] y, int numPoints, double tolerance)
+    {
+        var keep = new BitSet(numPoints);
+        if (numPoints <= 2)
+        {
+            keep.set(0, numPoints);
+            return keep;
+        }
+        
+        var tol2 = tolerance * tolerance;
+        var stack = new int[64];
+        int top = 0;
+        
+        keep.set(0);
+        keep.set(numPoints-1);
+        stack[top++] = 0;
+        stack[top++] = numPoints-1;
+        
+        while (top > 0)
+        {
+            int last = stack[--top];
+            int first = stack[--top];
+            
+            // find point farthest from segment
+            double maxDist2 = -1;
+            int farthest = -1;
+            for (int i = first+1; i < last; i++)
+            {
+                var d2 = segmentDistance2(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d2 > maxDist2)
+                {
+                    maxDist2 = d2;
+                    farthest = i;
+                }
+            }
+            
+            if (farthest >= 0 && maxDist2 > tol2)
+            {
+                keep.set(farthest);
+                
+                if (top + 4 > stack.length)
+                {
+                    var newStack = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                }
+                
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        
+        return keep;
+    }
+    
+    
+    static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by)
+    {
+        var dx = bx - ax;
+        var dy = by - ay;
+        var len2 = dx*dx + dy*dy;
+        
+        double t = 0;
+        if (len2 > 0)
+            t = Math.max(0, Math.min(1, ((px - ax)*dx + (py - ay)*dy) / len2));
+        
+        var ex = px - (ax + t*dx);
+        var ey = py - (ay + t*dy);
+        return ex*ex + ey*ey;
+    }
+}
@@ -0,0 +1,190 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import static org.junit.Assert.*;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.sensorhub.api.common.BigId;
+import org.sensorhub.api.data.IObsData;
+import org.sensorhub.api.data.ObsData;
+import org.sensorhub.api.datastore.TemporalFilter;
+import org.sensorhub.impl.service.consys.InvalidRequestException;
+import org.sensorhub.impl.service.consys.resource.ResourceLink;
+import org.vast.data.DataBlockDouble;
+
+
+public class TestTemporalPageCursor
+{
+    static final Instant T0 = Instant.parse("2026-10-16T10:00:00Z");
+    static final Instant T1 = Instant.parse("2026-10-16T10:00:01Z");
+    static final Instant T2 = Instant.parse("2026-10-16T10:00:02Z");
+    
+    
+    static IObsData newObs(long dsId, Instant phenomenonTime, Instant resultTime)
+    {
+        return new ObsData.Builder()
+            .withDataStream(BigId.fromLong(1, dsId))
+            .withFoi(BigId.fromLong(1, 100))
+            .withPhenomenonTime(phenomenonTime)
+            .withResultTime(resultTime)
+            .withResult(new DataBlockDouble(1))
+            .build();
+    }
+    
+    
+    static IObsData newObs(long dsId, Instant phenomenonTime)
+    {
+        return newObs(dsId, phenomenonTime, phenomenonTime);
+    }
+    
+    
+    static TemporalPageCursor reparse(TemporalPageCursor cursor) throws InvalidRequestException
+    {
+        return TemporalPageCursor.parse(Map.of(
+            TemporalPageCursor.CURSOR_PARAM, new String[] {cursor.encode()}));
+    }
+    
+    
+    @Test
+    public void testEncodeParse() throws Exception
+    {
+        var cursor = new TemporalPageCursor();
+        cursor.advance(newObs(1, T0));
+        cursor.advance(newObs(1, T1));
+        cursor.advance(newObs(2, T1));
+        
+        var parsed = reparse(cursor);
+        assertEquals(T1, parsed.phenomenonTime);
+        assertEquals(cursor.returnedAtTime, parsed.returnedAtTime);
+        assertEquals(2, parsed.returnedAtTime.size());
+    }
+    
+    
+    @Test
+    public void testNoCursor() throws Exception
+    {
+        assertNull(TemporalPageCursor.parse(Map.of()));
+    }
+    
+    
+    @Test
+    public void testInvalidCursor()
+    {
+        for (var token: List.of("abc", "MjAyNg", "bm90IGEgdGltZX4xQDE"))
+        {
+            try
+            {
+                TemporalPageCursor.parse(Map.of(TemporalPageCursor.CURSOR_PARAM, new String[] {token}));
+                fail("Cursor should be rejected: " + token);
+            }
+            catch (InvalidRequestException e)
+            {
+                // expected
+            }
+        }
+    }
+    
+    
+    @Test
+    public void testNotYetReturned() throws Exception
+    {
+        var cursor = new TemporalPageCursor();
+        cursor.advance(newObs(1, T0));
+        cursor.advance(newObs(1, T1));
+        cursor.advance(newObs(2, T1));
+        
+        var predicate = reparse(cursor).notYetReturned();
+        
+        // predicate doesn't depend on how many times or in what order it is called
+        for (int i = 0; i < 3; i++)
+        {
+            assertFalse(predicate.test(newObs(2, T1)));
+            assertFalse(predicate.test(newObs(1, T1)));
+            assertTrue(predicate.test(newObs(3, T1)));
+            assertTrue(predicate.test(newObs(1, T1, T2)));
+            assertTrue(predicate.test(newObs(1, T2)));
+            assertTrue(predicate.test(newObs(2, T2)));
+        }
+    }
+    
+    
+    @Test
+    public void testAdvanceResetsAtNewTime() throws Exception
+    {
+        var cursor = new TemporalPageCursor();
+        cursor.advance(newObs(1, T0));
+        cursor.advance(newObs(2, T0));
+        cursor.advance(newObs(1, T1));
+        assertEquals(T1, cursor.phenomenonTime);
+        assertEquals(1, cursor.returnedAtTime.size());
+        
+        var predicate = cursor.notYetReturned();
+        assertTrue(predicate.test(newObs(2, T1)));
+        assertFalse(predicate.test(newObs(1, T1)));
+    }
+    
+    
+    @Test
+    public void testRestrict() throws Exception
+    {
+        var cursor = new TemporalPageCursor();
+        cursor.advance(newObs(1, T1));
+        
+        var filter = cursor.restrict(null);
+        assertEquals(T1, filter.getMin());
+        assertEquals(Instant.MAX, filter.getMax());
+        
+        // cursor time is used if after start of requested time range
+        filter = cursor.restrict(new TemporalFilter.Builder().withRange(T0, T2).build());
+        assertEquals(T1, filter.getMin());
+        assertEquals(T2, filter.getMax());
+        
+        filter = cursor.restrict(new TemporalFilter.Builder().withRange(T2, Instant.MAX).build());
+        assertEquals(T2, filter.getMin());
+    }
+    
+    
+    @Test
+    public void testNextLink() throws Exception
+    {
+        var cursor = new TemporalPageCursor();
+        cursor.advance(newObs(1, T0));
+        
+        var links = List.of(
+            new ResourceLink.Builder()
+                .rel("self")
+                .href("http://localhost/mfapi/collections/c1/items/f1/tgsequence?limit=10&offset=20")
+                .build(),
+            new ResourceLink.Builder()
+                .rel(TemporalPageCursor.NEXT_REL)
+                .href("http://localhost/mfapi/collections/c1/items/f1/tgsequence?limit=10&offset=20&resample=PT1S")
+                .build());
+        
+        var updatedLinks = List.copyOf(cursor.updateNextLink(links));
+        assertEquals(links.get(0).getHref(), updatedLinks.get(0).getHref());
+        assertEquals("http://localhost/mfapi/collections/c1/items/f1/tgsequence?limit=10&resample=PT1S&cursor=" + cursor.encode(),
+            updatedLinks.get(1).getHref());
+        
+        // previous cursor is replaced
+        var nextHref = cursor.getNextHref("http://localhost/tgsequence?cursor=abc&limit=10");
+        assertEquals("http://localhost/tgsequence?limit=10&cursor=" + cursor.encode(), nextHref);
+        
+        // no cursor if page is empty
+        assertSame(links, new TemporalPageCursor().updateNextLink(links));
+    }
+}
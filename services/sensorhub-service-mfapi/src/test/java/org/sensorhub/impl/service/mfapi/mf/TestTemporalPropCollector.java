@@ -0,0 +1,167 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+import org.sensorhub.api.common.BigId;
+import org.sensorhub.api.data.ObsData;
+import org.vast.swe.helper.GeoPosHelper;
+import net.opengis.swe.v20.DataRecord;
+import net.opengis.swe.v20.DataType;
+
+
+public class TestTemporalPropCollector
+{
+    static final Instant T0 = Instant.parse("2026-10-16T10:00:00Z");
+    
+    DataRecord recordStruct;
+    TemporalPropCollector collector;
+    
+    
+    @Before
+    public void setup()
+    {
+        var swe = new GeoPosHelper();
+        recordStruct = swe.createRecord()
+            .addField("time", swe.createTime()
+                .asPhenomenonTimeIsoUTC())
+            .addField("lat", swe.createQuantity()
+                .definition(GeoPosHelper.DEF_LATITUDE_GEODETIC)
+                .uomCode("deg")
+                .dataType(DataType.FLOAT))
+            .addField("lon", swe.createQuantity()
+                .definition(GeoPosHelper.DEF_LONGITUDE)
+                .uomCode("deg")
+                .dataType(DataType.FLOAT))
+            .addField("speed", swe.createQuantity()
+                .definition("http://sensorml.com/ont/swe/property/GroundSpeed")
+                .uomCode("m/s"))
+            .build();
+        
+        collector = new TemporalPropCollector(BigId.fromLong(1, 1));
+        collector.setDataComponents(recordStruct);
+    }
+    
+    
+    void collect(Instant time, int i) throws IOException
+    {
+        var data = recordStruct.createDataBlock();
+        data.setDoubleValue(0, time.toEpochMilli() / 1000.0);
+        data.setFloatValue(1, 45.0f + i * 0.001f);
+        data.setFloatValue(2, 1.0f + i * 0.002f);
+        data.setDoubleValue(3, i * 0.5);
+        
+        collector.collect(new ObsData.Builder()
+            .withDataStream(collector.dsId)
+            .withFoi(BigId.fromLong(1, 100))
+            .withPhenomenonTime(time)
+            .withResult(data)
+            .build());
+    }
+    
+    
+    void collectEveryMillis(int numRecords, long periodMillis) throws IOException
+    {
+        for (int i = 0; i < numRecords; i++)
+            collect(T0.plusMillis(i * periodMillis), i);
+    }
+    
+    
+    @Test
+    public void testCollectAll() throws IOException
+    {
+        // more records than the initial column size
+        int numRecords = 1000;
+        collectEveryMillis(numRecords, 1000);
+        
+        assertEquals(numRecords, collector.getNumRecords());
+        var lat = collector.getDoubleValues(GeoPosHelper.DEF_LATITUDE_GEODETIC);
+        var lon = collector.getDoubleValues(GeoPosHelper.DEF_LONGITUDE);
+        var speed = collector.getDoubleValues("http://sensorml.com/ont/swe/property/GroundSpeed");
+        for (int i = 0; i < numRecords; i++)
+        {
+            assertEquals(T0.plusSeconds(i), collector.getDateTime(i));
+            assertEquals(45.0f + i * 0.001f, lat[i], 0.0);
+            assertEquals(1.0f + i * 0.002f, lon[i], 0.0);
+            assertEquals(i * 0.5, speed[i], 0.0);
+        }
+    }
+    
+    
+    @Test
+    public void testFloatColumns() throws IOException
+    {
+        collectEveryMillis(10, 1000);
+        
+        // float quantities are stored in float columns
+        for (var prop: collector.temporalProperties)
+        {
+            var def = prop.comp.getDefinition();
+            if (GeoPosHelper.DEF_LATITUDE_GEODETIC.equals(def) || GeoPosHelper.DEF_LONGITUDE.equals(def))
+                assertTrue(prop instanceof TemporalPropCollector.FloatCollector);
+            else
+                assertTrue(prop instanceof TemporalPropCollector.DoubleCollector);
+        }
+        
+        assertNull(collector.getDoubleValues(GeoPosHelper.DEF_ALTITUDE_ELLIPSOID));
+    }
+    
+    
+    @Test
+    public void testResampleRegular() throws IOException
+    {
+        collector.setResampleStep(Duration.ofSeconds(3));
+        collectEveryMillis(10, 1000);
+        
+        assertEquals(4, collector.getNumRecords());
+        var speed = collector.getDoubleValues("http://sensorml.com/ont/swe/property/GroundSpeed");
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(T0.plusSeconds(3*i), collector.getDateTime(i));
+            assertEquals(3*i * 0.5, speed[i], 0.0);
+        }
+    }
+    
+    
+    @Test
+    public void testResampleIrregular() throws IOException
+    {
+        collector.setResampleStep(Duration.ofSeconds(3));
+        
+        // first record of each 3s step after the first record is kept
+        var offsets = new long[] {0, 2500, 3100, 3200, 7000, 7500, 9000};
+        for (int i = 0; i < offsets.length; i++)
+            collect(T0.plusMillis(offsets[i]), i);
+        
+        var expected = new long[] {0, 3100, 7000, 9000};
+        assertEquals(expected.length, collector.getNumRecords());
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(T0.plusMillis(expected[i]), collector.getDateTime(i));
+    }
+    
+    
+    @Test
+    public void testNoResample() throws IOException
+    {
+        collector.setResampleStep(null);
+        collectEveryMillis(10, 10);
+        assertEquals(10, collector.getNumRecords());
+    }
+}
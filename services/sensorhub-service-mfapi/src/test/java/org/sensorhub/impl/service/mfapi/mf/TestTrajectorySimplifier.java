@@ -0,0 +1,131 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+ 
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+ 
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.mfapi.mf;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+public class TestTrajectorySimplifier
+{
+    
+    @Test
+    public void testStraightLine()
+    {
+        int n = 100;
+        var x = new double[n];
+        var y = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            x[i] = i;
+            y[i] = 2*i + 1;
+        }
+        
+        var keep = TrajectorySimplifier.simplify(x, y, n, 0.01);
+        assertEquals(2, keep.cardinality());
+        assertTrue(keep.get(0));
+        assertTrue(keep.get(n-1));
+    }
+    
+    
+    @Test
+    public void testKeepCorners()
+    {
+        // L shaped track with small noise on each leg
+        var x = new double[] {0, 1, 2, 3, 4, 4.05, 3.95, 4.02, 4};
+        var y = new double[] {0, 0.05, -0.05, 0.02, 0, 1, 2, 3, 4};
+        
+        var keep = TrajectorySimplifier.simplify(x, y, x.length, 0.1);
+        assertEquals(3, keep.cardinality());
+        assertTrue(keep.get(0));
+        assertTrue(keep.get(4));
+        assertTrue(keep.get(8));
+        
+        // all points are kept with a tolerance smaller than the noise
+        keep = TrajectorySimplifier.simplify(x, y, x.length, 0.01);
+        assertEquals(x.length, keep.cardinality());
+    }
+    
+    
+    @Test
+    public void testZeroTolerance()
+    {
+        var x = new double[] {0, 1, 2, 3, 4};
+        var y = new double[] {0, 1, 0, 1, 2};
+        
+        // only collinear points are removed
+        var keep = TrajectorySimplifier.simplify(x, y, x.length, 0);
+        assertEquals(4, keep.cardinality());
+        assertFalse(keep.get(3));
+    }
+    
+    
+    @Test
+    public void testLoop()
+    {
+        // track going back to its start point
+        var x = new double[] {0, 1, 1, 0, 0};
+        var y = new double[] {0, 0, 1, 1, 0};
+        
+        var keep = TrajectorySimplifier.simplify(x, y, x.length, 0.1);
+        assertEquals(x.length, keep.cardinality());
+    }
+    
+    
+    @Test
+    public void testFewPoints()
+    {
+        var x = new double[] {0, 1, 2};
+        var y = new double[] {0, 5, 0};
+        
+        assertEquals(0, TrajectorySimplifier.simplify(x, y, 0, 1.0).cardinality());
+        assertEquals(1, TrajectorySimplifier.simplify(x, y, 1, 1.0).cardinality());
+        assertEquals(2, TrajectorySimplifier.simplify(x, y, 2, 1.0).cardinality());
+        assertEquals(3, TrajectorySimplifier.simplify(x, y, 3, 1.0).cardinality());
+    }
+    
+    
+    @Test
+    public void testOnlyFirstPointsUsed()
+    {
+        // values after numPoints are ignored
+        var x = new double[] {0, 1, 2, 3, 100};
+        var y = new double[] {0, 0, 0, 0, 100};
+        
+        var keep = TrajectorySimplifier.simplify(x, y, 4, 0.1);
+        assertEquals(2, keep.cardinality());
+        assertTrue(keep.get(0));
+        assertTrue(keep.get(3));
+        assertFalse(keep.get(4));
+    }
+    
+    
+    @Test
+    public void testLongTrack()
+    {
+        // zigzag keeping all points, deeper than the initial stack size
+        int n = 100000;
+        var x = new double[n];
+        var y = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            x[i] = i;
+            y[i] = (i % 2) * 10;
+        }
+        
+        var keep = TrajectorySimplifier.simplify(x, y, n, 1.0);
+        assertEquals(n, keep.cardinality());
+    }
+}
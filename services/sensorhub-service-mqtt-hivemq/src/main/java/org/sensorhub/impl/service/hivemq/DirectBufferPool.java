@@ -0,0 +1,78 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.hivemq;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * <p>
+ * Bounded pool of fixed size direct buffers shared by all websocket proxy
+ * sessions so that socket I/O doesn't go through temporary native copies
+ * and buffers are not reallocated for each connection.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+class DirectBufferPool
+{
+    final int bufferSize;
+    final int maxPooled;
+    final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    final AtomicInteger pooledCount = new AtomicInteger();
+
+
+    DirectBufferPool(int bufferSize, int maxPooled)
+    {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+
+    /**
+     * @return A cleared buffer of {@link #bufferSize} bytes, taken from
+     * the pool if one is available
+     */
+    ByteBuffer acquire()
+    {
+        var buf = pool.poll();
+        if (buf == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+
+        pooledCount.decrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+
+    /**
+     * Returns a buffer to the pool. Buffers that were not allocated by this
+     * pool are ignored, as well as buffers in excess of the pool capacity.
+     * @param buf
+     */
+    void release(ByteBuffer buf)
+    {
+        if (buf == null || !buf.isDirect() || buf.capacity() != bufferSize)
+            return;
+
+        if (pooledCount.incrementAndGet() <= maxPooled)
+            pool.offer(buf);
+        else
+            pooledCount.decrementAndGet();
+    }
+}
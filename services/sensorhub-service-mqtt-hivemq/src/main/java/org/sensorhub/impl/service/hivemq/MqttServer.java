@@ -19,6 +19,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import org.sensorhub.api.comm.mqtt.IMqttServer;
 import org.sensorhub.api.common.SensorHubException;
@@ -27,6 +29,7 @@ import com.google.common.io.ByteStreams;
 import com.hivemq.configuration.service.InternalConfigurations;
 import com.hivemq.embedded.EmbeddedHiveMQ;
 import com.hivemq.embedded.EmbeddedHiveMQBuilder;
+import com.hivemq.extension.sdk.api.client.parameter.Listener;
 import com.hivemq.migration.meta.PersistenceType;
 
 
@@ -110,6 +113,19 @@ public class MqttServer extends AbstractModule<MqttServerConfig> implements IMqt
     }
     
     
+    /**
+     * @return The native websocket listeners of the embedded HiveMQ server.
+     * Clients connecting to these listeners talk to the broker directly
+     * rather than through the websocket proxy deployed on the hub HTTP server.
+     */
+    public Collection<Listener> getWebSocketListeners()
+    {
+        if (oshExtension == null)
+            return Collections.emptyList();
+        return oshExtension.getWebSocketListeners();
+    }
+    
+    
     @Override
     public void registerHandler(String topicPrefix, IMqttHandler handler)
     {
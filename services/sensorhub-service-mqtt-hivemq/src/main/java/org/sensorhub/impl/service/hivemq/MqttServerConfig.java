@@ -40,6 +40,22 @@ public class MqttServerConfig extends ServiceConfig
     public boolean enableWebSocketProxy = false;
     
     
+    @DisplayInfo(label="WebSocket Proxy Buffer Size", desc="Size of the direct buffers used by the websocket proxy, in bytes")
+    public int webSocketProxyBufferSize = 64*1024;
+    
+    
+    @DisplayInfo(label="Prefer Native WebSocket", desc="Set to skip deployment of the websocket proxy when HiveMQ is configured with its own websocket listener. Clients must then connect to the native listener directly")
+    public boolean preferNativeWebSocket = false;
+    
+    
     @DisplayInfo(label="Require Authentication", desc="Set to require remote users to be authentified before they can use this service")
     public boolean requireAuth = false;
+    
+    
+    @DisplayInfo(label="Max Publish Batch Size", desc="Maximum number of messages received on the same topic that are handled together (e.g. in a single transaction). Set to 1 to disable batching")
+    public int maxPublishBatchSize = 100;
+    
+    
+    @DisplayInfo(label="Max Publish Batch Delay", desc="Maximum time a received message can wait for other messages on the same topic before the batch is handled, in milliseconds")
+    public int maxPublishBatchDelay = 10;
 }
@@ -17,9 +17,11 @@ package org.sensorhub.impl.service.hivemq;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +40,7 @@ import com.hivemq.extension.sdk.api.annotations.NotNull;
 import com.hivemq.extension.sdk.api.annotations.Nullable;
 import com.hivemq.extension.sdk.api.client.ClientContext;
 import com.hivemq.extension.sdk.api.client.parameter.InitializerInput;
+import com.hivemq.extension.sdk.api.client.parameter.Listener;
 import com.hivemq.extension.sdk.api.client.parameter.ListenerType;
 import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListener;
 import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListenerProvider;
@@ -65,6 +68,8 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
     MapWithWildcards<IMqttHandler> handlers = new MapWithWildcards<>();
     Map<String, Set<String>> clientTopics = new ConcurrentHashMap<>();
     volatile WebSocketProxyServlet webSocketProxy;
+    volatile OshPublishHandler publishHandler;
+    volatile Set<Listener> listeners = Collections.emptySet();
     Logger log;
     
     
@@ -92,7 +97,9 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
         
         // set client initializer to handle UNSUBSCRIBE and prevent direct PUBLISH
         var unsubHandler = new OshUnsubscribeHandler(this);
-        var publishHandler = new OshPublishHandler(this);
+        var config = service.getConfiguration();
+        var publishHandler = new OshPublishHandler(this, config.maxPublishBatchSize, config.maxPublishBatchDelay);
+        this.publishHandler = publishHandler;
         Services.initializerRegistry().setClientInitializer(new ClientInitializer() {
             @Override
             public void initialize(InitializerInput initializerInput, ClientContext clientContext)
@@ -151,11 +158,22 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
             }
         });
         
+        // report native websocket listeners
+        listeners = extensionStartInput.getServerInformation().getListener();
+        var wsListeners = getWebSocketListeners();
+        for (var l: wsListeners)
+            log.info("MQTT over websocket available on {}:{} ({})", l.getBindAddress(), l.getPort(), l.getName());
+        
         // deploy websocket proxy if configured
-        var config = service.getConfiguration();
         if (config.enableWebSocketProxy && !Strings.isNullOrEmpty(config.webSocketProxyEndpoint))
         {
-            for (var l: extensionStartInput.getServerInformation().getListener())
+            if (config.preferNativeWebSocket && !wsListeners.isEmpty())
+            {
+                log.info("Websocket proxy not deployed since native websocket listener is available");
+                return;
+            }
+            
+            for (var l: listeners)
             {
                 if (l.getListenerType() == ListenerType.TCP_LISTENER)
                 {
@@ -167,8 +185,22 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
     }
     
     
+    /**
+     * @return The websocket listeners (plain or TLS) configured on the HiveMQ
+     * server, that clients can connect to without going through the proxy
+     */
+    public Collection<Listener> getWebSocketListeners()
+    {
+        return listeners.stream()
+            .filter(l -> l.getListenerType() == ListenerType.WEBSOCKET_LISTENER ||
+                         l.getListenerType() == ListenerType.TLS_WEBSOCKET_LISTENER)
+            .collect(Collectors.toList());
+    }
+    
+    
     void deployWebSocketProxy(String endPoint, int mqttPort)
     {
+        var config = service.getConfiguration();
         service.getParentHub().getModuleRegistry().waitForModuleType(IHttpServer.class, ModuleState.STARTED)
             .thenAccept(http -> {
                 if (http != null)
@@ -176,7 +208,8 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
                     try
                     {
                         var mqttAddress = new InetSocketAddress(InetAddress.getLocalHost(), mqttPort);
-                        webSocketProxy = new WebSocketProxyServlet(mqttAddress, log);
+                        webSocketProxy = new WebSocketProxyServlet(mqttAddress,
+                            config.webSocketProxyBufferSize, WebSocketProxyServlet.DEFAULT_MAX_POOLED_BUFFERS, log);
                         http.deployServlet(webSocketProxy, endPoint);
                     }
                     catch (Exception e)
@@ -262,6 +295,16 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
     }
 
 
+    /**
+     * @return The handler processing incoming PUBLISH messages, giving access
+     * to throughput and latency statistics, or null if the extension isn't started
+     */
+    public OshPublishHandler getPublishHandler()
+    {
+        return publishHandler;
+    }
+
+
     @Override
     public void registerHandler(String topicPrefix, IMqttHandler handler)
     {
@@ -293,8 +336,15 @@ public class OshExtension implements ExtensionMain, EmbeddedExtension, IMqttServ
             .correlationData(correlData)
             .retain(false)
             .build();
-        Services.publishService().publish(message);
-        return CompletableFuture.completedFuture(true);
+        
+        // complete when the message has been handed over to the broker so that
+        // callers can limit the number of messages in flight
+        return Services.publishService().publish(message)
+            .thenApply(v -> true)
+            .exceptionally(e -> {
+                log.debug("Error publishing to topic {}", topic, e);
+                return false;
+            });
     }
 
 
@@ -14,14 +14,23 @@ Copyright (C) 2021 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.hivemq;
 
+import java.nio.ByteBuffer;
 import java.security.AccessControlException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sensorhub.api.comm.mqtt.IMqttServer.IMqttHandler;
 import org.sensorhub.api.comm.mqtt.ImplSpecificException;
 import org.sensorhub.api.comm.mqtt.InvalidPayloadException;
 import org.sensorhub.api.comm.mqtt.InvalidTopicException;
 import org.sensorhub.api.security.ISecurityManager;
 import org.slf4j.Logger;
 import org.vast.util.Asserts;
+import com.hivemq.extension.sdk.api.async.Async;
 import com.hivemq.extension.sdk.api.interceptor.publish.PublishInboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
@@ -33,6 +42,11 @@ import com.hivemq.extension.sdk.api.services.Services;
  * <p>
  * Publish handler implemented as an inbound interceptor. No need for a
  * separate authorizer class since we can ACK proper error codes here.
+ * </p><p>
+ * Messages received from the same user on the same topic within a short time
+ * window are grouped in batches that are passed to the OSH handler at once,
+ * so that it can process them more efficiently (e.g. in a single transaction).
+ * Messages are only acknowledged after the whole batch has been handled.
  * </p>
  *
  * @author Alex Robin
@@ -42,90 +56,283 @@ public class OshPublishHandler implements PublishInboundInterceptor
 {
     static final String LOG_PUBLISH_MSG = "Received PUBLISH clientId={}, topic={}: ";
     static final int REQ_TIMEOUT_MS = 5000;
+    static final int BATCH_MSG_TIMEOUT_MS = 50; // extra time allowed for each additional message in a batch
     
     final OshExtension oshExt;
     final Logger log;
+    final int maxBatchSize;
+    final long maxBatchDelay;
+    final Duration reqTimeout;
+    final Map<String, PublishBatch> pendingBatches = new HashMap<>();
     
+    // stats
+    final AtomicLong messageCount = new AtomicLong();
+    final AtomicLong batchCount = new AtomicLong();
+    final AtomicLong totalLatency = new AtomicLong();
+    final AtomicLong maxLatency = new AtomicLong();
     
-    OshPublishHandler(OshExtension oshExt)
+    
+    static class PendingPublish
+    {
+        final PublishInboundOutput publishOut;
+        final Async<PublishInboundOutput> async;
+        final ByteBuffer payload;
+        final ByteBuffer correlData;
+        final long receivedTime = System.nanoTime();
+        
+        PendingPublish(PublishInboundInput publishIn, PublishInboundOutput publishOut, Async<PublishInboundOutput> async)
+        {
+            var pkt = publishIn.getPublishPacket();
+            this.publishOut = publishOut;
+            this.async = async;
+            this.payload = pkt.getPayload().orElse(ByteBuffer.allocate(0));
+            this.correlData = pkt.getCorrelationData().orElse(null);
+        }
+    }
+    
+    
+    static class PublishBatch
+    {
+        final String userID;
+        final String topic;
+        final IMqttHandler handler;
+        final List<PendingPublish> messages = new ArrayList<>();
+        
+        PublishBatch(String userID, String topic, IMqttHandler handler)
+        {
+            this.userID = userID;
+            this.topic = topic;
+            this.handler = handler;
+        }
+    }
+    
+    
+    OshPublishHandler(OshExtension oshExt, int maxBatchSize, int maxBatchDelay)
     {
         this.oshExt = Asserts.checkNotNull(oshExt, OshExtension.class);
         this.log = oshExt.log;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchDelay = Math.max(0, maxBatchDelay);
+        
+        // a message can wait for the batch to fill up and then for all messages
+        // of the batch to be handled, so allow more time than for a single message
+        if (this.maxBatchSize <= 1 || this.maxBatchDelay <= 0)
+            this.reqTimeout = Duration.ofMillis(REQ_TIMEOUT_MS);
+        else
+            this.reqTimeout = Duration.ofMillis(this.maxBatchDelay + REQ_TIMEOUT_MS +
+                (long)(this.maxBatchSize - 1) * BATCH_MSG_TIMEOUT_MS);
     }
     
     
     @Override
     public void onInboundPublish(final PublishInboundInput publishIn, final PublishInboundOutput publishOut)
     {
-        var async = publishOut.async(Duration.ofMillis(REQ_TIMEOUT_MS));
-        Services.extensionExecutorService().submit(() -> {
-            
-            // get topic name and user ID
-            var topic = publishIn.getPublishPacket().getTopic();
-            var userID = publishIn.getConnectionInformation().getConnectionAttributeStore()
-                .getAsString(OshAuthenticator.MQTT_USER_PROP)
-                .orElse(ISecurityManager.ANONYMOUS_USER);
-            
-            AckReasonCode reasonCode = AckReasonCode.SUCCESS;
-            String errorMsg = null;
-            
-            try
+        var async = publishOut.async(reqTimeout);
+        
+        // get topic name and user ID
+        var topic = publishIn.getPublishPacket().getTopic();
+        var userID = publishIn.getConnectionInformation().getConnectionAttributeStore()
+            .getAsString(OshAuthenticator.MQTT_USER_PROP)
+            .orElse(ISecurityManager.ANONYMOUS_USER);
+        
+        // reject if no handler is found for this topic
+        var handler = oshExt.handlers.get(topic);
+        if (handler == null)
+        {
+            publishOut.preventPublishDelivery(AckReasonCode.TOPIC_NAME_INVALID);
+            async.resume();
+            return;
+        }
+        
+        log.debug(LOG_PUBLISH_MSG + "Handled by {}",
+            publishIn.getClientInformation().getClientId(), topic, handler.getClass().getSimpleName());
+        var msg = new PendingPublish(publishIn, publishOut, async);
+        
+        // process right away if batching is disabled
+        if (maxBatchSize <= 1 || maxBatchDelay <= 0)
+        {
+            var batch = new PublishBatch(userID, topic, handler);
+            batch.messages.add(msg);
+            Services.extensionExecutorService().submit(() -> processBatch(batch));
+            return;
+        }
+        
+        // otherwise add message to the pending batch for this user and topic
+        var batchKey = userID + '\n' + topic;
+        PublishBatch fullBatch = null;
+        synchronized (pendingBatches)
+        {
+            var batch = pendingBatches.get(batchKey);
+            if (batch == null)
             {
-                // if a handler is found, use it to authorize/publish on this topic
-                var handler = oshExt.handlers.get(topic);
-                if (handler != null)
-                {
-                    // publish via OSH handler
-                    log.debug(LOG_PUBLISH_MSG + "Handled by {}",
-                        publishIn.getClientInformation().getClientId(), topic, handler.getClass().getSimpleName());
-                    var pkt = publishIn.getPublishPacket();
-                    handler.onPublish(userID, topic, pkt.getPayload().get(), pkt.getCorrelationData().orElse(null));
-                }
-                
-                // reject in all other cases
-                else
-                {
-                    reasonCode = AckReasonCode.TOPIC_NAME_INVALID;
-                }
+                var newBatch = new PublishBatch(userID, topic, handler);
+                pendingBatches.put(batchKey, newBatch);
+                Services.extensionExecutorService().schedule(() -> {
+                    if (removePendingBatch(batchKey, newBatch))
+                        processBatch(newBatch);
+                }, maxBatchDelay, TimeUnit.MILLISECONDS);
+                batch = newBatch;
             }
-            catch (AccessControlException e)
-            {
-                log.debug("Not authorized: {}", e.getMessage());
-                reasonCode = AckReasonCode.NOT_AUTHORIZED;
-            }
-            catch (InvalidTopicException e)
-            {
-                log.debug("Invalid topic {}: {}", topic, e.getMessage());
-                reasonCode = AckReasonCode.TOPIC_NAME_INVALID;
-                errorMsg = e.getMessage();
-            }
-            catch (InvalidPayloadException e)
-            {
-                log.debug("Invalid payload: {}", e.getMessage());
-                reasonCode = AckReasonCode.PAYLOAD_FORMAT_INVALID;
-                errorMsg = e.getMessage();
-            }
-            catch (ImplSpecificException e)
-            {
-                log.debug("Implementation Error: {}", e.getMessage());
-                reasonCode = AckReasonCode.IMPLEMENTATION_SPECIFIC_ERROR;
-                errorMsg = e.getMessage();
-            }
-            catch (Exception e)
-            {
-                log.error("Internal error handling PUBLISH message", e);
-                reasonCode = AckReasonCode.IMPLEMENTATION_SPECIFIC_ERROR;
-                errorMsg = "Internal error";
-            }
-            finally
+            
+            batch.messages.add(msg);
+            if (batch.messages.size() >= maxBatchSize)
             {
-                // always prevent direct delivery by MQTT server to force message to go
-                // through OSH eventbus, but don't send any error
-                publishOut.preventPublishDelivery(reasonCode, errorMsg);
-                
-                async.resume();
+                pendingBatches.remove(batchKey);
+                fullBatch = batch;
             }
-        });
+        }
+        
+        if (fullBatch != null)
+        {
+            var batch = fullBatch;
+            Services.extensionExecutorService().submit(() -> processBatch(batch));
+        }
+    }
+    
+    
+    boolean removePendingBatch(String batchKey, PublishBatch batch)
+    {
+        synchronized (pendingBatches)
+        {
+            return pendingBatches.remove(batchKey, batch);
+        }
+    }
+    
+    
+    void processBatch(PublishBatch batch)
+    {
+        var numMsgs = batch.messages.size();
+        var payloads = new ArrayList<ByteBuffer>(numMsgs);
+        var correlData = new ArrayList<ByteBuffer>(numMsgs);
+        for (var msg: batch.messages)
+        {
+            payloads.add(msg.payload);
+            correlData.add(msg.correlData);
+        }
+        
+        Exception[] errors;
+        try
+        {
+            errors = batch.handler.onPublishBatch(batch.userID, batch.topic, payloads, correlData);
+        }
+        catch (Exception e)
+        {
+            errors = new Exception[numMsgs];
+            for (int i = 0; i < numMsgs; i++)
+                errors[i] = e;
+        }
+        
+        // ack all messages once the whole batch has been handled
+        var now = System.nanoTime();
+        for (int i = 0; i < numMsgs; i++)
+        {
+            var msg = batch.messages.get(i);
+            var error = errors != null && i < errors.length ? errors[i] : null;
+            ack(msg, batch.topic, error);
+            
+            var latency = now - msg.receivedTime;
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+        
+        messageCount.addAndGet(numMsgs);
+        batchCount.incrementAndGet();
+    }
+    
+    
+    void ack(PendingPublish msg, String topic, Exception error)
+    {
+        AckReasonCode reasonCode = AckReasonCode.SUCCESS;
+        String errorMsg = null;
+        
+        try
+        {
+            if (error != null)
+                throw error;
+        }
+        catch (AccessControlException e)
+        {
+            log.debug("Not authorized: {}", e.getMessage());
+            reasonCode = AckReasonCode.NOT_AUTHORIZED;
+        }
+        catch (InvalidTopicException e)
+        {
+            log.debug("Invalid topic {}: {}", topic, e.getMessage());
+            reasonCode = AckReasonCode.TOPIC_NAME_INVALID;
+            errorMsg = e.getMessage();
+        }
+        catch (InvalidPayloadException e)
+        {
+            log.debug("Invalid payload: {}", e.getMessage());
+            reasonCode = AckReasonCode.PAYLOAD_FORMAT_INVALID;
+            errorMsg = e.getMessage();
+        }
+        catch (ImplSpecificException e)
+        {
+            log.debug("Implementation Error: {}", e.getMessage());
+            reasonCode = AckReasonCode.IMPLEMENTATION_SPECIFIC_ERROR;
+            errorMsg = e.getMessage();
+        }
+        catch (Exception e)
+        {
+            log.error("Internal error handling PUBLISH message", e);
+            reasonCode = AckReasonCode.IMPLEMENTATION_SPECIFIC_ERROR;
+            errorMsg = "Internal error";
+        }
+        finally
+        {
+            // always prevent direct delivery by MQTT server to force message to go
+            // through OSH eventbus, but don't send any error
+            msg.publishOut.preventPublishDelivery(reasonCode, errorMsg);
+            
+            msg.async.resume();
+        }
+    }
+    
+    
+    /**
+     * @return Total number of PUBLISH messages handled
+     */
+    public long getMessageCount()
+    {
+        return messageCount.get();
+    }
+    
+    
+    /**
+     * @return Total number of batches passed to OSH handlers
+     */
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+    
+    
+    /**
+     * @return Average number of messages per batch
+     */
+    public double getAverageBatchSize()
+    {
+        var numBatches = batchCount.get();
+        return numBatches == 0 ? 0.0 : (double)messageCount.get() / numBatches;
+    }
+    
+    
+    /**
+     * @return Average time between reception and acknowledgement of messages, in milliseconds
+     */
+    public double getAverageLatency()
+    {
+        var numMsgs = messageCount.get();
+        return numMsgs == 0 ? 0.0 : totalLatency.get() / 1e6 / numMsgs;
+    }
+    
+    
+    /**
+     * @return Maximum time between reception and acknowledgement of messages, in milliseconds
+     */
+    public double getMaxLatency()
+    {
+        return maxLatency.get() / 1e6;
     }
-
 }
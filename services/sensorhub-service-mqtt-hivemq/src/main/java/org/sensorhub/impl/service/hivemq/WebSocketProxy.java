@@ -21,9 +21,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.sensorhub.impl.service.WebSocketUtils;
 import org.slf4j.Logger;
 
@@ -31,6 +35,11 @@ import org.slf4j.Logger;
 /**
  * <p>
  * Simple proxy to forward MQTT over websocket packets to a local MQTT TCP port
+ * </p><p>
+ * Data is exchanged through direct buffers taken from a shared pool and all
+ * writes are asynchronous. The next read from the MQTT socket is only issued
+ * once the previous chunk has been sent to the websocket client so a slow
+ * client applies back pressure on the broker instead of blocking a thread.
  * </p>
  *
  * @author Alex Robin
@@ -39,17 +48,22 @@ import org.slf4j.Logger;
 public class WebSocketProxy implements WebSocketListener
 {
     final InetSocketAddress mqttHost;
+    final DirectBufferPool bufferPool;
     final Logger log;
     Session session;
     volatile AsynchronousSocketChannel mqttSocket;
     ByteBuffer socketReadBuffer;
     CompletionHandler<Integer, Void> socketReadHandler;
+    WriteCallback wsWriteCallback;
+    final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean writing = new AtomicBoolean(true); // no write until connected
     CompletionHandler<Integer, Void> socketWriteHandler;
     
     
-    WebSocketProxy(InetSocketAddress mqttHost, Logger logger)
+    WebSocketProxy(InetSocketAddress mqttHost, DirectBufferPool bufferPool, Logger logger)
     {
         this.mqttHost = mqttHost;
+        this.bufferPool = bufferPool;
         this.log = logger;
     }
 
@@ -64,49 +78,105 @@ public class WebSocketProxy implements WebSocketListener
             
             mqttSocket = AsynchronousSocketChannel.open();
             mqttSocket.setOption(StandardSocketOptions.TCP_NODELAY, true);
-            try
-            {
-                mqttSocket.connect(mqttHost).get();
-            }
-            catch (Exception e)
-            {
-                WebSocketUtils.closeSession(session, StatusCode.SERVER_ERROR, "Cannot connect to MQTT backend", log);
-                return;
-            }
             
             // prepare async socket read handler
-            socketReadBuffer = ByteBuffer.allocate(1500); // max TCP MTU
+            // we forward each chunk to the websocket and read again only
+            // when the websocket write has completed
+            socketReadBuffer = bufferPool.acquire();
             socketReadHandler = new CompletionHandler<>() {
                 @Override
                 public void completed(Integer readBytes, Void attachment)
                 {
-                    if (readBytes > 0)
+                    if (readBytes < 0)
                     {
-                        try
-                        {
-                            socketReadBuffer.flip();
-                            session.getRemote().sendBytes(socketReadBuffer);
-                        }
-                        catch (IOException e)
-                        {
-                            log.error("Error forwarding data to websocket");
-                        }
+                        WebSocketUtils.closeSession(session, StatusCode.NORMAL, "MQTT connection closed", log);
+                        releaseReadBuffer();
+                        return;
                     }
                     
+                    socketReadBuffer.flip();
+                    session.getRemote().sendBytes(socketReadBuffer, wsWriteCallback);
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment)
+                {
+                    if (!(e instanceof AsynchronousCloseException))
+                    {
+                        log.error("Error reading data from MQTT TCP socket", e);
+                        WebSocketUtils.closeSession(session, StatusCode.SERVER_ERROR, "MQTT connection error", log);
+                    }
+                    releaseReadBuffer();
+                }
+            };
+            
+            wsWriteCallback = new WriteCallback() {
+                @Override
+                public void writeSuccess()
+                {
                     socketReadBuffer.clear();
                     readFromTcpSocket();
                 }
+                
+                @Override
+                public void writeFailed(Throwable e)
+                {
+                    log.error("Error forwarding data to websocket", e);
+                    releaseReadBuffer();
+                }
+            };
+            
+            // prepare async socket write handler
+            // it keeps writing until the buffer at the head of the queue is
+            // fully sent since the socket can accept only part of it
+            socketWriteHandler = new CompletionHandler<>() {
+                @Override
+                public void completed(Integer writtenBytes, Void attachment)
+                {
+                    var buf = writeQueue.peek();
+                    if (buf.hasRemaining())
+                    {
+                        mqttSocket.write(buf, null, this);
+                        return;
+                    }
+                    
+                    writeQueue.poll();
+                    bufferPool.release(buf);
+                    writeNext();
+                }
 
                 @Override
                 public void failed(Throwable e, Void attachment)
                 {
                     if (!(e instanceof AsynchronousCloseException))
-                        log.error("Error reading data from MQTT TCP socket", e);
+                    {
+                        log.error("Error writing data to MQTT TCP socket", e);
+                        WebSocketUtils.closeSession(session, StatusCode.SERVER_ERROR, "MQTT connection error", log);
+                    }
+                    clearWriteQueue();
                 }
             };
             
-            // start TCP socket read loop
-            readFromTcpSocket();
+            // connect and start TCP socket read loop
+            mqttSocket.connect(mqttHost, null, new CompletionHandler<Void, Void>() {
+                @Override
+                public void completed(Void result, Void attachment)
+                {
+                    // send packets received while connecting
+                    writing.set(false);
+                    flushWriteQueue();
+                    readFromTcpSocket();
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment)
+                {
+                    log.error("Cannot connect to MQTT backend", e);
+                    WebSocketUtils.closeSession(session, StatusCode.SERVER_ERROR, "Cannot connect to MQTT backend", log);
+                    releaseReadBuffer();
+                    clearWriteQueue();
+                }
+            });
         }
         catch (IOException e)
         {
@@ -117,8 +187,56 @@ public class WebSocketProxy implements WebSocketListener
     
     protected void readFromTcpSocket()
     {
-        if (mqttSocket != null && mqttSocket.isOpen())
-            mqttSocket.read(socketReadBuffer, null, socketReadHandler);
+        var socket = mqttSocket;
+        if (socket != null && socket.isOpen())
+            socket.read(socketReadBuffer, null, socketReadHandler);
+        else
+            releaseReadBuffer();
+    }
+    
+    
+    protected synchronized void releaseReadBuffer()
+    {
+        if (socketReadBuffer != null)
+        {
+            bufferPool.release(socketReadBuffer);
+            socketReadBuffer = null;
+        }
+    }
+    
+    
+    protected void flushWriteQueue()
+    {
+        if (!writeQueue.isEmpty() && writing.compareAndSet(false, true))
+            writeNext();
+    }
+    
+    
+    protected void writeNext()
+    {
+        var socket = mqttSocket;
+        var buf = writeQueue.peek();
+        
+        if (socket == null || !socket.isOpen())
+        {
+            clearWriteQueue();
+        }
+        else if (buf == null)
+        {
+            // check again in case a buffer was queued concurrently
+            writing.set(false);
+            flushWriteQueue();
+        }
+        else
+            socket.write(buf, null, socketWriteHandler);
+    }
+    
+    
+    protected void clearWriteQueue()
+    {
+        ByteBuffer buf;
+        while ((buf = writeQueue.poll()) != null)
+            bufferPool.release(buf);
     }
     
 
@@ -127,10 +245,12 @@ public class WebSocketProxy implements WebSocketListener
     {
         try
         {
-            if (mqttSocket != null)
+            // pending read and write will fail and release their buffers
+            var socket = mqttSocket;
+            if (socket != null)
             {
-                mqttSocket.close();
                 mqttSocket = null;
+                socket.close();
             }
             
             WebSocketUtils.logClose(session, statusCode, reason, log);
@@ -145,8 +265,22 @@ public class WebSocketProxy implements WebSocketListener
     @Override
     public void onWebSocketBinary(byte[] payload, int offset, int len)
     {
-        if (mqttSocket != null && mqttSocket.isOpen())
-            mqttSocket.write(ByteBuffer.wrap(payload));
+        var socket = mqttSocket;
+        if (socket != null && socket.isOpen())
+        {
+            // copy to a pooled direct buffer unless message is too large
+            ByteBuffer buf;
+            if (len <= bufferPool.bufferSize)
+            {
+                buf = bufferPool.acquire();
+                buf.put(payload, offset, len).flip();
+            }
+            else
+                buf = ByteBuffer.wrap(payload, offset, len);
+            
+            writeQueue.offer(buf);
+            flushWriteQueue();
+        }
     }
 
 
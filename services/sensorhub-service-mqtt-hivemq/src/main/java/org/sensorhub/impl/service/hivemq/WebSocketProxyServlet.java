@@ -45,16 +45,26 @@ import org.vast.util.Asserts;
 public class WebSocketProxyServlet extends HttpServlet
 {
     final static String MQTT_SUB_PROTOCOL = "mqtt";
+    final static int DEFAULT_BUFFER_SIZE = 64*1024;
+    final static int DEFAULT_MAX_POOLED_BUFFERS = 1024;
     
     final InetSocketAddress mqttServerAddress;
+    final DirectBufferPool bufferPool;
     final Logger log;
     WebSocketServletFactory wsFactory;
 
 
     public WebSocketProxyServlet(InetSocketAddress mqttServerAddress, Logger logger)
+    {
+        this(mqttServerAddress, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED_BUFFERS, logger);
+    }
+    
+    
+    public WebSocketProxyServlet(InetSocketAddress mqttServerAddress, int bufferSize, int maxPooledBuffers, Logger logger)
     {
         this.log = Asserts.checkNotNull(logger, Logger.class);
         this.mqttServerAddress = Asserts.checkNotNull(mqttServerAddress, InetSocketAddress.class);
+        this.bufferPool = new DirectBufferPool(bufferSize, maxPooledBuffers);
     }
     
     
@@ -113,7 +123,7 @@ public class WebSocketProxyServlet extends HttpServlet
                         }
                         
                         resp.setAcceptedSubProtocol(MQTT_SUB_PROTOCOL);
-                        return new WebSocketProxy(mqttServerAddress, log);
+                        return new WebSocketProxy(mqttServerAddress, bufferPool, log);
                     }
                     catch (IOException e)
                     {
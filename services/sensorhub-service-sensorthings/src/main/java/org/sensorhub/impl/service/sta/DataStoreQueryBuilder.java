@@ -14,17 +14,54 @@ Copyright (C) 2019 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.sta;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.sensorhub.api.common.BigId;
+import org.sensorhub.api.data.IDataStreamInfo;
+import org.sensorhub.api.data.IObsData;
+import org.sensorhub.api.datastore.TemporalFilter;
+import org.sensorhub.api.datastore.obs.DataStreamKey;
+import org.sensorhub.api.datastore.obs.ObsFilter;
 import org.sensorhub.api.datastore.system.SystemFilter;
+import org.sensorhub.api.system.ISystemWithDesc;
+import org.sensorhub.impl.service.sta.filter.DatastreamFilterVisitor;
+import org.sensorhub.impl.service.sta.filter.LocationFilterVisitor;
+import org.vast.ogc.gml.IFeature;
+import de.fraunhofer.iosb.ilt.frostserver.model.MultiDatastream;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.path.EntityProperty;
+import de.fraunhofer.iosb.ilt.frostserver.path.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.path.NavigationProperty;
+import de.fraunhofer.iosb.ilt.frostserver.query.Expand;
+import de.fraunhofer.iosb.ilt.frostserver.query.OrderBy.OrderType;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Path;
+import net.opengis.gml.v32.AbstractFeature;
 
 /**
  * <p>
- * TODO DataStoreQueryBuilder type description
+ * Helper to build datastore queries from STA requests.<br/>
+ * This also implements the $expand option: parent IDs of a whole page of
+ * entities are collected and each expanded relation is resolved with a
+ * single multi-key datastore query, rather than one query per parent entity.
+ * Expanding the latest observation of datastreams (i.e. with
+ * $top=1;$orderby=phenomenonTime desc) is handled with a single query for
+ * the latest observation of each datastream.
  * </p>
  *
  * @author Alex Robin
  * @date Sep 7, 2019
  */
+@SuppressWarnings({ "rawtypes", "unchecked" })
 public class DataStoreQueryBuilder
 {
     // common properties
@@ -49,12 +86,357 @@ public class DataStoreQueryBuilder
     
     // 5. post process $expand (issue other queries from step 1 and then aggregate results)
     
+    OSHPersistenceManager pm;
+    STASecurity securityHandler;
+    
+    
+    DataStoreQueryBuilder(OSHPersistenceManager pm)
+    {
+        this.pm = pm;
+        this.securityHandler = pm.service.getSecurityHandler();
+    }
+    
+    
     public SystemFilter buildSensorFilter(Query q)
     {
         return null;
     }
     
     
+    /**
+     * Expands navigation properties of a page of entities as requested by
+     * the $expand option of the query
+     * @param entities Entities to expand (must all be of the same type)
+     * @param q Query options
+     */
+    public void expand(Collection<? extends Entity> entities, Query q)
+    {
+        if (q == null || q.getExpand().isEmpty() || entities.isEmpty())
+            return;
+        
+        for (Expand exp: q.getExpand())
+            expand(entities, exp.getPath(), 0, exp.getSubQuery());
+    }
+    
+    
+    protected void expand(Collection<? extends Entity> parents, List<NavigationProperty> expPath, int level, Query subQuery)
+    {
+        if (parents.isEmpty())
+            return;
+        
+        // sub query only applies to the last element of the expand path
+        var prop = expPath.get(level);
+        var isLast = level == expPath.size()-1;
+        var q = isLast && subQuery != null ? subQuery : new Query(pm.getCoreSettings());
+        
+        var children = prop.isSet ?
+            expandEntitySet(parents, prop, q) :
+            expandEntity(parents, prop, q);
+        
+        if (!isLast)
+            expand(children, expPath, level+1, subQuery);
+        else
+            expand(children, q);
+    }
+    
+    
+    protected List<Entity> expandEntitySet(Collection<? extends Entity> parents, NavigationProperty prop, Query q)
+    {
+        var parentType = parents.iterator().next().getEntityType();
+        
+        if ((parentType == EntityType.THING || parentType == EntityType.SENSOR) &&
+            (prop == NavigationProperty.DATASTREAMS || prop == NavigationProperty.MULTIDATASTREAMS))
+        {
+            var children = selectDatastreams(parents, parentType, prop, q);
+            return setEntitySets(parents, prop, q, children, pm.dataStreamHandler.maxPageSize);
+        }
+        
+        else if (parentType == EntityType.THING && prop == NavigationProperty.LOCATIONS &&
+                 pm.locationHandler.locationDataStore != null)
+        {
+            var children = selectLocations(parents, q);
+            return setEntitySets(parents, prop, q, children, pm.locationHandler.maxPageSize);
+        }
+        
+        else if ((parentType == EntityType.DATASTREAM || parentType == EntityType.MULTIDATASTREAM) &&
+                 prop == NavigationProperty.OBSERVATIONS && isLatestObsQuery(q))
+        {
+            return setLatestObservations(parents, q);
+        }
+        
+        // other relations are resolved for each parent
+        var allChildren = new ArrayList<Entity>();
+        for (var parent: parents)
+        {
+            var linkedPath = FrostUtils.getNavigationLinkPath(parent.getId(), parentType, prop.type);
+            var entitySet = pm.getHandler(prop.type).queryCollection(linkedPath, q);
+            if (entitySet != null)
+            {
+                parent.setProperty(prop, entitySet);
+                allChildren.addAll(entitySet.asList());
+            }
+        }
+        
+        return allChildren;
+    }
+    
+    
+    /*
+     * Assign paged entity sets to each parent entity
+     */
+    protected List<Entity> setEntitySets(Collection<? extends Entity> parents, NavigationProperty prop, Query q, Map<BigId, List<Entity>> children, int maxPageSize)
+    {
+        var parentType = parents.iterator().next().getEntityType();
+        int skip = q.getSkip(0);
+        int limit = Math.min(q.getTopOrDefault(), maxPageSize);
+        var allChildren = new ArrayList<Entity>();
+        
+        for (var parent: parents)
+        {
+            var list = children.getOrDefault((ResourceId)parent.getId(), Collections.emptyList());
+            var page = list.subList(Math.min(skip, list.size()), Math.min(skip+limit+1, list.size()));
+            
+            var entitySet = new EntitySetImpl(prop.type, new ArrayList<>(page));
+            var linkedPath = FrostUtils.getNavigationLinkPath(parent.getId(), parentType, prop.type);
+            FrostUtils.handlePaging(entitySet, linkedPath, q, limit);
+            
+            parent.setProperty(prop, entitySet);
+            allChildren.addAll(entitySet.asList());
+        }
+        
+        return allChildren;
+    }
+    
+    
+    /*
+     * Select datastreams of all parent things or sensors with a single query
+     */
+    protected Map<BigId, List<Entity>> selectDatastreams(Collection<? extends Entity> parents, EntityType parentType, NavigationProperty prop, Query q)
+    {
+        securityHandler.checkPermission(securityHandler.sta_read_datastream);
+        
+        var parentIds = getIds(parents);
+        var builder = new STADataStreamFilter.Builder()
+            .withAllVersions();
+        
+        if (parentType == EntityType.THING)
+            builder.withThings(parentIds);
+        else
+            builder.withSystems(parentIds);
+        
+        if (q.getFilter() != null)
+            q.getFilter().accept(new DatastreamFilterVisitor(builder));
+        
+        var dsHandler = pm.dataStreamHandler;
+        var multiDs = prop == NavigationProperty.MULTIDATASTREAMS;
+        var children = new HashMap<BigId, List<Entity>>();
+        
+        dsHandler.dataStreamReadStore.selectEntries(builder.build())
+            .filter(e -> dsHandler.isDataStreamVisible(e.getValue(), multiDs))
+            .map(e -> dsHandler.toFrostDatastream(e.getKey().getInternalID(), e.getValue(), q))
+            .filter(ds -> multiDs == (ds instanceof MultiDatastream))
+            .forEach(ds -> {
+                var parentLink = parentType == EntityType.THING ? ds.getThing() : ds.getSensor();
+                children.computeIfAbsent((ResourceId)parentLink.getId(), k -> new ArrayList<>()).add(ds);
+            });
+        
+        return children;
+    }
+    
+    
+    /*
+     * Select current locations of all parent things with a single query
+     */
+    protected Map<BigId, List<Entity>> selectLocations(Collection<? extends Entity> parents, Query q)
+    {
+        securityHandler.checkPermission(securityHandler.sta_read_location);
+        
+        var locationStore = pm.locationHandler.locationDataStore;
+        var locationIdsByThing = locationStore.getCurrentLocationIDs(getIds(parents));
+        var allLocationIds = new LinkedHashSet<BigId>();
+        locationIdsByThing.values().forEach(allLocationIds::addAll);
+        if (allLocationIds.isEmpty())
+            return Collections.emptyMap();
+        
+        var builder = new STALocationFilter.Builder()
+            .withInternalIDs(allLocationIds.toArray(new BigId[0]))
+            .withCurrentVersion();
+        
+        if (q.getFilter() != null)
+            q.getFilter().accept(new LocationFilterVisitor(builder));
+        
+        var locations = new HashMap<BigId, AbstractFeature>();
+        locationStore.selectEntries(builder.build())
+            .forEach(e -> locations.put(e.getKey().getInternalID(), e.getValue()));
+        
+        // convert separately for each thing since entities cannot be shared
+        var children = new HashMap<BigId, List<Entity>>();
+        for (var entry: locationIdsByThing.entrySet())
+        {
+            var list = new ArrayList<Entity>();
+            for (var locId: entry.getValue())
+            {
+                var f = locations.get(locId);
+                if (f != null)
+                    list.add(pm.locationHandler.toFrostLocation(locId, f, q));
+            }
+            children.put(entry.getKey(), list);
+        }
+        
+        return children;
+    }
+    
+    
+    /*
+     * Check if query is for the latest observation only
+     */
+    protected boolean isLatestObsQuery(Query q)
+    {
+        if (q.getTopOrDefault() != 1 || q.getSkip(0) != 0 || q.getFilter() != null || q.getOrderBy().size() != 1)
+            return false;
+        
+        var orderBy = q.getOrderBy().get(0);
+        if (orderBy.getType() != OrderType.DESCENDING || !(orderBy.getExpression() instanceof Path))
+            return false;
+        
+        var orderProps = ((Path)orderBy.getExpression()).getElements();
+        return orderProps.size() == 1 && orderProps.get(0) == EntityProperty.PHENOMENONTIME;
+    }
+    
     
+    /*
+     * Select latest observation of all parent datastreams with a single query
+     */
+    protected List<Entity> setLatestObservations(Collection<? extends Entity> parents, Query q)
+    {
+        securityHandler.checkPermission(securityHandler.sta_read_obs);
+        
+        var filter = new ObsFilter.Builder()
+            .withDataStreams()
+                .withInternalIDs(getIds(parents))
+                .withAllVersions()
+                .done()
+            .withPhenomenonTime(new TemporalFilter.Builder()
+                .withLatestTime()
+                .build())
+            .build();
+        
+        var latestObs = new HashMap<BigId, Entry<BigId, IObsData>>();
+        pm.observationHandler.obsReadStore.selectEntries(filter)
+            .forEach(e -> latestObs.merge(e.getValue().getDataStreamID(), e, (e1, e2) -> 
+                e2.getValue().getPhenomenonTime().isAfter(e1.getValue().getPhenomenonTime()) ? e2 : e1));
+        
+        var obsHandler = pm.observationHandler;
+        var allChildren = new ArrayList<Entity>();
+        for (var parent: parents)
+        {
+            var entitySet = new EntitySetImpl(EntityType.OBSERVATION);
+            var e = latestObs.get((ResourceId)parent.getId());
+            if (e != null)
+                entitySet.add(obsHandler.toFrostObservation(e.getKey(), e.getValue(), obsHandler.checkResultHasTimeStamp(e.getValue()), q));
+            
+            parent.setProperty(NavigationProperty.OBSERVATIONS, entitySet);
+            allChildren.addAll(entitySet.asList());
+        }
+        
+        return allChildren;
+    }
     
+    
+    protected List<Entity> expandEntity(Collection<? extends Entity> parents, NavigationProperty prop, Query q)
+    {
+        if (prop == NavigationProperty.THING)
+        {
+            securityHandler.checkPermission(securityHandler.sta_read_thing);
+            var thingHandler = pm.thingHandler;
+            return this.<IFeature>setLinkedEntities(parents, prop,
+                id -> thingHandler.thingDataStore != null ?
+                    thingHandler.thingDataStore.getCurrentVersion(id) :
+                    (thingHandler.hubId.equals(id) ? pm.service.hubThing : null),
+                (id, f) -> thingHandler.toFrostThing(id, f, q));
+        }
+        
+        else if (prop == NavigationProperty.SENSOR)
+        {
+            securityHandler.checkPermission(securityHandler.sta_read_sensor);
+            var sensorHandler = pm.sensorHandler;
+            return this.<ISystemWithDesc>setLinkedEntities(parents, prop,
+                id -> sensorHandler.sysReadStore.getCurrentVersion(id),
+                (id, sys) -> sensorHandler.toFrostSensor(id, sys, q));
+        }
+        
+        else if (prop == NavigationProperty.DATASTREAM || prop == NavigationProperty.MULTIDATASTREAM)
+        {
+            securityHandler.checkPermission(securityHandler.sta_read_datastream);
+            var dsHandler = pm.dataStreamHandler;
+            return this.<IDataStreamInfo>setLinkedEntities(parents, prop,
+                id -> dsHandler.dataStreamReadStore.get(new DataStreamKey(id)),
+                (id, dsInfo) -> dsHandler.toFrostDatastream(id, dsInfo, q));
+        }
+        
+        else if (prop == NavigationProperty.FEATUREOFINTEREST)
+        {
+            securityHandler.checkPermission(securityHandler.sta_read_foi);
+            var foiHandler = pm.foiHandler;
+            return this.<IFeature>setLinkedEntities(parents, prop,
+                id -> foiHandler.foiReadStore.getCurrentVersion(id),
+                (id, f) -> foiHandler.toFrostFoi(id, f, q));
+        }
+        
+        // other relations are resolved for each parent
+        var parentType = parents.iterator().next().getEntityType();
+        var allChildren = new ArrayList<Entity>();
+        for (var parent: parents)
+        {
+            var linkedPath = FrostUtils.getNavigationLinkPath(parent.getId(), parentType, prop.type);
+            var entitySet = pm.getHandler(prop.type).queryCollection(linkedPath, q);
+            if (entitySet != null && !entitySet.isEmpty())
+            {
+                var child = entitySet.asList().get(0);
+                parent.setProperty(prop, child);
+                allChildren.add(child);
+            }
+        }
+        
+        return allChildren;
+    }
+    
+    
+    /*
+     * Replace links to single entities by the full entities, reading each
+     * distinct linked entity only once
+     */
+    protected <V> List<Entity> setLinkedEntities(Collection<? extends Entity> parents, NavigationProperty prop, Function<BigId, V> lookup, BiFunction<BigId, V, Entity> converter)
+    {
+        var values = new HashMap<BigId, V>();
+        var allChildren = new ArrayList<Entity>();
+        
+        for (var parent: parents)
+        {
+            var link = parent.getProperty(prop);
+            if (!(link instanceof Entity) || ((Entity)link).getId() == null)
+                continue;
+            
+            var id = (ResourceId)((Entity)link).getId();
+            var val = values.computeIfAbsent(id, lookup);
+            if (val != null)
+            {
+                // convert separately for each parent since entities cannot be shared
+                var child = converter.apply(id, val);
+                parent.setProperty(prop, child);
+                allChildren.add(child);
+            }
+        }
+        
+        return allChildren;
+    }
+    
+    
+    protected BigId[] getIds(Collection<? extends Entity> entities)
+    {
+        return entities.stream()
+            .map(e -> (ResourceId)e.getId())
+            .distinct()
+            .toArray(BigId[]::new);
+    }
 }
@@ -266,7 +266,7 @@ public class FoiEntityHandler implements IResourceHandler<FeatureOfInterest>
     
     protected FeatureOfInterest toFrostFoi(BigId id, IFeature f, Query q)
     {
-        // TODO implement select and expand
+        // TODO implement select
         //Set<Property> select = q != null ? q.getSelect() : Collections.emptySet();
         
         FeatureOfInterest foi = new FeatureOfInterest();
@@ -86,13 +86,8 @@ public class FrostUtils
         if (entitySet.size() > limit)
         {
             // generate next link
-            int oldSkip = query.getSkip(0);
-            int top = limit;
-            int newSkip = oldSkip + top;
-            query.setSkip(newSkip);
-            String nextLink = path.toString() + "?" + query.toString(false);
-            query.setSkip(oldSkip);            
-            entitySet.setNextLink(nextLink);
+            int newSkip = query.getSkip(0) + limit;
+            entitySet.setNextLink(getPageLink(path, query, newSkip));
             
             // remove last element since we got limit+1 elements
             var entityList = entitySet.asList();
@@ -103,6 +98,23 @@ public class FrostUtils
     }
     
     
+    /**
+     * Generates the link to the page of results starting at the given index
+     * @param path Resource path of the collection
+     * @param query Original query (left unchanged)
+     * @param skip Index of the first result of the page
+     * @return the page link
+     */
+    public static String getPageLink(ResourcePath path, Query query, int skip)
+    {
+        int oldSkip = query.getSkip(0);
+        query.setSkip(skip);
+        String link = path.toString() + "?" + query.toString(false);
+        query.setSkip(oldSkip);
+        return link;
+    }
+    
+    
     public static AbstractFeature toSamplingFeature(org.geojson.GeoJsonObject geojson)
     {
         if (geojson instanceof org.geojson.Feature)
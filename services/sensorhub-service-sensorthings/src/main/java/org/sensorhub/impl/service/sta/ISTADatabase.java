@@ -14,6 +14,8 @@ Copyright (C) 2019 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.sta;
 
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.sensorhub.api.database.IObsSystemDatabase;
 
 
@@ -55,6 +57,20 @@ public interface ISTADatabase extends IObsSystemDatabase
     ISTAObsPropStore getObservedPropertyDataStore();
     
     
+    /**
+     * Executes several transactions in order, as part of a single database
+     * transaction. A transaction that fails is not rolled back, so that the ones
+     * executed before it are kept, and the next ones are still executed.<br/>
+     * This must only be used with transactions that cannot fail after they
+     * started modifying the database.
+     * @param transactions Transactions to execute
+     * @return Array containing, for each transaction, the exception that was
+     * raised or null if it completed successfully
+     * @throws Exception if the database could not be accessed
+     */
+    Exception[] executeBatch(List<? extends Callable<?>> transactions) throws Exception;
+    
+    
     public void close();
     
 }
@@ -15,6 +15,8 @@ Copyright (C) 2019 Sensia Software LLC. All Rights Reserved.
 package org.sensorhub.impl.service.sta;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.datastore.feature.IFeatureStoreBase;
@@ -46,6 +48,14 @@ public interface ISTALocationStore extends IFeatureStoreBase<AbstractFeature, Fe
     public Stream<IHistoricalLocation> selectHistoricalLocations(STALocationFilter filter);
     
     
+    /**
+     * Get IDs of the current locations of several things at once
+     * @param thingIDs Internal IDs of things
+     * @return Map of location IDs keyed by thing ID (the same key objects are used)
+     */
+    public Map<BigId, List<BigId>> getCurrentLocationIDs(BigId... thingIDs);
+    
+    
     public default STALocationFilter.Builder filterBuilder()
     {
         return new STALocationFilter.Builder();
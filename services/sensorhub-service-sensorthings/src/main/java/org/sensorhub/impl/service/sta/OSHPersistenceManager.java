@@ -17,6 +17,7 @@ package org.sensorhub.impl.service.sta;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.List;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.database.IObsSystemDatabase;
 import org.sensorhub.api.event.IEventBus;
@@ -65,6 +66,7 @@ public class OSHPersistenceManager implements PersistenceManager
     IObsSystemDatabase readDatabase;
     ISTADatabase writeDatabase;
     SystemDatabaseTransactionHandler transactionHandler;
+    DataStoreQueryBuilder queryBuilder;
     
     
     public OSHPersistenceManager()
@@ -225,6 +227,7 @@ public class OSHPersistenceManager implements PersistenceManager
                 return customEntity;
             }
             
+            queryBuilder.expand(List.of(entity), q);
             return entity;
         }
         
@@ -232,6 +235,7 @@ public class OSHPersistenceManager implements PersistenceManager
         else if (path.getMainElement() instanceof EntityPathElement)
         {
             EntitySet<?> resultSet = getHandler(path).queryCollection(path, q);
+            queryBuilder.expand(resultSet.asList(), q);
             if (resultSet.isEmpty())
                 return null;
             else if (resultSet.size() == 1)
@@ -241,7 +245,10 @@ public class OSHPersistenceManager implements PersistenceManager
         }
         
         // case of collection
-        return getHandler(path).queryCollection(path, q);
+        EntitySet<?> resultSet = getHandler(path).queryCollection(path, q);
+        if (resultSet != null)
+            queryBuilder.expand(resultSet.asList(), q);
+        return resultSet;
     } 
 
 
@@ -305,6 +312,7 @@ public class OSHPersistenceManager implements PersistenceManager
         this.observationHandler = new ObservationEntityHandler(this);
         this.locationHandler = new LocationEntityHandler(this);
         this.historicalLocationHandler = new HistoricalLocationEntityHandler(this);
+        this.queryBuilder = new DataStoreQueryBuilder(this);
     }
 
 
@@ -14,18 +14,33 @@ Copyright (C) 2019 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.sta;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.concurrent.TimeUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.Flow.Subscriber;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.joda.time.DateTimeZone;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.data.IDataStreamInfo;
 import org.sensorhub.api.data.IObsData;
 import org.sensorhub.api.data.ObsData;
 import org.sensorhub.api.data.ObsEvent;
+import org.sensorhub.api.datastore.EmptyFilterIntersection;
+import org.sensorhub.api.datastore.TemporalFilter;
 import org.sensorhub.api.datastore.obs.IObsStore;
 import org.sensorhub.api.datastore.obs.ObsFilter;
 import org.sensorhub.api.event.IEventPublisher;
@@ -40,6 +55,7 @@ import org.vast.data.DataBlockLong;
 import org.vast.data.DataBlockMixed;
 import org.vast.data.DataBlockString;
 import org.vast.util.Asserts;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -56,6 +72,7 @@ import de.fraunhofer.iosb.ilt.frostserver.path.EntityPathElement;
 import de.fraunhofer.iosb.ilt.frostserver.path.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Expression;
 import de.fraunhofer.iosb.ilt.frostserver.util.NoSuchEntityException;
 import net.opengis.swe.v20.DataBlock;
 
@@ -68,6 +85,12 @@ import net.opengis.swe.v20.DataBlock;
  * so that we can pass the CITE tests that are limited to 34-bits integer IDs.
  * However this will only work if observation time stamps are "whole seconds"
  * with the fractional part set to 0.
+ * </p><p>
+ * Collections are paged using the phenomenon time and ID of the last observation
+ * of each page (keyset paging) so that the query for the next page resumes where
+ * the previous one ended instead of skipping all previous results. This position
+ * is encoded in the $skiptoken parameter of the next link. This relies on the
+ * observation store returning results sorted by phenomenon time.
  * </p>
  *
  * @author Alex Robin
@@ -84,11 +107,92 @@ public class ObservationEntityHandler implements IResourceHandler<Observation>
     IObsStore obsReadStore;
     IObsStore obsWriteStore;
     int maxPageSize = 100;
+    int maxObsCount = 1000;
     boolean truncateIds = false;
     Cache<BigId, DataStreamTransactionHandler> dsHandlerCache;
     Cache<BigId, Boolean> dsResultHasTsCache;
     
     
+    /*
+     * Position of the last observation of a page.
+     * It is carried by the next page link so that any node can resume the query
+     */
+    static class PageCursor
+    {
+        static final String SKIPTOKEN_PARAM = "$skiptoken";
+        static final char SEPARATOR = '~';
+        
+        final Instant phenomenonTime;
+        final BigId id;
+        
+        PageCursor(Instant phenomenonTime, BigId id)
+        {
+            this.phenomenonTime = phenomenonTime;
+            this.id = id;
+        }
+        
+        /*
+         * Decodes the cursor from the value of the skip token parameter
+         * Throws IllegalArgumentException if the token is invalid
+         */
+        static PageCursor parse(String token)
+        {
+            try
+            {
+                var cursor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                var sep = cursor.indexOf(SEPARATOR);
+                var time = Instant.parse(cursor.substring(0, sep));
+                var id = BigId.fromString32(cursor.substring(sep+1));
+                return new PageCursor(time, id);
+            }
+            catch (IndexOutOfBoundsException | DateTimeParseException e)
+            {
+                throw new IllegalArgumentException("Invalid " + SKIPTOKEN_PARAM + ": " + token, e);
+            }
+        }
+        
+        String encode()
+        {
+            var cursor = phenomenonTime.toString() + SEPARATOR + BigId.toString32(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        /*
+         * Restricts the filter to observations not before the end of the page
+         * Returns null if no observation can match after the end of the page
+         */
+        ObsFilter restrict(ObsFilter filter)
+        {
+            var timeFilter = new ObsFilter.Builder()
+                .withPhenomenonTime(new TemporalFilter.Builder()
+                    .withRange(phenomenonTime, Instant.MAX)
+                    .build())
+                .build();
+            
+            try
+            {
+                return filter.intersect(timeFilter);
+            }
+            catch (EmptyFilterIntersection e)
+            {
+                return null;
+            }
+        }
+        
+        /*
+         * Predicate rejecting observations that come before or at the cursor
+         * in (phenomenon time, ID) order. It doesn't require the last observation
+         * of the previous page to still exist.
+         * Must be used on a stream obtained with the restricted filter
+         */
+        Predicate<Entry<BigId, IObsData>> notYetReturned()
+        {
+            return e -> !phenomenonTime.equals(e.getValue().getPhenomenonTime()) ||
+                e.getKey().compareTo(id) > 0;
+        }
+    }
+    
+    
     static class EventPublisherInfo
     {
         IDataStreamInfo dsInfo;
@@ -108,6 +212,7 @@ public class ObservationEntityHandler implements IResourceHandler<Observation>
         this.obsReadStore = pm.readDatabase.getObservationStore();
         this.obsWriteStore = pm.writeDatabase != null ? pm.writeDatabase.getObservationStore() : null;
         this.securityHandler = pm.service.getSecurityHandler();
+        this.maxObsCount = pm.service.getConfiguration().maxObsCount;
         
         this.dsHandlerCache = CacheBuilder.newBuilder()
             .maximumSize(10000)
@@ -238,19 +343,182 @@ public class ObservationEntityHandler implements IResourceHandler<Observation>
     {
         securityHandler.checkPermission(securityHandler.sta_read_obs);
 
+        // collect result to entity set
+        var entitySet = new EntitySetImpl<Observation>();
+        var nextLink = selectPage(path, q, e -> {
+            var obs = toFrostObservation(e.getKey(), e.getValue(), checkResultHasTimeStamp(e.getValue()), q);
+            entitySet.add(obs);
+        });
+        
+        entitySet.setNextLink(nextLink);
+        return entitySet;
+    }
+    
+    
+    /**
+     * Writes a page of observations to the JSON generator as they are read from
+     * the database, so that memory usage doesn't grow with the page size.<br/>
+     * The next link is written after the observation array since it is only known
+     * once the end of the page is reached.
+     * @param path Resource path of the observation collection
+     * @param q Query options
+     * @param gen JSON generator to write to
+     * @param visibility Callback applying selected/expanded properties and links
+     * to each observation before it is serialized
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeCollection(ResourcePath path, Query q, JsonGenerator gen, Consumer<Observation> visibility) throws IOException
+    {
+        securityHandler.checkPermission(securityHandler.sta_read_obs);
+        
+        try
+        {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("value");
+            
+            var nextLink = selectPage(path, q, e -> {
+                try
+                {
+                    var obs = toFrostObservation(e.getKey(), e.getValue(), checkResultHasTimeStamp(e.getValue()), q);
+                    visibility.accept(obs);
+                    gen.writeObject(obs);
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            
+            gen.writeEndArray();
+            if (nextLink != null)
+                gen.writeStringField("@iot.nextLink", nextLink);
+            gen.writeEndObject();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    
+    /**
+     * Reads one page of observations matching the query
+     * @param path Resource path of the observation collection
+     * @param q Query options
+     * @param consumer Callback receiving observations of the page, in order
+     * @return the link to the next page or null if this is the last page
+     */
+    protected String selectPage(ResourcePath path, Query q, Consumer<Entry<BigId, IObsData>> consumer)
+    {
         // create obs filter
         ObsFilter filter = getFilter(path, q);
         int skip = q.getSkip(0);
-        int limit = Math.min(q.getTopOrDefault(), maxPageSize);
+        int limit = getPageSize(q);
         
-        // collect result to entity set
-        var entitySet = obsReadStore.selectEntries(filter)
-            .skip(skip)
-            .limit(limit+1) // request limit+1 elements to handle paging
-            .map(e -> toFrostObservation(e.getKey(), e.getValue(), checkResultHasTimeStamp(e.getValue()), q))
-            .collect(Collectors.toCollection(EntitySetImpl::new));
-
-        return FrostUtils.handlePaging(entitySet, path, q, limit);
+        // resume after end of previous page if a skip token was provided
+        // otherwise fall back to skipping results from the start
+        // the token is consumed so it doesn't apply to collections expanded in the same request
+        var cursor = pm.service.obsPageCursor.get();
+        pm.service.obsPageCursor.remove();
+        Stream<Entry<BigId, IObsData>> results;
+        if (cursor != null)
+        {
+            var restrictedFilter = cursor.restrict(filter);
+            results = restrictedFilter != null ?
+                sortById(obsReadStore.selectEntries(restrictedFilter).filter(cursor.notYetReturned())) :
+                Stream.empty();
+        }
+        else
+            results = sortById(obsReadStore.selectEntries(filter)).skip(skip);
+        
+        try (results)
+        {
+            var it = results.iterator();
+            Entry<BigId, IObsData> last = null;
+            int count = 0;
+            
+            while (count < limit && it.hasNext())
+            {
+                last = it.next();
+                consumer.accept(last);
+                count++;
+            }
+            
+            // generate next link with position of last observation if more results are available
+            if (!it.hasNext())
+                return null;
+            else if (last == null)
+                return FrostUtils.getPageLink(path, q, skip + limit);
+            
+            var nextCursor = new PageCursor(last.getValue().getPhenomenonTime(), last.getKey());
+            return FrostUtils.getPageLink(path, q, skip + limit) + '&' + PageCursor.SKIPTOKEN_PARAM + '=' + nextCursor.encode();
+        }
+    }
+    
+    
+    /*
+     * Sorts observations sharing the same phenomenon time by ID, so that results
+     * are in the (phenomenon time, ID) order used by page cursors.
+     * The store already returns results sorted by phenomenon time so only one group
+     * of observations with the same time stamp is buffered at a time
+     */
+    protected Stream<Entry<BigId, IObsData>> sortById(Stream<Entry<BigId, IObsData>> results)
+    {
+        var it = results.iterator();
+        var sortedIt = new Iterator<Entry<BigId, IObsData>>()
+        {
+            final ArrayList<Entry<BigId, IObsData>> group = new ArrayList<>();
+            Entry<BigId, IObsData> next;
+            int groupIdx;
+            
+            @Override
+            public boolean hasNext()
+            {
+                if (groupIdx < group.size())
+                    return true;
+                
+                group.clear();
+                groupIdx = 0;
+                if (next == null && it.hasNext())
+                    next = it.next();
+                if (next == null)
+                    return false;
+                
+                var time = next.getValue().getPhenomenonTime();
+                do
+                {
+                    group.add(next);
+                    next = it.hasNext() ? it.next() : null;
+                }
+                while (next != null && time.equals(next.getValue().getPhenomenonTime()));
+                
+                if (group.size() > 1)
+                    group.sort(Entry.comparingByKey());
+                return true;
+            }
+            
+            @Override
+            public Entry<BigId, IObsData> next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return group.get(groupIdx++);
+            }
+        };
+        
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(sortedIt, Spliterator.ORDERED), false)
+            .onClose(results::close);
+    }
+    
+    
+    /*
+     * Pages contain maxPageSize observations unless another size is requested
+     * with $top, but never more than the maxObsCount limit set in the service config
+     */
+    protected int getPageSize(Query q)
+    {
+        int top = q.getTop().orElse(maxPageSize);
+        return Math.max(0, Math.min(top, maxObsCount));
     }
     
     
@@ -329,10 +597,37 @@ public class ObservationEntityHandler implements IResourceHandler<Observation>
             }
         }
 
-        ObsFilterVisitor visitor = new ObsFilterVisitor(builder);
-        if (q.getFilter() != null)
-            q.getFilter().accept(visitor);
-
+        var pathFilter = builder.build();
+        if (q.getFilter() == null)
+            return pathFilter;
+        
+        // reuse filter compiled from the same expression, including
+        // its residual value predicate, if caching is enabled
+        var filterCache = pm.service.filterCache;
+        var exprFilter = filterCache != null ?
+            filterCache.get(EntityType.OBSERVATION, q.getFilter(), this::compileFilter) :
+            compileFilter(q.getFilter());
+        
+        // intersect with path filter so that the expression cannot select
+        // datastreams or FOIs outside of the requested path
+        try
+        {
+            return pathFilter.intersect(exprFilter);
+        }
+        catch (EmptyFilterIntersection e)
+        {
+            return new ObsFilter.Builder()
+                .copyFrom(pathFilter)
+                .withValuePredicate(obs -> false)
+                .build();
+        }
+    }
+    
+    
+    protected ObsFilter compileFilter(Expression expr)
+    {
+        var builder = new ObsFilter.Builder();
+        expr.accept(new ObsFilterVisitor(builder));
         return builder.build();
     }
 
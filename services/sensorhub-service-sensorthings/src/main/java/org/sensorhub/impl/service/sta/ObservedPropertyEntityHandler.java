@@ -287,7 +287,6 @@ public class ObservedPropertyEntityHandler implements IResourceHandler<ObservedP
     
     protected ObservedProperty toFrostObservedProperty(BigId id, ObsPropDef f, Query q)
     {
-        // TODO implement expand
         //Set<Property> select = q != null ? q.getSelect() : Collections.emptySet();
         
         ObservedProperty obsProp = new ObservedProperty();
@@ -14,6 +14,7 @@ Copyright (C) 2019 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.sta;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.h2.mvstore.MVStore;
 import org.sensorhub.api.common.SensorHubException;
@@ -56,6 +57,7 @@ public class STADatabase implements ISTADatabase
     STAObsPropStoreImpl obsPropStore;
     STADataStreamStoreImpl dataStreamStore;
     boolean externalObsDatabaseUsed;
+    boolean batchMode; // guarded by mvStore lock
     
     
     STADatabase(STAService service, STADatabaseConfig config)
@@ -154,6 +156,11 @@ public class STADatabase implements ISTADatabase
     {
         synchronized (mvStore)
         {
+            // transactions that are part of a batch are never rolled back
+            // since it would also revert the ones executed before
+            if (batchMode)
+                return transaction.call();
+            
             long currentVersion = mvStore.getCurrentVersion();
             
             try
@@ -171,6 +178,45 @@ public class STADatabase implements ISTADatabase
         }
     }
     
+    
+    @Override
+    public Exception[] executeBatch(List<? extends Callable<?>> transactions) throws Exception
+    {
+        synchronized (mvStore)
+        {
+            var errors = new Exception[transactions.size()];
+            Callable<Void> batch = () -> {
+                for (int i = 0; i < errors.length; i++)
+                {
+                    try
+                    {
+                        transactions.get(i).call();
+                    }
+                    catch (Exception e)
+                    {
+                        errors[i] = e;
+                    }
+                }
+                return null;
+            };
+            
+            batchMode = true;
+            try
+            {
+                if (externalObsDatabaseUsed)
+                    obsDatabase.executeTransaction(batch);
+                else
+                    batch.call();
+            }
+            finally
+            {
+                batchMode = false;
+            }
+            
+            return errors;
+        }
+    }
+    
         
     @Override
     public Integer getDatabaseNum()
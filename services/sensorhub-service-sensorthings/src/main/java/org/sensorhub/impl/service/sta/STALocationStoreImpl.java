@@ -16,14 +16,28 @@ package org.sensorhub.impl.service.sta;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.h2.mvstore.MVBTreeMap;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.RangeCursor;
+import org.h2.mvstore.rtree.MVRTreeMap;
+import org.h2.mvstore.rtree.SpatialKey;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.sensorhub.api.common.BigId;
 import org.sensorhub.api.datastore.DataStoreException;
 import org.sensorhub.api.datastore.RangeFilter;
+import org.sensorhub.api.datastore.SpatialFilter;
+import org.sensorhub.api.datastore.SpatialFilter.SpatialOp;
 import org.sensorhub.api.datastore.TemporalFilter;
 import org.sensorhub.api.datastore.feature.FeatureKey;
 import org.sensorhub.api.datastore.feature.IFeatureStoreBase.FeatureField;
@@ -39,12 +53,22 @@ import org.sensorhub.impl.service.sta.STALocationStoreTypes.MVThingLocationKeyDa
 import org.vast.ogc.gml.IFeature;
 import org.vast.util.Asserts;
 import net.opengis.gml.v32.AbstractFeature;
+import net.opengis.gml.v32.AbstractGeometry;
 
 
 /**
  * <p>
  * Extension of {@link MVBaseFeatureStoreImpl} for associating Location
  * entities to Thing entities.
+ * </p><p>
+ * The latest associations of each Thing are also kept in a separate map so
+ * that current locations of a whole page of Things can be read with a single
+ * range scan.
+ * </p><p>
+ * Location geometries are also indexed in an R-tree so that spatial filters
+ * don't require a full scan. A second R-tree keeps the current position of
+ * each Thing (i.e. the envelope of its latest locations) to speed up spatial
+ * queries on Things.
  * </p>
  *
  * @author Alex Robin
@@ -54,10 +78,18 @@ class STALocationStoreImpl extends MVBaseFeatureStoreImpl<AbstractFeature, Featu
 {
     private static final String THING_LOCATIONS_MAP_NAME = "@thing_locations";
     private static final String LOCATION_THINGS_MAP_NAME = "@location_things";
+    private static final String LOCATION_GEOM_MAP_NAME = "@location_geom";
+    private static final String THING_POS_MAP_NAME = "@thing_pos";
+    private static final String THING_CURRENT_LOCATIONS_MAP_NAME = "@thing_current_locations";
+    
+    private static final int MAX_SCAN_RANGE_FACTOR = 4;
     
     ISTAThingStore thingStore;
     MVBTreeMap<MVThingLocationKey, Boolean> thingTimeLocationIndex;
     MVBTreeMap<MVThingLocationKey, Boolean> locationThingTimeIndex;
+    MVBTreeMap<MVThingLocationKey, Boolean> thingCurrentLocationIndex;
+    MVRTreeMap<Boolean> locationGeomIndex;
+    MVRTreeMap<Boolean> thingPositionIndex;
     
     
     STALocationStoreImpl()
@@ -84,19 +116,22 @@ class STALocationStoreImpl extends MVBaseFeatureStoreImpl<AbstractFeature, Featu
 
         // add to store
         put(newKey, feature, true, false);
+        addToSpatialIndex(internalID, feature);
         return newKey;
     }
     
     
     @Override
-    public AbstractFeature put(FeatureKey key, AbstractFeature feature)
+    public synchronized AbstractFeature put(FeatureKey key, AbstractFeature feature)
     {
         try
         {
             Asserts.checkNotNull(key, FeatureKey.class);
             Asserts.checkNotNull(feature, IFeature.class); 
             var fk = new MVFeatureParentKey(0L, key.getInternalID(), key.getValidStartTime());
-            return put(fk, feature, true, true);
+            var oldFeature = put(fk, feature, true, true);
+            updateSpatialIndex(key.getInternalID().getIdAsLong(), oldFeature, feature);
+            return oldFeature;
         }
         catch (DataStoreException e)
         {
@@ -105,6 +140,26 @@ class STALocationStoreImpl extends MVBaseFeatureStoreImpl<AbstractFeature, Featu
     }
     
     
+    @Override
+    public synchronized AbstractFeature remove(Object key)
+    {
+        var oldFeature = super.remove(key);
+        if (oldFeature != null && key instanceof FeatureKey)
+        {
+            var locationID = ((FeatureKey)key).getInternalID().getIdAsLong();
+            var oldKey = toSpatialKey(locationID, oldFeature.getGeometry());
+            if (oldKey != null)
+            {
+                locationGeomIndex.remove(oldKey);
+                getThingsAtCurrentLocation(locationID)
+                    .forEach(thingID -> thingPositionIndex.remove(withId(thingID, oldKey)));
+            }
+        }
+        
+        return oldFeature;
+    }
+    
+    
     @Override
     protected STALocationStoreImpl init(MVStore mvStore, int idScope, IdProviderType idProviderType, MVDataStoreInfo dataStoreInfo)
     {
@@ -126,32 +181,311 @@ class STALocationStoreImpl extends MVBaseFeatureStoreImpl<AbstractFeature, Featu
                 .keyType(new MVLocationThingKeyDataType(idScope))
                 .valueType(new MVVoidDataType()));
         
+        // thing to current location map
+        // same as thing+time to location map but only with latest associations of each thing
+        mapName = THING_CURRENT_LOCATIONS_MAP_NAME + ":" + dataStoreInfo.getName();
+        this.thingCurrentLocationIndex = mvStore.openMap(mapName,
+            new MVBTreeMap.Builder<MVThingLocationKey, Boolean>()
+                .keyType(new MVThingLocationKeyDataType(idScope))
+                .valueType(new MVVoidDataType()));
+        
+        // R-tree of location geometries
+        // spatial keys are envelopes of location geometries, with location ID as key ID
+        mapName = LOCATION_GEOM_MAP_NAME + ":" + dataStoreInfo.getName();
+        this.locationGeomIndex = mvStore.openMap(mapName,
+            new MVRTreeMap.Builder<Boolean>()
+                .dimensions(2)
+                .valueType(new MVVoidDataType()));
+        
+        // R-tree of current thing positions
+        // spatial keys are envelopes of latest locations, with thing ID as key ID
+        mapName = THING_POS_MAP_NAME + ":" + dataStoreInfo.getName();
+        this.thingPositionIndex = mvStore.openMap(mapName,
+            new MVRTreeMap.Builder<Boolean>()
+                .dimensions(2)
+                .valueType(new MVVoidDataType()));
+        
+        // populate current location index if it was just created on an existing store
+        if (thingCurrentLocationIndex.isEmpty() && !thingTimeLocationIndex.isEmpty())
+            rebuildCurrentLocationIndex();
+        
+        // populate spatial indexes if they were just created on an existing store
+        if (locationGeomIndex.isEmpty() && !featuresIndex.isEmpty())
+            rebuildSpatialIndexes();
+        
         return this;
     }
     
     
-    public void addAssociation(long thingID, long locationID, Instant time)
+    protected void rebuildCurrentLocationIndex()
+    {
+        // keys are sorted by thing ID, then by descending time
+        // so the latest locations of each thing come first
+        MVThingLocationKey latestKey = null;
+        for (var k: thingTimeLocationIndex.keySet())
+        {
+            if (latestKey == null || latestKey.thingID != k.thingID)
+                latestKey = k;
+            if (Objects.equals(latestKey.time, k.time))
+                thingCurrentLocationIndex.put(k, Boolean.TRUE);
+        }
+    }
+    
+    
+    protected void rebuildSpatialIndexes()
+    {
+        for (var e: featuresIndex.entrySet())
+            addToSpatialIndex(e.getKey().getInternalID().getIdAsLong(), e.getValue());
+        
+        for (var k: thingCurrentLocationIndex.keySet())
+            addThingPosition(k.thingID, k.locationID);
+    }
+    
+    
+    public synchronized void addAssociation(long thingID, long locationID, Instant time)
     {
         var key = new MVThingLocationKey(idScope, thingID, locationID, time);
+        var latestKey = getLatestLocationKey(thingID);
+        
+        // update current location and thing position if this is the latest location
+        if (latestKey == null || !key.time.isBefore(latestKey.time))
+        {
+            if (latestKey != null && key.time.isAfter(latestKey.time))
+            {
+                for (var k: getCurrentLocationKeys(thingID))
+                {
+                    thingCurrentLocationIndex.remove(k);
+                    removeThingPosition(thingID, k.locationID);
+                }
+            }
+            
+            thingCurrentLocationIndex.put(key, Boolean.TRUE);
+            addThingPosition(thingID, locationID);
+        }
+        
         thingTimeLocationIndex.put(key, Boolean.TRUE);
         locationThingTimeIndex.put(key, Boolean.TRUE);
     }
-        
     
-    Stream<FeatureKey> getCurrentLocationKeysByThing(long thingID)
+    
+    MVThingLocationKey getLatestLocationKey(long thingID)
     {
         var beforeLatest = new MVThingLocationKey(thingID, 0, Instant.MAX);
-        var first = thingTimeLocationIndex.ceilingKey(beforeLatest);
-        if (first == null || first.thingID != thingID)
-            return Stream.empty();
-        var last = new MVThingLocationKey(thingID, Long.MAX_VALUE, first.time);
-        var cursor = new RangeCursor<>(thingTimeLocationIndex, first, last);
+        var latestKey = thingTimeLocationIndex.ceilingKey(beforeLatest);
+        if (latestKey == null || latestKey.thingID != thingID)
+            return null;
+        return latestKey;
+    }
+    
+    
+    /*
+     * Computes R-tree key from geometry envelope.
+     * Bounds are rounded outward since the R-tree only stores floats.
+     */
+    static SpatialKey toSpatialKey(long id, AbstractGeometry geom)
+    {
+        if (geom == null)
+            return null;
         
+        Envelope env;
+        if (geom instanceof Geometry)
+        {
+            env = ((Geometry)geom).getEnvelopeInternal();
+        }
+        else
+        {
+            var gmlEnv = geom.getGeomEnvelope();
+            if (gmlEnv == null)
+                return null;
+            var lc = gmlEnv.getLowerCorner();
+            var uc = gmlEnv.getUpperCorner();
+            env = new Envelope(lc[0], uc[0], lc[1], uc[1]);
+        }
+        
+        return toSpatialKey(id, env);
+    }
+    
+    
+    static SpatialKey toSpatialKey(long id, Envelope env)
+    {
+        if (env.isNull())
+            return null;
+        
+        return new SpatialKey(id,
+            Math.nextDown((float)env.getMinX()), Math.nextUp((float)env.getMaxX()),
+            Math.nextDown((float)env.getMinY()), Math.nextUp((float)env.getMaxY()));
+    }
+    
+    
+    static SpatialKey withId(long id, SpatialKey key)
+    {
+        return new SpatialKey(id, key.min(0), key.max(0), key.min(1), key.max(1));
+    }
+    
+    
+    void addToSpatialIndex(long locationID, AbstractFeature feature)
+    {
+        var key = toSpatialKey(locationID, feature.getGeometry());
+        if (key != null)
+            locationGeomIndex.put(key, Boolean.TRUE);
+    }
+    
+    
+    void updateSpatialIndex(long locationID, AbstractFeature oldFeature, AbstractFeature newFeature)
+    {
+        var oldKey = oldFeature != null ? toSpatialKey(locationID, oldFeature.getGeometry()) : null;
+        var newKey = toSpatialKey(locationID, newFeature.getGeometry());
+        if (Objects.equals(oldKey, newKey))
+            return;
+        
+        // update location R-tree
+        if (oldKey != null)
+            locationGeomIndex.remove(oldKey);
+        if (newKey != null)
+            locationGeomIndex.put(newKey, Boolean.TRUE);
+        
+        // also move all things whose current location is this one
+        getThingsAtCurrentLocation(locationID)
+            .forEach(thingID -> {
+                if (oldKey != null)
+                    thingPositionIndex.remove(withId(thingID, oldKey));
+                if (newKey != null)
+                    thingPositionIndex.put(withId(thingID, newKey), Boolean.TRUE);
+            });
+    }
+    
+    
+    LongStream getThingsAtCurrentLocation(long locationID)
+    {
+        var first = new MVThingLocationKey(0, locationID, Instant.MAX);
+        var last = new MVThingLocationKey(Long.MAX_VALUE, locationID, Instant.MIN);
+        var cursor = new RangeCursor<>(locationThingTimeIndex, first, last);
         return cursor.keyStream()
+            .mapToLong(k -> k.thingID)
+            .distinct()
+            .filter(thingID -> getCurrentLocationKeysByThing(thingID)
+                .anyMatch(k -> k.getInternalID().getIdAsLong() == locationID));
+    }
+    
+    
+    void addThingPosition(long thingID, long locationID)
+    {
+        var locationKey = getLocationSpatialKey(locationID);
+        if (locationKey != null)
+            thingPositionIndex.put(withId(thingID, locationKey), Boolean.TRUE);
+    }
+    
+    
+    void removeThingPosition(long thingID, long locationID)
+    {
+        var locationKey = getLocationSpatialKey(locationID);
+        if (locationKey != null)
+            thingPositionIndex.remove(withId(thingID, locationKey));
+    }
+    
+    
+    SpatialKey getLocationSpatialKey(long locationID)
+    {
+        var e = featuresIndex.getEntry(new FeatureKey(BigId.fromLong(idScope, locationID)));
+        return e != null ? toSpatialKey(locationID, e.getValue().getGeometry()) : null;
+    }
+    
+    
+    static boolean canUseSpatialIndex(SpatialFilter spatialFilter)
+    {
+        // all operators except disjoint imply that envelopes intersect
+        return spatialFilter != null &&
+            spatialFilter.getRoi() != null &&
+            spatialFilter.getOperator() != SpatialOp.DISJOINT;
+    }
+    
+    
+    static Stream<SpatialKey> findIntersectingKeys(MVRTreeMap<Boolean> rtree, SpatialFilter spatialFilter)
+    {
+        var bbox = toSpatialKey(0, spatialFilter.getRoi().getEnvelopeInternal());
+        if (bbox == null)
+            return Stream.empty();
+        
+        Iterable<SpatialKey> it = () -> rtree.findIntersectingKeys(bbox);
+        return StreamSupport.stream(it.spliterator(), false);
+    }
+    
+    
+    /*
+     * Select things whose current location matches the filter, using the
+     * thing position R-tree to get candidates.
+     * Only valid if the location filter is not itself filtering on things.
+     */
+    Stream<FeatureKey> selectThingKeysByCurrentLocation(STALocationFilter filter)
+    {
+        return findIntersectingKeys(thingPositionIndex, filter.getLocation())
+            .mapToLong(SpatialKey::getId)
+            .distinct()
+            .filter(thingID -> getCurrentLocationKeysByThing(thingID)
+                .map(k -> featuresIndex.getEntry(k))
+                .anyMatch(e -> e != null && filter.test(e.getValue())))
+            .mapToObj(thingID -> new FeatureKey(BigId.fromLong(idScope, thingID)));
+    }
+        
+    
+    Stream<FeatureKey> getCurrentLocationKeysByThing(long thingID)
+    {
+        return getCurrentLocationKeys(thingID).stream()
             .map(k -> new FeatureKey(BigId.fromLong(idScope, k.locationID)));
     }
     
     
+    List<MVThingLocationKey> getCurrentLocationKeys(long thingID)
+    {
+        return getCurrentLocationKeys(thingID, thingID).collect(Collectors.toList());
+    }
+    
+    
+    Stream<MVThingLocationKey> getCurrentLocationKeys(long minThingID, long maxThingID)
+    {
+        var first = new MVThingLocationKey(minThingID, 0, Instant.MAX);
+        var last = new MVThingLocationKey(maxThingID, Long.MAX_VALUE, Instant.MIN);
+        var cursor = new RangeCursor<>(thingCurrentLocationIndex, first, last);
+        return cursor.keyStream();
+    }
+    
+    
+    @Override
+    public Map<BigId, List<BigId>> getCurrentLocationIDs(BigId... thingIDs)
+    {
+        var locationIDs = new LinkedHashMap<BigId, List<BigId>>();
+        if (thingIDs.length == 0)
+            return locationIDs;
+        
+        var thingIdMap = new HashMap<Long, BigId>();
+        long minID = Long.MAX_VALUE, maxID = Long.MIN_VALUE;
+        for (var thingID: thingIDs)
+        {
+            var id = thingID.getIdAsLong();
+            thingIdMap.put(id, thingID);
+            locationIDs.put(thingID, new ArrayList<>());
+            minID = Math.min(minID, id);
+            maxID = Math.max(maxID, id);
+        }
+        
+        // things of a result page usually have close IDs and only one current
+        // location each, so scan the whole ID range at once in this case
+        Stream<MVThingLocationKey> keys;
+        if (maxID - minID < MAX_SCAN_RANGE_FACTOR * thingIDs.length)
+            keys = getCurrentLocationKeys(minID, maxID);
+        else
+            keys = thingIdMap.keySet().stream().flatMap(id -> getCurrentLocationKeys(id, id));
+        
+        keys.forEach(k -> {
+            var thingID = thingIdMap.get(k.thingID);
+            if (thingID != null)
+                locationIDs.get(thingID).add(BigId.fromLong(idScope, k.locationID));
+        });
+        
+        return locationIDs;
+    }
+    
+    
     Stream<FeatureKey> getLocationKeysByThingAndTime(long thingID, Instant time)
     {
         /*var beforeFirst = new MVThingLocationKey(thingID, 0, time);
@@ -196,6 +530,16 @@ class STALocationStoreImpl extends MVBaseFeatureStoreImpl<AbstractFeature, Featu
                         .map(k -> featuresIndex.getEntry(k));
                 }
             }
+            
+            if (canUseSpatialIndex(filter.getLocation()) && filter.getInternalIDs() == null)
+            {
+                // candidates from R-tree are refined with exact geometry test
+                return findIntersectingKeys(locationGeomIndex, filter.getLocation())
+                    .mapToLong(SpatialKey::getId)
+                    .distinct()
+                    .mapToObj(id -> featuresIndex.getEntry(new FeatureKey(BigId.fromLong(idScope, id))))
+                    .filter(e -> e != null && filter.test(e.getValue()));
+            }
         }
         
         return super.getIndexedStream(filter);
@@ -16,7 +16,12 @@ package org.sensorhub.impl.service.sta;
 
 import java.nio.ByteBuffer;
 import java.security.AccessControlException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
@@ -27,8 +32,13 @@ import org.sensorhub.api.comm.mqtt.IMqttServer;
 import org.sensorhub.api.comm.mqtt.IMqttServer.IMqttHandler;
 import org.sensorhub.api.comm.mqtt.InvalidPayloadException;
 import org.sensorhub.api.comm.mqtt.InvalidTopicException;
+import org.sensorhub.impl.service.sta.STAServiceConfig.MqttOverflowPolicy;
+import org.sensorhub.impl.service.sta.STAServiceConfig.MqttTopicPolicy;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Charsets;
-import de.fraunhofer.iosb.ilt.frostserver.formatter.ResultFormatter;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.EntityFormatter;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
 import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
@@ -37,14 +47,27 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManagerFactory;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.service.RequestType;
 import de.fraunhofer.iosb.ilt.frostserver.service.Service;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequestBuilder;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.VisibilityHelper;
 
 
 /**
  * <p>
  * This class handles communication with the embedded MQTT server and transfers
- * messages to/from the STA service for processing. 
+ * messages to/from the STA service for processing.<br/>
+ * Entities sent on a topic are serialized once and the same read-only buffer
+ * is published to all clients subscribed to the topic. Each topic has a bounded
+ * number of inflight messages and a bounded queue with an overflow policy that
+ * can be configured per topic, so that a slow MQTT server doesn't cause messages
+ * to accumulate indefinitely. New entities are only requested from the event bus
+ * when previous ones have been published or dropped, so at most
+ * {@link #REQUEST_WINDOW} messages are pending on each topic and back pressure
+ * is applied to the event bus beyond that.<br/>
+ * Batches of observations published by clients on the same datastream topic
+ * are inserted in a single database transaction.
  * </p>
  *
  * @author Alex Robin
@@ -52,6 +75,9 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
  */
 public class STAMqttConnector implements IMqttHandler
 {
+    static final int REQUEST_WINDOW = 64;
+    static final Pattern OBS_COLLECTION_TOPIC = Pattern.compile(".*Datastreams\\([^)]+\\)/Observations");
+    
     STAService service;
     String endpoint;
     CoreSettings coreSettings;
@@ -59,6 +85,8 @@ public class STAMqttConnector implements IMqttHandler
     Service frostService;
     OSHPersistenceManager pm;
     Map<String, MqttSubscriber> subscribers = new ConcurrentHashMap<>();
+    VisibilityHelper visibilityHelper;
+    ObjectWriter jsonWriter;
     
     
     class MqttSubscriber implements Subscriber<Entity<?>>
@@ -68,9 +96,14 @@ public class STAMqttConnector implements IMqttHandler
         String topic;
         ResourcePath path;
         Query query;
-        ResultFormatter formatter;
         AtomicInteger numSubscribers = new AtomicInteger(0);
         AtomicBoolean started = new AtomicBoolean();
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        final int maxInflight;
+        final int maxQueueSize;
+        final MqttOverflowPolicy overflowPolicy;
+        int inflight;
+        long droppedCount;
         
         MqttSubscriber(String topic, ResourcePath path, Query query, IMqttServer server)
         {
@@ -78,7 +111,21 @@ public class STAMqttConnector implements IMqttHandler
             this.path = path;
             this.query = query;
             this.server = server;
-            this.formatter = coreSettings.getFormatter();
+            
+            var config = service.getConfiguration();
+            this.maxInflight = Math.max(1, config.mqttMaxInflight);
+            
+            var topicPolicy = getTopicPolicy(topic);
+            if (topicPolicy != null)
+            {
+                this.maxQueueSize = Math.max(1, topicPolicy.maxQueueSize);
+                this.overflowPolicy = topicPolicy.overflowPolicy;
+            }
+            else
+            {
+                this.maxQueueSize = Math.max(1, config.mqttMaxQueueSize);
+                this.overflowPolicy = config.mqttOverflowPolicy;
+            }
         }
         
         @Override
@@ -98,8 +145,110 @@ public class STAMqttConnector implements IMqttHandler
         @Override
         public void onNext(Entity<?> item)
         {
-            var msg = formatter.format(path, query, item, false);
-            server.publish(topic, ByteBuffer.wrap(msg.getBytes()));
+            try
+            {
+                var msg = encode(item);
+                
+                boolean sendNow;
+                int numDropped = 0;
+                synchronized (this)
+                {
+                    sendNow = inflight < maxInflight && queue.isEmpty();
+                    if (sendNow)
+                        inflight++;
+                    else
+                        numDropped = enqueue(msg);
+                }
+                
+                // dropped messages free their slot in the request window
+                if (numDropped > 0)
+                    subscription.request(numDropped);
+                
+                if (sendNow)
+                    publish(msg);
+            }
+            catch (JsonProcessingException e)
+            {
+                service.getLogger().error("Error serializing entity on topic {}", topic, e);
+                subscription.request(1);
+            }
+        }
+        
+        /*
+         * Serialize entity once, the buffer is shared by all clients of this topic
+         */
+        protected ByteBuffer encode(Entity<?> item) throws JsonProcessingException
+        {
+            visibilityHelper.applyVisibility(item, path, query, false);
+            return ByteBuffer.wrap(jsonWriter.writeValueAsBytes(item)).asReadOnlyBuffer();
+        }
+        
+        /*
+         * Must be called while holding the lock
+         * Returns the number of messages dropped
+         */
+        protected int enqueue(ByteBuffer msg)
+        {
+            int numDropped = 0;
+            
+            if (overflowPolicy == MqttOverflowPolicy.CONFLATE)
+            {
+                numDropped = queue.size();
+                droppedCount += numDropped;
+                queue.clear();
+            }
+            else if (queue.size() >= maxQueueSize)
+            {
+                if (droppedCount++ % 1000 == 0)
+                    service.getLogger().warn("MQTT topic {} is congested. {} message(s) dropped so far", topic, droppedCount);
+                
+                if (overflowPolicy == MqttOverflowPolicy.DROP_NEWEST)
+                    return 1;
+                queue.poll();
+                numDropped = 1;
+            }
+            
+            queue.add(msg);
+            return numDropped;
+        }
+        
+        protected void publish(ByteBuffer msg)
+        {
+            // loop as long as the server acknowledges synchronously
+            // and only chain asynchronously otherwise
+            while (msg != null)
+            {
+                var future = server.publish(topic, msg.duplicate());
+                if (!future.isDone())
+                {
+                    future.whenComplete((ok, err) -> {
+                        checkPublishResult(ok, err);
+                        subscription.request(1);
+                        publish(pollNext());
+                    });
+                    return;
+                }
+                
+                future.whenComplete(this::checkPublishResult);
+                subscription.request(1);
+                msg = pollNext();
+            }
+        }
+        
+        protected synchronized ByteBuffer pollNext()
+        {
+            var next = queue.poll();
+            if (next == null)
+                inflight--;
+            return next;
+        }
+        
+        protected void checkPublishResult(Boolean ok, Throwable err)
+        {
+            if (err != null)
+                service.getLogger().error("Error publishing to MQTT topic {}", topic, err);
+            else if (!Boolean.TRUE.equals(ok))
+                service.getLogger().debug("MQTT publish rejected on topic {}", topic);
         }
 
         @Override
@@ -118,13 +267,18 @@ public class STAMqttConnector implements IMqttHandler
         public void maybeStart()
         {
             if (subscription != null && started.compareAndSet(false, true))
-                subscription.request(Long.MAX_VALUE); // no flow control for now
+                subscription.request(REQUEST_WINDOW);
         }
         
         public void close()
         {
             if (subscription != null)
                 subscription.cancel();
+            
+            synchronized (this)
+            {
+                queue.clear();
+            }
         }
     }
     
@@ -137,11 +291,26 @@ public class STAMqttConnector implements IMqttHandler
         this.topicRegex = Pattern.compile(endpoint + 
             ".*(Things|Sensors|Datastreams|MultiDatastreams|Observations|FeaturesOfInterest)");
         this.frostService = new Service(coreSettings);
+        this.visibilityHelper = new VisibilityHelper(coreSettings);
+        this.jsonWriter = EntityFormatter.getObjectMapper().writer()
+            .without(SerializationFeature.INDENT_OUTPUT);
         
         this.pm = (OSHPersistenceManager)PersistenceManagerFactory.getInstance().create();
     }
     
     
+    protected MqttTopicPolicy getTopicPolicy(String topic)
+    {
+        for (var policy: service.getConfiguration().mqttTopicPolicies)
+        {
+            if (policy.topicPattern != null && topic.matches(policy.topicPattern))
+                return policy;
+        }
+        
+        return null;
+    }
+    
+    
     @Override
     public void onSubscribe(String userID, String topic, IMqttServer server) throws InvalidTopicException
     {
@@ -200,17 +369,65 @@ public class STAMqttConnector implements IMqttHandler
 
     @Override
     public void onPublish(String userID, String topic, ByteBuffer payload, ByteBuffer correlData) throws InvalidTopicException, InvalidPayloadException
+    {
+        var req = buildCreateRequest(topic, payload);
+        
+        service.getSecurityHandler().setCurrentUser(userID);
+        var resp = frostService.execute(req);
+        checkResponse(resp);
+    }
+    
+    
+    @Override
+    public Exception[] onPublishBatch(String userID, String topic, List<ByteBuffer> payloads, List<ByteBuffer> correlData)
+    {
+        // only observations are inserted in a single transaction since they are
+        // rejected before anything is written, so they don't need to be rolled back
+        if (service.writeDatabase == null || payloads.size() <= 1 || !OBS_COLLECTION_TOPIC.matcher(topic).matches())
+            return IMqttHandler.super.onPublishBatch(userID, topic, payloads, correlData);
+        
+        // use a separate FROST service instance since it is not thread-safe
+        try (var batchService = new Service(coreSettings))
+        {
+            var inserts = new ArrayList<Callable<Void>>(payloads.size());
+            for (var payload: payloads)
+            {
+                inserts.add(() -> {
+                    var resp = batchService.execute(buildCreateRequest(topic, payload));
+                    checkResponse(resp);
+                    return null;
+                });
+            }
+            
+            // each message is executed only once, so a rejected one doesn't
+            // cause the others to be inserted or their events sent twice
+            service.getSecurityHandler().setCurrentUser(userID);
+            return service.writeDatabase.executeBatch(inserts);
+        }
+        catch (Exception e)
+        {
+            service.getLogger().error("Error inserting batch received on topic {}", topic, e);
+            var errors = new Exception[payloads.size()];
+            Arrays.fill(errors, e);
+            return errors;
+        }
+    }
+    
+    
+    private ServiceRequest buildCreateRequest(String topic, ByteBuffer payload)
     {
         var collectionUrl = "/" + topic.replaceFirst(endpoint, "");
         
-        var req = new ServiceRequestBuilder(coreSettings.getFormatter())
+        return new ServiceRequestBuilder(coreSettings.getFormatter())
             .withRequestType(RequestType.CREATE)
             .withUrlPath(collectionUrl)
-            .withContent(Charsets.UTF_8.decode(payload).toString())
+            .withContent(Charsets.UTF_8.decode(payload.duplicate()).toString())
             .build();
-        
-        service.getSecurityHandler().setCurrentUser(userID);
-        var resp = frostService.execute(req);
+    }
+    
+    
+    private void checkResponse(ServiceResponse<?> resp) throws InvalidTopicException, InvalidPayloadException
+    {
         if (!resp.isSuccessful())
         {
             if (resp.getCode() == 403 || service.getSecurityHandler().getPermissionError() != null)
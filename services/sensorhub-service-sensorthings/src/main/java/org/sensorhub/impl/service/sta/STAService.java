@@ -28,6 +28,7 @@ import org.sensorhub.api.module.ModuleEvent.ModuleState;
 import org.sensorhub.api.service.IServiceModule;
 import org.sensorhub.impl.database.registry.FilteredFederatedDatabase;
 import org.sensorhub.impl.service.AbstractHttpServiceModule;
+import org.sensorhub.impl.service.sta.filter.FilterCache;
 import org.sensorhub.impl.system.wrapper.SystemWrapper;
 import org.vast.ogc.gml.GenericFeatureImpl;
 import org.vast.sensorML.SMLHelper;
@@ -61,6 +62,8 @@ public class STAService extends AbstractHttpServiceModule<STAServiceConfig> impl
     ServletV1P0 servlet;
     FeatureId virtualGroupId;
     STAMqttConnector mqttConnector;
+    ThreadLocal<ObservationEntityHandler.PageCursor> obsPageCursor = new ThreadLocal<>();
+    FilterCache filterCache;
 
 
     @Override
@@ -76,6 +79,10 @@ public class STAService extends AbstractHttpServiceModule<STAServiceConfig> impl
     {
         serviceInstances.put(System.identityHashCode(this), this);
         
+        // filters compiled from $filter expressions, also shared by all requests
+        if (config.filterCacheSize > 0)
+            filterCache = new FilterCache(config.filterCacheSize);
+        
         if (config.dbConfig != null)
         {
             // init database
@@ -190,6 +197,12 @@ public class STAService extends AbstractHttpServiceModule<STAServiceConfig> impl
             writeDatabase = null;
         }
 
+        if (filterCache != null)
+        {
+            getLogger().debug("$filter cache stats: {}", filterCache.getStats());
+            filterCache = null;
+        }
+        
         serviceInstances.remove(System.identityHashCode(this));
         setState(ModuleState.STOPPED);
     }
@@ -256,4 +269,14 @@ public class STAService extends AbstractHttpServiceModule<STAServiceConfig> impl
     {
         return (STASecurity)securityHandler;
     }
+    
+    
+    /**
+     * @return The cache of compiled $filter expressions, or null if caching is disabled.
+     * Its hit rate can be monitored with {@link FilterCache#getStats()}
+     */
+    public FilterCache getFilterCache()
+    {
+        return filterCache;
+    }
 }
@@ -14,6 +14,8 @@ Copyright (C) 2012-2015 Sensia Software LLC. All Rights Reserved.
 
 package org.sensorhub.impl.service.sta;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.sensorhub.api.config.DisplayInfo;
 import org.sensorhub.api.security.SecurityConfig;
 import org.sensorhub.api.service.HttpServiceConfig;
@@ -31,6 +33,27 @@ import org.sensorhub.impl.system.VirtualSystemGroupConfig;
  */
 public class STAServiceConfig extends HttpServiceConfig
 {
+    public enum MqttOverflowPolicy
+    {
+        DROP_NEWEST, // discard incoming messages
+        DROP_OLDEST, // discard oldest queued messages
+        CONFLATE     // only keep the most recent message
+    }
+    
+    
+    public static class MqttTopicPolicy
+    {
+        @DisplayInfo(label="Topic Pattern", desc="Regular expression matched against the full MQTT topic")
+        public String topicPattern;
+        
+        @DisplayInfo(label="Max Queue Size", desc="Maximum number of messages queued on matching topics")
+        public int maxQueueSize = 1000;
+        
+        @DisplayInfo(label="Overflow Policy", desc="Policy applied when the message queue of a matching topic is full")
+        public MqttOverflowPolicy overflowPolicy = MqttOverflowPolicy.DROP_OLDEST;
+    }
+    
+    
     public static class HubThingInfo
     {
         public String name = "SensorHub Node";
@@ -74,10 +97,35 @@ public class STAServiceConfig extends HttpServiceConfig
     public boolean enableMqtt = false;
     
     
-    @DisplayInfo(label="Max Observations Returned", desc="Maximum number of observations returned in a page (max limit)")
+    @DisplayInfo(label="MQTT Max Inflight Messages", desc="Maximum number of messages published on a topic and not yet "
+        + "acknowledged by the MQTT server. Additional messages are queued")
+    public int mqttMaxInflight = 16;
+    
+    
+    @DisplayInfo(label="MQTT Max Queue Size", desc="Maximum number of messages queued on a topic when the MQTT server "
+        + "cannot keep up with the message rate")
+    public int mqttMaxQueueSize = 1000;
+    
+    
+    @DisplayInfo(label="MQTT Overflow Policy", desc="Policy applied when the message queue of a topic is full")
+    public MqttOverflowPolicy mqttOverflowPolicy = MqttOverflowPolicy.DROP_OLDEST;
+    
+    
+    @DisplayInfo(label="MQTT Topic Policies", desc="Queue size and overflow policy of specific topics. The first matching "
+        + "entry is used, topics matching no entry use the default queue size and overflow policy")
+    public List<MqttTopicPolicy> mqttTopicPolicies = new ArrayList<>();
+    
+    
+    @DisplayInfo(label="Max Observations Returned", desc="Maximum number of observations returned in a page (max limit). "
+        + "Pages contain 100 observations unless another size is requested with $top, up to this limit")
     public int maxObsCount = 1000;
     
     
+    @DisplayInfo(label="Filter Cache Size", desc="Maximum number of compiled $filter expressions kept in cache. "
+        + "Set to 0 to disable caching")
+    public int filterCacheSize = 500;
+    
+    
     public STAServiceConfig()
     {
         this.moduleClass = STAService.class.getCanonicalName();
@@ -17,14 +17,31 @@ package org.sensorhub.impl.service.sta;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import org.sensorhub.api.security.ISecurityManager;
+import org.sensorhub.impl.service.sta.ObservationEntityHandler.PageCursor;
 import de.fraunhofer.iosb.ilt.frostserver.http.common.ServletV1P0;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.EntityFormatter;
+import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
+import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
+import de.fraunhofer.iosb.ilt.frostserver.path.EntitySetPathElement;
+import de.fraunhofer.iosb.ilt.frostserver.path.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManagerFactory;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.UrlHelper;
+import de.fraunhofer.iosb.ilt.frostserver.util.VisibilityHelper;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.TAG_CORE_SETTINGS;
 
 
 /**
  * <p>
- * Extension of FROST STA 1.0 servlet
+ * Extension of FROST STA 1.0 servlet.<br/>
+ * Observation collections are streamed directly to the response instead of
+ * being fully formatted in memory by FROST. Their next page links carry a
+ * $skiptoken parameter that is handled here since FROST doesn't support it.
  * </p>
  *
  * @author Alex Robin
@@ -40,6 +57,7 @@ public class STAServlet extends ServletV1P0
     
     STAServlet(STAService service)
     {
+        this.service = service;
         this.securityHandler = service.getSecurityHandler();
     }
     
@@ -53,7 +71,30 @@ public class STAServlet extends ServletV1P0
             userID = request.getRemoteUser();
         
         securityHandler.setCurrentUser(userID);
-        super.service(request, response);
+        try
+        {
+            if (!"GET".equals(request.getMethod()))
+                super.service(request, response);
+            else
+            {
+                try
+                {
+                    request = extractPageCursor(request);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                    return;
+                }
+                
+                if (!streamObservations(request, response))
+                    super.service(request, response);
+            }
+        }
+        finally
+        {
+            service.obsPageCursor.remove();
+        }
         
         Exception authError = securityHandler.getPermissionError();
         if (authError != null)
@@ -68,5 +109,131 @@ public class STAServlet extends ServletV1P0
                 request.authenticate(response);
         }
     }
+
+    
+    
+    /*
+     * Removes the skip token from requests for observation collections since FROST
+     * doesn't accept it, and makes the page cursor it contains available to the
+     * observation handler
+     */
+    protected HttpServletRequest extractPageCursor(HttpServletRequest request)
+    {
+        var queryString = request.getQueryString();
+        if (queryString == null || !request.getRequestURI().endsWith(EntityType.OBSERVATION.plural))
+            return request;
+        
+        var otherParams = new StringBuilder();
+        String token = null;
+        for (var param: queryString.split("&"))
+        {
+            var sep = param.indexOf('=');
+            var name = UrlHelper.urlDecode(sep >= 0 ? param.substring(0, sep) : param);
+            if (PageCursor.SKIPTOKEN_PARAM.equals(name))
+                token = UrlHelper.urlDecode(param.substring(sep+1));
+            else
+            {
+                if (otherParams.length() > 0)
+                    otherParams.append('&');
+                otherParams.append(param);
+            }
+        }
+        
+        if (token == null)
+            return request;
+        
+        service.obsPageCursor.set(PageCursor.parse(token));
+        var strippedQuery = otherParams.length() > 0 ? otherParams.toString() : null;
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getQueryString()
+            {
+                return strippedQuery;
+            }
+        };
+    }
+    
+    
+    /*
+     * Streams observation collections as they are read from the database
+     * Returns false if the request must be handled by FROST
+     */
+    protected boolean streamObservations(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        // decode path the same way FROST does
+        String pathInfo;
+        String fullPath = request.getContextPath() + request.getServletPath();
+        if (request.getRequestURI().startsWith(fullPath))
+            pathInfo = UrlHelper.urlDecode(request.getRequestURI().substring(fullPath.length()));
+        else
+            pathInfo = request.getPathInfo();
         
+        // quick check before parsing
+        if (pathInfo == null || !pathInfo.endsWith(EntityType.OBSERVATION.plural))
+            return false;
+        
+        var coreSettings = (CoreSettings)getServletContext().getAttribute(TAG_CORE_SETTINGS);
+        PersistenceManagerFactory.init(coreSettings);
+        var pm = (OSHPersistenceManager)PersistenceManagerFactory.getInstance().create();
+        
+        try
+        {
+            ResourcePath path;
+            Query query;
+            try
+            {
+                path = PathParser.parsePath(pm.getIdManager(), coreSettings.getServiceRootUrl(), pathInfo);
+                query = QueryParser.parseQuery(request.getQueryString() != null ?
+                    UrlHelper.urlDecode(request.getQueryString()) : null, coreSettings);
+                query.validate(path);
+            }
+            catch (IllegalArgumentException | IllegalStateException e)
+            {
+                // let FROST generate the error response
+                return false;
+            }
+            
+            if (!isStreamable(path, query) || !pm.validatePath(path))
+                return false;
+            
+            // check permission before anything is written
+            securityHandler.checkPermission(securityHandler.sta_read_obs);
+            
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            
+            var visibilityHelper = new VisibilityHelper(coreSettings);
+            var absoluteLinks = coreSettings.isUseAbsoluteNavigationLinks();
+            try (var gen = EntityFormatter.getObjectMapper().getFactory().createGenerator(response.getOutputStream()))
+            {
+                pm.observationHandler.writeCollection(path, query, gen,
+                    obs -> visibilityHelper.applyVisibility(obs, path, query, absoluteLinks));
+            }
+            
+            return true;
+        }
+        catch (SecurityException e)
+        {
+            // permission error is reported by service()
+            return true;
+        }
+        finally
+        {
+            pm.close();
+        }
+    }
+    
+    
+    protected boolean isStreamable(ResourcePath path, Query query)
+    {
+        // only plain observation collections
+        // other cases ($count, $expand, dataArray format, $ref) are handled by FROST
+        return path.getMainElement() instanceof EntitySetPathElement &&
+            ((EntitySetPathElement)path.getMainElement()).getEntityType() == EntityType.OBSERVATION &&
+            !path.isRef() &&
+            !query.isCountOrDefault() &&
+            query.getExpand().isEmpty() &&
+            query.getFormat() == null;
+    }
 }
@@ -128,6 +128,15 @@ class STAThingStoreImpl extends MVBaseFeatureStoreImpl<IFeature, FeatureField, S
         var locationFilter = filter.getLocations();
         if (locationFilter != null)
         {
+            // use thing position R-tree if location filter is only spatial
+            if (STALocationStoreImpl.canUseSpatialIndex(locationFilter.getLocation()) &&
+                locationFilter.getThings() == null &&
+                locationFilter.getInternalIDs() == null)
+            {
+                return locationStore.selectThingKeysByCurrentLocation(locationFilter)
+                    .map(k -> featuresIndex.getEntry(k));
+            }
+            
             return locationStore.selectKeys(locationFilter)
                 .flatMap(k -> getThingKeysByCurrentLocation(k.getInternalID().getIdAsLong()))
                 .map(k -> featuresIndex.getEntry(k));
@@ -46,17 +46,13 @@ import org.vast.util.Asserts;
 import org.vast.util.TimeExtent;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.google.common.base.Strings;
-import de.fraunhofer.iosb.ilt.frostserver.model.Datastream;
-import de.fraunhofer.iosb.ilt.frostserver.model.MultiDatastream;
 import de.fraunhofer.iosb.ilt.frostserver.model.Sensor;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
 import de.fraunhofer.iosb.ilt.frostserver.path.EntityPathElement;
 import de.fraunhofer.iosb.ilt.frostserver.path.EntityType;
-import de.fraunhofer.iosb.ilt.frostserver.path.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
-import de.fraunhofer.iosb.ilt.frostserver.query.Expand;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.util.NoSuchEntityException;
 import net.opengis.sensorml.v20.AbstractProcess;
@@ -381,7 +377,6 @@ public class SensorEntityHandler implements IResourceHandler<Sensor>
     }
 
 
-    @SuppressWarnings("unchecked")
     protected Sensor toFrostSensor(BigId id, ISystemWithDesc sys, Query q)
     {
         // TODO add full SensorML doc in metadata
@@ -424,28 +419,6 @@ public class SensorEntityHandler implements IResourceHandler<Sensor>
             }
         }
 
-        // expand navigation links
-        if (q != null && q.getExpand() != null)
-        {
-            for (Expand exp: q.getExpand())
-            {
-                NavigationProperty prop = exp.getPath().get(0);
-                if (prop == NavigationProperty.DATASTREAMS)
-                {
-                    ResourcePath linkedPath = FrostUtils.getNavigationLinkPath(sensor.getId(), EntityType.SENSOR, EntityType.DATASTREAM);
-                    EntitySet<?> linkedEntities = pm.dataStreamHandler.queryCollection(linkedPath, exp.getSubQuery());
-                    sensor.setDatastreams((EntitySet<Datastream>)linkedEntities);
-                }
-
-                if (prop == NavigationProperty.MULTIDATASTREAMS)
-                {
-                    ResourcePath linkedPath = FrostUtils.getNavigationLinkPath(sensor.getId(), EntityType.SENSOR, EntityType.MULTIDATASTREAM);
-                    EntitySet<?> linkedEntities = pm.dataStreamHandler.queryCollection(linkedPath, exp.getSubQuery());
-                    sensor.setMultiDatastreams((EntitySet<MultiDatastream>)linkedEntities);
-                }
-            }
-        }
-
         return sensor;
     }
 
@@ -295,7 +295,6 @@ public class ThingEntityHandler implements IResourceHandler<Thing>
     
     protected Thing toFrostThing(BigId internalId, IFeature f, Query q)
     {
-        // TODO implement expand
         //Set<Property> select = q != null ? q.getSelect() : Collections.emptySet();
         
         Thing thing = new Thing();
@@ -0,0 +1,100 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.sta.filter;
+
+import java.util.function.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import de.fraunhofer.iosb.ilt.frostserver.path.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Expression;
+
+
+/**
+ * <p>
+ * Bounded LRU cache of filters compiled from STA $filter expressions.<br/>
+ * Filters are keyed by entity type and normalized expression so that clients
+ * polling with the same expression only pay the visitor cost once. Cached
+ * filters must only depend on the expression (not on the request path) and
+ * must be immutable since they are shared by concurrent requests.
+ * </p>
+ *
+ * @author Alex Robin
+ * @date Oct 16, 2026
+ */
+public class FilterCache
+{
+    Cache<String, Object> cache;
+
+
+    public FilterCache(int maxSize)
+    {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .recordStats()
+            .build();
+    }
+
+
+    /**
+     * Get the filter compiled from the given expression, or compile it and
+     * add it to the cache if it is not there yet
+     * @param entityType Type of entity the filter applies to
+     * @param expr The $filter expression
+     * @param compiler Function used to compile the expression on cache miss
+     * @return The compiled filter
+     */
+    @SuppressWarnings("unchecked")
+    public <F> F get(EntityType entityType, Expression expr, Function<Expression, F> compiler)
+    {
+        var exprString = expr.toUrl();
+
+        // expressions depending on current time cannot be reused
+        if (exprString.contains("now()"))
+            return compiler.apply(expr);
+
+        // normalized form is generated by FROST so it doesn't depend on
+        // whitespaces and parentheses used in the request
+        var key = entityType.entityName + '|' + exprString;
+        var filter = (F)cache.getIfPresent(key);
+        if (filter == null)
+        {
+            // compile outside of cache loader so parsing errors are
+            // reported to the client unchanged
+            filter = compiler.apply(expr);
+            cache.put(key, filter);
+        }
+
+        return filter;
+    }
+
+
+    public CacheStats getStats()
+    {
+        return cache.stats();
+    }
+
+
+    public double getHitRate()
+    {
+        return cache.stats().hitRate();
+    }
+
+
+    public long size()
+    {
+        return cache.size();
+    }
+}
@@ -40,9 +40,20 @@ public class ThingFilterVisitor extends ResourceFilterVisitor<ThingFilterVisitor
         
         //this.propTypes.put("properties", new UomVisitor());
         //this.propTypes.put("Datastreams", new DatastreamAssocVisitor());
-        //this.propTypes.put("Locations", new LocationAssocVisitor());
+        this.propTypes.put("Locations", LocationAssocVisitor.class);
         //this.propTypes.put("HistoricalLocations", new HistoricalLocAssocVisitor());
     }
+    
+    
+    class LocationAssocVisitor extends LocationFilterVisitor
+    {
+        @Override
+        protected void assignFilter()
+        {
+            var locationFilter = builder.build();
+            ThingFilterVisitor.this.builder.withLocations(locationFilter);
+        }
+    }
 
 
     @Override
@@ -19,22 +19,43 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import javax.xml.namespace.QName;
 import org.jglue.fluentjson.JsonBuilderFactory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.sensorhub.api.common.SensorHubException;
+import org.sensorhub.api.datastore.SpatialFilter;
 import org.sensorhub.impl.SensorHub;
 import org.sensorhub.impl.service.HttpServer;
 import org.sensorhub.impl.service.HttpServerConfig;
+import org.vast.ogc.gml.GenericFeatureImpl;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManagerFactory;
+import net.opengis.gml.v32.AbstractFeature;
 
 
 public class TestSTAService
@@ -42,6 +63,8 @@ public class TestSTAService
     static final int SERVER_PORT = 8888;
     static final long TIMEOUT = 10000;
     static final String ID_PROP = "@iot.id";
+    static final String NEXT_LINK_PROP = "@iot.nextLink";
+    static final GeometryFactory GEOM_FACTORY = new GeometryFactory();
     SensorHub hub;
     File dbFile;
     STAService sta;
@@ -230,6 +253,548 @@ public class TestSTAService
     }
     
     
+    @Test
+    public void testGetObservationsPaging() throws Exception
+    {
+        // all things have observations with the same time stamps
+        for (int i = 1; i <= 3; i++)
+            deepInsertThing(i);
+        
+        var allIds = getObservationIds("Observations");
+        assertEquals(12, allIds.size());
+        
+        // page boundaries fall between observations with the same time stamp
+        for (int pageSize: new int[] {1, 2, 5})
+            assertEquals(allIds, getAllPages("Observations?$top=" + pageSize, pageSize));
+    }
+    
+    
+    @Test
+    public void testGetDatastreamObservationsPaging() throws Exception
+    {
+        deepInsertThing(1);
+        deepInsertThing(2);
+        
+        for (int i = 0; i < 4; i++)
+        {
+            var path = "Datastreams(" + getDataStreamId(i) + ")/Observations";
+            var allIds = getObservationIds(path);
+            assertEquals(2, allIds.size());
+            assertEquals(allIds, getAllPages(path + "?$top=1", 1));
+        }
+    }
+    
+    
+    @Test
+    public void testGetObservationsPagingWithoutToken() throws Exception
+    {
+        for (int i = 1; i <= 2; i++)
+            deepInsertThing(i);
+        var allIds = getObservationIds("Observations");
+        
+        // read first page and drop the position of its end from the next link
+        var page = sendGetRequest("Observations?$top=3").getAsJsonObject();
+        var ids = getObservationIds(page);
+        var nextLink = page.get(NEXT_LINK_PROP).getAsString();
+        assertTrue(nextLink.contains("$skiptoken="));
+        nextLink = nextLink.replaceAll("&\\$skiptoken=[^&]*", "");
+        
+        // next pages are obtained by skipping results from the start
+        ids.addAll(getAllPages(getPagePath(nextLink), 3));
+        assertEquals(allIds, ids);
+    }
+    
+    
+    @Test
+    public void testGetObservationsPagingDeletedCursor() throws Exception
+    {
+        // all things have observations with the same time stamps
+        for (int i = 1; i <= 3; i++)
+            deepInsertThing(i);
+        var allIds = getObservationIds("Observations");
+        
+        // read first page and delete its last observation
+        var page = sendGetRequest("Observations?$top=2").getAsJsonObject();
+        var ids = getObservationIds(page);
+        assertEquals(allIds.subList(0, 2), ids);
+        var lastObs = page.getAsJsonArray("value").get(1).getAsJsonObject().get(ID_PROP).getAsJsonPrimitive();
+        sendDeleteRequest("Observations(" + (lastObs.isString() ? "'" + lastObs.getAsString() + "'" : lastObs.getAsString()) + ")");
+        
+        // next pages still start right after the deleted observation
+        var nextLink = page.get(NEXT_LINK_PROP).getAsString();
+        assertEquals(allIds.subList(2, allIds.size()), getAllPages(getPagePath(nextLink), 2));
+    }
+    
+    
+    @Test
+    public void testGetObservationsPageSize() throws Exception
+    {
+        for (int i = 1; i <= 2; i++)
+            deepInsertThing(i);
+        
+        // all observations fit in a default page
+        var page = sendGetRequest("Observations").getAsJsonObject();
+        assertEquals(8, page.getAsJsonArray("value").size());
+        assertNull(page.get(NEXT_LINK_PROP));
+        
+        // requested page size is limited by config
+        sta.getConfiguration().maxObsCount = 3;
+        page = sendGetRequest("Observations?$top=5").getAsJsonObject();
+        assertEquals(3, page.getAsJsonArray("value").size());
+        assertNotNull(page.get(NEXT_LINK_PROP));
+        assertEquals(8, getAllPages("Observations?$top=5", 3).size());
+    }
+    
+    
+    @Test
+    public void testGetObservationsStreamed() throws Exception
+    {
+        deepInsertThing(1);
+        
+        // streamed response must be the same as the one generated by FROST
+        // requests with $expand are not streamed
+        var page = sendGetRequest("Observations?$top=3").getAsJsonObject();
+        var frostPage = sendGetRequest("Observations?$top=3&$expand=FeatureOfInterest").getAsJsonObject();
+        assertEquals(getObservationIds(frostPage), getObservationIds(page));
+        assertNotNull(frostPage.get(NEXT_LINK_PROP));
+        assertNotNull(page.get(NEXT_LINK_PROP));
+        
+        for (int i = 0; i < 3; i++)
+        {
+            var obs = page.getAsJsonArray("value").get(i).getAsJsonObject();
+            var frostObs = frostPage.getAsJsonArray("value").get(i).getAsJsonObject();
+            assertEquals(frostObs.get("phenomenonTime"), obs.get("phenomenonTime"));
+            assertEquals(frostObs.get("result"), obs.get("result"));
+            assertEquals(frostObs.get("Datastream@iot.navigationLink"), obs.get("Datastream@iot.navigationLink"));
+        }
+    }
+    
+    
+    @Test
+    public void testGetDatastreamObservationsWithFilter() throws Exception
+    {
+        var thing1 = deepInsertThing(1);
+        deepInsertThing(2);
+        
+        var thingId = thing1.get(ID_PROP).getAsString();
+        var dsList = sendGetRequest("Things(" + thingId + ")/Datastreams").getAsJsonObject().getAsJsonArray("value");
+        var dsId = dsList.get(0).getAsJsonObject().get(ID_PROP).getAsString();
+        var obsPath = "Datastreams(" + dsId + ")/Observations";
+        
+        // run each request twice so the 2nd time uses the cached filter
+        for (int i = 0; i < 2; i++)
+        {
+            // filter on the same datastream
+            var page = sendGetRequest(obsPath + "?$filter=" + urlEncode("Datastream/name eq 'datastream name 1.1'"));
+            assertEquals(2, page.getAsJsonObject().getAsJsonArray("value").size());
+            
+            // filter on another datastream must not override datastream in path
+            page = sendGetRequest(obsPath + "?$filter=" + urlEncode("Datastream/name eq 'datastream name 1.2'"));
+            assertEquals(0, page.getAsJsonObject().getAsJsonArray("value").size());
+            
+            page = sendGetRequest(obsPath + "?$filter=" + urlEncode("Datastream/name eq 'datastream name 2.1'"));
+            assertEquals(0, page.getAsJsonObject().getAsJsonArray("value").size());
+            
+            // time filter is combined with datastream in path
+            page = sendGetRequest(obsPath + "?$filter=" + urlEncode("phenomenonTime gt 2015-03-03T00:00:00Z"));
+            var values = page.getAsJsonObject().getAsJsonArray("value");
+            assertEquals(1, values.size());
+            assertEquals(4, values.get(0).getAsJsonObject().get("result").getAsInt());
+        }
+        
+        assertTrue(sta.getFilterCache().getStats().hitCount() >= 4);
+    }
+    
+    
+    @Test
+    public void testExpandThingLocations() throws Exception
+    {
+        var things = new ArrayList<JsonObject>();
+        for (int i = 1; i <= 3; i++)
+            things.add(deepInsertThing(i));
+        
+        var expandedThings = getThingsByName("Things?$expand=Locations");
+        for (var thing: things)
+        {
+            var expandedThing = expandedThings.get(thing.get("name").getAsString());
+            assertThingEquals(thing, expandedThing);
+            
+            var locations = expandedThing.getAsJsonArray("Locations");
+            assertEquals(1, locations.size());
+            assertLocationEquals(
+                thing.getAsJsonArray("Locations").get(0).getAsJsonObject(),
+                locations.get(0).getAsJsonObject());
+        }
+    }
+    
+    
+    @Test
+    public void testExpandThingLocationsAfterUpdate() throws Exception
+    {
+        var thing1 = deepInsertThing(1);
+        var thing2 = deepInsertThing(2);
+        Thread.sleep(10);
+        
+        // associate new location to thing 1
+        var newLocation = buildLocation("new location", 2.35, 48.85);
+        var locations = new JsonArray();
+        locations.add(newLocation);
+        var thing = new JsonObject();
+        thing.add("name", thing1.get("name"));
+        thing.add("description", thing1.get("description"));
+        thing.add("Locations", locations);
+        sendPutRequest("Things(" + thing1.get(ID_PROP).getAsString() + ")", thing);
+        
+        // only the new location is current for thing 1
+        var expandedThings = getThingsByName("Things?$expand=Locations");
+        var expandedLocations = expandedThings.get("thing name 1").getAsJsonArray("Locations");
+        assertEquals(1, expandedLocations.size());
+        assertLocationEquals(newLocation, expandedLocations.get(0).getAsJsonObject());
+        
+        // thing 2 is unchanged
+        expandedLocations = expandedThings.get("thing name 2").getAsJsonArray("Locations");
+        assertEquals(1, expandedLocations.size());
+        assertLocationEquals(
+            thing2.getAsJsonArray("Locations").get(0).getAsJsonObject(),
+            expandedLocations.get(0).getAsJsonObject());
+    }
+    
+    
+    @Test
+    public void testExpandThingDatastreams() throws Exception
+    {
+        var things = new ArrayList<JsonObject>();
+        for (int i = 1; i <= 3; i++)
+            things.add(deepInsertThing(i));
+        
+        // also check nested expand
+        var expandedThings = getThingsByName("Things?$expand=Datastreams/Observations,Locations");
+        for (var thing: things)
+        {
+            var expandedThing = expandedThings.get(thing.get("name").getAsString());
+            assertEquals(1, expandedThing.getAsJsonArray("Locations").size());
+            
+            var datastreams = expandedThing.getAsJsonArray("Datastreams");
+            assertEquals(2, datastreams.size());
+            for (int i = 0; i < 2; i++)
+            {
+                var expected = thing.getAsJsonArray("Datastreams").get(i).getAsJsonObject();
+                var ds = datastreams.get(i).getAsJsonObject();
+                assertDatastreamEquals(expected, ds);
+                
+                var expectedResults = new HashSet<Integer>();
+                for (var obs: expected.getAsJsonArray("Observations"))
+                    expectedResults.add(obs.getAsJsonObject().get("result").getAsInt());
+                var results = new HashSet<Integer>();
+                for (var obs: ds.getAsJsonArray("Observations"))
+                    results.add(obs.getAsJsonObject().get("result").getAsInt());
+                assertEquals(expectedResults, results);
+            }
+        }
+    }
+    
+    
+    @Test
+    public void testExpandLatestObservation() throws Exception
+    {
+        deepInsertThing(1);
+        deepInsertThing(2);
+        
+        var expand = urlEncode("Observations($top=1;$orderby=phenomenonTime desc),Sensor");
+        var datastreams = sendGetRequest("Datastreams?$expand=" + expand).getAsJsonObject().getAsJsonArray("value");
+        assertEquals(4, datastreams.size());
+        
+        for (var elt: datastreams)
+        {
+            var ds = elt.getAsJsonObject();
+            var obsList = ds.getAsJsonArray("Observations");
+            assertEquals(1, obsList.size());
+            
+            // latest obs of 1st datastream is 4, of 2nd datastream is 6
+            var dsNum = ds.get("name").getAsString().endsWith(".1") ? 1 : 2;
+            assertEquals(dsNum * 2 + 2, obsList.get(0).getAsJsonObject().get("result").getAsInt());
+            
+            var sensor = ds.getAsJsonObject("Sensor");
+            assertEquals(ds.get("name").getAsString().replace("datastream", "sensor"), sensor.get("name").getAsString());
+        }
+    }
+    
+    
+    @Test
+    public void testSpatialQueriesMatchScan() throws Exception
+    {
+        var thingStore = sta.writeDatabase.getThingStore();
+        var locationStore = sta.writeDatabase.getThingLocationStore();
+        var t0 = Instant.parse("2020-01-01T00:00:00Z");
+        var t1 = t0.plusSeconds(60);
+        var rand = new Random(42);
+        
+        // things with one or two current locations and an older location
+        var currentLocations = new HashMap<Long, List<Geometry>>();
+        for (int i = 0; i < 50; i++)
+        {
+            var thingID = thingStore.add(newFeature("Thing", "thing " + i, null)).getInternalID().getIdAsLong();
+            
+            var oldLocation = newFeature("Location", "old location " + i, randomPoint(rand));
+            var oldLocId = locationStore.add(oldLocation).getInternalID();
+            locationStore.addAssociation(thingID, oldLocId.getIdAsLong(), t0);
+            
+            var geoms = new ArrayList<Geometry>();
+            for (int j = 0; j < 1 + i % 2; j++)
+            {
+                var location = newFeature("Location", "location " + i + "." + j, randomPoint(rand));
+                var locId = locationStore.add(location).getInternalID();
+                locationStore.addAssociation(thingID, locId.getIdAsLong(), t1);
+                geoms.add((Geometry)location.getGeometry());
+            }
+            currentLocations.put(thingID, geoms);
+        }
+        
+        for (int i = 0; i < 20; i++)
+        {
+            var x = rand.nextDouble() * 20 - 10;
+            var y = rand.nextDouble() * 20 - 10;
+            var roi = GEOM_FACTORY.toGeometry(new Envelope(x, x + rand.nextDouble() * 8, y, y + rand.nextDouble() * 8));
+            
+            // compare with scan of all locations
+            var expectedLocations = locationStore.entrySet().stream()
+                .filter(e -> roi.intersects((Geometry)e.getValue().getGeometry()))
+                .map(e -> e.getKey().getInternalID().getIdAsLong())
+                .collect(Collectors.toSet());
+            assertEquals(expectedLocations, selectLocationIds(roi));
+            
+            // compare with scan of current locations of all things
+            var expectedThings = currentLocations.entrySet().stream()
+                .filter(e -> e.getValue().stream().anyMatch(roi::intersects))
+                .map(e -> e.getKey())
+                .collect(Collectors.toSet());
+            assertEquals(expectedThings, selectThingIds(roi));
+        }
+    }
+    
+    
+    @Test
+    public void testSpatialIndexUpdates() throws Exception
+    {
+        var thingStore = sta.writeDatabase.getThingStore();
+        var locationStore = sta.writeDatabase.getThingLocationStore();
+        var t0 = Instant.parse("2020-01-01T00:00:00Z");
+        
+        var roi1 = GEOM_FACTORY.toGeometry(new Envelope(0, 2, 0, 2));
+        var roi2 = GEOM_FACTORY.toGeometry(new Envelope(4, 6, 4, 6));
+        var roi3 = GEOM_FACTORY.toGeometry(new Envelope(7, 9, 7, 9));
+        
+        var thingID = thingStore.add(newFeature("Thing", "thing", null)).getInternalID().getIdAsLong();
+        var locKey1 = locationStore.add(newFeature("Location", "location 1", point(1, 1)));
+        var locID1 = locKey1.getInternalID().getIdAsLong();
+        locationStore.addAssociation(thingID, locID1, t0);
+        assertEquals(Set.of(locID1), selectLocationIds(roi1));
+        assertEquals(Set.of(thingID), selectThingIds(roi1));
+        
+        // replace location geometry
+        locationStore.put(locKey1, newFeature("Location", "location 1", point(5, 5)));
+        assertEquals(Set.of(), selectLocationIds(roi1));
+        assertEquals(Set.of(locID1), selectLocationIds(roi2));
+        assertEquals(Set.of(), selectThingIds(roi1));
+        assertEquals(Set.of(thingID), selectThingIds(roi2));
+        
+        // move thing to another location
+        var locKey2 = locationStore.add(newFeature("Location", "location 2", point(8, 8)));
+        var locID2 = locKey2.getInternalID().getIdAsLong();
+        locationStore.addAssociation(thingID, locID2, t0.plusSeconds(1));
+        assertEquals(Set.of(locID1), selectLocationIds(roi2));
+        assertEquals(Set.of(locID2), selectLocationIds(roi3));
+        assertEquals(Set.of(), selectThingIds(roi2));
+        assertEquals(Set.of(thingID), selectThingIds(roi3));
+        
+        // delete locations
+        var locationStoreImpl = (STALocationStoreImpl)locationStore;
+        locationStore.remove(locKey2);
+        assertEquals(Set.of(), selectLocationIds(roi3));
+        assertEquals(Set.of(), selectThingIds(roi3));
+        assertEquals(0, locationStoreImpl.thingPositionIndex.size());
+        
+        locationStore.remove(locKey1);
+        assertEquals(Set.of(), selectLocationIds(roi2));
+        assertEquals(0, locationStoreImpl.locationGeomIndex.size());
+    }
+    
+    
+    @Test
+    public void testExecuteBatch() throws Exception
+    {
+        var db = sta.writeDatabase;
+        var thingStore = db.getThingStore();
+        var initCount = thingStore.size();
+        
+        // rejected transaction doesn't revert the others
+        var errors = db.executeBatch(List.<Callable<?>>of(
+            () -> thingStore.add(newFeature("Thing", "thing 1", null)),
+            () -> db.executeTransaction(() -> {
+                throw new IllegalStateException("Rejected");
+            }),
+            () -> db.executeTransaction(() -> thingStore.add(newFeature("Thing", "thing 3", null)))
+        ));
+        
+        assertEquals(3, errors.length);
+        assertNull(errors[0]);
+        assertTrue(errors[1] instanceof IllegalStateException);
+        assertNull(errors[2]);
+        assertEquals(initCount + 2, thingStore.size());
+        assertEquals(1, thingStore.values().stream().filter(f -> "thing 1".equals(f.getName())).count());
+        assertEquals(1, thingStore.values().stream().filter(f -> "thing 3".equals(f.getName())).count());
+        
+        // failed transaction is rolled back again after the batch
+        try
+        {
+            db.executeTransaction(() -> {
+                thingStore.add(newFeature("Thing", "thing 4", null));
+                throw new IllegalStateException("Rejected");
+            });
+            fail("Transaction should have failed");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        
+        assertEquals(initCount + 2, thingStore.size());
+    }
+    
+    
+    protected Set<Long> selectLocationIds(Geometry roi)
+    {
+        return sta.writeDatabase.getThingLocationStore().selectKeys(getLocationFilter(roi))
+            .map(k -> k.getInternalID().getIdAsLong())
+            .collect(Collectors.toSet());
+    }
+    
+    
+    protected Set<Long> selectThingIds(Geometry roi)
+    {
+        var filter = new STAThingFilter.Builder()
+            .withLocations(getLocationFilter(roi))
+            .build();
+        
+        return sta.writeDatabase.getThingStore().selectKeys(filter)
+            .map(k -> k.getInternalID().getIdAsLong())
+            .collect(Collectors.toSet());
+    }
+    
+    
+    protected STALocationFilter getLocationFilter(Geometry roi)
+    {
+        return new STALocationFilter.Builder()
+            .withLocation(new SpatialFilter.Builder()
+                .withRoi(roi)
+                .build())
+            .build();
+    }
+    
+    
+    protected AbstractFeature newFeature(String type, String name, Geometry geom)
+    {
+        var f = new GenericFeatureImpl(new QName(type));
+        f.setName(name);
+        if (geom != null)
+        {
+            var c = geom.getCoordinate();
+            f.setGeometry(FrostUtils.toGmlGeometry(new org.geojson.Point(c.x, c.y)));
+        }
+        return f;
+    }
+    
+    
+    protected Geometry point(double x, double y)
+    {
+        return GEOM_FACTORY.createPoint(new Coordinate(x, y));
+    }
+    
+    
+    protected Geometry randomPoint(Random rand)
+    {
+        return point(rand.nextDouble() * 20 - 10, rand.nextDouble() * 20 - 10);
+    }
+    
+    
+    protected Map<String, JsonObject> getThingsByName(String path) throws Exception
+    {
+        var things = new HashMap<String, JsonObject>();
+        for (var thing: sendGetRequest(path).getAsJsonObject().getAsJsonArray("value"))
+            things.put(thing.getAsJsonObject().get("name").getAsString(), thing.getAsJsonObject());
+        return things;
+    }
+    
+    
+    protected JsonObject buildLocation(String name, double lon, double lat)
+    {
+        return JsonBuilderFactory.buildObject()
+            .add("description", "location " + name)
+            .add("name", name)
+            .add("encodingType", "application/vnd.geo+json")
+            .addObject("location")
+                .add("type", "Point")
+                .addArray("coordinates")
+                    .add(lon)
+                    .add(lat)
+                .end()
+            .end()
+            .getJson();
+    }
+    
+    
+    protected List<String> getObservationIds(String path) throws Exception
+    {
+        var page = sendGetRequest(path + (path.contains("?") ? "&" : "?") + "$top=1000").getAsJsonObject();
+        assertNull(page.get(NEXT_LINK_PROP));
+        return getObservationIds(page);
+    }
+    
+    
+    protected List<String> getObservationIds(JsonObject page)
+    {
+        var ids = new ArrayList<String>();
+        for (var obs: page.getAsJsonArray("value"))
+            ids.add(obs.getAsJsonObject().get(ID_PROP).getAsString());
+        return ids;
+    }
+    
+    
+    /*
+     * Follows next links until the last page and returns IDs of all observations
+     */
+    protected List<String> getAllPages(String path, int pageSize) throws Exception
+    {
+        var ids = new ArrayList<String>();
+        
+        while (path != null)
+        {
+            var page = sendGetRequest(path).getAsJsonObject();
+            var pageIds = getObservationIds(page);
+            var nextLink = page.get(NEXT_LINK_PROP);
+            
+            if (nextLink != null)
+                assertEquals(pageSize, pageIds.size());
+            else
+                assertTrue(pageIds.size() <= pageSize);
+            
+            ids.addAll(pageIds);
+            path = nextLink != null ? getPagePath(nextLink.getAsString()) : null;
+        }
+        
+        return ids;
+    }
+    
+    
+    protected String getPagePath(String nextLink)
+    {
+        // next links can be absolute or relative to service root
+        var rootIdx = nextLink.indexOf("/v1.0/");
+        var path = rootIdx >= 0 ? nextLink.substring(rootIdx + 6) : nextLink;
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+    
+    
     protected JsonObject deepInsertThing(int thingNum) throws Exception
     {
         var builder = JsonBuilderFactory.buildObject()
@@ -409,6 +974,65 @@ public class TestSTAService
     }
     
     
+    protected HttpResponse<String> sendPutRequest(String path, JsonElement json) throws IOException
+    {
+        try
+        {
+            HttpClient client = HttpClient.newHttpClient();
+            
+            HttpRequest request = HttpRequest.newBuilder()
+                .PUT(HttpRequest.BodyPublishers.ofString(new Gson().toJson(json)))
+                .uri(URI.create(staRoot + path))
+                .header("Content-Type", "application/json")
+                .build();
+            
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            int statusCode = response.statusCode();
+            if (statusCode >= 300)
+                System.err.println(response.body());
+            assertTrue("Received HTTP error status", statusCode < 300);
+            
+            return response;
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException(e);
+        }
+    }
+    
+    
+    protected HttpResponse<String> sendDeleteRequest(String path) throws IOException
+    {
+        try
+        {
+            HttpClient client = HttpClient.newHttpClient();
+            
+            HttpRequest request = HttpRequest.newBuilder()
+                .DELETE()
+                .uri(URI.create(staRoot + path))
+                .build();
+            
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            int statusCode = response.statusCode();
+            if (statusCode >= 300)
+                System.err.println(response.body());
+            assertTrue("Received HTTP error status", statusCode < 300);
+            
+            return response;
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException(e);
+        }
+    }
+    
+    
+    protected String urlEncode(String expr)
+    {
+        return URLEncoder.encode(expr, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+    
+    
     protected JsonElement sendGetRequest(String path) throws IOException
     {
         try
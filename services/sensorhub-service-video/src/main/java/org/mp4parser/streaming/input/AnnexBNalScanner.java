@@ -0,0 +1,159 @@
+package org.mp4parser.streaming.input;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation free scanner for NAL units in an Annex-B byte stream (H264 or H265).
+ * <p>
+ * Both 3-byte (00 00 01) and 4-byte (00 00 00 01) start codes are supported.
+ * The search for start codes is done 8 bytes at a time and only falls back to
+ * byte-wise comparisons when a word contains a zero byte.
+ * </p>
+ * A single scanner instance can be reused for consecutive frames:
+ * <pre>
+ * scanner.reset(frame);
+ * while (scanner.next()) {
+ *     int type = scanner.getH264NalType();
+ *     ...
+ * }
+ * </pre>
+ * Scanners are not thread safe.
+ */
+public class AnnexBNalScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private ByteBuffer buf;
+    private int limit;
+    private int pos;
+    private int nalStart;
+    private int nalEnd;
+
+    /**
+     * Starts scanning a new buffer, from its current position to its limit.
+     * The buffer position and limit are not modified by the scanner.
+     *
+     * @param buf buffer containing one or more Annex-B NAL units
+     * @return this scanner for chaining
+     */
+    public AnnexBNalScanner reset(ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+        this.pos = findStartCode(buf, buf.position(), limit);
+        this.nalStart = this.nalEnd = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next NAL unit in the buffer
+     *
+     * @return true if a new NAL unit was found, false if the end of buffer was reached
+     */
+    public boolean next() {
+        while (pos >= 0 && pos < limit) {
+            int start = pos + 3;
+            int nextStartCode = findStartCode(buf, start, limit);
+            int end = nextStartCode < 0 ? limit : nextStartCode;
+            pos = nextStartCode;
+
+            // strip trailing zeros (i.e. first byte of 4-byte start code or trailing_zero_8bits)
+            while (end > start && buf.get(end - 1) == 0) {
+                end--;
+            }
+
+            // skip empty NAL units
+            if (end > start) {
+                nalStart = start;
+                nalEnd = end;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the absolute index of the first byte of the current NAL unit (i.e. its header)
+     */
+    public int getNalStart() {
+        return nalStart;
+    }
+
+    /**
+     * @return the absolute index following the last byte of the current NAL unit
+     */
+    public int getNalEnd() {
+        return nalEnd;
+    }
+
+    public int getNalLength() {
+        return nalEnd - nalStart;
+    }
+
+    /**
+     * @return the nal_unit_type of the current NAL unit, assuming a H264 stream
+     */
+    public int getH264NalType() {
+        return buf.get(nalStart) & 0x1f;
+    }
+
+    /**
+     * @return the nal_unit_type of the current NAL unit, assuming a H265 stream
+     */
+    public int getH265NalType() {
+        return (buf.get(nalStart) >> 1) & 0x3f;
+    }
+
+    /**
+     * Creates a view of the current NAL unit, without start code.
+     * The content is not copied so the view is only valid as long as the
+     * underlying buffer content is not modified.
+     *
+     * @return a new buffer sharing the content of the current NAL unit
+     */
+    public ByteBuffer slice() {
+        int oldPos = buf.position();
+        int oldLimit = buf.limit();
+        buf.limit(nalEnd).position(nalStart);
+        ByteBuffer nal = buf.slice();
+        buf.limit(oldLimit).position(oldPos);
+        return nal;
+    }
+
+    /**
+     * Finds the next 3-byte start code sequence (00 00 01) in the given range.
+     * When a 4-byte start code is present, the returned index is the one of its
+     * last 3 bytes.
+     *
+     * @param buf  buffer to search
+     * @param from absolute index where to start the search
+     * @param to   absolute index where to stop the search (exclusive)
+     * @return the absolute index of the first byte of the start code or -1 if none was found
+     */
+    public static int findStartCode(ByteBuffer buf, int from, int to) {
+        int i = from;
+
+        // word at a time search
+        // a start code can only begin at index i if word [i, i+8) contains a zero byte
+        while (i + 10 <= to) {
+            long word = buf.getLong(i);
+            if (((word - ONES) & ~word & HIGHS) != 0) {
+                for (int j = i; j < i + 8; j++) {
+                    if (buf.get(j) == 0 && buf.get(j + 1) == 0 && buf.get(j + 2) == 1) {
+                        return j;
+                    }
+                }
+            }
+            i += 8;
+        }
+
+        // byte-wise search at end of buffer
+        for (; i + 2 < to; i++) {
+            if (buf.get(i) == 0 && buf.get(i + 1) == 0 && buf.get(i + 2) == 1) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -8,6 +8,7 @@ import org.mp4parser.streaming.extensions.CompositionTimeSampleExtension;
 import org.mp4parser.streaming.extensions.CompositionTimeTrackExtension;
 import org.mp4parser.streaming.extensions.DimensionTrackExtension;
 import org.mp4parser.streaming.extensions.SampleFlagsSampleExtension;
+import org.mp4parser.streaming.input.AnnexBNalScanner;
 import org.mp4parser.streaming.input.StreamingSampleImpl;
 import org.mp4parser.streaming.input.h264.spspps.PictureParameterSet;
 import org.mp4parser.streaming.input.h264.spspps.SeqParameterSet;
@@ -45,6 +46,7 @@ public abstract class H264NalConsumingTrack extends AbstractH264Track {
     List<ByteBuffer> buffered = new ArrayList<ByteBuffer>();
     FirstVclNalDetector fvnd = null;
     H264NalUnitHeader sliceNalUnitHeader;
+    protected final AnnexBNalScanner nalScanner = new AnnexBNalScanner();
 
     public H264NalConsumingTrack() {
     }
@@ -58,6 +60,20 @@ public abstract class H264NalConsumingTrack extends AbstractH264Track {
         return nalUnitHeader;
     }
 
+    /**
+     * Consumes all NAL units contained in an Annex-B buffer (e.g. a complete frame).
+     * NAL units are not copied so the buffer content must not be modified afterwards.
+     *
+     * @param data buffer containing NAL units prefixed with 3 or 4 byte start codes
+     * @throws IOException if a NAL unit cannot be processed
+     */
+    public void consumeAnnexB(ByteBuffer data) throws IOException {
+        nalScanner.reset(data);
+        while (nalScanner.next()) {
+            consumeNal(nalScanner.slice());
+        }
+    }
+
     protected void consumeNal(ByteBuffer nal) throws IOException {
         //LOG.finest("Consume NAL of " + nal.length + " bytes." + Hex.encodeHex(new byte[]{nal[0], nal[1], nal[2], nal[3], nal[4]}));
         H264NalUnitHeader nalUnitHeader = getNalUnitHeader(nal);
@@ -223,7 +239,7 @@ public abstract class H264NalConsumingTrack extends AbstractH264Track {
 
         StreamingSample ss = new StreamingSampleImpl(
                 nals,
-                frametick);
+                getSampleDuration());
         ss.addSampleExtension(createSampleFlagsSampleExtension(nu, sliceHeader));
         ss.addSampleExtension(createPictureOrderCountType0SampleExtension(sliceHeader));
 
@@ -231,6 +247,17 @@ public abstract class H264NalConsumingTrack extends AbstractH264Track {
     }
 
 
+    /**
+     * Gets the duration of the sample being created, in timescale units.
+     * By default all samples last exactly one frame tick but subclasses can
+     * override this to support variable frame rates.
+     *
+     * @return the sample duration
+     */
+    protected long getSampleDuration() {
+        return frametick;
+    }
+
     public void setFrametick(int frametick) {
         this.frametick = frametick;
     }
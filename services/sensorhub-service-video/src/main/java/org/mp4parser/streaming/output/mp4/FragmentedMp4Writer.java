@@ -316,9 +316,7 @@ public class FragmentedMp4Writer extends DefaultBoxes implements SampleSink {
     }
 
     protected Box[] createFragment(StreamingTrack streamingTrack, List<StreamingSample> samples) {
-        nextFragmentCreateStartTime.get(streamingTrack);
-        tfraOffsets.put(streamingTrack, Mp4Arrays.copyOfAndAppend(tfraOffsets.get(streamingTrack), bytesWritten));
-        tfraTimes.put(streamingTrack, Mp4Arrays.copyOfAndAppend(tfraTimes.get(streamingTrack), nextFragmentCreateStartTime.get(streamingTrack)));
+        addRandomAccessPoint(streamingTrack);
 
         LOG.finest("Container created");
         Box moof = createMoof(streamingTrack, samples);
@@ -333,6 +331,18 @@ public class FragmentedMp4Writer extends DefaultBoxes implements SampleSink {
         return new Box[]{moof, mdat};
     }
 
+    /**
+     * Records the offset and time of the fragment being created so it can be listed
+     * in the tfra box of the footer. Writers that never write the footer (e.g. long
+     * running live streams) can override this to avoid keeping an ever growing index.
+     *
+     * @param streamingTrack the track the fragment is created for
+     */
+    protected void addRandomAccessPoint(StreamingTrack streamingTrack) {
+        tfraOffsets.put(streamingTrack, Mp4Arrays.copyOfAndAppend(tfraOffsets.get(streamingTrack), bytesWritten));
+        tfraTimes.put(streamingTrack, Mp4Arrays.copyOfAndAppend(tfraTimes.get(streamingTrack), nextFragmentCreateStartTime.get(streamingTrack)));
+    }
+
     private FragmentContainer createFragmentContainer(StreamingTrack streamingTrack) {
         FragmentContainer fragmentContainer = new FragmentContainer();
         List<StreamingSample> samples = new ArrayList<StreamingSample>(sampleBuffers.get(streamingTrack));
@@ -557,8 +567,8 @@ public class FragmentedMp4Writer extends DefaultBoxes implements SampleSink {
     protected Box createTfra(StreamingTrack track) {
         TrackFragmentRandomAccessBox tfra = new TrackFragmentRandomAccessBox();
         tfra.setVersion(1); // use long offsets and times
-        long[] offsets = tfraOffsets.get(track);
-        long[] times = tfraTimes.get(track);
+        long[] offsets = tfraOffsets.getOrDefault(track, new long[0]);
+        long[] times = tfraTimes.getOrDefault(track, new long[0]);
         List<TrackFragmentRandomAccessBox.Entry> entries = new ArrayList<TrackFragmentRandomAccessBox.Entry>(times.length);
         for (int i = 0; i < times.length; i++) {
             entries.add(new TrackFragmentRandomAccessBox.Entry(times[i], offsets[i], 1, 1, 1));
@@ -0,0 +1,434 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.sweapi.video;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.opengis.swe.v20.DataComponent;
+import org.sensorhub.api.common.BigId;
+import org.sensorhub.api.common.IdEncoders;
+import org.sensorhub.api.data.IDataStreamInfo;
+import org.sensorhub.api.data.IObsData;
+import org.sensorhub.impl.service.consys.InvalidRequestException;
+import org.sensorhub.impl.service.consys.InvalidRequestException.ErrorCode;
+import org.sensorhub.impl.service.consys.resource.RequestContext;
+import org.sensorhub.impl.service.consys.resource.ResourceBinding;
+import org.sensorhub.impl.service.consys.resource.ResourceLink;
+import org.sensorhub.impl.service.consys.stream.StreamHandler;
+import org.sensorhub.impl.service.video.CmafSegmentRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.collect.Sets;
+
+
+/**
+ * <p>
+ * Serves LL-HLS playlists, init segments, segments and partial segments
+ * of a video datastream from a {@link CmafSegmentRing}.
+ * </p><p>
+ * The ring is fed by an internal live stream on the same datastream that is
+ * started on the first HLS request and stopped when no client has requested
+ * anything for a while. Client requests are thus served entirely from memory
+ * and all resources except playlists can be cached by proxies.
+ * </p><p>
+ * The URL requested by the client returns a multivariant playlist pointing to
+ * the media playlist. The media playlist and all media resources URIs carry a
+ * phenomenon time filter that matches no observation, so that the observation
+ * query run by the API for each request returns immediately, and the epoch of
+ * the ring, so that resources of a restarted stream get new URIs.
+ * </p><p>
+ * The internal live stream is identified by a random token generated for each
+ * stream, so that clients cannot feed the ring themselves. Resources that are
+ * not or no longer in the ring are reported as not found.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class HLSSerializer extends ResourceBinding<BigId, IObsData>
+{
+    static final Logger log = LoggerFactory.getLogger(HLSSerializer.class);
+    public static final String HLS_MIME_TYPE = "application/vnd.apple.mpegurl";
+    private static final String MP4_MIME_TYPE = "video/mp4";
+    private static final Set<String> IMG_ARRAY_COMPONENT_NAMES = Sets.newHashSet("img", "videoFrame");
+    private static final String HLS_PARAM = "hls";
+    private static final String MSN_PARAM = "msn";
+    private static final String PART_PARAM = "part";
+    private static final String EPOCH_PARAM = "epoch";
+    private static final String NO_OBS_TIME_FILTER = "phenomenonTime=1970-01-01T00:00:00Z";
+    private static final int DEFAULT_BANDWIDTH = 2000000;
+    private static final String BLOCKING_MSN_PARAM = "_HLS_msn";
+    private static final String BLOCKING_PART_PARAM = "_HLS_part";
+    private static final String INGEST_PARAM = "hlsIngest";
+    private static final long IDLE_TIMEOUT = 60000L;
+    private static final long IDLE_CHECK_PERIOD = 10000L;
+    private static final long FIRST_PART_TIMEOUT = 10000L;
+    private static final long BLOCKING_TIMEOUT = 6000L;
+    private static final String CACHE_IMMUTABLE = "public, max-age=3600";
+    private static final Map<BigId, LiveStream> liveStreams = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService idleMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var t = new Thread(r, "HLSIdleMonitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static
+    {
+        // stop feeding rings that nobody is listening to anymore
+        // checked on a timer since no frame may ever arrive on an idle stream
+        idleMonitor.scheduleWithFixedDelay(HLSSerializer::closeIdleStreams,
+            IDLE_CHECK_PERIOD, IDLE_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    int imgComponentIdx;
+
+
+    /*
+     * Internal live stream feeding the segment ring of a datastream
+     */
+    static class LiveStream implements StreamHandler
+    {
+        final BigId dsId;
+        final CmafSegmentRing ring;
+        final String ingestToken = UUID.randomUUID().toString();
+        volatile long lastAccessTime = System.currentTimeMillis();
+        Runnable onStart, onClose;
+
+        LiveStream(BigId dsId, CmafSegmentRing ring)
+        {
+            this.dsId = dsId;
+            this.ring = ring;
+        }
+
+        @Override
+        public void sendPacket() throws IOException
+        {
+            // nothing to send, frames are pushed to the ring directly
+        }
+
+        @Override
+        public void sendPacket(long correlId) throws IOException
+        {
+            // nothing to send, frames are pushed to the ring directly
+        }
+
+        @Override
+        public OutputStream getOutputStream()
+        {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public void setStartCallback(Runnable onStart)
+        {
+            this.onStart = onStart;
+        }
+
+        @Override
+        public void setCloseCallback(Runnable onClose)
+        {
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void close()
+        {
+            if (onClose != null)
+                onClose.run();
+        }
+    }
+
+
+    public HLSSerializer(RequestContext ctx, IdEncoders idEncoders, IDataStreamInfo dsInfo)
+    {
+        super(ctx, idEncoders);
+
+        // get index of image component
+        DataComponent dataStruct = dsInfo.getRecordStructure();
+        imgComponentIdx = 0;
+        for (int i = dataStruct.getComponentCount()-1; i >= 0; i--)
+        {
+            if (IMG_ARRAY_COMPONENT_NAMES.contains(dataStruct.getComponent(i).getName()))
+            {
+                imgComponentIdx = i;
+                break;
+            }
+        }
+    }
+
+
+    @Override
+    public IObsData deserialize() throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+
+    @Override
+    public void serialize(BigId key, IObsData obs, boolean showLinks) throws IOException
+    {
+        // only frames received by the internal live stream are used
+        // responses to clients are generated from the ring
+        var liveStream = getIngestStream();
+        if (liveStream == null)
+            return;
+
+        liveStream.ring.pushFrame(obs.getResult());
+    }
+
+
+    public void startCollection() throws IOException
+    {
+        if (getIngestStream() != null)
+            return;
+
+        var ring = getOrStartLiveStream().ring;
+        var resource = getParam(HLS_PARAM);
+
+        // reject media resources from a previous run of the stream
+        if (resource != null && !"playlist".equals(resource) && getLongParam(EPOCH_PARAM, -1) != ring.getEpoch())
+            throw notAvailable();
+
+        try
+        {
+            if (resource == null)
+                writeMultivariantPlaylist(ring);
+            else if ("playlist".equals(resource))
+                writePlaylist(ring);
+            else if ("init".equals(resource))
+                writeInitSegment(ring);
+            else if ("seg".equals(resource))
+                writeSegment(ring, getLongParam(MSN_PARAM, -1), -1);
+            else if ("part".equals(resource))
+                writeSegment(ring, getLongParam(MSN_PARAM, -1), (int)getLongParam(PART_PARAM, -1));
+            else
+                throw new InvalidRequestException(ErrorCode.BAD_REQUEST, "Unknown HLS resource: " + resource);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for video segment");
+        }
+    }
+
+
+    public void endCollection(Collection<ResourceLink> links) throws IOException
+    {
+        // nothing to do here
+    }
+
+
+    protected void writeMultivariantPlaylist(CmafSegmentRing ring) throws IOException
+    {
+        var playlist = new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:9\n")
+            .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+            .append("#EXT-X-STREAM-INF:BANDWIDTH=").append(DEFAULT_BANDWIDTH).append('\n')
+            .append(getUriPrefix(ring)).append("playlist\n")
+            .toString().getBytes(StandardCharsets.UTF_8);
+
+        ctx.setResponseContentType(HLS_MIME_TYPE);
+        ctx.setResponseHeader("Cache-Control", "no-cache");
+        ctx.getOutputStream().write(playlist);
+        ctx.getOutputStream().flush();
+    }
+
+
+    protected void writePlaylist(CmafSegmentRing ring) throws IOException, InterruptedException
+    {
+        // wait for requested part if blocking reload was requested
+        // otherwise just wait for the first part when the stream is just starting
+        var blockingMsn = getLongParam(BLOCKING_MSN_PARAM, -1);
+        if (blockingMsn >= 0)
+            ring.awaitPart(blockingMsn, (int)getLongParam(BLOCKING_PART_PARAM, 0), BLOCKING_TIMEOUT);
+        else if (ring.isEmpty())
+            ring.awaitPart(0, 0, FIRST_PART_TIMEOUT);
+
+        var playlist = ring.getPlaylist(getUriPrefix(ring)).getBytes(StandardCharsets.UTF_8);
+
+        ctx.setResponseContentType(HLS_MIME_TYPE);
+        ctx.setResponseHeader("Cache-Control", "no-cache");
+        ctx.getOutputStream().write(playlist);
+        ctx.getOutputStream().flush();
+    }
+
+
+    protected void writeInitSegment(CmafSegmentRing ring) throws IOException, InterruptedException
+    {
+        if (ring.isEmpty())
+            ring.awaitPart(0, 0, FIRST_PART_TIMEOUT);
+
+        writeMp4(ring.getInitSegment());
+    }
+
+
+    protected void writeSegment(CmafSegmentRing ring, long msn, int partIdx) throws IOException, InterruptedException
+    {
+        if (msn < 0)
+            throw new InvalidRequestException(ErrorCode.BAD_REQUEST, "Missing segment sequence number");
+
+        // block until the segment or part is complete
+        byte[] data = null;
+        if (ring.awaitPart(msn, partIdx, BLOCKING_TIMEOUT))
+            data = partIdx < 0 ? ring.getSegmentData(msn) : ring.getPartData(msn, partIdx);
+        writeMp4(data);
+    }
+
+
+    protected void writeMp4(byte[] data) throws IOException
+    {
+        if (data == null)
+            throw notAvailable();
+
+        // segments never change once generated and their URIs are unique to each ring
+        ctx.setResponseContentType(MP4_MIME_TYPE);
+        ctx.setResponseHeader("Cache-Control", CACHE_IMMUTABLE);
+        ctx.getOutputStream().write(data);
+        ctx.getOutputStream().flush();
+    }
+
+
+    /*
+     * Segments and parts that were evicted, belong to another run of the stream,
+     * or will never exist are reported as not found, as required by LL-HLS
+     */
+    protected InvalidRequestException notAvailable()
+    {
+        return new InvalidRequestException(ErrorCode.NOT_FOUND, "Requested video segment is not available");
+    }
+
+
+    protected String getUriPrefix(CmafSegmentRing ring)
+    {
+        return "?f=" + URLEncoder.encode(ctx.getFormat().getMimeType(), StandardCharsets.UTF_8) +
+            "&" + NO_OBS_TIME_FILTER +
+            "&" + EPOCH_PARAM + "=" + ring.getEpoch() +
+            "&" + HLS_PARAM + "=";
+    }
+
+
+    protected LiveStream getOrStartLiveStream() throws IOException
+    {
+        var dsId = ctx.getParentID();
+
+        var liveStream = liveStreams.get(dsId);
+        if (liveStream == null)
+        {
+            // build new stream outside of any lock and publish it only if no
+            // other request did it concurrently
+            var newStream = new LiveStream(dsId, new CmafSegmentRing(imgComponentIdx));
+            liveStream = liveStreams.putIfAbsent(dsId, newStream);
+            if (liveStream == null)
+            {
+                liveStream = newStream;
+                startLiveStream(liveStream);
+            }
+        }
+
+        liveStream.lastAccessTime = System.currentTimeMillis();
+        return liveStream;
+    }
+
+
+    protected void startLiveStream(LiveStream liveStream) throws IOException
+    {
+        // start internal live request on the same observation collection
+        // it will be processed with the current user permissions
+        try
+        {
+            var resourcePath = ctx.getRequestUrl().substring(ctx.getApiRootURL().length());
+            var uri = new URI(resourcePath + "?f=" + URLEncoder.encode(ctx.getFormat().getMimeType(), StandardCharsets.UTF_8) +
+                "&" + INGEST_PARAM + "=" + liveStream.ingestToken);
+            var servlet = ctx.getServlet();
+            servlet.getRootHandler().doGet(new RequestContext(servlet, uri, liveStream));
+            if (liveStream.onStart != null)
+                liveStream.onStart.run();
+        }
+        catch (Exception e)
+        {
+            liveStreams.remove(liveStream.dsId, liveStream);
+            throw new IOException("Error starting HLS live stream", e);
+        }
+    }
+
+
+    /*
+     * Returns the live stream fed by this request if it is the internal ingest
+     * request carrying the stream token, null otherwise
+     */
+    protected LiveStream getIngestStream()
+    {
+        var token = getParam(INGEST_PARAM);
+        if (token == null)
+            return null;
+
+        var liveStream = liveStreams.get(ctx.getParentID());
+        return (liveStream != null && token.equals(liveStream.ingestToken)) ? liveStream : null;
+    }
+
+
+    static void closeIdleStreams()
+    {
+        var now = System.currentTimeMillis();
+        for (var liveStream: liveStreams.values())
+        {
+            try
+            {
+                if (now - liveStream.lastAccessTime > IDLE_TIMEOUT && liveStreams.remove(liveStream.dsId, liveStream))
+                    liveStream.close();
+            }
+            catch (RuntimeException e)
+            {
+                log.error("Error closing HLS live stream of datastream {}", liveStream.dsId, e);
+            }
+        }
+    }
+
+
+    protected String getParam(String name)
+    {
+        var values = ctx.getParameterMap().get(name);
+        return (values != null && values.length > 0) ? values[0] : null;
+    }
+
+
+    protected long getLongParam(String name, long defaultValue) throws IOException
+    {
+        var val = getParam(name);
+        if (val == null)
+            return defaultValue;
+
+        try
+        {
+            return Long.parseLong(val);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new InvalidRequestException(ErrorCode.BAD_REQUEST, "Invalid value for parameter " + name + ": " + val);
+        }
+    }
+}
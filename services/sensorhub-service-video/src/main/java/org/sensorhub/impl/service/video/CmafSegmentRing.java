@@ -0,0 +1,464 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.video;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import net.opengis.swe.v20.DataBlock;
+import org.mp4parser.Box;
+import org.mp4parser.streaming.StreamingSample;
+import org.mp4parser.streaming.StreamingTrack;
+import org.mp4parser.streaming.output.mp4.FragmentedMp4Writer;
+
+
+/**
+ * <p>
+ * Bounded in-memory ring of CMAF segments and partial segments generated
+ * from a live H264 video stream, with the corresponding LL-HLS media playlist.
+ * </p><p>
+ * Each partial segment is a single moof/mdat fragment. Segments always start
+ * with an independent part (IDR frame) so they can be used as random access
+ * points, and the oldest segments are evicted when the ring is full.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class CmafSegmentRing
+{
+    public static final double DEFAULT_PART_DURATION = 0.5;
+    public static final double DEFAULT_SEGMENT_DURATION = 2.0;
+    public static final int DEFAULT_MAX_SEGMENTS = 90;
+    static final int NUM_SEGMENTS_WITH_PARTS = 3;
+
+    final double partTargetDuration;
+    final double segmentTargetDuration;
+    final int maxSegments;
+    final H264FrameTrack h264Source;
+    final SegmentingMp4Writer mp4Writer;
+    final Deque<Segment> segments = new ArrayDeque<>();
+    final long epoch = System.currentTimeMillis();
+    byte[] initSegment;
+    long nextMsn = 0;
+    double lastFrameTime = Double.NEGATIVE_INFINITY;
+    byte[] lastFrameData;
+    double streamTime = Double.NaN;
+    double maxPartDuration;
+    int targetDuration;
+
+
+    public static class Part
+    {
+        byte[] data;
+        final double duration;
+        final boolean independent;
+
+        Part(byte[] data, double duration, boolean independent)
+        {
+            this.data = data;
+            this.duration = duration;
+            this.independent = independent;
+        }
+
+        public byte[] getData()
+        {
+            return data;
+        }
+    }
+
+
+    public static class Segment
+    {
+        final long msn;
+        final double startTime;
+        final List<Part> parts = new ArrayList<>();
+        double duration;
+        boolean complete;
+        byte[] data;
+
+        Segment(long msn, double startTime)
+        {
+            this.msn = msn;
+            this.startTime = startTime;
+        }
+
+        public long getSequenceNumber()
+        {
+            return msn;
+        }
+
+        /*
+         * Concatenates all parts and releases part buffers
+         * once parts are not advertised in the playlist anymore
+         */
+        void compact()
+        {
+            getData();
+            parts.forEach(p -> p.data = null);
+        }
+
+        public synchronized byte[] getData()
+        {
+            if (data == null)
+            {
+                var os = new ByteArrayOutputStream();
+                for (var part: parts)
+                    os.writeBytes(part.data);
+                data = os.toByteArray();
+            }
+
+            return data;
+        }
+    }
+
+
+    /*
+     * Mp4 writer that cuts fragments at the partial segment duration
+     * and captures them as byte arrays
+     */
+    class SegmentingMp4Writer extends FragmentedMp4Writer
+    {
+        Queue<Part> pendingParts = new ArrayDeque<>();
+
+        SegmentingMp4Writer(List<StreamingTrack> source) throws IOException
+        {
+            super(source, Channels.newChannel(OutputStream.nullOutputStream()));
+        }
+
+        @Override
+        protected boolean isFragmentReady(StreamingTrack track, StreamingSample next)
+        {
+            long duration = nextSampleStartTime.get(track) - nextFragmentCreateStartTime.get(track);
+            if (duration <= 0)
+                return false;
+
+            // always start new part at sync samples so they can begin a new segment
+            // otherwise cut before the part gets longer than the target duration
+            return SharedMp4Muxer.isSyncSample(next) ||
+                duration + next.getDuration() > partTargetDuration * track.getTimescale();
+        }
+
+        @Override
+        protected Box[] createFragment(StreamingTrack track, List<StreamingSample> samples)
+        {
+            long duration = 0;
+            for (var sample: samples)
+                duration += sample.getDuration();
+
+            var independent = !samples.isEmpty() && SharedMp4Muxer.isSyncSample(samples.get(0));
+            pendingParts.add(new Part(null, (double)duration / track.getTimescale(), independent));
+            return super.createFragment(track, samples);
+        }
+
+        @Override
+        protected void writeHeader(Box... boxes) throws IOException
+        {
+            initSegment = SharedMp4Muxer.toByteArray(boxes);
+        }
+
+        @Override
+        protected void writeFragment(Box... boxes) throws IOException
+        {
+            var part = pendingParts.poll();
+            if (part != null)
+            {
+                part.data = SharedMp4Muxer.toByteArray(boxes);
+                addPart(part);
+            }
+        }
+
+        @Override
+        protected void addRandomAccessPoint(StreamingTrack track)
+        {
+            // no random access index since the footer is never written
+        }
+
+
+        @Override
+        protected void writeFooter(Box... boxes) throws IOException
+        {
+            // no random access footer on live streams
+        }
+    }
+
+
+    public CmafSegmentRing(int imgComponentIdx) throws IOException
+    {
+        this(imgComponentIdx, DEFAULT_PART_DURATION, DEFAULT_SEGMENT_DURATION, DEFAULT_MAX_SEGMENTS);
+    }
+
+
+    public CmafSegmentRing(int imgComponentIdx, double partTargetDuration, double segmentTargetDuration, int maxSegments) throws IOException
+    {
+        this.partTargetDuration = partTargetDuration;
+        this.segmentTargetDuration = segmentTargetDuration;
+        this.maxSegments = maxSegments;
+        this.maxPartDuration = partTargetDuration;
+        this.targetDuration = (int)Math.ceil(segmentTargetDuration);
+        this.h264Source = new H264FrameTrack(imgComponentIdx);
+        this.mp4Writer = new SegmentingMp4Writer(Arrays.<StreamingTrack>asList(h264Source));
+    }
+
+
+    /**
+     * Sends the next video frame to the segmenter.<br/>
+     * Frames older than the last one received, or the same frame received twice, are ignored.
+     * @param rec Record containing the video frame
+     * @throws IOException if the frame cannot be muxed
+     */
+    public synchronized void pushFrame(DataBlock rec) throws IOException
+    {
+        double frameTime = rec.getDoubleValue(0);
+        var frameData = h264Source.getFrameData(rec);
+        if (frameTime < lastFrameTime || (frameTime == lastFrameTime && frameData == lastFrameData))
+            return;
+        lastFrameTime = frameTime;
+        lastFrameData = frameData;
+
+        if (Double.isNaN(streamTime))
+            streamTime = frameTime;
+
+        h264Source.sendNextFrame(rec);
+    }
+
+
+    /*
+     * Called by writer when a new fragment is ready
+     */
+    protected synchronized void addPart(Part part)
+    {
+        var segment = segments.peekLast();
+
+        // start new segment if needed
+        if (segment == null || (part.independent && segment.duration >= segmentTargetDuration))
+        {
+            // a segment must start with an independent part
+            // parts received before the first one are dropped but still count in stream time
+            if (!part.independent)
+            {
+                streamTime += part.duration;
+                return;
+            }
+
+            if (segment != null)
+                completeSegment(segment);
+
+            segment = new Segment(nextMsn++, streamTime);
+            segments.add(segment);
+            while (segments.size() > maxSegments)
+                segments.removeFirst();
+
+            // parts of older segments are not advertised anymore
+            var it = segments.descendingIterator();
+            for (int i = 0; it.hasNext(); i++)
+            {
+                var s = it.next();
+                if (i == NUM_SEGMENTS_WITH_PARTS)
+                {
+                    s.compact();
+                    break;
+                }
+            }
+        }
+
+        segment.parts.add(part);
+        segment.duration += part.duration;
+        streamTime += part.duration;
+        maxPartDuration = Math.max(maxPartDuration, part.duration);
+        notifyAll();
+    }
+
+
+    protected void completeSegment(Segment segment)
+    {
+        segment.complete = true;
+
+        // target duration can only grow
+        targetDuration = Math.max(targetDuration, (int)Math.round(segment.duration));
+    }
+
+
+    /**
+     * @return A token identifying this ring instance, to be included in
+     * resource URIs so that segments of a restarted stream, whose sequence
+     * numbers start again at 0, are never mistaken for cached ones
+     */
+    public long getEpoch()
+    {
+        return epoch;
+    }
+
+
+    public synchronized byte[] getInitSegment()
+    {
+        return initSegment;
+    }
+
+
+    /**
+     * Waits until the given part is available
+     * @param msn Media sequence number of the segment containing the part
+     * @param partIdx Index of part in the segment or -1 to wait for the complete segment
+     * @param timeout Max time to wait, in milliseconds
+     * @return true if the part is available, false if it was evicted, will never exist,
+     * or didn't become available in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitPart(long msn, int partIdx, long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        long waitTime = timeout;
+
+        while (waitTime > 0)
+        {
+            var first = segments.peekFirst();
+            if (first != null && msn < first.msn)
+                return false;
+
+            var segment = getSegment(msn);
+            if (segment != null)
+            {
+                if (partIdx < 0 ? segment.complete : partIdx < segment.parts.size())
+                    return true;
+
+                // part index past the end of a complete segment
+                if (segment.complete)
+                    return false;
+            }
+            else if (msn < nextMsn)
+                return false;
+
+            wait(waitTime);
+            waitTime = deadline - System.currentTimeMillis();
+        }
+
+        return false;
+    }
+
+
+    public synchronized Segment getSegment(long msn)
+    {
+        var first = segments.peekFirst();
+        if (first == null || msn < first.msn || msn >= nextMsn)
+            return null;
+
+        for (var s: segments)
+        {
+            if (s.msn == msn)
+                return s;
+        }
+
+        return null;
+    }
+
+
+    public synchronized byte[] getSegmentData(long msn)
+    {
+        var segment = getSegment(msn);
+        return (segment != null && segment.complete) ? segment.getData() : null;
+    }
+
+
+    public synchronized byte[] getPartData(long msn, int partIdx)
+    {
+        var segment = getSegment(msn);
+        if (segment == null || partIdx < 0 || partIdx >= segment.parts.size())
+            return null;
+        return segment.parts.get(partIdx).data;
+    }
+
+
+    public synchronized boolean isEmpty()
+    {
+        return initSegment == null || segments.isEmpty();
+    }
+
+
+    /**
+     * Generates the LL-HLS media playlist for the current content of the ring
+     * @param uriPrefix Prefix of resource URIs (the resource type is appended directly)
+     * @return The playlist text
+     */
+    public synchronized String getPlaylist(String uriPrefix)
+    {
+        var sb = new StringBuilder(4096);
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:9\n");
+        sb.append("#EXT-X-TARGETDURATION:").append(targetDuration).append('\n');
+        sb.append("#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=")
+          .append(format(3*maxPartDuration)).append('\n');
+        sb.append("#EXT-X-PART-INF:PART-TARGET=").append(format(maxPartDuration)).append('\n');
+        sb.append("#EXT-X-MEDIA-SEQUENCE:").append(segments.isEmpty() ? 0 : segments.peekFirst().msn).append('\n');
+        sb.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        sb.append("#EXT-X-MAP:URI=\"").append(uriPrefix).append("init\"\n");
+
+        int i = 0;
+        int firstWithParts = segments.size() - NUM_SEGMENTS_WITH_PARTS;
+        for (var s: segments)
+        {
+            if (i == 0)
+            {
+                long startMillis = (long)(s.startTime * 1000.);
+                sb.append("#EXT-X-PROGRAM-DATE-TIME:").append(Instant.ofEpochMilli(startMillis)).append('\n');
+            }
+
+            if (i++ >= firstWithParts)
+            {
+                for (int p = 0; p < s.parts.size(); p++)
+                {
+                    var part = s.parts.get(p);
+                    sb.append("#EXT-X-PART:DURATION=").append(format(part.duration))
+                      .append(",URI=\"").append(uriPrefix).append("part&msn=").append(s.msn).append("&part=").append(p).append('"');
+                    if (part.independent)
+                        sb.append(",INDEPENDENT=YES");
+                    sb.append('\n');
+                }
+            }
+
+            if (s.complete)
+            {
+                sb.append("#EXTINF:").append(format(s.duration)).append(",\n");
+                sb.append(uriPrefix).append("seg&msn=").append(s.msn).append('\n');
+            }
+        }
+
+        // hint for next part, only if we know which segment it will belong to
+        // once the target duration is reached, the next part starts a new segment if it is independent
+        var last = segments.peekLast();
+        if (last != null && last.duration < segmentTargetDuration)
+        {
+            sb.append("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"").append(uriPrefix)
+              .append("part&msn=").append(last.msn).append("&part=").append(last.parts.size()).append("\"\n");
+        }
+
+        return sb.toString();
+    }
+
+
+    static String format(double seconds)
+    {
+        return String.format(Locale.US, "%.3f", seconds);
+    }
+}
@@ -0,0 +1,132 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.video;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import net.opengis.swe.v20.DataBlock;
+import org.mp4parser.streaming.input.h264.H264NalConsumingTrack;
+import org.mp4parser.streaming.input.h264.H264NalUnitTypes;
+import org.mp4parser.streaming.output.mp4.FragmentedMp4Writer;
+import org.vast.data.DataBlockMixed;
+
+
+/**
+ * <p>
+ * Streaming track adapting SWE Common video frame records (Annex-B H264
+ * byte stream) to the MP4 muxer. It is shared by the SOS and ConSys API
+ * MP4 serializers as well as by the {@link SharedMp4Muxer}.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class H264FrameTrack extends H264NalConsumingTrack
+{
+    public static final int TIMESCALE = 90000;
+    static final int DEFAULT_FRAME_DURATION = TIMESCALE / 30;
+    static final int MAX_FRAME_DURATION = TIMESCALE * 10;
+
+    final int imgComponentIdx;
+    boolean hasTime = false;
+    boolean hasSps = false;
+    boolean hasPps = false;
+    double frameTime = Double.NaN;
+    double prevFrameTime = Double.NaN;
+    int frameDuration = DEFAULT_FRAME_DURATION;
+
+
+    public H264FrameTrack(int imgComponentIdx)
+    {
+        this.imgComponentIdx = imgComponentIdx;
+
+        // use 90kHz clock and compute sample durations from frame timestamps
+        setTimescale(TIMESCALE);
+        setFrametick(DEFAULT_FRAME_DURATION);
+    }
+
+
+    public void sendNextFrame(DataBlock nextFrame) throws IOException
+    {
+        // write each record in output stream
+        // set creation time as first record time
+        double samplingTime = nextFrame.getDoubleValue(0);
+        if (!hasTime)
+        {
+            ((FragmentedMp4Writer)sampleSink).setCreationTime((long)(samplingTime * 1000.));
+            hasTime = true;
+        }
+
+        // keep track of previous frame time
+        // samples are created when we receive the first NAL unit of the next frame
+        if (!Double.isNaN(frameTime) && samplingTime > frameTime)
+            prevFrameTime = frameTime;
+        frameTime = samplingTime;
+
+        consumeAnnexB(ByteBuffer.wrap(getFrameData(nextFrame)));
+    }
+
+
+    /**
+     * @param rec Record containing the video frame
+     * @return The H264 frame data contained in the record (not a copy)
+     */
+    public byte[] getFrameData(DataBlock rec)
+    {
+        DataBlock frameBlk = ((DataBlockMixed)rec).getUnderlyingObject()[imgComponentIdx];
+        return (byte[])frameBlk.getUnderlyingObject();
+    }
+
+
+    @Override
+    protected long getSampleDuration()
+    {
+        // sample being created is the one of the previous frame so its
+        // duration is the time elapsed until the current frame
+        // if unknown, we keep the last computed duration
+        if (!Double.isNaN(prevFrameTime))
+        {
+            long dt = Math.round((frameTime - prevFrameTime) * TIMESCALE);
+            if (dt > 0)
+            {
+                // cap duration in case of gaps in the stream
+                frameDuration = (int)Math.min(dt, MAX_FRAME_DURATION);
+                setFrametick(frameDuration);
+            }
+        }
+
+        return frameDuration;
+    }
+
+
+    @Override
+    protected void consumeNal(ByteBuffer nal) throws IOException
+    {
+        // make sure we send SPS and PPS only once
+        int nalUnitType = nal.get(0) & 0x1f;
+        if ((!hasSps && nalUnitType == H264NalUnitTypes.SEQ_PARAMETER_SET) ||
+            (!hasPps && nalUnitType == H264NalUnitTypes.PIC_PARAMETER_SET) ||
+            (hasSps && hasPps && nalUnitType != H264NalUnitTypes.SEQ_PARAMETER_SET && nalUnitType != H264NalUnitTypes.PIC_PARAMETER_SET))
+        {
+            super.consumeNal(nal);
+
+            // to remember we already sent SPS and PPS
+            if (nalUnitType == H264NalUnitTypes.SEQ_PARAMETER_SET)
+                hasSps = true;
+            else if (nalUnitType == H264NalUnitTypes.PIC_PARAMETER_SET)
+                hasPps = true;
+        }
+    }
+}
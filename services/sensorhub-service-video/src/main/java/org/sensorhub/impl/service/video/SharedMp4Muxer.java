@@ -0,0 +1,328 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.sensorhub.impl.service.video;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import net.opengis.swe.v20.DataBlock;
+import org.mp4parser.Box;
+import org.mp4parser.streaming.StreamingSample;
+import org.mp4parser.streaming.StreamingTrack;
+import org.mp4parser.streaming.extensions.SampleFlagsSampleExtension;
+import org.mp4parser.streaming.output.mp4.FragmentedMp4Writer;
+import org.mp4parser.tools.ByteBufferByteChannel;
+import org.sensorhub.api.common.BigId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * <p>
+ * Live fragmented MP4 muxer shared by all clients streaming the same video
+ * datastream. Each frame is parsed and muxed only once, and the resulting
+ * fMP4 fragments are fanned out to all connected clients as immutable byte
+ * arrays.<br/>
+ * Each client first receives the init segment (ftyp + moov) and then joins
+ * the stream at the next fragment starting with a sync sample (IDR frame).
+ * Clients that cannot keep up are dropped instead of slowing down the muxer.
+ * </p>
+ *
+ * @author Alex Robin
+ * @since Oct 16, 2026
+ */
+public class SharedMp4Muxer
+{
+    static final Logger log = LoggerFactory.getLogger(SharedMp4Muxer.class);
+    public static final int DEFAULT_MAX_QUEUED_FRAGMENTS = 8;
+    static final int MAX_FRAGMENT_DURATION = 5; // in seconds
+    static final Map<BigId, SharedMp4Muxer> muxers = new HashMap<>();
+
+    final BigId dsId;
+    final H264FrameTrack h264Source;
+    final FanOutMp4Writer mp4Writer;
+    final Set<Client> clients = new CopyOnWriteArraySet<>();
+    byte[] initSegment;
+    double lastFrameTime = Double.NEGATIVE_INFINITY;
+    byte[] lastFrameData;
+    boolean closed;
+
+
+    /*
+     * Mp4 writer that captures header and fragments as byte arrays
+     * instead of writing them to a channel
+     */
+    class FanOutMp4Writer extends FragmentedMp4Writer
+    {
+        Queue<Boolean> syncFlags = new ArrayDeque<>();
+
+        FanOutMp4Writer(List<StreamingTrack> source) throws IOException
+        {
+            super(source, Channels.newChannel(OutputStream.nullOutputStream()));
+        }
+
+        @Override
+        protected boolean isFragmentReady(StreamingTrack track, StreamingSample next)
+        {
+            // cut fragments at sync samples so new clients can join quickly
+            // but don't let fragments grow too long with large GOP sizes
+            long timescale = track.getTimescale();
+            long duration = nextSampleStartTime.get(track) - nextFragmentCreateStartTime.get(track);
+            if (duration > MAX_FRAGMENT_DURATION * timescale)
+                return true;
+            return duration > timescale && isSyncSample(next);
+        }
+
+        @Override
+        protected Box[] createFragment(StreamingTrack track, List<StreamingSample> samples)
+        {
+            syncFlags.add(!samples.isEmpty() && isSyncSample(samples.get(0)));
+            return super.createFragment(track, samples);
+        }
+
+        @Override
+        protected void writeHeader(Box... boxes) throws IOException
+        {
+            initSegment = toByteArray(boxes);
+        }
+
+        @Override
+        protected void writeFragment(Box... boxes) throws IOException
+        {
+            var syncStart = syncFlags.poll();
+            dispatch(toByteArray(boxes), syncStart != null && syncStart);
+        }
+
+        @Override
+        protected void addRandomAccessPoint(StreamingTrack track)
+        {
+            // no random access index since the footer is never written
+        }
+
+
+        @Override
+        protected void writeFooter(Box... boxes) throws IOException
+        {
+            // no random access footer on live streams
+        }
+    }
+
+
+    /**
+     * Handle to a single client connection receiving fragments from
+     * the shared muxer
+     */
+    public class Client implements Closeable
+    {
+        final BlockingQueue<byte[]> queue;
+        boolean started;
+        volatile boolean dropped;
+
+        Client(int maxQueuedFragments)
+        {
+            // reserve one more slot for the init segment
+            this.queue = new ArrayBlockingQueue<>(maxQueuedFragments+1);
+        }
+
+        /*
+         * Called by muxer while holding its lock
+         */
+        void offer(byte[] fragment, boolean syncStart)
+        {
+            if (!started)
+            {
+                if (!syncStart || initSegment == null)
+                    return;
+                queue.offer(initSegment);
+                started = true;
+            }
+
+            if (!queue.offer(fragment))
+            {
+                log.warn("Dropping slow client of video stream {}", dsId);
+                dropped = true;
+                queue.clear();
+                clients.remove(this);
+            }
+        }
+
+        /**
+         * Sends the next video frame to the shared muxer.<br/>
+         * Frames already received from another client are ignored.
+         * @param rec Record containing the video frame
+         * @throws IOException if the frame cannot be muxed
+         */
+        public void pushFrame(DataBlock rec) throws IOException
+        {
+            SharedMp4Muxer.this.pushFrame(rec);
+        }
+
+        /**
+         * Writes all fragments available for this client to the output stream
+         * @param os Client output stream
+         * @throws IOException if writing fails or the client was too slow and has been dropped
+         */
+        public void writePending(OutputStream os) throws IOException
+        {
+            if (dropped)
+                throw new IOException("Client too slow, video stream interrupted");
+
+            byte[] data;
+            while ((data = queue.poll()) != null)
+                os.write(data);
+        }
+
+        public SharedMp4Muxer getMuxer()
+        {
+            return SharedMp4Muxer.this;
+        }
+
+        @Override
+        public void close()
+        {
+            disconnect(this);
+        }
+    }
+
+
+    /**
+     * Connects a new client to the muxer associated to the given datastream,
+     * creating the muxer if needed
+     * @param dsId ID of video datastream
+     * @param imgComponentIdx Index of video frame component in datastream records
+     * @param maxQueuedFragments Max number of fragments queued for the client
+     * before it is considered too slow and dropped
+     * @return The client handle
+     * @throws IOException if the muxer cannot be created
+     */
+    public static Client connect(BigId dsId, int imgComponentIdx, int maxQueuedFragments) throws IOException
+    {
+        synchronized (muxers)
+        {
+            var muxer = muxers.get(dsId);
+            if (muxer == null)
+            {
+                muxer = new SharedMp4Muxer(dsId, imgComponentIdx);
+                muxers.put(dsId, muxer);
+                log.debug("Starting shared MP4 muxer for video stream {}", dsId);
+            }
+
+            return muxer.addClient(maxQueuedFragments);
+        }
+    }
+
+
+    static void disconnect(Client client)
+    {
+        synchronized (muxers)
+        {
+            var muxer = client.getMuxer();
+            muxer.clients.remove(client);
+
+            if (muxer.clients.isEmpty() && muxers.remove(muxer.dsId, muxer))
+            {
+                log.debug("Stopping shared MP4 muxer for video stream {}", muxer.dsId);
+                muxer.close();
+            }
+        }
+    }
+
+
+    protected SharedMp4Muxer(BigId dsId, int imgComponentIdx) throws IOException
+    {
+        this.dsId = dsId;
+        this.h264Source = new H264FrameTrack(imgComponentIdx);
+        this.mp4Writer = new FanOutMp4Writer(Arrays.<StreamingTrack>asList(h264Source));
+    }
+
+
+    protected synchronized Client addClient(int maxQueuedFragments)
+    {
+        var client = new Client(maxQueuedFragments);
+        clients.add(client);
+        return client;
+    }
+
+
+    protected synchronized void pushFrame(DataBlock rec) throws IOException
+    {
+        if (closed)
+            return;
+
+        // the same frame is received by all clients subscribed to the datastream
+        // so only mux it if it's not older than the last one we processed and
+        // not that frame itself. Distinct frames can share the same timestamp
+        double frameTime = rec.getDoubleValue(0);
+        var frameData = h264Source.getFrameData(rec);
+        if (frameTime < lastFrameTime || (frameTime == lastFrameTime && frameData == lastFrameData))
+            return;
+        lastFrameTime = frameTime;
+        lastFrameData = frameData;
+
+        h264Source.sendNextFrame(rec);
+    }
+
+
+    /*
+     * Called by muxer when a new fragment is ready
+     */
+    protected void dispatch(byte[] fragment, boolean syncStart)
+    {
+        for (var client: clients)
+            client.offer(fragment, syncStart);
+    }
+
+
+    protected synchronized void close()
+    {
+        // no need to flush pending samples since nobody is listening anymore
+        closed = true;
+        clients.clear();
+    }
+
+
+    static boolean isSyncSample(StreamingSample sample)
+    {
+        // when there is no SampleFlagsSampleExtension we assume syncSample == true
+        var sfExt = sample.getSampleExtension(SampleFlagsSampleExtension.class);
+        return sfExt == null || sfExt.isSyncSample();
+    }
+
+
+    static byte[] toByteArray(Box... boxes) throws IOException
+    {
+        long size = 0;
+        for (var box: boxes)
+            size += box.getSize();
+
+        var data = new byte[(int)size];
+        var channel = new ByteBufferByteChannel(data);
+        for (var box: boxes)
+            box.getBox(channel);
+
+        return data;
+    }
+}
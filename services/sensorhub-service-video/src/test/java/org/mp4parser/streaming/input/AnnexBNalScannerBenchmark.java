@@ -0,0 +1,65 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.mp4parser.streaming.input;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * <p>
+ * Scanning of a synthetic 2MB 4K IDR frame for NAL units.<br/>
+ * Run with 'gradle :sensorhub-service-video:jmh'
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnexBNalScannerBenchmark
+{
+    ByteBuffer frame;
+    AnnexBNalScanner scanner;
+
+
+    @Setup
+    public void setup() throws Exception
+    {
+        frame = TestAnnexBNalScanner.build4KFrame();
+        scanner = new AnnexBNalScanner();
+    }
+
+
+    @Benchmark
+    public void scan4KFrame(Blackhole bh)
+    {
+        scanner.reset(frame);
+        while (scanner.next())
+            bh.consume(scanner.getNalEnd());
+    }
+}
@@ -0,0 +1,171 @@
+/***************************** BEGIN LICENSE BLOCK ***************************
+
+The contents of this file are subject to the Mozilla Public License, v. 2.0.
+If a copy of the MPL was not distributed with this file, You can obtain one
+at http://mozilla.org/MPL/2.0/.
+
+Software distributed under the License is distributed on an "AS IS" basis,
+WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+for the specific language governing rights and limitations under the License.
+
+Copyright (C) 2026 Sensia Software LLC. All Rights Reserved.
+
+******************************* END LICENSE BLOCK ***************************/
+
+package org.mp4parser.streaming.input;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+
+public class TestAnnexBNalScanner
+{
+    static final byte[] SC3 = {0, 0, 1};
+    static final byte[] SC4 = {0, 0, 0, 1};
+
+
+    static byte[] randomPayload(Random rand, int size, int header)
+    {
+        // make sure payload doesn't contain any start code
+        var data = new byte[size];
+        rand.nextBytes(data);
+        for (int i = 0; i < size; i++)
+        {
+            if (data[i] == 0 || data[i] == 1)
+                data[i] = 0x55;
+        }
+        data[0] = (byte)header;
+        return data;
+    }
+
+
+    static List<int[]> scanAll(ByteBuffer buf)
+    {
+        var nals = new ArrayList<int[]>();
+        var scanner = new AnnexBNalScanner().reset(buf);
+        while (scanner.next())
+            nals.add(new int[] {scanner.getNalStart(), scanner.getNalEnd(), scanner.getH264NalType()});
+        return nals;
+    }
+
+
+    @Test
+    public void testMixedStartCodes() throws Exception
+    {
+        var rand = new Random(42);
+        var os = new ByteArrayOutputStream();
+        var expected = new ArrayList<int[]>();
+
+        int[] types = {7, 8, 6, 5, 1, 1};
+        for (int i = 0; i < types.length; i++)
+        {
+            // use payload sizes that put start codes at all word offsets
+            os.write(i % 2 == 0 ? SC4 : SC3);
+            var payload = randomPayload(rand, 3 + i*5, types[i]);
+            int start = os.size();
+            os.write(payload);
+            expected.add(new int[] {start, os.size(), types[i]});
+        }
+
+        var nals = scanAll(ByteBuffer.wrap(os.toByteArray()));
+        assertEquals(expected.size(), nals.size());
+        for (int i = 0; i < nals.size(); i++)
+            assertArrayEquals(expected.get(i), nals.get(i));
+    }
+
+
+    @Test
+    public void testTrailingZerosAndEmptyNals() throws Exception
+    {
+        var os = new ByteArrayOutputStream();
+        os.write(SC4);
+        os.write(new byte[] {0x67, 0x42, 0x00, 0x1e, 0, 0});
+        os.write(SC3);
+        os.write(SC3);
+        os.write(new byte[] {0x68, (byte)0xce});
+
+        var nals = scanAll(ByteBuffer.wrap(os.toByteArray()));
+        assertEquals(2, nals.size());
+        assertArrayEquals(new int[] {4, 8, 7}, nals.get(0));
+        assertArrayEquals(new int[] {16, 18, 8}, nals.get(1));
+    }
+
+
+    @Test
+    public void testSliceAndBufferState() throws Exception
+    {
+        var os = new ByteArrayOutputStream();
+        os.write(SC4);
+        os.write(new byte[] {0x40, 0x01, 0x0c});
+        os.write(SC4);
+        os.write(new byte[] {0x26, 0x01, (byte)0xaf});
+
+        var buf = ByteBuffer.wrap(os.toByteArray());
+        var scanner = new AnnexBNalScanner().reset(buf);
+
+        assertTrue(scanner.next());
+        assertEquals(32, scanner.getH265NalType()); // VPS
+        var nal = scanner.slice();
+        assertEquals(3, nal.remaining());
+        assertEquals(0x40, nal.get(0));
+
+        assertTrue(scanner.next());
+        assertEquals(19, scanner.getH265NalType()); // IDR_W_RADL
+        assertFalse(scanner.next());
+
+        assertEquals(0, buf.position());
+        assertEquals(buf.capacity(), buf.limit());
+    }
+
+
+    @Test
+    public void testNoStartCode()
+    {
+        var buf = ByteBuffer.wrap(new byte[] {0x12, 0x00, 0x00, 0x02, 0x55});
+        assertTrue(scanAll(buf).isEmpty());
+        assertTrue(scanAll(ByteBuffer.allocate(0)).isEmpty());
+    }
+
+
+    static final int[] HEADER_NAL_TYPES = {9, 7, 8, 6};
+    static final int NUM_SLICES = 8;
+
+
+    static ByteBuffer build4KFrame() throws Exception
+    {
+        // synthetic 4K IDR frame with AUD, SPS, PPS, SEI and 8 slices
+        var rand = new Random(0);
+        var os = new ByteArrayOutputStream();
+        for (int t: HEADER_NAL_TYPES)
+        {
+            os.write(SC4);
+            os.write(randomPayload(rand, 16, t));
+        }
+        for (int i = 0; i < NUM_SLICES; i++)
+        {
+            os.write(SC3);
+            os.write(randomPayload(rand, 256*1024, 0x65));
+        }
+        return ByteBuffer.wrap(os.toByteArray());
+    }
+
+
+    @Test
+    public void testLarge4KFrame() throws Exception
+    {
+        var nals = scanAll(build4KFrame());
+        assertEquals(HEADER_NAL_TYPES.length + NUM_SLICES, nals.size());
+        for (int i = 0; i < HEADER_NAL_TYPES.length; i++)
+            assertEquals(HEADER_NAL_TYPES[i], nals.get(i)[2]);
+        for (int i = HEADER_NAL_TYPES.length; i < nals.size(); i++)
+        {
+            assertEquals(5, nals.get(i)[2]);
+            assertEquals(256*1024, nals.get(i)[1] - nals.get(i)[0]);
+        }
+    }
+}
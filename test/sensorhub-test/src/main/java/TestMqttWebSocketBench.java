@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import com.hivemq.client.mqtt.MqttClient;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+
+/**
+ * Compares MQTT over websocket through the hub websocket proxy with the
+ * native HiveMQ websocket listener. Clients of each transport subscribe to
+ * the same topic and a plain TCP client is used as the reference to compute
+ * the latency added by each transport.
+ */
+public class TestMqttWebSocketBench
+{
+    static final String HOST = "localhost";
+    static final int TCP_PORT = 1883;
+    static final int PROXY_PORT = 8181;
+    static final String PROXY_PATH = "sensorhub/mqtt";
+    static final int NATIVE_WS_PORT = 8083;
+    static final String NATIVE_WS_PATH = "mqtt";
+    static final String TOPIC = "/api/datastreams/18ic63yst5gtz/observations";
+    static final int NUM_CLIENTS = 50;
+    static final int DURATION_SECONDS = 30;
+
+
+    static class Transport
+    {
+        String name;
+        List<Mqtt5AsyncClient> clients = new ArrayList<>();
+        List<Map<Integer, Long>> arrivals = new ArrayList<>();
+        AtomicLong msgCount = new AtomicLong();
+
+        Transport(String name)
+        {
+            this.name = name;
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception
+    {
+        var ref = connect("tcp", 1, -1, null);
+        var proxy = connect("proxy", NUM_CLIENTS, PROXY_PORT, PROXY_PATH);
+        var nativeWs = connect("native", NUM_CLIENTS, NATIVE_WS_PORT, NATIVE_WS_PATH);
+
+        System.out.println("Receiving for " + DURATION_SECONDS + "s...");
+        Thread.sleep(DURATION_SECONDS*1000L);
+
+        for (var t: List.of(ref, proxy, nativeWs))
+        {
+            for (var c: t.clients)
+                c.disconnect();
+        }
+
+        var refArrivals = ref.arrivals.get(0);
+        for (var t: List.of(proxy, nativeWs))
+            printStats(t, refArrivals);
+    }
+
+
+    static Transport connect(String name, int numClients, int wsPort, String wsPath) throws Exception
+    {
+        var t = new Transport(name);
+
+        for (int i = 0; i < numClients; i++)
+        {
+            var builder = MqttClient.builder()
+                .identifier(name + "-bench-" + i)
+                .serverHost(HOST)
+                .useMqttVersion5();
+
+            if (wsPath != null)
+            {
+                builder = builder
+                    .serverPort(wsPort)
+                    .webSocketConfig()
+                        .serverPath(wsPath)
+                        .subprotocol("mqtt")
+                        .applyWebSocketConfig();
+            }
+            else
+                builder = builder.serverPort(TCP_PORT);
+
+            var client = builder.buildAsync();
+            client.connect().get();
+
+            var arrivals = new ConcurrentHashMap<Integer, Long>();
+            client.subscribeWith()
+                .topicFilter(TOPIC)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .callback(msg -> {
+                    arrivals.put(payloadKey(msg), System.nanoTime());
+                    t.msgCount.incrementAndGet();
+                })
+                .send()
+                .get();
+
+            t.clients.add(client);
+            t.arrivals.add(arrivals);
+        }
+
+        System.out.println("Connected " + numClients + " " + name + " client(s)");
+        return t;
+    }
+
+
+    static int payloadKey(Mqtt5Publish msg)
+    {
+        return Arrays.hashCode(msg.getPayloadAsBytes());
+    }
+
+
+    static void printStats(Transport t, Map<Integer, Long> refArrivals)
+    {
+        var delays = new ArrayList<Double>();
+        for (var arrivals: t.arrivals)
+        {
+            for (var e: arrivals.entrySet())
+            {
+                var refTime = refArrivals.get(e.getKey());
+                if (refTime != null)
+                    delays.add((e.getValue() - refTime) / 1e6);
+            }
+        }
+
+        delays.sort(null);
+        var n = delays.size();
+        System.out.printf("%s: %.1f msg/s, added latency (ms) median=%.3f, p99=%.3f, max=%.3f%n",
+            t.name,
+            (double)t.msgCount.get() / DURATION_SECONDS,
+            n > 0 ? delays.get(n/2) : Double.NaN,
+            n > 0 ? delays.get((int)(n*0.99)) : Double.NaN,
+            n > 0 ? delays.get(n-1) : Double.NaN);
+    }
+}